@@ -31,6 +31,8 @@ package org.hisp.dhis.client.sdk.android.api;
 import android.content.Context;
 import android.support.annotation.NonNull;
 
+import org.hisp.dhis.client.sdk.android.api.network.ChunkFetcher;
+import org.hisp.dhis.client.sdk.android.api.network.CompressionInterceptor;
 import org.hisp.dhis.client.sdk.android.api.network.NetworkModuleImpl;
 import org.hisp.dhis.client.sdk.android.api.persistence.PersistenceModuleImpl;
 import org.hisp.dhis.client.sdk.android.api.preferences.PreferencesModuleImpl;
@@ -74,6 +76,7 @@ import org.hisp.dhis.client.sdk.android.user.UserAccountInteractor;
 import org.hisp.dhis.client.sdk.android.user.UserAccountInteractorImpl;
 import org.hisp.dhis.client.sdk.core.common.controllers.ControllersModule;
 import org.hisp.dhis.client.sdk.core.common.controllers.ControllersModuleImpl;
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.core.common.network.Configuration;
 import org.hisp.dhis.client.sdk.core.common.network.NetworkModule;
 import org.hisp.dhis.client.sdk.core.common.persistence.PersistenceModule;
@@ -82,6 +85,10 @@ import org.hisp.dhis.client.sdk.core.common.services.ServicesModule;
 import org.hisp.dhis.client.sdk.core.common.services.ServicesModuleImpl;
 import org.hisp.dhis.client.sdk.utils.Logger;
 
+import java.io.File;
+import java.io.IOException;
+
+import okhttp3.Cache;
 import okhttp3.OkHttpClient;
 import rx.Observable;
 
@@ -92,8 +99,15 @@ import static org.hisp.dhis.client.sdk.utils.Preconditions.isNull;
 // TODO response conversion in NetworkModule)
 // TODO consider handling 403 errors in more general way
 public class D2 {
+    private static final String HTTP_CACHE_DIRECTORY = "http";
+    private static final long HTTP_CACHE_SIZE = 16 * 1024 * 1024; // 16MB
+
     private static D2 d2;
 
+    // cache directory can be used by one cache instance only,
+    // so it has to outlive re-initializations of D2
+    private static Cache httpCache;
+
     private final Context applicationContext;
     private final boolean isD2Configured;
 
@@ -162,8 +176,14 @@ public class D2 {
         }
 
         ServicesModule servicesModule = new ServicesModuleImpl(persistenceModule);
-        NetworkModule networkModule = new NetworkModuleImpl(
-                preferencesModule, flavor.getOkHttpClient());
+        if (httpCache == null) {
+            httpCache = new Cache(new File(applicationContext.getCacheDir(),
+                    HTTP_CACHE_DIRECTORY), HTTP_CACHE_SIZE);
+        }
+
+        NetworkModule networkModule = new NetworkModuleImpl(preferencesModule,
+                flavor.getOkHttpClient(), ChunkFetcher.DEFAULT_MAX_IN_FLIGHT, httpCache,
+                flavor.getCompressionInterceptor());
         ControllersModule controllersModule = new ControllersModuleImpl(
                 networkModule, persistenceModule, preferencesModule, new LoggerImpl());
 
@@ -239,7 +259,8 @@ public class D2 {
                 userProgramInteractor,
                 userOrganisationUnitInteractor,
                 preferencesModule,
-                persistenceModule);
+                persistenceModule,
+                networkModule);
 
         optionSetInteractor = new OptionSetInteractorImpl(
                 servicesModule.getOptionSetService());
@@ -300,6 +321,7 @@ public class D2 {
             public Void call() {
                 instance().preferencesModule.clearAllPreferences();
                 instance().persistenceModule.deleteAllTables();
+                evictHttpCache();
 
                 // save new configuration object
                 instance().preferencesModule.getConfigurationPreferences()
@@ -319,6 +341,19 @@ public class D2 {
         });
     }
 
+    /* responses of the previous server or user must not be revalidated against new one */
+    private static void evictHttpCache() {
+        if (httpCache == null) {
+            return;
+        }
+
+        try {
+            httpCache.evictAll();
+        } catch (IOException exception) {
+            throw ApiException.unexpectedError(null, exception);
+        }
+    }
+
     public static Observable<Configuration> configuration() {
         return Observable.create(new DefaultOnSubscribe<Configuration>() {
 
@@ -409,10 +444,17 @@ public class D2 {
     public static final class Flavor {
         private final OkHttpClient okHttpClient;
         private final Logger logger;
+        private final CompressionInterceptor compressionInterceptor;
 
         public Flavor(OkHttpClient okHttpClient, Logger logger) {
+            this(okHttpClient, logger, new CompressionInterceptor());
+        }
+
+        public Flavor(OkHttpClient okHttpClient, Logger logger,
+                      CompressionInterceptor compressionInterceptor) {
             this.okHttpClient = okHttpClient;
             this.logger = logger;
+            this.compressionInterceptor = compressionInterceptor;
         }
 
         public OkHttpClient getOkHttpClient() {
@@ -422,14 +464,20 @@ public class D2 {
         public Logger getLogger() {
             return logger;
         }
+
+        public CompressionInterceptor getCompressionInterceptor() {
+            return compressionInterceptor;
+        }
     }
 
     public static final class Builder {
         private OkHttpClient okHttpClient;
         private Logger logger;
+        private int compressionThreshold;
+        private CompressionInterceptor.Listener compressionListener;
 
         public Builder() {
-            // explicit empty constructor
+            compressionThreshold = CompressionInterceptor.NO_COMPRESSION;
         }
 
         public Builder okHttp(OkHttpClient okHttpClient) {
@@ -442,6 +490,21 @@ public class D2 {
             return this;
         }
 
+        /**
+         * Request bodies of at least the given size in bytes are gzip-compressed (see
+         * {@link CompressionInterceptor#DEFAULT_THRESHOLD}). Compression is off unless
+         * threshold is set, so it has to be set only if server accepts compressed bodies.
+         */
+        public Builder compressionThreshold(int compressionThreshold) {
+            this.compressionThreshold = compressionThreshold;
+            return this;
+        }
+
+        public Builder compressionListener(CompressionInterceptor.Listener compressionListener) {
+            this.compressionListener = compressionListener;
+            return this;
+        }
+
         public Flavor build() {
             if (okHttpClient == null) {
                 okHttpClient = new OkHttpClient();
@@ -451,7 +514,8 @@ public class D2 {
                 logger = new LoggerImpl();
             }
 
-            return new Flavor(okHttpClient, logger);
+            return new Flavor(okHttpClient, logger, new CompressionInterceptor(
+                    compressionThreshold, compressionListener));
         }
     }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.android.api.network;
+
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads chunks of a collection (for example, uid-filtered subsets) concurrently
+ * and merges results in the order of chunks. Number of chunks in flight is bounded by
+ * the size of the thread pool, which is shared by all api clients using the fetcher.
+ * Sizes of chunks are decided by the {@link ChunkPlanner} of the fetcher.
+ * <p>
+ * Api clients sharing the fetcher also share its {@link ParsedResponseCache}, which keeps
+ * parsed listings of revalidated requests.
+ */
+public final class ChunkFetcher {
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    private final ExecutorService executorService;
+    private final ChunkPlanner chunkPlanner;
+    private final ParsedResponseCache parsedResponseCache;
+    private final int maxInFlight;
+
+    public ChunkFetcher(int maxInFlight) {
+        this(maxInFlight, new ChunkPlanner(0));
+    }
+
+    public ChunkFetcher(int maxInFlight, ChunkPlanner chunkPlanner) {
+        this(maxInFlight, chunkPlanner,
+                new ParsedResponseCache(ParsedResponseCache.DEFAULT_MAX_SIZE));
+    }
+
+    ChunkFetcher(int maxInFlight, ChunkPlanner chunkPlanner,
+                 ParsedResponseCache parsedResponseCache) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Number of chunks in flight must be positive");
+        }
+
+        this.maxInFlight = maxInFlight;
+        this.chunkPlanner = chunkPlanner;
+        this.parsedResponseCache = parsedResponseCache;
+
+        // threads are created lazily and die off when there is nothing to fetch
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxInFlight, maxInFlight,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ChunkThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        this.executorService = executor;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public ChunkPlanner getChunkPlanner() {
+        return chunkPlanner;
+    }
+
+    ParsedResponseCache getParsedResponseCache() {
+        return parsedResponseCache;
+    }
+
+    /**
+     * Runs all chunks and returns their merged results. If any of chunks fails, chunks
+     * which have not completed yet are cancelled and the failure is rethrown.
+     */
+    public <T> List<T> fetch(List<Callable<List<T>>> chunks) throws ApiException {
+        List<T> results = new ArrayList<>();
+
+        // there is nothing to gain from handing single chunk over to another thread
+        if (chunks.size() == 1 || maxInFlight == 1) {
+            for (Callable<List<T>> chunk : chunks) {
+                results.addAll(call(chunk));
+            }
+            return results;
+        }
+
+        List<Future<List<T>>> futures = new ArrayList<>();
+        for (Callable<List<T>> chunk : chunks) {
+            futures.add(executorService.submit(chunk));
+        }
+
+        try {
+            for (Future<List<T>> future : futures) {
+                List<T> chunkResults = future.get();
+                if (chunkResults != null) {
+                    results.addAll(chunkResults);
+                }
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw ApiException.unexpectedError(null, exception);
+        } catch (ExecutionException exception) {
+            throw toApiException(exception.getCause());
+        } finally {
+            for (Future<List<T>> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Stops threads of the fetcher. Chunks which are already running are completed.
+     */
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    private static <T> List<T> call(Callable<List<T>> chunk) throws ApiException {
+        try {
+            List<T> chunkResults = chunk.call();
+            return chunkResults != null ? chunkResults : new ArrayList<T>();
+        } catch (Exception exception) {
+            throw toApiException(exception);
+        }
+    }
+
+    private static ApiException toApiException(Throwable throwable) {
+        if (throwable instanceof ApiException) {
+            return (ApiException) throwable;
+        }
+
+        return ApiException.unexpectedError(null, throwable);
+    }
+
+    private static class ChunkThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "chunk-fetcher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
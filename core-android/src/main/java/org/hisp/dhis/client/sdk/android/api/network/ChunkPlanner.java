@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.android.api.network;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits uids of uid-filtered requests into chunks. Chunks are sized so that request
+ * urls stay under the maximum url length, and within that limit, so that a single
+ * request takes roughly {@link #TARGET_REQUEST_MILLIS}. Time and size of responses are
+ * measured per resource and time is fitted as a fixed cost per request (round trip,
+ * server overhead) plus a cost per item: on links with high latency chunks grow to
+ * avoid paying for round trips, and for resources with heavy items they shrink to stay
+ * clear of read timeouts.
+ * <p>
+ * The two costs can only be told apart from chunks of different sizes. As long as all
+ * measured chunks have roughly the same size, the next chunk is sized to probe: smaller
+ * if requests took longer than the target, larger otherwise.
+ * <p>
+ * When a server rejects url as too long (414), the maximum url length is lowered
+ * for all subsequent plans.
+ */
+public final class ChunkPlanner {
+    public static final int DEFAULT_MAX_URL_LENGTH = 2000;
+    public static final int DEFAULT_CHUNK_SIZE = 64;
+
+    static final int MIN_CHUNK_SIZE = 8;
+    static final int MAX_CHUNK_SIZE = 1024;
+    static final long TARGET_REQUEST_MILLIS = 4000;
+    static final long MAX_RESPONSE_BYTES = 4 * 1024 * 1024;
+
+    // weight of the latest measurement in moving averages
+    private static final double SMOOTHING = 0.3;
+
+    // relative spread of chunk sizes below which costs are not fitted
+    private static final double MIN_RELATIVE_SPREAD = 0.1;
+
+    // characters which are percent-encoded in query parameters
+    private static final String ENCODED_CHARACTERS = " \"'<>#&=+%";
+
+    private final int baseUrlLength;
+    private final Map<String, Estimate> estimates;
+    private int maxUrlLength;
+
+    public ChunkPlanner(int baseUrlLength) {
+        this(baseUrlLength, DEFAULT_MAX_URL_LENGTH);
+    }
+
+    public ChunkPlanner(int baseUrlLength, int maxUrlLength) {
+        this.baseUrlLength = baseUrlLength;
+        this.maxUrlLength = maxUrlLength;
+        this.estimates = new HashMap<>();
+    }
+
+    /**
+     * Splits ids into chunks, each of which is sent as prefix + ids joined
+     * by separator + suffix within a query parameter.
+     *
+     * @param queryLength length of the rest of the query (fields, other filters).
+     */
+    public List<List<String>> plan(String resourceName, Collection<String> ids,
+                                   String prefix, String separator, String suffix,
+                                   int queryLength) {
+        int chunkSize = getChunkSize(resourceName);
+        int availableLength = getMaxUrlLength() - baseUrlLength - resourceName.length() -
+                queryLength - encodedLength(prefix) - encodedLength(suffix);
+        int separatorLength = encodedLength(separator);
+
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> chunk = new ArrayList<>();
+        int chunkLength = 0;
+        for (String id : ids) {
+            int idLength = encodedLength(id);
+            if (!chunk.isEmpty() && (chunk.size() >= chunkSize ||
+                    chunkLength + separatorLength + idLength > availableLength)) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                chunkLength = 0;
+            }
+
+            chunkLength += chunk.isEmpty() ? idLength : separatorLength + idLength;
+            chunk.add(id);
+        }
+
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Records time and size of the response to a chunk of the given number of items.
+     *
+     * @param responseBytes size of the response body, or negative if not known.
+     */
+    public synchronized void record(String resourceName, int itemCount,
+                                    long elapsedMillis, long responseBytes) {
+        if (itemCount <= 0) {
+            return;
+        }
+
+        Estimate estimate = estimates.get(resourceName);
+        if (estimate == null) {
+            estimate = new Estimate();
+            estimates.put(resourceName, estimate);
+        }
+
+        estimate.add(itemCount, Math.max(1, elapsedMillis));
+        if (responseBytes >= 0) {
+            estimate.bytesPerItem = average(estimate.bytesPerItem,
+                    responseBytes / (double) itemCount);
+        }
+    }
+
+    /**
+     * Lowers maximum url length after server has rejected url of the given length.
+     */
+    public synchronized void reportUrlTooLong(int urlLength) {
+        maxUrlLength = Math.min(maxUrlLength, urlLength * 3 / 4);
+    }
+
+    public synchronized int getMaxUrlLength() {
+        return maxUrlLength;
+    }
+
+    public synchronized int getChunkSize(String resourceName) {
+        Estimate estimate = estimates.get(resourceName);
+        if (estimate == null || estimate.samples == 0) {
+            return DEFAULT_CHUNK_SIZE;
+        }
+
+        double chunkSize;
+        if (!estimate.isFitted()) {
+            chunkSize = estimate.meanItems > 1 && estimate.meanMillis > TARGET_REQUEST_MILLIS ?
+                    estimate.meanItems / 2 : estimate.meanItems * 2;
+        } else if (estimate.getMillisPerItem() <= 0 ||
+                estimate.getOverheadMillis() >= TARGET_REQUEST_MILLIS) {
+            // time does not depend on number of items, or round trips alone take longer
+            // than the target: chunks are limited by response size and url length only
+            chunkSize = MAX_CHUNK_SIZE;
+        } else {
+            chunkSize = (TARGET_REQUEST_MILLIS - estimate.getOverheadMillis()) /
+                    estimate.getMillisPerItem();
+        }
+
+        if (estimate.bytesPerItem > 0) {
+            chunkSize = Math.min(chunkSize, MAX_RESPONSE_BYTES / estimate.bytesPerItem);
+        }
+
+        return (int) Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunkSize));
+    }
+
+    /**
+     * Estimates length of the query built from the given parameters and filters.
+     */
+    public static int queryLength(Map<String, String> queryMap, List<String> filters) {
+        int length = 0;
+        if (queryMap != null) {
+            for (Map.Entry<String, String> entry : queryMap.entrySet()) {
+                length += encodedLength(entry.getKey()) + encodedLength(entry.getValue()) + 2;
+            }
+        }
+
+        if (filters != null) {
+            for (String filter : filters) {
+                length += "filter=".length() + encodedLength(filter) + 1;
+            }
+        }
+
+        return length;
+    }
+
+    static int encodedLength(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char character = text.charAt(i);
+            length += ENCODED_CHARACTERS.indexOf(character) >= 0 || character > 127 ? 3 : 1;
+        }
+        return length;
+    }
+
+    private static double average(double average, double value) {
+        return average > 0 ? average + SMOOTHING * (value - average) : value;
+    }
+
+    /**
+     * Least squares fit of elapsed = overhead + perItem * items, over exponentially
+     * weighted moving averages of measurements.
+     */
+    private static class Estimate {
+        int samples;
+        double meanItems;
+        double meanMillis;
+        double meanItemsSquared;
+        double meanItemsMillis;
+        double bytesPerItem;
+
+        void add(double items, double millis) {
+            if (samples == 0) {
+                meanItems = items;
+                meanMillis = millis;
+                meanItemsSquared = items * items;
+                meanItemsMillis = items * millis;
+            } else {
+                meanItems += SMOOTHING * (items - meanItems);
+                meanMillis += SMOOTHING * (millis - meanMillis);
+                meanItemsSquared += SMOOTHING * (items * items - meanItemsSquared);
+                meanItemsMillis += SMOOTHING * (items * millis - meanItemsMillis);
+            }
+            samples++;
+        }
+
+        boolean isFitted() {
+            double spread = MIN_RELATIVE_SPREAD * meanItems;
+            return samples > 1 && getItemsVariance() > spread * spread;
+        }
+
+        double getMillisPerItem() {
+            return (meanItemsMillis - meanItems * meanMillis) / getItemsVariance();
+        }
+
+        double getOverheadMillis() {
+            return Math.max(0, meanMillis - getMillisPerItem() * meanItems);
+        }
+
+        private double getItemsVariance() {
+            return meanItemsSquared - meanItems * meanItems;
+        }
+    }
+}
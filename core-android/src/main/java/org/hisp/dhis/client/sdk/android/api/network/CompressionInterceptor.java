@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.android.api.network;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSource;
+import okio.GzipSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Compresses request bodies which are larger than the threshold with gzip. Servers which
+ * do not understand compressed bodies answer with 415 (Unsupported Media Type): in this case
+ * request is sent again uncompressed and host is remembered, so that following requests to
+ * it are not compressed at all. Compression is off by default, since servers which do not
+ * decode compressed bodies can also fail in other ways (400, 409 or 500), which can not be
+ * told apart from other errors. It has to be enabled only for servers known to accept them.
+ * <p>
+ * Responses are requested gzip-compressed and decompressed transparently by OkHttp, as long
+ * as Accept-Encoding header is not set by the caller. Number of bytes sent and received
+ * for each request, with and without compression, is reported to the listener.
+ */
+public final class CompressionInterceptor implements Interceptor {
+    public static final int DEFAULT_THRESHOLD = 1024; // 1KB
+    public static final int NO_COMPRESSION = -1;
+
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String GZIP = "gzip";
+    private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
+
+    private final int threshold;
+    private final Listener listener;
+    private final Set<String> hostsWithoutGzip;
+
+    /**
+     * Creates interceptor which does not compress request bodies.
+     */
+    public CompressionInterceptor() {
+        this(NO_COMPRESSION, null);
+    }
+
+    /**
+     * @param threshold minimum size of request body in bytes which is compressed,
+     *                  or NO_COMPRESSION if bodies are only counted.
+     * @param listener  receives byte counts of requests, can be null.
+     */
+    public CompressionInterceptor(int threshold, Listener listener) {
+        if (threshold < 0 && threshold != NO_COMPRESSION) {
+            throw new IllegalArgumentException("Threshold must not be negative");
+        }
+
+        this.threshold = threshold;
+        this.listener = listener;
+        this.hostsWithoutGzip = Collections.synchronizedSet(new HashSet<String>());
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestBody body = request.body();
+
+        if (body == null || request.header(CONTENT_ENCODING) != null) {
+            return countResponse(chain.proceed(request));
+        }
+
+        // body does not have to be buffered in order to be sent as it is
+        if (threshold == NO_COMPRESSION) {
+            notifyRequest(request.url(), body.contentLength(), body.contentLength());
+            return countResponse(chain.proceed(request));
+        }
+
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        long bytes = buffer.size();
+
+        if (bytes < threshold || hostsWithoutGzip.contains(request.url().host())) {
+            notifyRequest(request.url(), bytes, bytes);
+            return countResponse(chain.proceed(request));
+        }
+
+        Buffer compressed = new Buffer();
+        BufferedSink gzipSink = Okio.buffer(new GzipSink(compressed));
+        gzipSink.writeAll(buffer);
+        gzipSink.close();
+        long compressedBytes = compressed.size();
+
+        Request compressedRequest = request.newBuilder()
+                .header(CONTENT_ENCODING, GZIP)
+                .method(request.method(), RequestBody.create(
+                        body.contentType(), compressed.readByteString()))
+                .build();
+
+        Response response = chain.proceed(compressedRequest);
+        if (response.code() != HTTP_UNSUPPORTED_MEDIA_TYPE) {
+            notifyRequest(request.url(), bytes, compressedBytes);
+            return countResponse(response);
+        }
+
+        // server does not accept compressed bodies
+        hostsWithoutGzip.add(request.url().host());
+        response.body().close();
+
+        notifyRequest(request.url(), bytes, bytes);
+        return countResponse(chain.proceed(request));
+    }
+
+    private void notifyRequest(HttpUrl url, long bytes, long compressedBytes) {
+        if (listener != null) {
+            listener.onRequestSent(url, bytes, compressedBytes);
+        }
+    }
+
+    private Response countResponse(Response response) {
+        if (listener == null || response.body() == null || response.networkResponse() == null) {
+            return response;
+        }
+
+        // OkHttp removes encoding headers from decompressed responses,
+        // but they are still available on the network response
+        Response networkResponse = response.networkResponse();
+        long compressedBytes = -1;
+        if (GZIP.equalsIgnoreCase(networkResponse.header(CONTENT_ENCODING))) {
+            String contentLength = networkResponse.header(CONTENT_LENGTH);
+            compressedBytes = contentLength != null ? parseLength(contentLength) : -1;
+        }
+
+        ResponseBody body = response.body();
+        CountingSource source = new CountingSource(
+                body.source(), response.request().url(), compressedBytes);
+        return response.newBuilder()
+                .body(ResponseBody.create(body.contentType(),
+                        body.contentLength(), Okio.buffer(source)))
+                .build();
+    }
+
+    private static long parseLength(String contentLength) {
+        try {
+            return Long.parseLong(contentLength);
+        } catch (NumberFormatException exception) {
+            return -1;
+        }
+    }
+
+    /**
+     * Receives number of bytes sent and received for requests which went over network.
+     */
+    public interface Listener {
+
+        /**
+         * @param bytes           size of body, or -1 if it is not known.
+         * @param compressedBytes size of body sent, which equals to bytes
+         *                        if request was not compressed.
+         */
+        void onRequestSent(HttpUrl url, long bytes, long compressedBytes);
+
+        /**
+         * Called when response body is closed.
+         *
+         * @param bytes           number of bytes of body which were read.
+         * @param compressedBytes size of compressed body, or -1 if response was not
+         *                        compressed or its size is not known.
+         */
+        void onResponseReceived(HttpUrl url, long bytes, long compressedBytes);
+    }
+
+    private class CountingSource extends ForwardingSource {
+        private final HttpUrl url;
+        private final long compressedBytes;
+        private long bytes;
+        private boolean closed;
+
+        CountingSource(Source delegate, HttpUrl url, long compressedBytes) {
+            super(delegate);
+            this.url = url;
+            this.compressedBytes = compressedBytes;
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read > 0) {
+                bytes += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+
+            if (!closed) {
+                closed = true;
+                listener.onResponseReceived(url, bytes, compressedBytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.android.api.network;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import okhttp3.ResponseBody;
+
+/**
+ * Several collections of different types in one response body, for example
+ * {"programs": [..], "programStages": [..]}. Arrays of the root object are visited one
+ * after another and their items are read one by one while they are consumed, in the same
+ * way as with {@link JsonStream}. Properties which are not arrays are skipped.
+ * <p>
+ * Bundle holds the connection open until it is read till the end or closed.
+ */
+public final class JsonBundle implements Closeable {
+    private final ResponseBody responseBody;
+    private final ObjectMapper mapper;
+    private final JsonParser parser;
+
+    private boolean started;
+    private boolean finished;
+    private boolean inArray;
+
+    JsonBundle(ResponseBody responseBody, ObjectMapper mapper) throws IOException {
+        this.responseBody = responseBody;
+        this.mapper = mapper;
+        this.parser = mapper.getFactory().createParser(responseBody.byteStream());
+    }
+
+    /**
+     * Moves to the next array of the bundle. Items of the current array
+     * which have not been read are skipped.
+     *
+     * @return name of the array property, or null if there are no more arrays.
+     */
+    public String nextArray() throws ApiException {
+        if (finished) {
+            return null;
+        }
+
+        try {
+            if (!started) {
+                started = true;
+
+                JsonToken token = parser.nextToken();
+                if (token != JsonToken.START_OBJECT) {
+                    throw new JsonParseException(parser,
+                            "Expected bundle, found " + token, parser.getCurrentLocation());
+                }
+            }
+
+            while (hasNext()) {
+                parser.skipChildren();
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.START_ARRAY) {
+                    inArray = true;
+                    return name;
+                }
+
+                parser.skipChildren();
+            }
+
+            close();
+            return null;
+        } catch (JsonProcessingException exception) {
+            close();
+            throw ApiException.conversionError(null, null, exception);
+        } catch (IOException exception) {
+            close();
+            throw ApiException.networkError(null, exception);
+        }
+    }
+
+    /**
+     * Checks whether the current array has more items.
+     */
+    public boolean hasNext() throws ApiException {
+        if (finished || !inArray) {
+            return false;
+        }
+
+        try {
+            if (parser.nextToken() == JsonToken.END_ARRAY) {
+                inArray = false;
+                return false;
+            }
+
+            return true;
+        } catch (JsonProcessingException exception) {
+            close();
+            throw ApiException.conversionError(null, null, exception);
+        } catch (IOException exception) {
+            close();
+            throw ApiException.networkError(null, exception);
+        }
+    }
+
+    /**
+     * Reads next item of the current array. Has to be preceded by call to hasNext().
+     */
+    public <T> T next(Class<T> type) throws ApiException {
+        if (finished || !inArray) {
+            throw new NoSuchElementException();
+        }
+
+        try {
+            return mapper.readValue(parser, type);
+        } catch (JsonProcessingException exception) {
+            close();
+            throw ApiException.conversionError(null, null, exception);
+        } catch (IOException exception) {
+            close();
+            throw ApiException.networkError(null, exception);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+
+        finished = true;
+        inArray = false;
+        try {
+            parser.close();
+        } catch (IOException ignored) {
+            // nothing we can do here
+        }
+        responseBody.close();
+    }
+}
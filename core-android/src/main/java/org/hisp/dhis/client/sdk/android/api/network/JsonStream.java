@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.android.api.network;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import okhttp3.ResponseBody;
+
+/**
+ * Items of a collection which are read from the response body one by one while they
+ * are consumed, instead of reading the whole collection into memory first. Items are
+ * taken from the first array of the response: either the root array, or the first
+ * array property of the root object ({"pager": {..}, "events": [..]}).
+ * <p>
+ * Stream holds the connection open until it is read till the end or closed.
+ */
+public final class JsonStream<T> implements Closeable {
+    private final ResponseBody responseBody;
+    private final ObjectReader objectReader;
+    private final JsonParser parser;
+
+    private boolean started;
+    private boolean finished;
+
+    JsonStream(ResponseBody responseBody, ObjectReader objectReader) throws IOException {
+        this.responseBody = responseBody;
+        this.objectReader = objectReader;
+        this.parser = objectReader.getFactory().createParser(responseBody.byteStream());
+    }
+
+    public boolean hasNext() throws ApiException {
+        if (finished) {
+            return false;
+        }
+
+        try {
+            JsonToken token = started ? parser.nextToken() : moveToArray();
+            started = true;
+
+            if (token == null || token == JsonToken.END_ARRAY) {
+                close();
+                return false;
+            }
+
+            return true;
+        } catch (JsonProcessingException exception) {
+            close();
+            throw ApiException.conversionError(null, null, exception);
+        } catch (IOException exception) {
+            close();
+            throw ApiException.networkError(null, exception);
+        }
+    }
+
+    /**
+     * Reads next item. Has to be preceded by call to hasNext().
+     */
+    public T next() throws ApiException {
+        if (finished || !started) {
+            throw new NoSuchElementException();
+        }
+
+        try {
+            return objectReader.readValue(parser);
+        } catch (JsonProcessingException exception) {
+            close();
+            throw ApiException.conversionError(null, null, exception);
+        } catch (IOException exception) {
+            close();
+            throw ApiException.networkError(null, exception);
+        }
+    }
+
+    /**
+     * @return first token of the first item, or null if there are no items.
+     */
+    private JsonToken moveToArray() throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_ARRAY) {
+            return parser.nextToken();
+        }
+
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser,
+                    "Expected collection, found " + token, parser.getCurrentLocation());
+        }
+
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            if (parser.nextToken() == JsonToken.START_ARRAY) {
+                return parser.nextToken();
+            }
+
+            // skipping pager and other properties
+            parser.skipChildren();
+        }
+
+        return null;
+    }
+
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+
+        finished = true;
+        try {
+            parser.close();
+        } catch (IOException ignored) {
+            // nothing we can do here
+        }
+        responseBody.close();
+    }
+}
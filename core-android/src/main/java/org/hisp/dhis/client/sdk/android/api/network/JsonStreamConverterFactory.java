@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.android.api.network;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * Converts responses declared as {@link JsonStream} or {@link JsonBundle} without reading
+ * the whole body, so that items can be handled while they are parsed. Other types are left
+ * to converters registered after this one.
+ */
+public final class JsonStreamConverterFactory extends Converter.Factory {
+    private final ObjectMapper mapper;
+
+    private JsonStreamConverterFactory(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    public static JsonStreamConverterFactory create(ObjectMapper mapper) {
+        if (mapper == null) {
+            throw new IllegalArgumentException("ObjectMapper must not be null");
+        }
+
+        return new JsonStreamConverterFactory(mapper);
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(
+            Type type, Annotation[] annotations, Retrofit retrofit) {
+        if (type == JsonBundle.class) {
+            return new Converter<ResponseBody, JsonBundle>() {
+
+                @Override
+                public JsonBundle convert(ResponseBody value) throws IOException {
+                    return new JsonBundle(value, mapper);
+                }
+            };
+        }
+
+        if (!(type instanceof ParameterizedType) ||
+                ((ParameterizedType) type).getRawType() != JsonStream.class) {
+            return null;
+        }
+
+        Type itemType = ((ParameterizedType) type).getActualTypeArguments()[0];
+        final ObjectReader objectReader = mapper.readerFor(mapper.constructType(itemType));
+
+        return new Converter<ResponseBody, JsonStream<?>>() {
+
+            @Override
+            public JsonStream<?> convert(ResponseBody value) throws IOException {
+                return new JsonStream<>(value, objectReader);
+            }
+        };
+    }
+}
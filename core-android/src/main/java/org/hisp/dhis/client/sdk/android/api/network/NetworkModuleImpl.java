@@ -34,8 +34,12 @@ import com.fasterxml.jackson.datatype.joda.JodaModule;
 
 import org.hisp.dhis.client.sdk.android.dataelement.DataElementApiClientImpl;
 import org.hisp.dhis.client.sdk.android.dataelement.DataElementApiClientRetrofit;
+import org.hisp.dhis.client.sdk.android.deletedobject.DeletedObjectApiClientImpl;
+import org.hisp.dhis.client.sdk.android.deletedobject.DeletedObjectApiClientRetrofit;
 import org.hisp.dhis.client.sdk.android.event.EventApiClientImpl;
 import org.hisp.dhis.client.sdk.android.event.EventApiClientRetrofit;
+import org.hisp.dhis.client.sdk.android.metadata.MetadataApiClientImpl;
+import org.hisp.dhis.client.sdk.android.metadata.MetadataApiClientRetrofit;
 import org.hisp.dhis.client.sdk.android.optionset.OptionSetApiClientImpl;
 import org.hisp.dhis.client.sdk.android.optionset.OptionSetApiClientRetrofit;
 import org.hisp.dhis.client.sdk.android.organisationunit.OrganisationUnitApiClientImpl;
@@ -69,7 +73,9 @@ import org.hisp.dhis.client.sdk.core.common.network.UserCredentials;
 import org.hisp.dhis.client.sdk.core.common.preferences.PreferencesModule;
 import org.hisp.dhis.client.sdk.core.common.preferences.UserPreferences;
 import org.hisp.dhis.client.sdk.core.dataelement.DataElementApiClient;
+import org.hisp.dhis.client.sdk.core.deletedobject.DeletedObjectApiClient;
 import org.hisp.dhis.client.sdk.core.event.EventApiClient;
+import org.hisp.dhis.client.sdk.core.metadata.MetadataApiClient;
 import org.hisp.dhis.client.sdk.core.optionset.OptionSetApiClient;
 import org.hisp.dhis.client.sdk.core.organisationunit.OrganisationUnitApiClient;
 import org.hisp.dhis.client.sdk.core.program.ProgramApiClient;
@@ -91,6 +97,7 @@ import java.text.SimpleDateFormat;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
+import okhttp3.Cache;
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
@@ -127,16 +134,64 @@ public class NetworkModuleImpl implements NetworkModule {
     private final ProgramStageDataElementApiClient programStageDataElementApiClient;
     private final OptionSetApiClient optionSetApiClient;
     private final TrackedEntityAttributeApiClient trackedEntityAttributeApiClient;
+    private final MetadataApiClient metadataApiClient;
+    private final DeletedObjectApiClient deletedObjectApiClient;
+    private final ParsedResponseCache parsedResponseCache;
+    private final Cache httpCache;
 
     public NetworkModuleImpl(PreferencesModule preferencesModule, OkHttpClient okClient) {
+        this(preferencesModule, okClient, ChunkFetcher.DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param maxChunksInFlight maximum number of chunks of uid-filtered
+     *                          requests which are downloaded concurrently.
+     */
+    public NetworkModuleImpl(PreferencesModule preferencesModule, OkHttpClient okClient,
+                             int maxChunksInFlight) {
+        this(preferencesModule, okClient, maxChunksInFlight, null);
+    }
+
+    /**
+     * @param maxChunksInFlight maximum number of chunks of uid-filtered
+     *                          requests which are downloaded concurrently.
+     * @param cache             http cache for responses which can be revalidated. If null,
+     *                          cache of the given OkHttpClient (if any) is used.
+     */
+    public NetworkModuleImpl(PreferencesModule preferencesModule, OkHttpClient okClient,
+                             int maxChunksInFlight, Cache cache) {
+        this(preferencesModule, okClient, maxChunksInFlight, cache, new CompressionInterceptor());
+    }
+
+    /**
+     * @param maxChunksInFlight      maximum number of chunks of uid-filtered
+     *                               requests which are downloaded concurrently.
+     * @param cache                  http cache for responses which can be revalidated. If
+     *                               null, cache of the given OkHttpClient (if any) is used.
+     * @param compressionInterceptor compresses request bodies and counts transferred bytes.
+     */
+    public NetworkModuleImpl(PreferencesModule preferencesModule, OkHttpClient okClient,
+                             int maxChunksInFlight, Cache cache,
+                             CompressionInterceptor compressionInterceptor) {
         AuthInterceptor authInterceptor = new AuthInterceptor(
                 preferencesModule.getUserPreferences());
-        OkHttpClient okHttpClient = okClient.newBuilder()
+        parsedResponseCache = new ParsedResponseCache(ParsedResponseCache.DEFAULT_MAX_SIZE);
+        OkHttpClient.Builder okHttpClientBuilder = okClient.newBuilder();
+        if (cache != null) {
+            okHttpClientBuilder.cache(cache);
+        }
+
+        // responses with validators are stored, but revalidated on each request
+        OkHttpClient okHttpClient = okHttpClientBuilder
+                .addInterceptor(new NotModifiedInterceptor(parsedResponseCache))
                 .addInterceptor(authInterceptor)
+                .addInterceptor(compressionInterceptor)
+                .addNetworkInterceptor(new RevalidationInterceptor())
                 .connectTimeout(DEFAULT_CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
                 .readTimeout(DEFAULT_READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
                 .writeTimeout(DEFAULT_WRITE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
                 .build();
+        httpCache = okHttpClient.cache();
 
         // Constructing jackson's object mapper
         ObjectMapper mapper = new ObjectMapper();
@@ -167,39 +222,61 @@ public class NetworkModuleImpl implements NetworkModule {
         Retrofit retrofit = new Retrofit.Builder()
                 .baseUrl(modifiedUrl)
                 .client(okHttpClient)
+                .addConverterFactory(JsonStreamConverterFactory.create(mapper))
                 .addConverterFactory(JacksonConverterFactory.create(mapper))
                 .build();
 
+        // shared by api clients in order to bound the total number of chunks in flight
+        ChunkFetcher chunkFetcher = new ChunkFetcher(maxChunksInFlight,
+                new ChunkPlanner(modifiedUrl.toString().length()), parsedResponseCache);
+
         programApiClient = new ProgramApiClientImpl(
-                retrofit.create(ProgramApiClientRetrofit.class));
+                retrofit.create(ProgramApiClientRetrofit.class), chunkFetcher);
         programStageApiClient = new ProgramStageApiClientImpl(
-                retrofit.create(ProgramStageApiClientRetrofit.class));
+                retrofit.create(ProgramStageApiClientRetrofit.class), chunkFetcher);
         programStageSectionApiClient = new ProgramStageSectionApiClientImpl(
-                retrofit.create(ProgramStageSectionApiClientRetrofit.class));
+                retrofit.create(ProgramStageSectionApiClientRetrofit.class), chunkFetcher);
         programRuleApiClient = new ProgramRuleApiClientImpl(
-                retrofit.create(ProgramRuleApiClientRetrofit.class));
+                retrofit.create(ProgramRuleApiClientRetrofit.class), chunkFetcher);
         programRuleActionApiClient = new ProgramRuleActionApiClientImpl(
-                retrofit.create(ProgramRuleActionApiClientRetrofit.class));
+                retrofit.create(ProgramRuleActionApiClientRetrofit.class), chunkFetcher);
         programRuleVariableApiClient = new ProgramRuleVariableApiClientImpl(
-                retrofit.create(ProgramRuleVariableApiClientRetrofit.class));
+                retrofit.create(ProgramRuleVariableApiClientRetrofit.class), chunkFetcher);
         programIndicatorApiClient = new ProgramIndicatorApiClientImpl(
-                retrofit.create(ProgramIndicatorApiClientRetrofit.class));
+                retrofit.create(ProgramIndicatorApiClientRetrofit.class), chunkFetcher);
         systemInfoApiClient = new SystemInfoApiClientImpl(
                 retrofit.create(SystemInfoApiClientRetrofit.class));
         userApiClient = new UserAccountApiClientImpl(
                 retrofit.create(UserApiClientRetrofit.class));
         organisationUnitApiClient = new OrganisationUnitApiClientImpl(
-                retrofit.create(OrganisationUnitApiClientRetrofit.class));
+                retrofit.create(OrganisationUnitApiClientRetrofit.class), chunkFetcher);
         eventApiClient = new EventApiClientImpl(
-                retrofit.create(EventApiClientRetrofit.class));
+                retrofit.create(EventApiClientRetrofit.class), chunkFetcher);
         dataElementApiClient = new DataElementApiClientImpl(
-                retrofit.create(DataElementApiClientRetrofit.class));
+                retrofit.create(DataElementApiClientRetrofit.class), chunkFetcher);
         programStageDataElementApiClient = new ProgramStageDataElementApiClientImpl(
-                retrofit.create(ProgramStageDataElementApiClientRetrofit.class));
+                retrofit.create(ProgramStageDataElementApiClientRetrofit.class), chunkFetcher);
         optionSetApiClient = new OptionSetApiClientImpl(
-                retrofit.create(OptionSetApiClientRetrofit.class));
+                retrofit.create(OptionSetApiClientRetrofit.class), chunkFetcher);
         trackedEntityAttributeApiClient = new TrackedEntityAttributeApiClientImpl(
-                retrofit.create(TrackedEntityAttributeApiClientRetrofit.class));
+                retrofit.create(TrackedEntityAttributeApiClientRetrofit.class), chunkFetcher);
+        metadataApiClient = new MetadataApiClientImpl(
+                retrofit.create(MetadataApiClientRetrofit.class));
+        deletedObjectApiClient = new DeletedObjectApiClientImpl(
+                retrofit.create(DeletedObjectApiClientRetrofit.class));
+    }
+
+    @Override
+    public void clearCaches() {
+        parsedResponseCache.clear();
+
+        if (httpCache != null) {
+            try {
+                httpCache.evictAll();
+            } catch (IOException exception) {
+                throw ApiException.unexpectedError(null, exception);
+            }
+        }
     }
 
     @Override
@@ -277,6 +354,16 @@ public class NetworkModuleImpl implements NetworkModule {
         return programIndicatorApiClient;
     }
 
+    @Override
+    public MetadataApiClient getMetadataApiClient() {
+        return metadataApiClient;
+    }
+
+    @Override
+    public DeletedObjectApiClient getDeletedObjectApiClient() {
+        return deletedObjectApiClient;
+    }
+
     private static class AuthInterceptor implements Interceptor {
         private final UserPreferences mUserPreferences;
 
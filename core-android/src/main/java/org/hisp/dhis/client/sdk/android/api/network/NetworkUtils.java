@@ -33,20 +33,32 @@ import android.support.annotation.Nullable;
 
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.core.common.network.PageConsumer;
 import org.hisp.dhis.client.sdk.core.common.utils.CollectionUtils;
 import org.joda.time.DateTime;
 
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import retrofit2.Call;
 import retrofit2.Response;
 
 public class NetworkUtils {
+    public static final int DEFAULT_PAGE_SIZE = 500;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private static final int HTTP_URL_TOO_LONG = 414;
+
+    // assumed size of an item in responses of unknown length
+    private static final int ESTIMATED_ITEM_SIZE = 256;
 
     private NetworkUtils() {
         // no instances
@@ -55,26 +67,201 @@ public class NetworkUtils {
     @NonNull
     public static <T> List<T> getCollection(
             @NonNull ApiResource<T> apiResource, @NonNull Fields fields,
-            @Nullable DateTime lastUpdated, @Nullable Set<String> uids) {
-        return getCollection(apiResource, "id", fields, lastUpdated, uids);
+            @Nullable DateTime lastUpdated, @Nullable Set<String> uids,
+            @NonNull ChunkFetcher chunkFetcher) {
+        return getCollection(apiResource, "id", fields, lastUpdated, uids, chunkFetcher);
     }
 
+    /**
+     * Downloads collection in one request, or if uids are given, in chunks of uids which
+     * are fetched concurrently by the chunk fetcher. Chunks are sized by its chunk planner.
+     * <p>
+     * Listings of basic fields are kept in the parsed response cache of the chunk fetcher
+     * and handed out again while server reports that they have not changed. Such listings
+     * are read-only and their items must not be modified.
+     */
     @NonNull
     public static <T> List<T> getCollection(
-            @NonNull ApiResource<T> apiResource, @NonNull String uidProperty,
-            @NonNull Fields fields, @Nullable DateTime lastUpdated, @Nullable Set<String> uids) {
+            @NonNull final ApiResource<T> apiResource, @NonNull final String uidProperty,
+            @NonNull Fields fields, @Nullable DateTime lastUpdated, @Nullable Set<String> uids,
+            @NonNull ChunkFetcher chunkFetcher) {
 
-        Map<String, String> queryMap = new HashMap<>();
-        List<String> filters = new ArrayList<>();
+        final Map<String, String> queryMap = buildQueryMap(apiResource, fields);
+        final List<String> filters = buildFilters(lastUpdated);
 
         /* disable paging */
         queryMap.put("paging", "false");
 
-        /* filter programs by lastUpdated field */
-        if (lastUpdated != null) {
-            filters.add("lastUpdated:gt:" + lastUpdated.toString());
+        if (uids != null && !uids.isEmpty()) {
+            final String resourceName = apiResource.getResourceName();
+            final ChunkPlanner chunkPlanner = chunkFetcher.getChunkPlanner();
+            final ChunkRequest<T> chunkRequest = new ChunkRequest<T>() {
+
+                @Override
+                public Call<Map<String, List<T>>> create(List<String> ids) {
+                    List<String> combinedFilters = new ArrayList<>(filters);
+                    combinedFilters.add(buildIdFilter(uidProperty, ids));
+                    return apiResource.getEntities(queryMap, combinedFilters);
+                }
+            };
+
+            // splitting up request into chunks which fit into url
+            List<List<String>> idChunks = chunkPlanner.plan(resourceName, uids,
+                    uidProperty + ":in:[", ",", "]", ChunkPlanner.queryLength(queryMap, filters));
+            List<Callable<List<T>>> chunks = new ArrayList<>();
+            for (final List<String> idChunk : idChunks) {
+
+                // downloading subset of models
+                chunks.add(new Callable<List<T>>() {
+
+                    @Override
+                    public List<T> call() throws ApiException {
+                        return callChunk(chunkRequest, resourceName, idChunk, chunkPlanner);
+                    }
+                });
+            }
+
+            return chunkFetcher.fetch(chunks);
+        }
+
+        Call<Map<String, List<T>>> call = apiResource.getEntities(queryMap, filters);
+        if (Fields.BASIC.equals(fields)) {
+            return Collections.unmodifiableList(unwrap(callCached(call,
+                    chunkFetcher.getParsedResponseCache()), apiResource.getResourceName()));
+        }
+
+        return unwrap(call(call), apiResource.getResourceName());
+    }
+
+    public static <T> void getCollection(
+            @NonNull PagedApiResource<T> apiResource, @NonNull Fields fields,
+            @Nullable DateTime lastUpdated, @Nullable Set<String> uids,
+            @NonNull ChunkPlanner chunkPlanner, @NonNull PageConsumer<T> consumer) {
+        getCollection(apiResource, "id", fields, lastUpdated, uids,
+                DEFAULT_PAGE_SIZE, chunkPlanner, consumer);
+    }
+
+    /**
+     * Downloads collection page by page and hands each page over to the consumer before
+     * the next one is requested. In contrast to getCollection() which returns a list,
+     * memory used by the download is bounded by the page size and not by the size
+     * of the collection. If uids are given, they are split into chunks by the chunk planner,
+     * which also learns from the time each page takes.
+     */
+    public static <T> void getCollection(
+            @NonNull PagedApiResource<T> apiResource, @NonNull String uidProperty,
+            @NonNull Fields fields, @Nullable DateTime lastUpdated, @Nullable Set<String> uids,
+            int pageSize, @NonNull ChunkPlanner chunkPlanner, @NonNull PageConsumer<T> consumer) {
+
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+
+        Map<String, String> queryMap = buildQueryMap(apiResource, fields);
+        List<String> filters = buildFilters(lastUpdated);
+
+        queryMap.put("paging", "true");
+        queryMap.put("pageSize", String.valueOf(pageSize));
+
+        // stable order, so that items do not move between pages while they are downloaded
+        queryMap.put("order", uidProperty + ":asc");
+
+        if (uids != null && !uids.isEmpty()) {
+
+            // splitting up request into chunks which fit into url next to page parameter
+            int queryLength = ChunkPlanner.queryLength(queryMap, filters) +
+                    "&page=".length() + String.valueOf(Integer.MAX_VALUE).length();
+            List<List<String>> idChunks = chunkPlanner.plan(apiResource.getResourceName(),
+                    uids, uidProperty + ":in:[", ",", "]", queryLength);
+            for (List<String> idChunk : idChunks) {
+                List<String> combinedFilters = new ArrayList<>(filters);
+                combinedFilters.add(buildIdFilter(uidProperty, idChunk));
+
+                getPages(apiResource, queryMap, combinedFilters, pageSize, chunkPlanner, consumer);
+            }
+        } else {
+            getPages(apiResource, queryMap, filters, pageSize, null, consumer);
+        }
+    }
+
+    private static <T> void getPages(PagedApiResource<T> apiResource, Map<String, String> queryMap,
+                                     List<String> filters, int pageSize,
+                                     @Nullable ChunkPlanner chunkPlanner,
+                                     PageConsumer<T> consumer) {
+        String resourceName = apiResource.getResourceName();
+
+        int page = 1;
+        while (true) {
+            Map<String, String> pageQueryMap = new HashMap<>(queryMap);
+            pageQueryMap.put("page", String.valueOf(page));
+
+            long startTime = System.currentTimeMillis();
+            Page<T> response = call(apiResource.getPage(pageQueryMap, filters));
+            if (response == null) {
+                return;
+            }
+
+            List<T> items = response.getItems(resourceName);
+
+            // only pages of uid-filtered requests are comparable to chunks
+            if (chunkPlanner != null) {
+                chunkPlanner.record(resourceName, items.size(),
+                        System.currentTimeMillis() - startTime, -1);
+            }
+            if (!items.isEmpty()) {
+                consumer.consume(items);
+            }
+
+            // if server did not send pager, a short page is the last one
+            Pager pager = response.getPager();
+            boolean lastPage = pager != null ?
+                    page >= pager.getPageCount() : items.size() < pageSize;
+            if (lastPage || items.isEmpty()) {
+                return;
+            }
+
+            page++;
+        }
+    }
+
+    /**
+     * Executes the call and reads items from the streamed response in batches of the given
+     * size. Each batch is handed over to the consumer before the next one is parsed, so only
+     * one batch of items is held in memory at a time.
+     */
+    public static <T> void stream(@NonNull Call<JsonStream<T>> call, int batchSize,
+                                  @NonNull PageConsumer<T> consumer) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+
+        JsonStream<T> stream = call(call);
+        if (stream == null) {
+            return;
         }
 
+        try {
+            List<T> batch = new ArrayList<>(batchSize);
+            while (stream.hasNext()) {
+                batch.add(stream.next());
+
+                if (batch.size() == batchSize) {
+                    consumer.consume(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                consumer.consume(batch);
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static Map<String, String> buildQueryMap(ApiResource<?> apiResource, Fields fields) {
+        Map<String, String> queryMap = new HashMap<>();
+
         switch (fields) {
             case BASIC: {
                 queryMap.put("fields", apiResource.getBasicProperties());
@@ -86,49 +273,134 @@ public class NetworkUtils {
             }
         }
 
-        List<T> models = new ArrayList<>();
-        if (uids != null && !uids.isEmpty()) {
-
-            // splitting up request into chunks
-            List<String> idFilters = buildIdFilter(uidProperty, uids);
-            for (String idFilter : idFilters) {
-                List<String> combinedFilters = new ArrayList<>(filters);
-                combinedFilters.add(idFilter);
+        return queryMap;
+    }
 
-                // downloading subset of models
-                models.addAll(unwrap(call(apiResource
-                        .getEntities(queryMap, combinedFilters)), apiResource.getResourceName()));
-            }
-        } else {
-            models.addAll(unwrap(call(
+    private static List<String> buildFilters(DateTime lastUpdated) {
+        List<String> filters = new ArrayList<>();
 
-                    apiResource.getEntities(queryMap, filters)), apiResource.getResourceName()));
+        /* filter programs by lastUpdated field */
+        if (lastUpdated != null) {
+            filters.add("lastUpdated:gt:" + lastUpdated.toString());
         }
 
-        return models;
+        return filters;
     }
 
-    private static List<String> buildIdFilter(String uidProperty, Set<String> ids) {
-        List<String> idFilters = new ArrayList<>();
+    private static String buildIdFilter(String uidProperty, List<String> ids) {
+        return uidProperty + ":in:[" + CollectionUtils.join(ids, ",") + "]";
+    }
+
+    /**
+     * Downloads chunk of uids and records time and size of the response in the planner.
+     * If server rejects url of the chunk as too long, chunk is split in halves which are
+     * requested one after another.
+     */
+    @NonNull
+    public static <T> List<T> callChunk(@NonNull ChunkRequest<T> chunkRequest,
+                                        @NonNull String resourceName, @NonNull List<String> ids,
+                                        @NonNull ChunkPlanner chunkPlanner) {
+        long startTime = System.currentTimeMillis();
 
-        if (ids != null && !ids.isEmpty()) {
-            List<List<String>> splittedIds = CollectionUtils.slice(new ArrayList<>(ids), 64);
-            for (List<String> listOfIds : splittedIds) {
-                StringBuilder builder = new StringBuilder();
-                idFilters.add(builder
-                        .append(uidProperty)
-                        .append(":in:[")
-                        .append(CollectionUtils.join(listOfIds, ","))
-                        .append("]")
-                        .toString());
+        Response<Map<String, List<T>>> response;
+        try {
+            response = execute(chunkRequest.create(ids), false);
+        } catch (ApiException apiException) {
+            if (!isUrlTooLong(apiException) || ids.size() < 2) {
+                throw apiException;
             }
+
+            chunkPlanner.reportUrlTooLong(apiException.getUrl().length());
+
+            int middle = ids.size() / 2;
+            List<T> items = new ArrayList<>(callChunk(chunkRequest,
+                    resourceName, ids.subList(0, middle), chunkPlanner));
+            items.addAll(callChunk(chunkRequest,
+                    resourceName, ids.subList(middle, ids.size()), chunkPlanner));
+            return items;
         }
 
-        return idFilters;
+        long responseBytes = response.raw().body() != null ?
+                response.raw().body().contentLength() : -1;
+        chunkPlanner.record(resourceName, ids.size(),
+                System.currentTimeMillis() - startTime, responseBytes);
+
+        return unwrap(response.body(), resourceName);
+    }
+
+    public static boolean isUrlTooLong(@NonNull ApiException apiException) {
+        return ApiException.Kind.HTTP.equals(apiException.getKind()) &&
+                apiException.getUrl() != null && apiException.getResponse() != null &&
+                apiException.getResponse().getStatus() == HTTP_URL_TOO_LONG;
     }
 
     @Nullable
     public static <T> T call(@NonNull Call<T> call) {
+        return execute(call, false).body();
+    }
+
+    /**
+     * Executes the call and keeps its parsed body if response can be revalidated. When server
+     * later reports that response has not changed (304), the kept body is returned without
+     * parsing the response again. Kept bodies are shared, so they must not be modified.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    static <T> T callCached(@NonNull Call<T> call,
+                            @NonNull ParsedResponseCache parsedResponseCache) {
+        String url = call.request().url().toString();
+
+        Response<T> response;
+        try {
+            response = execute(call, true);
+        } catch (ApiException apiException) {
+            // kept body can not be revalidated any more
+            parsedResponseCache.remove(url);
+            throw apiException;
+        }
+
+        if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            Object body = parsedResponseCache.get(url);
+            if (body != null) {
+                return (T) body;
+            }
+
+            // body has been evicted in the meantime, cached response has to be parsed
+            return call(call.clone());
+        }
+
+        String validator = RevalidationInterceptor.getValidator(response.raw());
+        if (validator != null && response.body() != null &&
+                !response.raw().cacheControl().noStore()) {
+            parsedResponseCache.put(url, validator, response.body(), estimateSize(response));
+        } else {
+            parsedResponseCache.remove(url);
+        }
+
+        return response.body();
+    }
+
+    private static long estimateSize(Response<?> response) {
+        long contentLength = response.raw().body() != null ?
+                response.raw().body().contentLength() : -1;
+        if (contentLength >= 0) {
+            return contentLength;
+        }
+
+        // length is not known for compressed or chunked responses
+        long itemCount = 0;
+        if (response.body() instanceof Map) {
+            for (Object value : ((Map<?, ?>) response.body()).values()) {
+                if (value instanceof Collection) {
+                    itemCount += ((Collection<?>) value).size();
+                }
+            }
+        }
+        return itemCount * ESTIMATED_ITEM_SIZE;
+    }
+
+    @NonNull
+    private static <T> Response<T> execute(@NonNull Call<T> call, boolean acceptNotModified) {
         Response<T> response = null;
         ApiException apiException = null;
 
@@ -142,13 +414,17 @@ public class NetworkUtils {
             throw apiException;
         }
 
+        if (acceptNotModified && response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            return response;
+        }
+
         if (!(response.code() >= 200 && response.code() < 300)) {
             throw ApiException.httpError(
                     response.raw().request().url().toString(),
                     ResponseMapper.fromRetrofitResponse(response));
         }
 
-        return response.body();
+        return response;
     }
 
     @NonNull
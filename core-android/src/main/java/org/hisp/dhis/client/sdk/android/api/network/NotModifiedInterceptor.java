@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.android.api.network;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * When server confirms that cached response has not changed (304) and its parsed body is
+ * still held by {@link ParsedResponseCache}, the cached response is replaced with an empty
+ * 304 response. This way the cached body is neither read from disk nor parsed again.
+ * Otherwise, cached response is passed through as usual.
+ */
+final class NotModifiedInterceptor implements Interceptor {
+    private final ParsedResponseCache parsedResponseCache;
+
+    NotModifiedInterceptor(ParsedResponseCache parsedResponseCache) {
+        this.parsedResponseCache = parsedResponseCache;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+
+        String url = response.request().url().toString();
+        if (!isNotModified(response) || !parsedResponseCache.contains(
+                url, RevalidationInterceptor.getValidator(response))) {
+            return response;
+        }
+
+        response.body().close();
+        return response.newBuilder()
+                .code(HttpURLConnection.HTTP_NOT_MODIFIED)
+                .message("Not Modified")
+                .body(ResponseBody.create(MediaType.parse("application/json"), new byte[0]))
+                .build();
+    }
+
+    private static boolean isNotModified(Response response) {
+        return response.cacheResponse() != null && response.networkResponse() != null &&
+                response.networkResponse().code() == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.android.api.network;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps parsed bodies of responses together with their validators (ETag or Last-Modified).
+ * When server confirms that response for the same url has not changed, the parsed body
+ * is reused instead of parsing cached response again. Size of bodies is estimated by the
+ * caller; least recently used bodies are evicted when their total size exceeds the maximum,
+ * and bodies larger than the maximum are not kept at all.
+ * <p>
+ * Each network module owns its cache, and clears it when user signs out.
+ */
+final class ParsedResponseCache {
+    static final long DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+
+    private final Map<String, Entry> entries;
+    private final long maxSize;
+    private long size;
+
+    ParsedResponseCache(long maxSize) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.maxSize = maxSize;
+    }
+
+    synchronized void put(String url, String validator, Object body, long estimatedSize) {
+        remove(url);
+        if (estimatedSize > maxSize) {
+            return;
+        }
+
+        entries.put(url, new Entry(validator, body, estimatedSize));
+        size += estimatedSize;
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().size;
+            iterator.remove();
+        }
+    }
+
+    synchronized boolean contains(String url, String validator) {
+        Entry entry = entries.get(url);
+        return entry != null && entry.validator.equals(validator);
+    }
+
+    synchronized Object get(String url) {
+        Entry entry = entries.get(url);
+        return entry != null ? entry.body : null;
+    }
+
+    synchronized void remove(String url) {
+        Entry entry = entries.remove(url);
+        if (entry != null) {
+            size -= entry.size;
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    synchronized long size() {
+        return size;
+    }
+
+    private static class Entry {
+        final String validator;
+        final Object body;
+        final long size;
+
+        Entry(String validator, Object body, long size) {
+            this.validator = validator;
+            this.body = body;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.android.api.network;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Network interceptor which makes listings of metadata with validators (ETag or
+ * Last-Modified) cacheable, but only after revalidation. Metadata can change at any time
+ * on server, so cached copy is never used without asking server with If-None-Match or
+ * If-Modified-Since request first. Responses which server forbids to store are left
+ * as they are. Responses of other endpoints (events, user account) are never stored,
+ * since they are not worth keeping on disk.
+ */
+public final class RevalidationInterceptor implements Interceptor {
+    private static final String CACHE_CONTROL = "Cache-Control";
+    private static final String NO_CACHE = "no-cache";
+    private static final String NO_STORE = "no-store";
+
+    static final Set<String> METADATA_RESOURCES = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("programs", "programStages", "programStageSections",
+                    "programStageDataElements", "programRules", "programRuleActions",
+                    "programRuleVariables", "programIndicators", "dataElements", "optionSets",
+                    "trackedEntityAttributes", "organisationUnits")));
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+
+        if (!"GET".equals(request.method())) {
+            return response;
+        }
+
+        // otherwise, http cache would store every successful response
+        if (!isMetadataListing(request)) {
+            return response.newBuilder()
+                    .header(CACHE_CONTROL, NO_STORE)
+                    .build();
+        }
+
+        if (!response.isSuccessful() || response.cacheControl().noStore() ||
+                getValidator(response) == null) {
+            return response;
+        }
+
+        return response.newBuilder()
+                .header(CACHE_CONTROL, NO_CACHE)
+                .removeHeader("Pragma")
+                .removeHeader("Expires")
+                .build();
+    }
+
+    private static boolean isMetadataListing(Request request) {
+        List<String> pathSegments = request.url().pathSegments();
+        return METADATA_RESOURCES.contains(pathSegments.get(pathSegments.size() - 1));
+    }
+
+    static String getValidator(Response response) {
+        String eTag = response.header("ETag");
+        return eTag != null ? eTag : response.header("Last-Modified");
+    }
+}
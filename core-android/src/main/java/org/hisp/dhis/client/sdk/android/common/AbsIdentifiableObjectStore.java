@@ -31,6 +31,7 @@ package org.hisp.dhis.client.sdk.android.common;
 import com.raizlabs.android.dbflow.sql.language.Condition;
 import com.raizlabs.android.dbflow.sql.language.NameAlias;
 import com.raizlabs.android.dbflow.sql.language.Select;
+import com.raizlabs.android.dbflow.sql.language.property.Property;
 import com.raizlabs.android.dbflow.structure.Model;
 
 import org.hisp.dhis.client.sdk.android.api.persistence.flow.BaseIdentifiableObjectFlow;
@@ -98,6 +99,16 @@ public abstract class AbsIdentifiableObjectStore<ModelType extends IdentifiableO
         return ModelUtils.toUidSet(databaseEntities).equals(uids);
     }
 
+    @Override
+    public Set<String> queryAllUids() {
+        Property<String> uidColumn = new Property<>(getMapper().getDatabaseEntityTypeClass(),
+                BaseIdentifiableObjectFlow.COLUMN_UID);
+        List<DatabaseEntityType> databaseEntities = new Select(uidColumn)
+                .from(getMapper().getDatabaseEntityTypeClass())
+                .queryList();
+        return ModelUtils.toUidSet(databaseEntities);
+    }
+
     private List<DatabaseEntityType> query(Set<String> uids) {
         if (uids != null && !uids.isEmpty()) {
             return new Select()
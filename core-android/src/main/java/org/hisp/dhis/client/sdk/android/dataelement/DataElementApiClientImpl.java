@@ -29,6 +29,7 @@
 package org.hisp.dhis.client.sdk.android.dataelement;
 
 import org.hisp.dhis.client.sdk.android.api.network.ApiResource;
+import org.hisp.dhis.client.sdk.android.api.network.ChunkFetcher;
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.core.dataelement.DataElementApiClient;
@@ -45,9 +46,12 @@ import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.getColle
 
 public class DataElementApiClientImpl implements DataElementApiClient {
     private final DataElementApiClientRetrofit dataElementApiClientRetrofit;
+    private final ChunkFetcher chunkFetcher;
 
-    public DataElementApiClientImpl(DataElementApiClientRetrofit dataElementApiClientRetrofit) {
+    public DataElementApiClientImpl(DataElementApiClientRetrofit dataElementApiClientRetrofit,
+                                    ChunkFetcher chunkFetcher) {
         this.dataElementApiClientRetrofit = dataElementApiClientRetrofit;
+        this.chunkFetcher = chunkFetcher;
     }
 
     @Override
@@ -81,6 +85,6 @@ public class DataElementApiClientImpl implements DataElementApiClient {
             }
         };
 
-        return getCollection(apiResource, fields, lastUpdated, uids);
+        return getCollection(apiResource, fields, lastUpdated, uids, chunkFetcher);
     }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.android.deletedobject;
+
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
+import org.hisp.dhis.client.sdk.core.deletedobject.DeletedObjectApiClient;
+import org.hisp.dhis.client.sdk.models.common.DeletedObject;
+import org.joda.time.DateTime;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.call;
+import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.unwrap;
+
+public class DeletedObjectApiClientImpl implements DeletedObjectApiClient {
+    private static final Map<ResourceType, String> KLASSES = new EnumMap<>(ResourceType.class);
+
+    static {
+        KLASSES.put(ResourceType.ORGANISATION_UNITS, "OrganisationUnit");
+        KLASSES.put(ResourceType.DATA_ELEMENTS, "DataElement");
+        KLASSES.put(ResourceType.OPTION_SETS, "OptionSet");
+        KLASSES.put(ResourceType.PROGRAMS, "Program");
+        KLASSES.put(ResourceType.PROGRAM_STAGES, "ProgramStage");
+        KLASSES.put(ResourceType.PROGRAM_STAGE_SECTIONS, "ProgramStageSection");
+        KLASSES.put(ResourceType.PROGRAM_STAGE_DATA_ELEMENTS, "ProgramStageDataElement");
+        KLASSES.put(ResourceType.PROGRAM_INDICATORS, "ProgramIndicator");
+        KLASSES.put(ResourceType.PROGRAM_RULES, "ProgramRule");
+        KLASSES.put(ResourceType.PROGRAM_RULE_ACTIONS, "ProgramRuleAction");
+        KLASSES.put(ResourceType.PROGRAM_RULE_VARIABLES, "ProgramRuleVariable");
+        KLASSES.put(ResourceType.TRACKED_ENTITY_ATTRIBUTES, "TrackedEntityAttribute");
+        KLASSES.put(ResourceType.TRACKED_ENTITIES, "TrackedEntity");
+        KLASSES.put(ResourceType.RELATIONSHIP_TYPES, "RelationshipType");
+        KLASSES.put(ResourceType.CONSTANTS, "Constant");
+    }
+
+    private final DeletedObjectApiClientRetrofit deletedObjectApiClientRetrofit;
+
+    public DeletedObjectApiClientImpl(
+            DeletedObjectApiClientRetrofit deletedObjectApiClientRetrofit) {
+        this.deletedObjectApiClientRetrofit = deletedObjectApiClientRetrofit;
+    }
+
+    @Override
+    public Set<String> getDeletedUids(ResourceType resourceType,
+                                      DateTime deletedAt) throws ApiException {
+        String klass = KLASSES.get(resourceType);
+        if (klass == null) {
+            throw new IllegalArgumentException("Deleted objects of " +
+                    resourceType + " are not tracked by server");
+        }
+
+        Map<String, String> queryMap = new HashMap<>();
+        queryMap.put("klass", klass);
+        queryMap.put("deletedAt", deletedAt.toString());
+        queryMap.put("fields", "uid");
+        queryMap.put("paging", "false");
+
+        List<DeletedObject> deletedObjects = unwrap(call(deletedObjectApiClientRetrofit
+                .getDeletedObjects(queryMap)), "deletedObjects");
+
+        Set<String> deletedUids = new HashSet<>();
+        for (DeletedObject deletedObject : deletedObjects) {
+            deletedUids.add(deletedObject.getUid());
+        }
+
+        return deletedUids;
+    }
+}
@@ -68,6 +68,11 @@ public final class EnrollmentStoreImpl extends AbsDataStore<Enrollment, Enrollme
         return false;
     }
 
+    @Override
+    public Set<String> queryAllUids() {
+        return null;
+    }
+
     @Override
     public List<Enrollment> query(Program program, TrackedEntityInstance trackedEntityInstance) {
 //        List<Enrollment_Flow> enrollmentFlows = new Select()
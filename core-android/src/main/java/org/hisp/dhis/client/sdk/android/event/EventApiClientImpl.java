@@ -1,9 +1,13 @@
 package org.hisp.dhis.client.sdk.android.event;
 
+import org.hisp.dhis.client.sdk.android.api.network.ChunkFetcher;
+import org.hisp.dhis.client.sdk.android.api.network.ChunkPlanner;
+import org.hisp.dhis.client.sdk.android.api.network.ChunkRequest;
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.core.common.network.ApiMessage;
 import org.hisp.dhis.client.sdk.core.common.network.ApiResponse;
+import org.hisp.dhis.client.sdk.core.common.network.PageConsumer;
 import org.hisp.dhis.client.sdk.core.common.utils.CollectionUtils;
 import org.hisp.dhis.client.sdk.core.event.EventApiClient;
 import org.hisp.dhis.client.sdk.models.event.Event;
@@ -14,64 +18,82 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
+import retrofit2.Call;
+
+import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.DEFAULT_BATCH_SIZE;
 import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.call;
+import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.callChunk;
+import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.isUrlTooLong;
+import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.stream;
 import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.unwrap;
 
 public class EventApiClientImpl implements EventApiClient {
     private final EventApiClientRetrofit eventApiclientRetrofit;
+    private final ChunkFetcher chunkFetcher;
 
-    public EventApiClientImpl(EventApiClientRetrofit eventApiclientRetrofit) {
+    public EventApiClientImpl(EventApiClientRetrofit eventApiclientRetrofit,
+                              ChunkFetcher chunkFetcher) {
         this.eventApiclientRetrofit = eventApiclientRetrofit;
+        this.chunkFetcher = chunkFetcher;
     }
 
     @Override
     public List<Event> getEvents(
             Fields fields, DateTime lastUpdated, Set<String> uids) throws ApiException {
 
-        Map<String, String> queryMap = new HashMap<>();
+        final Map<String, String> queryMap = buildQueryMap(fields, lastUpdated);
 
-        /* disable paging */
-        queryMap.put("skipPaging", "true");
+        if (uids != null && !uids.isEmpty()) {
+            final ChunkPlanner chunkPlanner = chunkFetcher.getChunkPlanner();
+            final ChunkRequest<Event> chunkRequest = new ChunkRequest<Event>() {
+
+                @Override
+                public Call<Map<String, List<Event>>> create(List<String> ids) {
+                    Map<String, String> combinedFilters = new HashMap<>(queryMap);
+                    combinedFilters.put("event", CollectionUtils.join(ids, ";"));
+                    return eventApiclientRetrofit.getEvents(combinedFilters);
+                }
+            };
+
+            // splitting up request into chunks which are downloaded concurrently
+            List<List<String>> idChunks = planChunks(uids, queryMap);
+            List<Callable<List<Event>>> chunks = new ArrayList<>();
+            for (final List<String> idChunk : idChunks) {
+
+                // downloading subset of events
+                chunks.add(new Callable<List<Event>>() {
+
+                    @Override
+                    public List<Event> call() throws ApiException {
+                        return callChunk(chunkRequest, "events", idChunk, chunkPlanner);
+                    }
+                });
+            }
 
-        /* filter programs by lastUpdated field */
-        if (lastUpdated != null) {
-            queryMap.put("lastUpdated", lastUpdated.toString());
+            return chunkFetcher.fetch(chunks);
         }
 
-        switch (fields) {
-            case BASIC: {
-                queryMap.put("fields", "event");
-                break;
-            }
-            case ALL: {
-                queryMap.put("fields", "event,name,displayName,created,lastUpdated,access," +
-                        "program,programStage,status,orgUnit,eventDate,dueDate," +
-                        "coordinate,dataValues");
-                break;
-            }
-        }
+        return new ArrayList<>(unwrap(call(
+                eventApiclientRetrofit.getEvents(queryMap)), "events"));
+    }
+
+    @Override
+    public void getEvents(Fields fields, DateTime lastUpdated, Set<String> uids,
+                          PageConsumer<Event> consumer) throws ApiException {
+        Map<String, String> queryMap = buildQueryMap(fields, lastUpdated);
 
-        List<Event> allEvents = new ArrayList<>();
         if (uids != null && !uids.isEmpty()) {
 
             // splitting up request into chunks
-            List<String> idFilters = buildIdFilter(uids);
-            for (String idFilter : idFilters) {
-                // List<String> combinedFilters = new ArrayList<>(filters);
-                Map<String, String> combinedFilters = new HashMap<>(queryMap);
-                combinedFilters.put("event", idFilter);
-
-                // downloading subset of programs
-                allEvents.addAll(unwrap(call(
-                        eventApiclientRetrofit.getEvents(queryMap)), "events"));
+            for (List<String> idChunk : planChunks(uids, queryMap)) {
+                streamChunk(queryMap, idChunk, consumer);
             }
         } else {
-            allEvents.addAll(unwrap(call(
-                    eventApiclientRetrofit.getEvents(queryMap)), "events"));
+            stream(eventApiclientRetrofit.getEventStream(queryMap),
+                    DEFAULT_BATCH_SIZE, consumer);
         }
-
-        return allEvents;
     }
 
     @Override
@@ -87,16 +109,58 @@ public class EventApiClientImpl implements EventApiClient {
         return call(eventApiclientRetrofit.deleteEvent(event.getUId()));
     }
 
-    private static List<String> buildIdFilter(Set<String> ids) {
-        List<String> idFilters = new ArrayList<>();
+    private static Map<String, String> buildQueryMap(Fields fields, DateTime lastUpdated) {
+        Map<String, String> queryMap = new HashMap<>();
+
+        /* disable paging */
+        queryMap.put("skipPaging", "true");
 
-        if (ids != null && !ids.isEmpty()) {
-            List<List<String>> splittedIds = CollectionUtils.slice(new ArrayList<>(ids), 64);
-            for (List<String> listOfIds : splittedIds) {
-                idFilters.add(CollectionUtils.join(listOfIds, ";"));
+        /* filter programs by lastUpdated field */
+        if (lastUpdated != null) {
+            queryMap.put("lastUpdated", lastUpdated.toString());
+        }
+
+        switch (fields) {
+            case BASIC: {
+                queryMap.put("fields", "event");
+                break;
+            }
+            case ALL: {
+                queryMap.put("fields", "event,name,displayName,created,lastUpdated,access," +
+                        "program,programStage,status,orgUnit,eventDate,dueDate," +
+                        "coordinate,dataValues");
+                break;
             }
         }
 
-        return idFilters;
+        return queryMap;
+    }
+
+    private List<List<String>> planChunks(Set<String> uids, Map<String, String> queryMap) {
+        return chunkFetcher.getChunkPlanner().plan("events", uids, "event=", ";", "",
+                ChunkPlanner.queryLength(queryMap, null));
+    }
+
+    private void streamChunk(Map<String, String> queryMap, List<String> ids,
+                             PageConsumer<Event> consumer) {
+        Map<String, String> combinedFilters = new HashMap<>(queryMap);
+        combinedFilters.put("event", CollectionUtils.join(ids, ";"));
+
+        // server rejects url before anything is streamed, so chunk can be split safely
+        try {
+            // events are persisted while the response is parsed
+            stream(eventApiclientRetrofit.getEventStream(combinedFilters),
+                    DEFAULT_BATCH_SIZE, consumer);
+        } catch (ApiException apiException) {
+            if (!isUrlTooLong(apiException) || ids.size() < 2) {
+                throw apiException;
+            }
+
+            chunkFetcher.getChunkPlanner().reportUrlTooLong(apiException.getUrl().length());
+
+            int middle = ids.size() / 2;
+            streamChunk(queryMap, ids.subList(0, middle), consumer);
+            streamChunk(queryMap, ids.subList(middle, ids.size()), consumer);
+        }
     }
 }
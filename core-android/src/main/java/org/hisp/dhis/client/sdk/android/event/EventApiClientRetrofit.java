@@ -28,6 +28,7 @@
 
 package org.hisp.dhis.client.sdk.android.event;
 
+import org.hisp.dhis.client.sdk.android.api.network.JsonStream;
 import org.hisp.dhis.client.sdk.core.common.network.ApiMessage;
 import org.hisp.dhis.client.sdk.models.event.Event;
 
@@ -41,6 +42,7 @@ import retrofit2.http.GET;
 import retrofit2.http.POST;
 import retrofit2.http.Path;
 import retrofit2.http.QueryMap;
+import retrofit2.http.Streaming;
 
 public interface EventApiClientRetrofit {
 
@@ -52,4 +54,8 @@ public interface EventApiClientRetrofit {
 
     @GET("events")
     Call<Map<String, List<Event>>> getEvents(@QueryMap Map<String, String> queryMap);
+
+    @Streaming
+    @GET("events")
+    Call<JsonStream<Event>> getEventStream(@QueryMap Map<String, String> queryMap);
 }
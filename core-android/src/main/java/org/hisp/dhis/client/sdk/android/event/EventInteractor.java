@@ -29,6 +29,7 @@
 package org.hisp.dhis.client.sdk.android.event;
 
 import org.hisp.dhis.client.sdk.core.common.controllers.SyncStrategy;
+import org.hisp.dhis.client.sdk.core.event.EventController;
 import org.hisp.dhis.client.sdk.models.common.state.Action;
 import org.hisp.dhis.client.sdk.models.common.state.State;
 import org.hisp.dhis.client.sdk.models.event.Event;
@@ -68,6 +69,8 @@ public interface EventInteractor {
 
     Observable<List<Event>> push(Set<String> uids);
 
+    Observable<List<Event>> push(Set<String> uids, EventController.PushListener listener);
+
     Observable<List<Event>> sync(Set<String> uids);
 
     Observable<List<Event>> sync(SyncStrategy strategy, Set<String> uids);
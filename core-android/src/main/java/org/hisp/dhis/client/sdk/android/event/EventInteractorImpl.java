@@ -87,10 +87,16 @@ public class EventInteractorImpl implements EventInteractor {
 
     @Override
     public Observable<List<Event>> push(final Set<String> uids) {
+        return push(uids, null);
+    }
+
+    @Override
+    public Observable<List<Event>> push(final Set<String> uids,
+                                        final EventController.PushListener listener) {
         return Observable.create(new DefaultOnSubscribe<List<Event>>() {
             @Override
             public List<Event> call() {
-                eventController.push(uids);
+                eventController.push(uids, listener);
                 return eventService.list(uids);
             }
         });
@@ -117,6 +117,11 @@ public final class InterpretationStoreImpl implements IdentifiableObjectStore<In
         return false;
     }
 
+    @Override
+    public Set<String> queryAllUids() {
+        return null;
+    }
+
     /* @Override
     public List<Interpretation> filter(Action action) {
         List<Interpretation_Flow> interpretationFlows = new Select()
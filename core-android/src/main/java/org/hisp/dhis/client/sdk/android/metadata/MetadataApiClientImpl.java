@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.android.metadata;
+
+import org.hisp.dhis.client.sdk.android.api.network.JsonBundle;
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.core.common.network.PageConsumer;
+import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
+import org.hisp.dhis.client.sdk.core.common.utils.CollectionUtils;
+import org.hisp.dhis.client.sdk.core.metadata.MetadataApiClient;
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.client.sdk.models.optionset.OptionSet;
+import org.hisp.dhis.client.sdk.models.program.Program;
+import org.hisp.dhis.client.sdk.models.program.ProgramIndicator;
+import org.hisp.dhis.client.sdk.models.program.ProgramRule;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleAction;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariable;
+import org.hisp.dhis.client.sdk.models.program.ProgramStage;
+import org.hisp.dhis.client.sdk.models.program.ProgramStageDataElement;
+import org.hisp.dhis.client.sdk.models.program.ProgramStageSection;
+import org.hisp.dhis.client.sdk.models.trackedentity.TrackedEntityAttribute;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.DEFAULT_BATCH_SIZE;
+import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.call;
+
+/**
+ * Downloads metadata of programs with one request to the metadata endpoint. Each resource
+ * is requested with its own fields and filter, which scopes it to the given programs.
+ * Data elements, option sets and tracked entity attributes can not be scoped by program:
+ * data elements are limited to tracker domain, the other two are requested as a whole.
+ */
+public class MetadataApiClientImpl implements MetadataApiClient {
+    private static final Map<ResourceType, BundleResource<?>> RESOURCES = createResources();
+
+    private final MetadataApiClientRetrofit metadataApiClientRetrofit;
+
+    public MetadataApiClientImpl(MetadataApiClientRetrofit metadataApiClientRetrofit) {
+        this.metadataApiClientRetrofit = metadataApiClientRetrofit;
+    }
+
+    @Override
+    public void getMetadata(Set<String> programUids,
+                            Map<ResourceType, PageConsumer<?>> consumers) throws ApiException {
+        String programIds = CollectionUtils.join(new ArrayList<>(programUids), ",");
+
+        /* only resources listed explicitly are exported */
+        Map<String, String> queryMap = new HashMap<>();
+        queryMap.put("assumeTrue", "false");
+
+        Map<String, BundleResource<?>> resources = new HashMap<>();
+        for (ResourceType resourceType : consumers.keySet()) {
+            BundleResource<?> resource = RESOURCES.get(resourceType);
+            if (resource == null) {
+                throw new IllegalArgumentException(resourceType +
+                        " is not supported by metadata endpoint");
+            }
+
+            queryMap.put(resource.name, "true");
+            queryMap.put(resource.name + ":fields", resource.fields);
+            if (resource.filter != null) {
+                queryMap.put(resource.name + ":filter", resource.filter.replace("%s", programIds));
+            }
+
+            resources.put(resource.name, resource);
+        }
+
+        JsonBundle bundle = call(metadataApiClientRetrofit.getMetadata(queryMap));
+        if (bundle == null) {
+            return;
+        }
+
+        try {
+            String name;
+            while ((name = bundle.nextArray()) != null) {
+                BundleResource<?> resource = resources.get(name);
+                if (resource != null) {
+                    read(bundle, resource, consumers.get(resource.resourceType));
+                }
+            }
+        } finally {
+            bundle.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void read(JsonBundle bundle, BundleResource<T> resource,
+                                 PageConsumer<?> consumer) {
+        PageConsumer<T> resourceConsumer = (PageConsumer<T>) consumer;
+
+        // items are handed over in batches while the rest of the bundle is still being read
+        List<T> batch = new ArrayList<>(DEFAULT_BATCH_SIZE);
+        while (bundle.hasNext()) {
+            batch.add(bundle.next(resource.modelClass));
+
+            if (batch.size() == DEFAULT_BATCH_SIZE) {
+                resourceConsumer.consume(batch);
+                batch = new ArrayList<>(DEFAULT_BATCH_SIZE);
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            resourceConsumer.consume(batch);
+        }
+    }
+
+    private static Map<ResourceType, BundleResource<?>> createResources() {
+        Map<ResourceType, BundleResource<?>> resources = new EnumMap<>(ResourceType.class);
+        resources.put(ResourceType.PROGRAMS, new BundleResource<>(
+                ResourceType.PROGRAMS, "programs", Program.class,
+                "id,name,displayName,created,lastUpdated,access," +
+                        "programType,organisationUnits[id],programStages[id]",
+                "id:in:[%s]"));
+        resources.put(ResourceType.PROGRAM_STAGES, new BundleResource<>(
+                ResourceType.PROGRAM_STAGES, "programStages", ProgramStage.class,
+                "id,name,displayName,created,lastUpdated,access," +
+                        "dataEntryType,blockEntryForm,reportDateDescription,excecutionDateLabel," +
+                        "displayGenerateEventBox,description,externalAccess,openAfterEnrollment," +
+                        "captureCoordinates,defaultTemplateMessage,remindCompleted," +
+                        "validCompleteOnly,sortOrder,generatedByEnrollmentDate,preGenerateUID," +
+                        "autoGenerateEvent,allowGenerateNextVisit,repeatable,minDaysFromStart," +
+                        "program[id],programStageSections[id],programStageDataElements[id]",
+                "program.id:in:[%s]"));
+        resources.put(ResourceType.PROGRAM_STAGE_SECTIONS, new BundleResource<>(
+                ResourceType.PROGRAM_STAGE_SECTIONS, "programStageSections",
+                ProgramStageSection.class,
+                "id,name,displayName,created,lastUpdated,access," +
+                        "sortOrder,programStage[id],programStageDataElements[id]",
+                "programStage.program.id:in:[%s]"));
+        resources.put(ResourceType.PROGRAM_STAGE_DATA_ELEMENTS, new BundleResource<>(
+                ResourceType.PROGRAM_STAGE_DATA_ELEMENTS, "programStageDataElements",
+                ProgramStageDataElement.class,
+                "id,created,lastUpdated,access," +
+                        "programStage[id],dataElement[id],allowFutureDate," +
+                        "sortOrder,displayInReports,allowProvidedElsewhere,compulsory",
+                "programStage.program.id:in:[%s]"));
+        resources.put(ResourceType.DATA_ELEMENTS, new BundleResource<>(
+                ResourceType.DATA_ELEMENTS, "dataElements", DataElement.class,
+                "id,name,displayName,created,lastUpdated,access," +
+                        "shortName,valueType,zeroIsSignificant,aggregationOperator," +
+                        "formName,numberType,domainType,dimension,displayFormName," +
+                        "optionSet[id]",
+                "domainType:eq:TRACKER"));
+        resources.put(ResourceType.OPTION_SETS, new BundleResource<>(
+                ResourceType.OPTION_SETS, "optionSets", OptionSet.class,
+                "id,name,displayName,created,lastUpdated,access," +
+                        "version,options[id,name,displayName,created,lastUpdated,access,code]",
+                null));
+        resources.put(ResourceType.TRACKED_ENTITY_ATTRIBUTES, new BundleResource<>(
+                ResourceType.TRACKED_ENTITY_ATTRIBUTES, "trackedEntityAttributes",
+                TrackedEntityAttribute.class,
+                "id,name,displayName,created,lastUpdated,access," +
+                        "unique,programScope,orgunitScope," +
+                        "displayInListNoProgram,displayOnVisitSchedule,externalAccess," +
+                        "valueType,confidential,inherit,sortOrderVisitSchedule,dimension," +
+                        "sortOrderInListNoProgram",
+                null));
+        resources.put(ResourceType.PROGRAM_RULES, new BundleResource<>(
+                ResourceType.PROGRAM_RULES, "programRules", ProgramRule.class,
+                "id,name,displayName,created,lastUpdated,access," +
+                        "condition,externalAccess,description,program,priority," +
+                        "programRuleActions,programStage",
+                "program.id:in:[%s]"));
+        resources.put(ResourceType.PROGRAM_RULE_ACTIONS, new BundleResource<>(
+                ResourceType.PROGRAM_RULE_ACTIONS, "programRuleActions", ProgramRuleAction.class,
+                "id,created,lastUpdated,access," +
+                        "programRuleActionType,programRule[id],programStage[id]," +
+                        "programStageSection[id],programIndicator[id]," +
+                        "trackedEntityAttribute[id],dataElement[id]," +
+                        "content,location,data",
+                "programRule.program.id:in:[%s]"));
+        resources.put(ResourceType.PROGRAM_RULE_VARIABLES, new BundleResource<>(
+                ResourceType.PROGRAM_RULE_VARIABLES, "programRuleVariables",
+                ProgramRuleVariable.class,
+                "id,name,displayName,created,lastUpdated,access," +
+                        "programRuleVariableSourceType,program[id],programStage[id]," +
+                        "dataElement[id],trackedEntityAttribute[id]",
+                "program.id:in:[%s]"));
+        resources.put(ResourceType.PROGRAM_INDICATORS, new BundleResource<>(
+                ResourceType.PROGRAM_INDICATORS, "programIndicators", ProgramIndicator.class,
+                "id,name,displayName,created,lastUpdated,access," +
+                        "code,expression,displayDescription," +
+                        "rootDate,externalAccess,valueType,displayShortName,program[id]",
+                "program.id:in:[%s]"));
+        return resources;
+    }
+
+    private static class BundleResource<T> {
+        final ResourceType resourceType;
+        final String name;
+        final Class<T> modelClass;
+        final String fields;
+
+        // %s is replaced with comma separated uids of programs
+        final String filter;
+
+        BundleResource(ResourceType resourceType, String name, Class<T> modelClass,
+                       String fields, String filter) {
+            this.resourceType = resourceType;
+            this.name = name;
+            this.modelClass = modelClass;
+            this.fields = fields;
+            this.filter = filter;
+        }
+    }
+}
@@ -28,9 +28,12 @@
 
 package org.hisp.dhis.client.sdk.android.optionset;
 
-import org.hisp.dhis.client.sdk.android.api.network.ApiResource;
+import org.hisp.dhis.client.sdk.android.api.network.ChunkFetcher;
+import org.hisp.dhis.client.sdk.android.api.network.Page;
+import org.hisp.dhis.client.sdk.android.api.network.PagedApiResource;
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.core.common.network.PageConsumer;
 import org.hisp.dhis.client.sdk.core.optionset.OptionSetApiClient;
 import org.hisp.dhis.client.sdk.models.optionset.Option;
 import org.hisp.dhis.client.sdk.models.optionset.OptionSet;
@@ -46,16 +49,39 @@ import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.getColle
 
 public class OptionSetApiClientImpl implements OptionSetApiClient {
     private final OptionSetApiClientRetrofit optionSetApiClientRetrofit;
+    private final ChunkFetcher chunkFetcher;
 
-    public OptionSetApiClientImpl(OptionSetApiClientRetrofit optionSetApiClientRetrofit) {
+    public OptionSetApiClientImpl(OptionSetApiClientRetrofit optionSetApiClientRetrofit,
+                                  ChunkFetcher chunkFetcher) {
         this.optionSetApiClientRetrofit = optionSetApiClientRetrofit;
+        this.chunkFetcher = chunkFetcher;
     }
 
     @Override
     public List<OptionSet> getOptionSets(
             Fields fields, DateTime lastUpdated, Set<String> uids) throws ApiException {
+        List<OptionSet> optionSets = getCollection(
+                createApiResource(), fields, lastUpdated, uids, chunkFetcher);
+        inverseRelationships(optionSets);
+        return optionSets;
+    }
 
-        ApiResource<OptionSet> apiResource = new ApiResource<OptionSet>() {
+    @Override
+    public void getOptionSets(Fields fields, DateTime lastUpdated, Set<String> uids,
+                              final PageConsumer<OptionSet> consumer) throws ApiException {
+        getCollection(createApiResource(), fields, lastUpdated, uids,
+                chunkFetcher.getChunkPlanner(), new PageConsumer<OptionSet>() {
+
+                    @Override
+                    public void consume(List<OptionSet> optionSets) throws ApiException {
+                        inverseRelationships(optionSets);
+                        consumer.consume(optionSets);
+                    }
+                });
+    }
+
+    private PagedApiResource<OptionSet> createApiResource() {
+        return new PagedApiResource<OptionSet>() {
 
             @Override
             public String getResourceName() {
@@ -78,10 +104,16 @@ public class OptionSetApiClientImpl implements OptionSetApiClient {
                     Map<String, String> queryMap, List<String> filters) throws ApiException {
                 return optionSetApiClientRetrofit.getOptionSets(queryMap, filters);
             }
-        };
 
-        List<OptionSet> optionSets = getCollection(apiResource, fields, lastUpdated, uids);
+            @Override
+            public Call<Page<OptionSet>> getPage(
+                    Map<String, String> queryMap, List<String> filters) throws ApiException {
+                return optionSetApiClientRetrofit.getOptionSetsPage(queryMap, filters);
+            }
+        };
+    }
 
+    private static void inverseRelationships(List<OptionSet> optionSets) {
         // we need to inverse relationships manually
         for (OptionSet optionSet : optionSets) {
             if (optionSet.getOptions() == null) {
@@ -92,7 +124,5 @@ public class OptionSetApiClientImpl implements OptionSetApiClient {
                 option.setOptionSet(optionSet);
             }
         }
-
-        return optionSets;
     }
 }
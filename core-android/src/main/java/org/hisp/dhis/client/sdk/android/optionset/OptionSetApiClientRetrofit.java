@@ -28,6 +28,7 @@
 
 package org.hisp.dhis.client.sdk.android.optionset;
 
+import org.hisp.dhis.client.sdk.android.api.network.Page;
 import org.hisp.dhis.client.sdk.models.optionset.OptionSet;
 import org.hisp.dhis.client.sdk.models.program.ProgramStageSection;
 
@@ -45,4 +46,8 @@ public interface OptionSetApiClientRetrofit {
     @GET("optionSets")
     Call<Map<String, List<OptionSet>>> getOptionSets(
             @QueryMap Map<String, String> queryMap, @Query("filter") List<String> filters);
+
+    @GET("optionSets")
+    Call<Page<OptionSet>> getOptionSetsPage(
+            @QueryMap Map<String, String> queryMap, @Query("filter") List<String> filters);
 }
@@ -28,9 +28,12 @@
 
 package org.hisp.dhis.client.sdk.android.organisationunit;
 
-import org.hisp.dhis.client.sdk.android.api.network.ApiResource;
+import org.hisp.dhis.client.sdk.android.api.network.ChunkFetcher;
+import org.hisp.dhis.client.sdk.android.api.network.Page;
+import org.hisp.dhis.client.sdk.android.api.network.PagedApiResource;
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.core.common.network.PageConsumer;
 import org.hisp.dhis.client.sdk.core.organisationunit.OrganisationUnitApiClient;
 import org.hisp.dhis.client.sdk.models.organisationunit.OrganisationUnit;
 import org.joda.time.DateTime;
@@ -46,16 +49,29 @@ import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.getColle
 // TODO add parent organisation unit support
 public class OrganisationUnitApiClientImpl implements OrganisationUnitApiClient {
     private final OrganisationUnitApiClientRetrofit unitApiClientRetrofit;
+    private final ChunkFetcher chunkFetcher;
 
-    public OrganisationUnitApiClientImpl(OrganisationUnitApiClientRetrofit unitApiClientRetrofit) {
+    public OrganisationUnitApiClientImpl(OrganisationUnitApiClientRetrofit unitApiClientRetrofit,
+                                         ChunkFetcher chunkFetcher) {
         this.unitApiClientRetrofit = unitApiClientRetrofit;
+        this.chunkFetcher = chunkFetcher;
     }
 
     @Override
     public List<OrganisationUnit> getOrganisationUnits(
             Fields fields, DateTime lastUpdated, Set<String> uids) throws ApiException {
+        return getCollection(createApiResource(), fields, lastUpdated, uids, chunkFetcher);
+    }
 
-        ApiResource<OrganisationUnit> apiResource = new ApiResource<OrganisationUnit>() {
+    @Override
+    public void getOrganisationUnits(Fields fields, DateTime lastUpdated, Set<String> uids,
+                                     PageConsumer<OrganisationUnit> consumer) throws ApiException {
+        getCollection(createApiResource(), fields, lastUpdated, uids,
+                chunkFetcher.getChunkPlanner(), consumer);
+    }
+
+    private PagedApiResource<OrganisationUnit> createApiResource() {
+        return new PagedApiResource<OrganisationUnit>() {
 
             @Override
             public String getResourceName() {
@@ -78,8 +94,12 @@ public class OrganisationUnitApiClientImpl implements OrganisationUnitApiClient
                     Map<String, String> queryMap, List<String> filters) throws ApiException {
                 return unitApiClientRetrofit.getOrganisationUnits(queryMap, filters);
             }
-        };
 
-        return getCollection(apiResource, fields, lastUpdated, uids);
+            @Override
+            public Call<Page<OrganisationUnit>> getPage(
+                    Map<String, String> queryMap, List<String> filters) throws ApiException {
+                return unitApiClientRetrofit.getOrganisationUnitsPage(queryMap, filters);
+            }
+        };
     }
 }
@@ -28,6 +28,7 @@
 
 package org.hisp.dhis.client.sdk.android.organisationunit;
 
+import org.hisp.dhis.client.sdk.android.api.network.Page;
 import org.hisp.dhis.client.sdk.models.organisationunit.OrganisationUnit;
 
 import java.util.List;
@@ -44,4 +45,8 @@ public interface OrganisationUnitApiClientRetrofit {
     @GET("organisationUnits")
     Call<Map<String, List<OrganisationUnit>>> getOrganisationUnits(
             @QueryMap Map<String, String> queryMap, @Query("filter") List<String> filters);
+
+    @GET("organisationUnits")
+    Call<Page<OrganisationUnit>> getOrganisationUnitsPage(
+            @QueryMap Map<String, String> queryMap, @Query("filter") List<String> filters);
 }
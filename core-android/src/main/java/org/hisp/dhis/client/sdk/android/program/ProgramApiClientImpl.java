@@ -29,6 +29,7 @@
 package org.hisp.dhis.client.sdk.android.program;
 
 import org.hisp.dhis.client.sdk.android.api.network.ApiResource;
+import org.hisp.dhis.client.sdk.android.api.network.ChunkFetcher;
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.core.program.ProgramApiClient;
@@ -45,9 +46,12 @@ import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.getColle
 
 public class ProgramApiClientImpl implements ProgramApiClient {
     private final ProgramApiClientRetrofit programApiClientRetrofit;
+    private final ChunkFetcher chunkFetcher;
 
-    public ProgramApiClientImpl(ProgramApiClientRetrofit programApiClientRetrofit) {
+    public ProgramApiClientImpl(ProgramApiClientRetrofit programApiClientRetrofit,
+                                ChunkFetcher chunkFetcher) {
         this.programApiClientRetrofit = programApiClientRetrofit;
+        this.chunkFetcher = chunkFetcher;
     }
 
     @Override
@@ -78,6 +82,6 @@ public class ProgramApiClientImpl implements ProgramApiClient {
             }
         };
 
-        return getCollection(apiResource, fields, lastUpdated, uids);
+        return getCollection(apiResource, fields, lastUpdated, uids, chunkFetcher);
     }
 }
@@ -1,6 +1,7 @@
 package org.hisp.dhis.client.sdk.android.program;
 
 import org.hisp.dhis.client.sdk.android.api.network.ApiResource;
+import org.hisp.dhis.client.sdk.android.api.network.ChunkFetcher;
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.core.program.ProgramIndicatorApiClient;
@@ -17,22 +18,25 @@ import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.getColle
 
 public class ProgramIndicatorApiClientImpl implements ProgramIndicatorApiClient {
     private ProgramIndicatorApiClientRetrofit programIndicatorApiClientRetrofit;
+    private final ChunkFetcher chunkFetcher;
 
     public ProgramIndicatorApiClientImpl(ProgramIndicatorApiClientRetrofit
-                                             programIndicatorApiClientRetrofit) {
+                                             programIndicatorApiClientRetrofit,
+                                             ChunkFetcher chunkFetcher) {
         this.programIndicatorApiClientRetrofit = programIndicatorApiClientRetrofit;
+        this.chunkFetcher = chunkFetcher;
     }
 
     @Override
     public List<ProgramIndicator> getProgramIndicators(
             Fields fields, DateTime lastUpdated, Set<String> uids) throws ApiException {
-        return getCollection(apiResource, fields, lastUpdated, uids);
+        return getCollection(apiResource, fields, lastUpdated, uids, chunkFetcher);
     }
 
     @Override
     public List<ProgramIndicator> getProgramIndicators(
             Fields fields, Set<String> programIndicatorUids) throws ApiException {
-        return getCollection(apiResource, fields, null, programIndicatorUids);
+        return getCollection(apiResource, fields, null, programIndicatorUids, chunkFetcher);
     }
 
     private final ApiResource<ProgramIndicator> apiResource = new ApiResource<ProgramIndicator>() {
@@ -1,6 +1,7 @@
 package org.hisp.dhis.client.sdk.android.program;
 
 import org.hisp.dhis.client.sdk.android.api.network.ApiResource;
+import org.hisp.dhis.client.sdk.android.api.network.ChunkFetcher;
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.core.program.ProgramRuleActionApiClient;
@@ -17,21 +18,24 @@ import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.getColle
 
 public class ProgramRuleActionApiClientImpl implements ProgramRuleActionApiClient {
     private final ProgramRuleActionApiClientRetrofit programRuleActionApiClientRetrofit;
+    private final ChunkFetcher chunkFetcher;
 
-    public ProgramRuleActionApiClientImpl(ProgramRuleActionApiClientRetrofit retrofitClient) {
+    public ProgramRuleActionApiClientImpl(ProgramRuleActionApiClientRetrofit retrofitClient,
+                                          ChunkFetcher chunkFetcher) {
         this.programRuleActionApiClientRetrofit = retrofitClient;
+        this.chunkFetcher = chunkFetcher;
     }
 
     @Override
     public List<ProgramRuleAction> getProgramRuleActions(
             Fields fields, DateTime lastUpdated, Set<String> uids) throws ApiException {
-        return getCollection(apiResource, fields, lastUpdated, uids);
+        return getCollection(apiResource, fields, lastUpdated, uids, chunkFetcher);
     }
 
     @Override
     public List<ProgramRuleAction> getProgramRuleActions(
             Fields fields, Set<String> programRuleActionUids) throws ApiException {
-        return getCollection(apiResource, fields, null, programRuleActionUids);
+        return getCollection(apiResource, fields, null, programRuleActionUids, chunkFetcher);
     }
 
     private final ApiResource<ProgramRuleAction> apiResource = new ApiResource<ProgramRuleAction>() {
@@ -1,6 +1,7 @@
 package org.hisp.dhis.client.sdk.android.program;
 
 import org.hisp.dhis.client.sdk.android.api.network.ApiResource;
+import org.hisp.dhis.client.sdk.android.api.network.ChunkFetcher;
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.core.program.ProgramRuleApiClient;
@@ -19,22 +20,25 @@ import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.getColle
 
 public class ProgramRuleApiClientImpl implements ProgramRuleApiClient {
     private ProgramRuleApiClientRetrofit programRuleApiClientRetrofit;
+    private final ChunkFetcher chunkFetcher;
 
-    public ProgramRuleApiClientImpl(ProgramRuleApiClientRetrofit programRuleApiClientRetrofit) {
+    public ProgramRuleApiClientImpl(ProgramRuleApiClientRetrofit programRuleApiClientRetrofit,
+                                    ChunkFetcher chunkFetcher) {
         this.programRuleApiClientRetrofit = programRuleApiClientRetrofit;
+        this.chunkFetcher = chunkFetcher;
     }
 
     @Override
     public List<ProgramRule> getProgramRules(
             Fields fields, DateTime lastUpdated, Set<String> uids) throws ApiException {
-        return getCollection(apiResource, fields, lastUpdated, uids);
+        return getCollection(apiResource, fields, lastUpdated, uids, chunkFetcher);
 
     }
 
     @Override
     public List<ProgramRule> getProgramRules(
             Fields fields, Set<String> programRuleUids) throws ApiException {
-        return getCollection(apiResource, fields, null, programRuleUids);
+        return getCollection(apiResource, fields, null, programRuleUids, chunkFetcher);
     }
 
     @Override
@@ -48,7 +52,8 @@ public class ProgramRuleApiClientImpl implements ProgramRuleApiClient {
             }
         }
 
-        return getCollection(apiResource, "program.id", fields, lastUpdated, programUidSet);
+        return getCollection(apiResource, "program.id", fields,
+                lastUpdated, programUidSet, chunkFetcher);
     }
 
     private final ApiResource<ProgramRule> apiResource = new ApiResource<ProgramRule>() {
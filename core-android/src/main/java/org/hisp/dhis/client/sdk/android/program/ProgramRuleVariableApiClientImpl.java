@@ -1,6 +1,7 @@
 package org.hisp.dhis.client.sdk.android.program;
 
 import org.hisp.dhis.client.sdk.android.api.network.ApiResource;
+import org.hisp.dhis.client.sdk.android.api.network.ChunkFetcher;
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.core.program.ProgramRuleVariableApiClient;
@@ -19,21 +20,24 @@ import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.getColle
 
 public class ProgramRuleVariableApiClientImpl implements ProgramRuleVariableApiClient {
     private final ProgramRuleVariableApiClientRetrofit programRuleVariableApiClientRetrofit;
+    private final ChunkFetcher chunkFetcher;
 
-    public ProgramRuleVariableApiClientImpl(ProgramRuleVariableApiClientRetrofit apiClientRetrofit) {
+    public ProgramRuleVariableApiClientImpl(ProgramRuleVariableApiClientRetrofit apiClientRetrofit,
+                                            ChunkFetcher chunkFetcher) {
         this.programRuleVariableApiClientRetrofit = apiClientRetrofit;
+        this.chunkFetcher = chunkFetcher;
     }
 
     @Override
     public List<ProgramRuleVariable> getProgramRuleVariables(
             Fields fields, DateTime lastUpdated, Set<String> uids) throws ApiException {
-        return getCollection(apiResource, fields, lastUpdated, uids);
+        return getCollection(apiResource, fields, lastUpdated, uids, chunkFetcher);
     }
 
     @Override
     public List<ProgramRuleVariable> getProgramRuleVariables(
             Fields fields, Set<String> programRuleVariableUids) throws ApiException {
-        return getCollection(apiResource, fields, null, programRuleVariableUids);
+        return getCollection(apiResource, fields, null, programRuleVariableUids, chunkFetcher);
 
     }
 
@@ -48,7 +52,8 @@ public class ProgramRuleVariableApiClientImpl implements ProgramRuleVariableApiC
                 programUidSet.add(program.getUId());
             }
         }
-        return getCollection(apiResource, "program.id", fields, lastUpdated, programUidSet);
+        return getCollection(apiResource, "program.id", fields,
+                lastUpdated, programUidSet, chunkFetcher);
     }
 
     private ApiResource<ProgramRuleVariable> apiResource = new ApiResource<ProgramRuleVariable>() {
@@ -29,6 +29,7 @@
 package org.hisp.dhis.client.sdk.android.program;
 
 import org.hisp.dhis.client.sdk.android.api.network.ApiResource;
+import org.hisp.dhis.client.sdk.android.api.network.ChunkFetcher;
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.core.program.ProgramStageApiClient;
@@ -45,9 +46,12 @@ import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.getColle
 
 public class ProgramStageApiClientImpl implements ProgramStageApiClient {
     private final ProgramStageApiClientRetrofit programStageApiClientRetrofit;
+    private final ChunkFetcher chunkFetcher;
 
-    public ProgramStageApiClientImpl(ProgramStageApiClientRetrofit programStageApiClientRetrofit) {
+    public ProgramStageApiClientImpl(ProgramStageApiClientRetrofit programStageApiClientRetrofit,
+                                     ChunkFetcher chunkFetcher) {
         this.programStageApiClientRetrofit = programStageApiClientRetrofit;
+        this.chunkFetcher = chunkFetcher;
     }
 
     @Override
@@ -83,6 +87,6 @@ public class ProgramStageApiClientImpl implements ProgramStageApiClient {
             }
         };
 
-        return getCollection(apiResource, fields, lastUpdated, uids);
+        return getCollection(apiResource, fields, lastUpdated, uids, chunkFetcher);
     }
 }
@@ -29,6 +29,7 @@
 package org.hisp.dhis.client.sdk.android.program;
 
 import org.hisp.dhis.client.sdk.android.api.network.ApiResource;
+import org.hisp.dhis.client.sdk.android.api.network.ChunkFetcher;
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.core.program.ProgramStageDataElementApiClient;
@@ -45,10 +46,13 @@ import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.getColle
 
 public class ProgramStageDataElementApiClientImpl implements ProgramStageDataElementApiClient {
     private final ProgramStageDataElementApiClientRetrofit apiClientRetrofit;
+    private final ChunkFetcher chunkFetcher;
 
     public ProgramStageDataElementApiClientImpl(
-            ProgramStageDataElementApiClientRetrofit retrofitClient) {
+            ProgramStageDataElementApiClientRetrofit retrofitClient,
+            ChunkFetcher chunkFetcher) {
         this.apiClientRetrofit = retrofitClient;
+        this.chunkFetcher = chunkFetcher;
     }
 
     @Override
@@ -82,6 +86,6 @@ public class ProgramStageDataElementApiClientImpl implements ProgramStageDataEle
             }
         };
 
-        return getCollection(apiResource, fields, lastUpdated, uids);
+        return getCollection(apiResource, fields, lastUpdated, uids, chunkFetcher);
     }
 }
@@ -29,6 +29,7 @@
 package org.hisp.dhis.client.sdk.android.program;
 
 import org.hisp.dhis.client.sdk.android.api.network.ApiResource;
+import org.hisp.dhis.client.sdk.android.api.network.ChunkFetcher;
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.core.program.ProgramStageSectionApiClient;
@@ -45,22 +46,25 @@ import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.getColle
 
 public class ProgramStageSectionApiClientImpl implements ProgramStageSectionApiClient {
     private final ProgramStageSectionApiClientRetrofit programStageSectionApiClientRetrofit;
+    private final ChunkFetcher chunkFetcher;
 
-    public ProgramStageSectionApiClientImpl(ProgramStageSectionApiClientRetrofit retrofitClient) {
+    public ProgramStageSectionApiClientImpl(ProgramStageSectionApiClientRetrofit retrofitClient,
+                                            ChunkFetcher chunkFetcher) {
         this.programStageSectionApiClientRetrofit = retrofitClient;
+        this.chunkFetcher = chunkFetcher;
     }
 
     @Override
     public List<ProgramStageSection> getProgramStageSections(
             Fields fields, DateTime lastUpdated, Set<String> uids) throws ApiException {
-        return getCollection(apiResource, fields, lastUpdated, uids);
+        return getCollection(apiResource, fields, lastUpdated, uids, chunkFetcher);
     }
 
     @Override
     public List<ProgramStageSection> getProgramStageSections(
             Fields fields, Set<String> stageDataElementUids) throws ApiException {
         return getCollection(apiResource, "programStageDataElements.id",
-                fields, null, stageDataElementUids);
+                fields, null, stageDataElementUids, chunkFetcher);
     }
 
     private ApiResource<ProgramStageSection> apiResource = new ApiResource<ProgramStageSection>() {
@@ -1,6 +1,7 @@
 package org.hisp.dhis.client.sdk.android.trackedentity;
 
 import org.hisp.dhis.client.sdk.android.api.network.ApiResource;
+import org.hisp.dhis.client.sdk.android.api.network.ChunkFetcher;
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.core.trackedentity.TrackedEntityAttributeApiClient;
@@ -17,6 +18,7 @@ import static org.hisp.dhis.client.sdk.android.api.network.NetworkUtils.getColle
 
 public class TrackedEntityAttributeApiClientImpl implements TrackedEntityAttributeApiClient {
     private final TrackedEntityAttributeApiClientRetrofit trackedEntityAttributeApiClientRetrofit;
+    private final ChunkFetcher chunkFetcher;
 
     private final ApiResource<TrackedEntityAttribute> apiResource =
             new ApiResource<TrackedEntityAttribute>() {
@@ -48,19 +50,21 @@ public class TrackedEntityAttributeApiClientImpl implements TrackedEntityAttribu
             };
 
     public TrackedEntityAttributeApiClientImpl(
-            TrackedEntityAttributeApiClientRetrofit apiClientRetrofit) {
+            TrackedEntityAttributeApiClientRetrofit apiClientRetrofit,
+            ChunkFetcher chunkFetcher) {
         this.trackedEntityAttributeApiClientRetrofit = apiClientRetrofit;
+        this.chunkFetcher = chunkFetcher;
     }
 
     @Override
     public List<TrackedEntityAttribute> getTrackedEntityAttributes(
             Fields fields, DateTime lastUpdated, Set<String> uids) throws ApiException {
-        return getCollection(apiResource, fields, lastUpdated, uids);
+        return getCollection(apiResource, fields, lastUpdated, uids, chunkFetcher);
     }
 
     @Override
     public List<TrackedEntityAttribute> getTrackedEntityAttributes(
             Fields fields, Set<String> trackedEnityAttributeUids) throws ApiException {
-        return getCollection(apiResource, fields, null, trackedEnityAttributeUids);
+        return getCollection(apiResource, fields, null, trackedEnityAttributeUids, chunkFetcher);
     }
 }
@@ -32,6 +32,7 @@ package org.hisp.dhis.client.sdk.android.user;
 import org.hisp.dhis.client.sdk.android.api.utils.DefaultOnSubscribe;
 import org.hisp.dhis.client.sdk.android.organisationunit.UserOrganisationUnitInteractor;
 import org.hisp.dhis.client.sdk.android.program.UserProgramInteractor;
+import org.hisp.dhis.client.sdk.core.common.network.NetworkModule;
 import org.hisp.dhis.client.sdk.core.common.network.UserCredentials;
 import org.hisp.dhis.client.sdk.core.common.persistence.PersistenceModule;
 import org.hisp.dhis.client.sdk.core.common.preferences.PreferencesModule;
@@ -60,6 +61,7 @@ public class CurrentUserInteractorImpl implements CurrentUserInteractor {
     //modules
     private final PersistenceModule persistanceModule;
     private final PreferencesModule preferencesModule;
+    private final NetworkModule networkModule;
 
     public CurrentUserInteractorImpl(UserPreferences userPreferences,
                                      UserAccountService userAccountService,
@@ -68,7 +70,8 @@ public class CurrentUserInteractorImpl implements CurrentUserInteractor {
                                      UserProgramInteractor userProgramInteractor,
                                      UserOrganisationUnitInteractor organisationUnitInteractor,
                                      PreferencesModule preferencesModule,
-                                     PersistenceModule persitenceModule) {
+                                     PersistenceModule persitenceModule,
+                                     NetworkModule networkModule) {
         this.userPreferences = userPreferences;
         this.userAccountService = userAccountService;
         this.userAccountController = userAccountController;
@@ -77,6 +80,7 @@ public class CurrentUserInteractorImpl implements CurrentUserInteractor {
         this.organisationUnitInteractor = organisationUnitInteractor;
         this.persistanceModule = persitenceModule;
         this.preferencesModule = preferencesModule;
+        this.networkModule = networkModule;
     }
 
     @Override
@@ -112,6 +116,7 @@ public class CurrentUserInteractorImpl implements CurrentUserInteractor {
         return Observable.create(new DefaultOnSubscribe<Boolean>() {
             @Override
             public Boolean call() {
+                networkModule.clearCaches();
                 return preferencesModule.clearAllPreferences() &&
                         persistanceModule.deleteAllTables();
             }
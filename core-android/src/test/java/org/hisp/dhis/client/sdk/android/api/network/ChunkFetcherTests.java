@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.android.api.network;
+
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChunkFetcherTests {
+    private ChunkFetcher chunkFetcher;
+
+    @Before
+    public void setUp() {
+        chunkFetcher = new ChunkFetcher(2);
+    }
+
+    @After
+    public void tearDown() {
+        chunkFetcher.shutdown();
+    }
+
+    @Test
+    public void resultsAreMergedInOrderOfChunks() {
+        List<Callable<List<String>>> chunks = new ArrayList<>();
+
+        // first chunks take longest, so they complete last
+        chunks.add(chunk(60, "a", "b"));
+        chunks.add(chunk(30, "c"));
+        chunks.add(chunk(0, "d", "e"));
+
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), chunkFetcher.fetch(chunks));
+    }
+
+    @Test
+    public void chunksInFlightAreBounded() {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        List<Callable<List<String>>> chunks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final String item = String.valueOf(i);
+            chunks.add(new Callable<List<String>>() {
+
+                @Override
+                public List<String> call() throws Exception {
+                    int running = inFlight.incrementAndGet();
+                    synchronized (maxInFlight) {
+                        maxInFlight.set(Math.max(maxInFlight.get(), running));
+                    }
+
+                    Thread.sleep(20);
+                    inFlight.decrementAndGet();
+                    return Arrays.asList(item);
+                }
+            });
+        }
+
+        assertEquals(8, chunkFetcher.fetch(chunks).size());
+        assertTrue(maxInFlight.get() <= chunkFetcher.getMaxInFlight());
+    }
+
+    @Test
+    public void firstFailureCancelsRemainingChunks() throws Exception {
+        final ApiException failure = ApiException.networkError(null,
+                new IOException("Connection reset"));
+        final CountDownLatch secondChunkStarted = new CountDownLatch(1);
+        final AtomicInteger started = new AtomicInteger();
+        final AtomicInteger interrupted = new AtomicInteger();
+
+        List<Callable<List<String>>> chunks = new ArrayList<>();
+
+        // first chunk fails while the second one is in flight
+        chunks.add(new Callable<List<String>>() {
+
+            @Override
+            public List<String> call() throws Exception {
+                started.incrementAndGet();
+                secondChunkStarted.await();
+                throw failure;
+            }
+        });
+        for (int i = 0; i < 5; i++) {
+            chunks.add(new Callable<List<String>>() {
+
+                @Override
+                public List<String> call() throws Exception {
+                    started.incrementAndGet();
+                    secondChunkStarted.countDown();
+                    try {
+                        Thread.sleep(10000);
+                    } catch (InterruptedException exception) {
+                        interrupted.incrementAndGet();
+                        throw exception;
+                    }
+                    return new ArrayList<>();
+                }
+            });
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            chunkFetcher.fetch(chunks);
+            fail("Failure of chunk has to be rethrown");
+        } catch (ApiException apiException) {
+            assertSame(failure, apiException);
+        }
+        assertTrue(System.currentTimeMillis() - startTime < 5000);
+
+        // chunks in flight are interrupted, queued chunks never start
+        long deadline = System.currentTimeMillis() + 5000;
+        while (interrupted.get() < started.get() - 1 &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(started.get() - 1, interrupted.get());
+        assertTrue(started.get() < chunks.size());
+    }
+
+    @Test
+    public void otherFailuresAreReportedAsUnexpected() {
+        List<Callable<List<String>>> chunks = new ArrayList<>();
+        chunks.add(chunk(0, "a"));
+        chunks.add(new Callable<List<String>>() {
+
+            @Override
+            public List<String> call() throws Exception {
+                throw new IllegalStateException();
+            }
+        });
+
+        try {
+            chunkFetcher.fetch(chunks);
+            fail("Failure of chunk has to be rethrown");
+        } catch (ApiException apiException) {
+            assertEquals(ApiException.Kind.UNEXPECTED, apiException.getKind());
+            assertTrue(apiException.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private static Callable<List<String>> chunk(final long millis, final String... items) {
+        return new Callable<List<String>>() {
+
+            @Override
+            public List<String> call() throws Exception {
+                TimeUnit.MILLISECONDS.sleep(millis);
+                return Arrays.asList(items);
+            }
+        };
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.client.sdk.android.api.network;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkPlannerTests {
+    private static final String RESOURCE = "dataElements";
+
+    @Test
+    public void unknownResourceUsesDefaultChunkSize() {
+        ChunkPlanner chunkPlanner = new ChunkPlanner(0);
+
+        assertEquals(ChunkPlanner.DEFAULT_CHUNK_SIZE, chunkPlanner.getChunkSize(RESOURCE));
+    }
+
+    @Test
+    public void chunksGrowWhenLatencyDominates() {
+        ChunkPlanner chunkPlanner = new ChunkPlanner(0);
+
+        // slow link: five seconds of round trip, 10 ms per item
+        recordChunks(chunkPlanner, 5000, 10);
+
+        assertEquals(ChunkPlanner.MAX_CHUNK_SIZE, chunkPlanner.getChunkSize(RESOURCE));
+    }
+
+    @Test
+    public void chunksShrinkWhenItemsDominate() {
+        ChunkPlanner chunkPlanner = new ChunkPlanner(0);
+
+        // fast link, but 100 ms per item: 4 s target minus 200 ms overhead
+        recordChunks(chunkPlanner, 200, 100);
+
+        assertEquals(38, chunkPlanner.getChunkSize(RESOURCE), 1);
+    }
+
+    @Test
+    public void chunksOfSameSizeProbeOtherSize() {
+        ChunkPlanner chunkPlanner = new ChunkPlanner(0);
+
+        chunkPlanner.record(RESOURCE, 64, 5000, -1);
+        chunkPlanner.record(RESOURCE, 64, 5000, -1);
+        assertEquals(32, chunkPlanner.getChunkSize(RESOURCE));
+
+        chunkPlanner = new ChunkPlanner(0);
+        chunkPlanner.record(RESOURCE, 64, 1000, -1);
+        assertEquals(128, chunkPlanner.getChunkSize(RESOURCE));
+    }
+
+    @Test
+    public void chunksAreLimitedByResponseSize() {
+        ChunkPlanner chunkPlanner = new ChunkPlanner(0);
+
+        chunkPlanner.record(RESOURCE, 64, 5000, 64 * 128 * 1024);
+        chunkPlanner.record(RESOURCE, 32, 5000, 32 * 128 * 1024);
+
+        assertEquals(32, chunkPlanner.getChunkSize(RESOURCE));
+    }
+
+    @Test
+    public void chunksAreLimitedByUrlLength() {
+        ChunkPlanner chunkPlanner = new ChunkPlanner(0, 100);
+        recordChunks(chunkPlanner, 5000, 10);
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ids.add(String.format("uid%08d", i));
+        }
+
+        List<List<String>> chunks = chunkPlanner.plan(RESOURCE, ids, "id:in:[", ",", "]", 0);
+        for (List<String> chunk : chunks) {
+            assertTrue(chunk.size() * (11 + 1) <= 100);
+        }
+    }
+
+    private static void recordChunks(ChunkPlanner chunkPlanner, long overhead, long perItem) {
+        int[] itemCounts = new int[]{64, 32, 48, 16};
+        for (int itemCount : itemCounts) {
+            chunkPlanner.record(RESOURCE, itemCount, overhead + perItem * itemCount, -1);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.android.api.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompressionInterceptorTests {
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private MockWebServer server;
+    private List<long[]> sentBytes;
+    private List<long[]> receivedBytes;
+    private CompressionInterceptor.Listener listener;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+
+        sentBytes = new ArrayList<>();
+        receivedBytes = new ArrayList<>();
+        listener = new CompressionInterceptor.Listener() {
+
+            @Override
+            public void onRequestSent(HttpUrl url, long bytes, long compressedBytes) {
+                sentBytes.add(new long[]{bytes, compressedBytes});
+            }
+
+            @Override
+            public void onResponseReceived(HttpUrl url, long bytes, long compressedBytes) {
+                receivedBytes.add(new long[]{bytes, compressedBytes});
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void bodiesAreNotCompressedByDefault() throws Exception {
+        server.enqueue(new MockResponse());
+
+        post(new CompressionInterceptor(), body(4096));
+
+        RecordedRequest request = server.takeRequest();
+        assertNull(request.getHeader("Content-Encoding"));
+        assertEquals(body(4096), request.getBody().readUtf8());
+    }
+
+    @Test
+    public void compressedBodyRoundTrips() throws Exception {
+        server.enqueue(new MockResponse());
+
+        post(new CompressionInterceptor(CompressionInterceptor.DEFAULT_THRESHOLD, null),
+                body(4096));
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("gzip", request.getHeader("Content-Encoding"));
+        assertTrue(request.getBodySize() < 4096);
+        assertEquals(body(4096), gunzip(request.getBody()));
+    }
+
+    @Test
+    public void bodiesBelowThresholdAreNotCompressed() throws Exception {
+        CompressionInterceptor interceptor = new CompressionInterceptor(1024, null);
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse());
+
+        post(interceptor, body(1023));
+        post(interceptor, body(1024));
+
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+        assertEquals("gzip", server.takeRequest().getHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void unsupportedCompressionIsRememberedForHost() throws Exception {
+        CompressionInterceptor interceptor = new CompressionInterceptor(1024, null);
+        server.enqueue(new MockResponse().setResponseCode(415));
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse());
+
+        assertEquals(200, post(interceptor, body(2048)));
+        assertEquals(200, post(interceptor, body(2048)));
+
+        // compressed request is sent again as it is, following ones are never compressed
+        assertEquals("gzip", server.takeRequest().getHeader("Content-Encoding"));
+        RecordedRequest retriedRequest = server.takeRequest();
+        assertNull(retriedRequest.getHeader("Content-Encoding"));
+        assertEquals(body(2048), retriedRequest.getBody().readUtf8());
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void transferredBytesAreCounted() throws Exception {
+        Buffer compressedResponse = gzip(body(3000));
+        long compressedResponseSize = compressedResponse.size();
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Encoding", "gzip")
+                .setBody(compressedResponse));
+
+        post(new CompressionInterceptor(1024, listener), body(2048));
+
+        long compressedRequestSize = server.takeRequest().getBodySize();
+        assertEquals(1, sentBytes.size());
+        assertEquals(2048, sentBytes.get(0)[0]);
+        assertEquals(compressedRequestSize, sentBytes.get(0)[1]);
+        assertEquals(1, receivedBytes.size());
+        assertEquals(3000, receivedBytes.get(0)[0]);
+        assertEquals(compressedResponseSize, receivedBytes.get(0)[1]);
+    }
+
+    @Test
+    public void bytesAreCountedWithoutCompression() throws Exception {
+        server.enqueue(new MockResponse().setBody(body(100)));
+
+        post(new CompressionInterceptor(CompressionInterceptor.NO_COMPRESSION, listener),
+                body(2048));
+
+        assertEquals(2048, sentBytes.get(0)[0]);
+        assertEquals(2048, sentBytes.get(0)[1]);
+        assertEquals(100, receivedBytes.get(0)[0]);
+        assertEquals(-1, receivedBytes.get(0)[1]);
+    }
+
+    /* posts the body and reads the whole response */
+    private int post(CompressionInterceptor interceptor, String body) throws IOException {
+        OkHttpClient okHttpClient = new OkHttpClient.Builder()
+                .addInterceptor(interceptor)
+                .build();
+        Response response = okHttpClient.newCall(new Request.Builder()
+                .url(server.url("/api/events"))
+                .post(RequestBody.create(JSON, body))
+                .build()).execute();
+        response.body().string();
+        return response.code();
+    }
+
+    private static String body(int size) {
+        StringBuilder body = new StringBuilder(size);
+        while (body.length() < size) {
+            body.append("{\"event\":\"").append(body.length()).append("\"},");
+        }
+        return body.substring(0, size);
+    }
+
+    private static Buffer gzip(String text) throws IOException {
+        Buffer compressed = new Buffer();
+        BufferedSink gzipSink = Okio.buffer(new GzipSink(compressed));
+        gzipSink.writeUtf8(text);
+        gzipSink.close();
+        return compressed;
+    }
+
+    private static String gunzip(Buffer compressed) throws IOException {
+        return Okio.buffer(new GzipSource(compressed)).readUtf8();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.android.api.network;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.models.program.Program;
+import org.hisp.dhis.client.sdk.models.program.ProgramStage;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonBundleTests {
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private ObjectMapper mapper;
+    private boolean bodyClosed;
+
+    @Before
+    public void setUp() {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new JodaModule());
+        mapper.disable(
+                MapperFeature.AUTO_DETECT_CREATORS, MapperFeature.AUTO_DETECT_FIELDS,
+                MapperFeature.AUTO_DETECT_GETTERS, MapperFeature.AUTO_DETECT_IS_GETTERS,
+                MapperFeature.AUTO_DETECT_SETTERS);
+        bodyClosed = false;
+    }
+
+    private JsonBundle createBundle(String json) throws IOException {
+        Buffer buffer = new Buffer().writeUtf8(json);
+        ResponseBody responseBody = ResponseBody.create(JSON, buffer.size(),
+                Okio.buffer(new ForwardingSource(buffer) {
+
+                    @Override
+                    public void close() throws IOException {
+                        bodyClosed = true;
+                        super.close();
+                    }
+                }));
+        return new JsonBundle(responseBody, mapper);
+    }
+
+    @Test
+    public void arraysAreVisitedInOrder() throws Exception {
+        JsonBundle bundle = createBundle("{\"system\":{\"version\":\"2.24\"}," +
+                "\"programs\":[{\"id\":\"p1\"}],\"date\":\"2016-07-04\"," +
+                "\"programStages\":[{\"id\":\"s1\"},{\"id\":\"s2\"}]}");
+
+        assertEquals("programs", bundle.nextArray());
+        assertTrue(bundle.hasNext());
+        assertEquals("p1", bundle.next(Program.class).getUId());
+        assertFalse(bundle.hasNext());
+
+        assertEquals("programStages", bundle.nextArray());
+        assertTrue(bundle.hasNext());
+        assertEquals("s1", bundle.next(ProgramStage.class).getUId());
+        assertTrue(bundle.hasNext());
+        assertEquals("s2", bundle.next(ProgramStage.class).getUId());
+        assertFalse(bundle.hasNext());
+
+        assertNull(bundle.nextArray());
+        assertTrue(bodyClosed);
+    }
+
+    @Test
+    public void unreadItemsAreSkipped() throws Exception {
+        JsonBundle bundle = createBundle("{\"programs\":[{\"id\":\"p1\"},{\"id\":\"p2\"}]," +
+                "\"programStages\":[{\"id\":\"s1\"}]}");
+
+        assertEquals("programs", bundle.nextArray());
+        assertTrue(bundle.hasNext());
+        bundle.next(Program.class);
+
+        assertEquals("programStages", bundle.nextArray());
+        assertTrue(bundle.hasNext());
+        assertEquals("s1", bundle.next(ProgramStage.class).getUId());
+    }
+
+    @Test
+    public void emptyArraysHaveNoItems() throws Exception {
+        JsonBundle bundle = createBundle("{\"programs\":[]}");
+
+        assertEquals("programs", bundle.nextArray());
+        assertFalse(bundle.hasNext());
+        assertNull(bundle.nextArray());
+    }
+
+    @Test
+    public void malformedBundleIsConversionError() throws Exception {
+        JsonBundle bundle = createBundle("{\"programs\":[{\"id\":\"p1\"} {\"id\":\"p2\"}]}");
+
+        assertEquals("programs", bundle.nextArray());
+        assertTrue(bundle.hasNext());
+        bundle.next(Program.class);
+        try {
+            bundle.hasNext();
+            fail("Missing separator has to fail reading");
+        } catch (ApiException apiException) {
+            assertEquals(ApiException.Kind.CONVERSION, apiException.getKind());
+        }
+        assertTrue(bodyClosed);
+    }
+
+    @Test
+    public void bodyWithoutObjectIsConversionError() throws Exception {
+        try {
+            createBundle("[{\"id\":\"p1\"}]").nextArray();
+            fail("Body without bundle has to fail reading");
+        } catch (ApiException apiException) {
+            assertEquals(ApiException.Kind.CONVERSION, apiException.getKind());
+        }
+        assertTrue(bodyClosed);
+    }
+
+    @Test
+    public void closeReleasesBody() throws Exception {
+        JsonBundle bundle = createBundle("{\"programs\":[{\"id\":\"p1\"}]}");
+        bundle.nextArray();
+
+        bundle.close();
+
+        assertTrue(bodyClosed);
+        assertFalse(bundle.hasNext());
+        assertNull(bundle.nextArray());
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.android.api.network;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+
+import org.hisp.dhis.client.sdk.android.event.EventApiClientRetrofit;
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonStreamTests {
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private ObjectMapper mapper;
+    private MockWebServer server;
+    private boolean bodyClosed;
+
+    @Before
+    public void setUp() throws Exception {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new JodaModule());
+        mapper.disable(
+                MapperFeature.AUTO_DETECT_CREATORS, MapperFeature.AUTO_DETECT_FIELDS,
+                MapperFeature.AUTO_DETECT_GETTERS, MapperFeature.AUTO_DETECT_IS_GETTERS,
+                MapperFeature.AUTO_DETECT_SETTERS);
+
+        server = new MockWebServer();
+        server.start();
+        bodyClosed = false;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private JsonStream<Event> createStream(String json) throws IOException {
+        Buffer buffer = new Buffer().writeUtf8(json);
+        ResponseBody responseBody = ResponseBody.create(JSON, buffer.size(),
+                Okio.buffer(new ForwardingSource(buffer) {
+
+                    @Override
+                    public void close() throws IOException {
+                        bodyClosed = true;
+                        super.close();
+                    }
+                }));
+        return new JsonStream<>(responseBody, mapper.readerFor(Event.class));
+    }
+
+    private static List<String> readUids(JsonStream<Event> stream) {
+        List<String> uids = new ArrayList<>();
+        while (stream.hasNext()) {
+            uids.add(stream.next().getUId());
+        }
+        return uids;
+    }
+
+    @Test
+    public void itemsAreReadFromRootArray() throws Exception {
+        JsonStream<Event> stream = createStream("[{\"event\":\"a\"},{\"event\":\"b\"}]");
+
+        assertEquals(2, readUids(stream).size());
+        assertTrue(bodyClosed);
+    }
+
+    @Test
+    public void itemsAreReadFromFirstArrayProperty() throws Exception {
+        JsonStream<Event> stream = createStream("{\"pager\":{\"page\":1,\"pageCount\":1}," +
+                "\"events\":[{\"event\":\"a\"},{\"event\":\"b\"},{\"event\":\"c\"}]}");
+
+        List<String> uids = readUids(stream);
+
+        assertEquals(3, uids.size());
+        assertEquals("a", uids.get(0));
+        assertEquals("c", uids.get(2));
+        assertTrue(bodyClosed);
+    }
+
+    @Test
+    public void emptyArrayHasNoItems() throws Exception {
+        assertFalse(createStream("[]").hasNext());
+        assertTrue(bodyClosed);
+
+        bodyClosed = false;
+        assertFalse(createStream("{\"pager\":{\"page\":1},\"events\":[]}").hasNext());
+        assertTrue(bodyClosed);
+    }
+
+    @Test
+    public void malformedBodyIsConversionError() throws Exception {
+        JsonStream<Event> stream = createStream(
+                "{\"events\":[{\"event\":\"a\"} {\"event\":\"b\"}]}");
+
+        assertTrue(stream.hasNext());
+        assertEquals("a", stream.next().getUId());
+        try {
+            stream.hasNext();
+            fail("Missing separator has to fail reading");
+        } catch (ApiException apiException) {
+            assertEquals(ApiException.Kind.CONVERSION, apiException.getKind());
+        }
+        assertTrue(bodyClosed);
+    }
+
+    @Test
+    public void bodyWithoutCollectionIsConversionError() throws Exception {
+        try {
+            createStream("\"events\"").hasNext();
+            fail("Body without collection has to fail reading");
+        } catch (ApiException apiException) {
+            assertEquals(ApiException.Kind.CONVERSION, apiException.getKind());
+        }
+        assertTrue(bodyClosed);
+    }
+
+    @Test
+    public void closeReleasesBody() throws Exception {
+        JsonStream<Event> stream = createStream("[{\"event\":\"a\"},{\"event\":\"b\"}]");
+        assertTrue(stream.hasNext());
+        stream.next();
+
+        stream.close();
+
+        assertTrue(bodyClosed);
+        assertFalse(stream.hasNext());
+    }
+
+    @Test
+    public void converterStreamsDeclaredResponses() throws Exception {
+        server.enqueue(new MockResponse().setBody(
+                "{\"pager\":{\"page\":1},\"events\":[{\"event\":\"a\"},{\"event\":\"b\"}]}"));
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/api/"))
+                .addConverterFactory(JsonStreamConverterFactory.create(mapper))
+                .addConverterFactory(JacksonConverterFactory.create(mapper))
+                .build();
+
+        JsonStream<Event> stream = retrofit.create(EventApiClientRetrofit.class)
+                .getEventStream(new HashMap<String, String>()).execute().body();
+
+        assertEquals(2, readUids(stream).size());
+    }
+
+    @Test
+    public void converterLeavesOtherTypes() {
+        assertNull(JsonStreamConverterFactory.create(mapper)
+                .responseBodyConverter(Event.class, new Annotation[0], null));
+    }
+}
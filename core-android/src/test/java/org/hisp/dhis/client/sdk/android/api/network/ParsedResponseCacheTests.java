@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.client.sdk.android.api.network;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+
+import org.hisp.dhis.client.sdk.android.dataelement.DataElementApiClientImpl;
+import org.hisp.dhis.client.sdk.android.dataelement.DataElementApiClientRetrofit;
+import org.hisp.dhis.client.sdk.core.common.Fields;
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.core.dataelement.DataElementApiClient;
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParsedResponseCacheTests {
+    private static final String BODY = "{\"dataElements\":[{\"id\":\"a\"},{\"id\":\"b\"}]}";
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Mon, 04 Jul 2016 10:00:00 GMT";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private OkHttpClient okHttpClient;
+    private ParsedResponseCache parsedResponseCache;
+    private DataElementApiClient dataElementApiClient;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+
+        parsedResponseCache = new ParsedResponseCache(ParsedResponseCache.DEFAULT_MAX_SIZE);
+        okHttpClient = new OkHttpClient.Builder()
+                .cache(new Cache(temporaryFolder.newFolder(), 1024 * 1024))
+                .addInterceptor(new NotModifiedInterceptor(parsedResponseCache))
+                .addNetworkInterceptor(new RevalidationInterceptor())
+                .build();
+
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JodaModule());
+        mapper.disable(
+                MapperFeature.AUTO_DETECT_CREATORS, MapperFeature.AUTO_DETECT_FIELDS,
+                MapperFeature.AUTO_DETECT_GETTERS, MapperFeature.AUTO_DETECT_IS_GETTERS,
+                MapperFeature.AUTO_DETECT_SETTERS);
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/api/"))
+                .client(okHttpClient)
+                .addConverterFactory(JacksonConverterFactory.create(mapper))
+                .build();
+
+        dataElementApiClient = new DataElementApiClientImpl(
+                retrofit.create(DataElementApiClientRetrofit.class),
+                new ChunkFetcher(1, new ChunkPlanner(0), parsedResponseCache));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void responseWithETagIsKept() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", ETAG).setBody(BODY));
+
+        List<DataElement> dataElements = getDataElements();
+
+        assertEquals(2, dataElements.size());
+        assertTrue(parsedResponseCache.contains(takeUrl(), ETAG));
+    }
+
+    @Test
+    public void nextRequestIsConditional() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", ETAG).setBody(BODY));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", ETAG));
+
+        getDataElements();
+        getDataElements();
+
+        assertNull(server.takeRequest().getHeader("If-None-Match"));
+        assertEquals(ETAG, server.takeRequest().getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void nextRequestIsConditionalOnLastModified() throws Exception {
+        server.enqueue(new MockResponse()
+                .setHeader("Last-Modified", LAST_MODIFIED).setBody(BODY));
+        server.enqueue(new MockResponse()
+                .setResponseCode(304).setHeader("Last-Modified", LAST_MODIFIED));
+
+        getDataElements();
+        getDataElements();
+
+        server.takeRequest();
+        assertEquals(LAST_MODIFIED, server.takeRequest().getHeader("If-Modified-Since"));
+    }
+
+    @Test
+    public void notModifiedResponseReturnsKeptBody() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", ETAG).setBody(BODY));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", ETAG));
+
+        List<DataElement> dataElements = getDataElements();
+        List<DataElement> cachedDataElements = getDataElements();
+
+        // items are not parsed again, but handed out as they were kept
+        assertEquals(2, cachedDataElements.size());
+        assertSame(dataElements.get(0), cachedDataElements.get(0));
+        assertSame(dataElements.get(1), cachedDataElements.get(1));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void keptBodiesAreReadOnly() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", ETAG).setBody(BODY));
+
+        getDataElements().clear();
+    }
+
+    @Test
+    public void noStoreResponseEvictsKeptBody() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", ETAG).setBody(BODY));
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v2\"")
+                .setHeader("Cache-Control", "no-store").setBody(BODY));
+
+        getDataElements();
+        getDataElements();
+
+        assertEquals(0, parsedResponseCache.size());
+    }
+
+    @Test
+    public void failedRevalidationEvictsKeptBody() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", ETAG).setBody(BODY));
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        getDataElements();
+        String url = takeUrl();
+        try {
+            getDataElements();
+            fail("Failed revalidation has to be reported");
+        } catch (ApiException apiException) {
+            assertFalse(parsedResponseCache.contains(url, ETAG));
+        }
+    }
+
+    @Test
+    public void responsesOfOtherEndpointsAreNotStored() throws Exception {
+        for (String path : new String[]{"/api/events", "/api/me/", "/api/programs/p1"}) {
+            server.enqueue(new MockResponse().setHeader("ETag", ETAG).setBody("{}"));
+            server.enqueue(new MockResponse().setHeader("ETag", ETAG).setBody("{}"));
+
+            get(path);
+            get(path);
+
+            server.takeRequest();
+            assertNull(server.takeRequest().getHeader("If-None-Match"));
+        }
+    }
+
+    @Test
+    public void bodiesAreEvictedWhenCacheIsFull() {
+        ParsedResponseCache cache = new ParsedResponseCache(100);
+
+        cache.put("a", ETAG, "a", 60);
+        cache.put("b", ETAG, "b", 30);
+        cache.get("a");
+        cache.put("c", ETAG, "c", 30);
+        cache.put("d", ETAG, "d", 101);
+
+        assertTrue(cache.contains("a", ETAG));
+        assertFalse(cache.contains("b", ETAG));
+        assertTrue(cache.contains("c", ETAG));
+        assertFalse(cache.contains("d", ETAG));
+        assertEquals(90, cache.size());
+    }
+
+    private List<DataElement> getDataElements() {
+        return dataElementApiClient.getDataElements(Fields.BASIC, null, null);
+    }
+
+    private void get(String path) throws Exception {
+        okHttpClient.newCall(new Request.Builder().url(server.url(path)).build())
+                .execute().body().close();
+    }
+
+    private String takeUrl() throws InterruptedException {
+        RecordedRequest request = server.takeRequest();
+        return server.url(request.getPath()).toString();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.android.event;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+
+import org.hisp.dhis.client.sdk.android.api.network.ChunkFetcher;
+import org.hisp.dhis.client.sdk.android.api.network.ChunkPlanner;
+import org.hisp.dhis.client.sdk.android.api.network.JsonStreamConverterFactory;
+import org.hisp.dhis.client.sdk.core.common.Fields;
+import org.hisp.dhis.client.sdk.core.common.network.PageConsumer;
+import org.hisp.dhis.client.sdk.core.event.EventApiClient;
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventApiClientTests {
+    private static final int EVENT_COUNT = 150;
+
+    private MockWebServer server;
+    private ChunkFetcher chunkFetcher;
+    private EventApiClient eventApiClient;
+    private Set<String> uids;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+
+        // server answers with events requested by the filter
+        server.setDispatcher(new Dispatcher() {
+
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                StringBuilder body = new StringBuilder("{\"events\":[");
+                String filter = getFilter(request);
+                if (filter != null) {
+                    String[] ids = filter.split(";");
+                    for (int i = 0; i < ids.length; i++) {
+                        body.append(i > 0 ? "," : "")
+                                .append("{\"event\":\"").append(ids[i]).append("\"}");
+                    }
+                }
+                return new MockResponse().setBody(body.append("]}").toString());
+            }
+        });
+
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JodaModule());
+        mapper.disable(
+                MapperFeature.AUTO_DETECT_CREATORS, MapperFeature.AUTO_DETECT_FIELDS,
+                MapperFeature.AUTO_DETECT_GETTERS, MapperFeature.AUTO_DETECT_IS_GETTERS,
+                MapperFeature.AUTO_DETECT_SETTERS);
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/api/"))
+                .addConverterFactory(JsonStreamConverterFactory.create(mapper))
+                .addConverterFactory(JacksonConverterFactory.create(mapper))
+                .build();
+
+        chunkFetcher = new ChunkFetcher(2, new ChunkPlanner(0));
+        eventApiClient = new EventApiClientImpl(
+                retrofit.create(EventApiClientRetrofit.class), chunkFetcher);
+
+        uids = new HashSet<>();
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            uids.add(String.format("event%05d", i));
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        chunkFetcher.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    public void eachChunkRequestsItsOwnEvents() throws Exception {
+        List<Event> events = eventApiClient.getEvents(Fields.BASIC, null, uids);
+
+        assertEquals(uids, toUids(events));
+        assertChunkFilters();
+    }
+
+    @Test
+    public void eachStreamedChunkRequestsItsOwnEvents() throws Exception {
+        final List<Event> events = new ArrayList<>();
+        eventApiClient.getEvents(Fields.ALL, null, uids, new PageConsumer<Event>() {
+
+            @Override
+            public void consume(List<Event> page) {
+                events.addAll(page);
+            }
+        });
+
+        assertEquals(uids, toUids(events));
+        assertChunkFilters();
+    }
+
+    /* every uid is requested exactly once, by one of several chunk requests */
+    private void assertChunkFilters() throws Exception {
+        int requestCount = server.getRequestCount();
+        assertTrue(requestCount > 1);
+
+        Set<String> requestedUids = new TreeSet<>();
+        for (int i = 0; i < requestCount; i++) {
+            List<String> filter = Arrays.asList(getFilter(server.takeRequest()).split(";"));
+            for (String uid : filter) {
+                assertFalse(requestedUids.contains(uid));
+            }
+            requestedUids.addAll(filter);
+        }
+        assertEquals(uids, requestedUids);
+    }
+
+    private static String getFilter(RecordedRequest request) {
+        return HttpUrl.parse("http://localhost" + request.getPath()).queryParameter("event");
+    }
+
+    private static Set<String> toUids(List<Event> events) {
+        Set<String> uids = new TreeSet<>();
+        for (Event event : events) {
+            uids.add(event.getUId());
+        }
+        assertEquals(events.size(), uids.size());
+        return uids;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.android.metadata;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+
+import org.hisp.dhis.client.sdk.android.api.network.JsonStreamConverterFactory;
+import org.hisp.dhis.client.sdk.core.common.network.PageConsumer;
+import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
+import org.hisp.dhis.client.sdk.core.metadata.MetadataApiClient;
+import org.hisp.dhis.client.sdk.models.program.Program;
+import org.hisp.dhis.client.sdk.models.program.ProgramStage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MetadataApiClientTests {
+    private MockWebServer server;
+    private MetadataApiClient metadataApiClient;
+    private List<List<Program>> programBatches;
+    private List<List<ProgramStage>> stageBatches;
+    private Map<ResourceType, PageConsumer<?>> consumers;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JodaModule());
+        mapper.disable(
+                MapperFeature.AUTO_DETECT_CREATORS, MapperFeature.AUTO_DETECT_FIELDS,
+                MapperFeature.AUTO_DETECT_GETTERS, MapperFeature.AUTO_DETECT_IS_GETTERS,
+                MapperFeature.AUTO_DETECT_SETTERS);
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/api/"))
+                .addConverterFactory(JsonStreamConverterFactory.create(mapper))
+                .addConverterFactory(JacksonConverterFactory.create(mapper))
+                .build();
+        metadataApiClient = new MetadataApiClientImpl(
+                retrofit.create(MetadataApiClientRetrofit.class));
+
+        programBatches = new ArrayList<>();
+        stageBatches = new ArrayList<>();
+        consumers = new EnumMap<>(ResourceType.class);
+        consumers.put(ResourceType.PROGRAMS, new PageConsumer<Program>() {
+
+            @Override
+            public void consume(List<Program> programs) {
+                programBatches.add(programs);
+            }
+        });
+        consumers.put(ResourceType.PROGRAM_STAGES, new PageConsumer<ProgramStage>() {
+
+            @Override
+            public void consume(List<ProgramStage> stages) {
+                stageBatches.add(stages);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void onlyResourcesWithConsumersAreRequested() throws Exception {
+        server.enqueue(new MockResponse().setBody("{}"));
+
+        metadataApiClient.getMetadata(new HashSet<>(Arrays.asList("p1")), consumers);
+
+        HttpUrl url = server.url(server.takeRequest().getPath());
+        assertEquals("/api/metadata", url.encodedPath());
+        assertEquals("false", url.queryParameter("assumeTrue"));
+        assertEquals("true", url.queryParameter("programs"));
+        assertEquals("id:in:[p1]", url.queryParameter("programs:filter"));
+        assertEquals("true", url.queryParameter("programStages"));
+        assertEquals("program.id:in:[p1]", url.queryParameter("programStages:filter"));
+        assertTrue(url.queryParameter("programStages:fields").contains("program[id]"));
+        assertNull(url.queryParameter("dataElements"));
+    }
+
+    @Test
+    public void itemsAreHandedOverToConsumersOfTheirResource() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"system\":{\"version\":\"2.24\"}," +
+                "\"programs\":[{\"id\":\"p1\"}]," +
+                "\"dataElements\":[{\"id\":\"de1\"}]," +
+                "\"programStages\":[{\"id\":\"s1\"},{\"id\":\"s2\"}]}"));
+
+        metadataApiClient.getMetadata(new HashSet<>(Arrays.asList("p1")), consumers);
+
+        assertEquals(1, programBatches.size());
+        assertEquals("p1", programBatches.get(0).get(0).getUId());
+        assertEquals(1, stageBatches.size());
+        assertEquals(2, stageBatches.get(0).size());
+        assertEquals("s2", stageBatches.get(0).get(1).getUId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedResourcesAreRejected() {
+        consumers.put(ResourceType.ORGANISATION_UNITS, consumers.get(ResourceType.PROGRAMS));
+
+        metadataApiClient.getMetadata(new HashSet<>(Arrays.asList("p1")), consumers);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execution of a single {@link DhisFunction} with already evaluated parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DhisFunctionBenchmark {
+
+    @Param({"d2:daysBetween", "d2:weeksBetween", "d2:monthsBetween", "d2:addDays",
+            "d2:floor", "d2:round", "d2:hasValue", "d2:count", "d2:concatenate",
+            "d2:split", "d2:validatePattern"})
+    public String functionName;
+
+    private DhisFunction function;
+    private List<String> parameters;
+    private RuleEngineVariableValueMap valueMap;
+
+    @Setup
+    public void setUp() {
+        List<DataElement> dataElements = RuleEngineFixtures.createDataElements();
+        Event currentEvent = RuleEngineFixtures.createCurrentEvent(dataElements);
+
+        valueMap = new RuleEngineVariableValueMap(
+                RuleEngineFixtures.createVariables(dataElements), currentEvent,
+                RuleEngineFixtures.createEvents(10, dataElements));
+        function = DhisFunction.getDhisFunction(functionName);
+        parameters = createParameters(functionName);
+    }
+
+    private static List<String> createParameters(String functionName) {
+        switch (functionName) {
+            case "d2:daysBetween":
+            case "d2:weeksBetween":
+            case "d2:monthsBetween":
+                return Arrays.asList("2016-01-01", "2016-06-30");
+            case "d2:addDays":
+                return Arrays.asList("2016-01-01", "45");
+            case "d2:floor":
+            case "d2:round":
+                return Arrays.asList("17.8");
+            case "d2:hasValue":
+                return Arrays.asList("'current_int0'");
+            case "d2:count":
+                return Arrays.asList("'newest_int0'");
+            case "d2:concatenate":
+                return Arrays.asList("first", "second", "17");
+            case "d2:split":
+                return Arrays.asList("a;b;c;d", ";", "2");
+            case "d2:validatePattern":
+                return Arrays.asList("AB-12345", "[A-Z]{2}-[0-9]+");
+            default:
+                throw new IllegalArgumentException("No parameters for " + functionName);
+        }
+    }
+
+    @Benchmark
+    public String execute() {
+        return function.execute(parameters, valueMap, functionName);
+    }
+}
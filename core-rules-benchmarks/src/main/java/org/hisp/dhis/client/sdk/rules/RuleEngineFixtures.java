@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.client.sdk.models.dataelement.ValueType;
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.hisp.dhis.client.sdk.models.program.ProgramRule;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleAction;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleActionType;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariable;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariableSourceType;
+import org.hisp.dhis.client.sdk.models.program.ProgramStage;
+import org.hisp.dhis.client.sdk.models.trackedentity.TrackedEntityDataValue;
+import org.joda.time.DateTime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic, but deterministic metadata and events for benchmarks. Every
+ * data element gets a numeric and a text variant, and each of them is exposed through
+ * current event, newest event, newest event in stage and previous event variables.
+ */
+final class RuleEngineFixtures {
+    static final int DATA_ELEMENT_COUNT = 20;
+    static final String PROGRAM_STAGE = "programStage";
+
+    private static final long SEED = 42L;
+
+    private RuleEngineFixtures() {
+        // no instances
+    }
+
+    static List<DataElement> createDataElements() {
+        List<DataElement> dataElements = new ArrayList<>();
+        for (int i = 0; i < DATA_ELEMENT_COUNT; i++) {
+            dataElements.add(createDataElement("int" + i, ValueType.INTEGER));
+            dataElements.add(createDataElement("text" + i, ValueType.TEXT));
+        }
+        return dataElements;
+    }
+
+    private static DataElement createDataElement(String uid, ValueType valueType) {
+        DataElement dataElement = new DataElement();
+        dataElement.setUId(uid);
+        dataElement.setDisplayName(uid);
+        dataElement.setValueType(valueType);
+        return dataElement;
+    }
+
+    static List<ProgramRuleVariable> createVariables(List<DataElement> dataElements) {
+        ProgramStage programStage = new ProgramStage();
+        programStage.setUId(PROGRAM_STAGE);
+
+        List<ProgramRuleVariable> variables = new ArrayList<>();
+        for (DataElement dataElement : dataElements) {
+            String uid = dataElement.getUId();
+            variables.add(createVariable("current_" + uid, dataElement,
+                    ProgramRuleVariableSourceType.DATAELEMENT_CURRENT_EVENT));
+            variables.add(createVariable("newest_" + uid, dataElement,
+                    ProgramRuleVariableSourceType.DATAELEMENT_NEWEST_EVENT_PROGRAM));
+            variables.add(createVariable("previous_" + uid, dataElement,
+                    ProgramRuleVariableSourceType.DATAELEMENT_PREVIOUS_EVENT));
+
+            ProgramRuleVariable stageVariable = createVariable("stage_" + uid, dataElement,
+                    ProgramRuleVariableSourceType.DATAELEMENT_NEWEST_EVENT_PROGRAM_STAGE);
+            stageVariable.setProgramStage(programStage);
+            variables.add(stageVariable);
+        }
+
+        for (int i = 0; i < DATA_ELEMENT_COUNT; i++) {
+            variables.add(createVariable("calculated" + i, null,
+                    ProgramRuleVariableSourceType.CALCULATED_VALUE));
+        }
+
+        return variables;
+    }
+
+    private static ProgramRuleVariable createVariable(
+            String name, DataElement dataElement, ProgramRuleVariableSourceType sourceType) {
+        ProgramRuleVariable variable = new ProgramRuleVariable();
+        variable.setUId(name);
+        variable.setDisplayName(name);
+        variable.setDataElement(dataElement);
+        variable.setSourceType(sourceType);
+        return variable;
+    }
+
+    /**
+     * Creates rules from a fixed set of condition templates, which covers plain
+     * comparisons, boolean operators, d2: functions, environment variables and
+     * ASSIGN actions writing to calculated values.
+     */
+    static List<ProgramRule> createRules(int count) {
+        List<ProgramRule> rules = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int index = i % DATA_ELEMENT_COUNT;
+            String number = "int" + index;
+            String text = "text" + index;
+
+            switch (i % 6) {
+                case 0:
+                    rules.add(createRule(i, "#{current_" + number + "} > 10",
+                            ProgramRuleActionType.SHOWWARNING, null, null));
+                    break;
+                case 1:
+                    rules.add(createRule(i, "d2:hasValue('current_" + number + "') && " +
+                                    "#{newest_" + number + "} >= #{previous_" + number + "}",
+                            ProgramRuleActionType.SHOWERROR, null, null));
+                    break;
+                case 2:
+                    rules.add(createRule(i, "d2:floor(#{stage_" + number + "} / 3) == 2",
+                            ProgramRuleActionType.HIDEFIELD, null, null));
+                    break;
+                case 3:
+                    rules.add(createRule(i, "d2:daysBetween(V{event_date}, V{current_date})" +
+                                    " > 30 || #{current_" + text + "} == 'yes'",
+                            ProgramRuleActionType.DISPLAYTEXT, null, null));
+                    break;
+                case 4:
+                    rules.add(createRule(i, "true", ProgramRuleActionType.ASSIGN,
+                            "#{calculated" + index + "}", "#{current_" + number + "} * 2"));
+                    break;
+                default:
+                    rules.add(createRule(i, "#{calculated" + index + "} > 20 && " +
+                                    "!(#{newest_" + text + "} == 'no')",
+                            ProgramRuleActionType.SHOWWARNING, null, null));
+                    break;
+            }
+        }
+        return rules;
+    }
+
+    private static ProgramRule createRule(int index, String condition,
+                                          ProgramRuleActionType actionType,
+                                          String content, String data) {
+        ProgramRule rule = new ProgramRule();
+        rule.setUId("rule" + index);
+        rule.setCondition(condition);
+        rule.setPriority(actionType == ProgramRuleActionType.ASSIGN ? 1 : null);
+
+        ProgramRuleAction action = new ProgramRuleAction();
+        action.setUId("action" + index);
+        action.setProgramRuleActionType(actionType);
+        action.setContent(content != null ? content : "message " + index);
+        action.setData(data);
+        action.setProgramRule(rule);
+
+        rule.setProgramRuleActions(Collections.singletonList(action));
+        return rule;
+    }
+
+    /**
+     * @return events with values for most of data elements, one event per day.
+     */
+    static List<Event> createEvents(int count, List<DataElement> dataElements) {
+        Random random = new Random(SEED);
+        DateTime today = DateTime.now().withTimeAtStartOfDay();
+
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(createEvent("event" + i, today.minusDays(count - i),
+                    dataElements, random));
+        }
+        return events;
+    }
+
+    static Event createEvent(String uid, DateTime eventDate,
+                             List<DataElement> dataElements, Random random) {
+        Event event = new Event();
+        event.setUId(uid);
+        event.setEventDate(eventDate);
+        event.setProgramStage(random.nextBoolean() ? PROGRAM_STAGE : "otherStage");
+
+        List<TrackedEntityDataValue> dataValues = new ArrayList<>();
+        for (DataElement dataElement : dataElements) {
+            // leave some of values empty
+            if (random.nextInt(10) == 0) {
+                continue;
+            }
+
+            TrackedEntityDataValue dataValue = new TrackedEntityDataValue();
+            dataValue.setDataElement(dataElement.getUId());
+            dataValue.setValue(dataElement.getValueType() == ValueType.INTEGER ?
+                    String.valueOf(random.nextInt(40)) : (random.nextBoolean() ? "yes" : "no"));
+            dataValues.add(dataValue);
+        }
+        event.setDataValues(dataValues);
+        return event;
+    }
+
+    static Event createCurrentEvent(List<DataElement> dataElements) {
+        return createEvent("currentEvent", DateTime.now().withTimeAtStartOfDay(),
+                dataElements, new Random(SEED + 1));
+    }
+}
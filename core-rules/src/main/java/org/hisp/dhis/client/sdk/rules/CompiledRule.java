@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.program.ProgramRule;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleAction;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleActionType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link ProgramRule} together with compiled condition and action data expressions.
+ * Instances are created once by {@link RuleEngine} and reused for every execution.
+ */
+/* Part of RuleEngine implementation detail. Hence, class visibility defined as package private */
+class CompiledRule {
+    public static final Comparator<CompiledRule> PRIORITY_COMPARATOR =
+            new Comparator<CompiledRule>() {
+                @Override
+                public int compare(CompiledRule first, CompiledRule second) {
+                    return ProgramRule.PRIORITY_COMPARATOR.compare(
+                            first.getProgramRule(), second.getProgramRule());
+                }
+            };
+
+    private final ProgramRule programRule;
+    private final RuleExpression condition;
+    private final List<CompiledAction> actions;
+
+    // variables read by condition and actions, null if they cannot be determined
+    private final Set<String> variables;
+
+    // variables written by ASSIGN actions
+    private final Set<String> assignedVariables;
+
+    // slots the rule was compiled against and slots of variables read by the rule,
+    // null if variables cannot be determined
+    private final RuleVariableSlots slots;
+    private final int[] variableSlots;
+
+    private CompiledRule(ProgramRule programRule, RuleExpression condition,
+                         List<CompiledAction> actions, RuleVariableSlots slots) {
+        this.programRule = programRule;
+        this.condition = condition;
+        this.actions = actions;
+        this.variables = collectVariables(condition, actions);
+        this.assignedVariables = collectAssignedVariables(actions);
+        this.slots = slots;
+        this.variableSlots = resolveSlots(variables, slots);
+    }
+
+    private static Set<String> collectVariables(RuleExpression condition,
+                                                List<CompiledAction> actions) {
+        Set<String> variables = new HashSet<>();
+        if (!condition.collectVariables(variables)) {
+            return null;
+        }
+
+        for (CompiledAction action : actions) {
+            if (!action.getData().collectVariables(variables)) {
+                return null;
+            }
+        }
+
+        return Collections.unmodifiableSet(variables);
+    }
+
+    private static int[] resolveSlots(Set<String> variables, RuleVariableSlots slots) {
+        if (variables == null || slots == null) {
+            return null;
+        }
+
+        int[] variableSlots = new int[variables.size()];
+        int index = 0;
+        for (String variable : variables) {
+            int slot = slots.getSlot(variable);
+
+            // names which are not program rule variables do not have values
+            // and therefore can not change the outcome of the rule
+            if (slot >= 0) {
+                variableSlots[index++] = slot;
+            }
+        }
+
+        variableSlots = Arrays.copyOf(variableSlots, index);
+        Arrays.sort(variableSlots);
+        return variableSlots;
+    }
+
+    private static Set<String> collectAssignedVariables(List<CompiledAction> actions) {
+        Set<String> assignedVariables = new HashSet<>();
+        for (CompiledAction action : actions) {
+            String variableName = action.getAssignedVariable();
+            if (variableName != null) {
+                assignedVariables.add(variableName);
+            }
+        }
+
+        return Collections.unmodifiableSet(assignedVariables);
+    }
+
+    public static CompiledRule compile(ProgramRule programRule, RuleVariableSlots slots) {
+        return compile(programRule, slots, null);
+    }
+
+    /**
+     * @param constants values of constants by uid which are inlined into expressions.
+     */
+    public static CompiledRule compile(ProgramRule programRule, RuleVariableSlots slots,
+                                       Map<String, String> constants) {
+        List<CompiledAction> actions = new ArrayList<>();
+        if (programRule.getProgramRuleActions() != null) {
+            for (ProgramRuleAction action : programRule.getProgramRuleActions()) {
+                actions.add(new CompiledAction(action, RuleExpression.compile(
+                        action.getData(), slots, constants), slots));
+            }
+        }
+
+        return new CompiledRule(programRule, RuleExpression.compile(programRule.getCondition(),
+                slots, constants), Collections.unmodifiableList(actions), slots);
+    }
+
+    /**
+     * @param slots slots of variables the expressions are compiled against.
+     * @return compiled rules sorted by priority.
+     */
+    public static List<CompiledRule> compile(List<ProgramRule> programRules,
+                                             RuleVariableSlots slots) {
+        return compile(programRules, slots, null);
+    }
+
+    /**
+     * Compiles rules with constants inlined into expressions. Rules which
+     * conditions are evaluated to false at compile time are left out.
+     *
+     * @param slots     slots of variables the expressions are compiled against.
+     * @param constants values of constants by uid, can be null.
+     * @return compiled rules sorted by priority.
+     */
+    public static List<CompiledRule> compile(List<ProgramRule> programRules,
+                                             RuleVariableSlots slots,
+                                             Map<String, String> constants) {
+        List<CompiledRule> compiledRules = new ArrayList<>();
+        if (programRules != null) {
+            for (ProgramRule programRule : programRules) {
+                CompiledRule compiledRule = compile(programRule, slots, constants);
+                if (!compiledRule.isNeverTrue()) {
+                    compiledRules.add(compiledRule);
+                }
+            }
+        }
+
+        Collections.sort(compiledRules, PRIORITY_COMPARATOR);
+        return Collections.unmodifiableList(compiledRules);
+    }
+
+    public ProgramRule getProgramRule() {
+        return programRule;
+    }
+
+    /**
+     * @return true if the condition is evaluated to false at compile
+     * time, hence the rule can never have any effects.
+     */
+    public boolean isNeverTrue() {
+        return condition.isConstant() && !condition.isTrue(null);
+    }
+
+    /**
+     * @return uid of the program stage the rule is limited to, or null.
+     */
+    public String getProgramStageUid() {
+        return programRule.getProgramStage() != null ?
+                programRule.getProgramStage().getUId() : null;
+    }
+
+    /**
+     * @return true if the rule has to be evaluated for events of the given program stage.
+     * Rules which are not limited to a program stage apply to all events, and all rules
+     * apply to events without program stage.
+     */
+    public boolean isApplicableTo(String programStageUid) {
+        String ruleProgramStageUid = getProgramStageUid();
+        return ruleProgramStageUid == null || programStageUid == null ||
+                ruleProgramStageUid.equals(programStageUid);
+    }
+
+    public RuleExpression getCondition() {
+        return condition;
+    }
+
+    public List<CompiledAction> getActions() {
+        return actions;
+    }
+
+    /**
+     * @return names of variables which are read by this rule, or null if the rule
+     * contains expressions which could not be compiled.
+     */
+    public Set<String> getVariables() {
+        return variables;
+    }
+
+    public Set<String> getAssignedVariables() {
+        return assignedVariables;
+    }
+
+    /**
+     * @return slots of variables read by this rule in the given value map, or null if
+     * they are not known. The returned array must not be modified.
+     */
+    public int[] getVariableSlots(RuleEngineVariableValueMap valueMap) {
+        return valueMap.getSlots() == slots ? variableSlots : null;
+    }
+
+    static class CompiledAction {
+        private final ProgramRuleAction action;
+        private final RuleExpression data;
+        private final RuleVariableSlots slots;
+
+        // variable assigned by ASSIGN action and its slot, if any
+        private final String assignedVariable;
+        private final int assignedSlot;
+
+        CompiledAction(ProgramRuleAction action, RuleExpression data, RuleVariableSlots slots) {
+            this.action = action;
+            this.data = data;
+            this.slots = slots;
+            this.assignedVariable = parseAssignedVariable(action);
+            this.assignedSlot = slots != null && assignedVariable != null ?
+                    slots.getSlot(assignedVariable) : -1;
+        }
+
+        private static String parseAssignedVariable(ProgramRuleAction action) {
+            if (action.getProgramRuleActionType() == ProgramRuleActionType.ASSIGN &&
+                    action.getContent() != null && action.getContent().contains("#{")) {
+                return action.getContent().replace("#{", "").replace("}", "");
+            }
+            return null;
+        }
+
+        public ProgramRuleAction getAction() {
+            return action;
+        }
+
+        public RuleExpression getData() {
+            return data;
+        }
+
+        /**
+         * @return name of the variable assigned by ASSIGN action, otherwise null.
+         */
+        public String getAssignedVariable() {
+            return assignedVariable;
+        }
+
+        /**
+         * @return slot of the variable assigned by ASSIGN action in the given
+         * value map, or -1 if there is no such variable.
+         */
+        public int getAssignedSlot(RuleEngineVariableValueMap valueMap) {
+            if (assignedVariable == null) {
+                return -1;
+            }
+            return valueMap.getSlots() == slots ?
+                    assignedSlot : valueMap.getSlot(assignedVariable);
+        }
+    }
+}
@@ -1,106 +1,401 @@
 package org.hisp.dhis.client.sdk.rules;
 
-import org.apache.commons.lang3.math.NumberUtils;
-import java.time.format.DateTimeFormatter;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.joda.time.Months;
+import org.joda.time.Years;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 
-import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-
-import sun.reflect.generics.reflectiveObjects.NotImplementedException;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * Created by markusbekken on 20.05.2016.
  */
 abstract class DhisFunction {
+    private static final DateTimeFormatter DATE_FORMATTER =
+            DateTimeFormat.forPattern(RuleEngineVariableValueMap.DATE_PATTERN);
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    // number of compiled patterns kept by d2:validatePattern
+    private static final int PATTERN_CACHE_SIZE = 64;
+
+    // compiled patterns, or exceptions thrown by compilation of invalid ones
+    private static final Map<String, Object> patternCache =
+            new LinkedHashMap<String, Object>(PATTERN_CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                    return size() > PATTERN_CACHE_SIZE;
+                }
+            };
 
     private static List<DhisFunction> dhisFunctions = Arrays.asList(
         new DhisFunction("d2:daysBetween", 2) {
             @Override
-            public String execute(List<String> parameters, RuleEngineVariableValueMap valueMap, String expression) {
-                return String.valueOf(getIntervalsBetween(1, parameters, expression));
+            public RuleValue evaluate(FunctionArguments arguments) {
+                return RuleValue.of(getDaysBetween(arguments));
             }
         },
         new DhisFunction("d2:weeksBetween", 2) {
             @Override
-            public String execute(List<String> parameters, RuleEngineVariableValueMap valueMap, String expression) {
-                return String.valueOf(getIntervalsBetween(7, parameters, expression));
+            public RuleValue evaluate(FunctionArguments arguments) {
+                return RuleValue.of(getDaysBetween(arguments) / 7);
             }
         },
         new DhisFunction("d2:monthsBetween", 2) {
             @Override
-            public String execute(List<String> parameters, RuleEngineVariableValueMap valueMap, String expression) {
-                throw new NotImplementedException();
+            public RuleValue evaluate(FunctionArguments arguments) {
+                LocalDate start = toLocalDate(arguments.getValue(0));
+                LocalDate end = toLocalDate(arguments.getValue(1));
+                if (start == null || end == null) {
+                    return RuleValue.of(0);
+                }
+                return RuleValue.of(Months.monthsBetween(start, end).getMonths());
             }
         },
         new DhisFunction("d2:yearsBetween", 2) {
             @Override
-            public String execute(List<String> parameters, RuleEngineVariableValueMap valueMap, String expression) {
-                throw new NotImplementedException();
+            public RuleValue evaluate(FunctionArguments arguments) {
+                LocalDate start = toLocalDate(arguments.getValue(0));
+                LocalDate end = toLocalDate(arguments.getValue(1));
+                if (start == null || end == null) {
+                    return RuleValue.of(0);
+                }
+                return RuleValue.of(Years.yearsBetween(start, end).getYears());
+            }
+        },
+        new DhisFunction("d2:addDays", 2) {
+            @Override
+            public RuleValue evaluate(FunctionArguments arguments) {
+                LocalDate date = toLocalDate(arguments.getValue(0));
+                if (date == null) {
+                    return RuleValue.of("");
+                }
+                String newDate = DATE_FORMATTER.print(
+                        date.plusDays((int) arguments.getNumber(1)));
+                return RuleValue.date(newDate);
             }
         },
         new DhisFunction("d2:floor", 1) {
             @Override
-            public String execute(List<String> parameters, RuleEngineVariableValueMap valueMap, String expression) {
-                Integer floored = (int) NumberUtils.toDouble(parameters.get(0));
-                return floored.toString();
+            public RuleValue evaluate(FunctionArguments arguments) {
+                return RuleValue.of((long) Math.floor(arguments.getNumber(0)));
             }
-        }/*,
-        new DhisFunction("d2:modulus", 2),
-        new DhisFunction("d2:concatenate", null),
-        new DhisFunction("d2:addDays", 2),
-        new DhisFunction("d2:zing", 1),
-        new DhisFunction("d2:oizp", 1),
-        new DhisFunction("d2:count", 1),
-        new DhisFunction("d2:countIfZeroPos", 1),
-        new DhisFunction("d2:countIfValue", 2),
-        new DhisFunction("d2:ceil", 1),
-        new DhisFunction("d2:round", 1)*/,
-            new DhisFunction("d2:hasValue", 1) {
-                @Override
-                public String execute(List<String> parameters, RuleEngineVariableValueMap valueMap, String expression) {
-                    String variableName = parameters.get(0).replace("'","");
-                    ProgramRuleVariableValue variable = valueMap.getProgramRuleVariableValue(variableName);
-                    if(variable != null) {
-                        return variable.hasValue() ? "true" : "false";
+        },
+        new DhisFunction("d2:ceil", 1) {
+            @Override
+            public RuleValue evaluate(FunctionArguments arguments) {
+                return RuleValue.of((long) Math.ceil(arguments.getNumber(0)));
+            }
+        },
+        new DhisFunction("d2:round", 1) {
+            @Override
+            public RuleValue evaluate(FunctionArguments arguments) {
+                return RuleValue.of(Math.round(arguments.getNumber(0)));
+            }
+        },
+        new DhisFunction("d2:modulus", 2) {
+            @Override
+            public RuleValue evaluate(FunctionArguments arguments) {
+                RuleValue dividend = arguments.getValue(0);
+                RuleValue divisor = arguments.getValue(1);
+                if (dividend.isIntegral() && divisor.isIntegral() && divisor.longValue() != 0) {
+                    return RuleValue.of(dividend.longValue() % divisor.longValue());
+                }
+                return RuleValue.of(FunctionArguments.toNumber(dividend) %
+                        FunctionArguments.toNumber(divisor));
+            }
+        },
+        new DhisFunction("d2:zing", 1) {
+            @Override
+            public RuleValue evaluate(FunctionArguments arguments) {
+                RuleValue number = arguments.getValue(0);
+                return FunctionArguments.toNumber(number) < 0 ? RuleValue.of(0) : number;
+            }
+        },
+        new DhisFunction("d2:oizp", 1) {
+            @Override
+            public RuleValue evaluate(FunctionArguments arguments) {
+                return RuleValue.of(arguments.getNumber(0) < 0 ? 0 : 1);
+            }
+        },
+        new DhisFunction("d2:concatenate", null) {
+            @Override
+            public RuleValue evaluate(FunctionArguments arguments) {
+                StringBuilder builder = new StringBuilder();
+                for (int index = 0; index < arguments.size(); index++) {
+                    builder.append(arguments.getString(index));
+                }
+                return RuleValue.of(builder.toString());
+            }
+        },
+        new DhisFunction("d2:count", 1, true) {
+            @Override
+            public RuleValue evaluate(FunctionArguments arguments) {
+                int slot = getVariableSlot(arguments, 0);
+                RuleEngineVariableValueMap valueMap = arguments.getValueMap();
+                if (slot < 0 || !valueMap.hasValue(slot)) {
+                    return RuleValue.of(0);
+                }
+
+                // variables which do not read other events count as one
+                return RuleValue.of(valueMap.getAllValues(slot).size());
+            }
+        },
+        new DhisFunction("d2:countIfZeroPos", 1, true) {
+            @Override
+            public RuleValue evaluate(FunctionArguments arguments) {
+                int slot = getVariableSlot(arguments, 0);
+                RuleEngineVariableValueMap valueMap = arguments.getValueMap();
+                if (slot < 0 || !valueMap.hasValue(slot)) {
+                    return RuleValue.of(0);
+                }
+
+                int count = 0;
+                for (String value : valueMap.getAllValues(slot)) {
+                    RuleValue number = value != null ? RuleValue.parseNumber(value.trim()) : null;
+                    if (number != null && number.doubleValue() >= 0) {
+                        count++;
                     }
-                    else {
-                        return "false";
+                }
+                return RuleValue.of(count);
+            }
+        },
+        new DhisFunction("d2:countIfValue", 2, true) {
+            @Override
+            public RuleValue evaluate(FunctionArguments arguments) {
+                int slot = getVariableSlot(arguments, 0);
+                RuleEngineVariableValueMap valueMap = arguments.getValueMap();
+                if (slot < 0 || !valueMap.hasValue(slot)) {
+                    return RuleValue.of(0);
+                }
+
+                RuleValue valueToCompare = arguments.getValue(1);
+                int count = 0;
+                for (String value : valueMap.getAllValues(slot)) {
+                    if (isEqual(valueToCompare, value)) {
+                        count++;
                     }
                 }
-            }/*,
-        new DhisFunction("d2:lastEventDate", 1),
-        new DhisFunction("d2:validatePattern", 2),
-        new DhisFunction("d2:addControlDigits", 1),
-        new DhisFunction("d2:checkControlDigits", 1),
-        new DhisFunction("d2:left", 2),
-        new DhisFunction("d2:right", 2),
-        new DhisFunction("d2:substring", 3),
-        new DhisFunction("d2:split", 3),
-        new DhisFunction("d2:length", 1)*/);
-    //TODO: Implement the rest of the functions
-
-    private static int getIntervalsBetween(int daysInInterval, List<String> parameters, String expression) {
-        DateTimeFormatter f =  DateTimeFormatter.ofPattern(RuleEngineVariableValueMap.DATE_PATTERN);
-
-        LocalDate d1;
-        LocalDate d2;
-        try {
-            d1 = LocalDate.parse(parameters.get(0), f);
-            d2 = LocalDate.parse(parameters.get(1), f);
-            return new Long((d2.toEpochDay() - d1.toEpochDay()) / daysInInterval).intValue();
+                return RuleValue.of(count);
+            }
+        },
+        new DhisFunction("d2:hasValue", 1, true) {
+            @Override
+            public RuleValue evaluate(FunctionArguments arguments) {
+                int slot = getVariableSlot(arguments, 0);
+                return RuleValue.of(slot >= 0 && arguments.getValueMap().hasValue(slot));
+            }
+        },
+        new DhisFunction("d2:lastEventDate", 1, true) {
+            @Override
+            public RuleValue evaluate(FunctionArguments arguments) {
+                int slot = getVariableSlot(arguments, 0);
+                String eventDate = slot >= 0 ?
+                        arguments.getValueMap().getValueEventDate(slot) : null;
+                return eventDate != null ? RuleValue.date(eventDate) : RuleValue.of("");
+            }
+        },
+        new DhisFunction("d2:validatePattern", 2) {
+            @Override
+            public RuleValue evaluate(FunctionArguments arguments) {
+                String input = arguments.getString(0);
+                Pattern pattern = getPattern(arguments.getString(1), arguments.getValueMap());
+                if (pattern == null) {
+                    return RuleValue.FALSE;
+                }
+
+                // the first match has to cover the whole input
+                Matcher matcher = pattern.matcher(input);
+                return RuleValue.of(matcher.find() && matcher.start() == 0 &&
+                        matcher.end() == input.length());
+            }
+        },
+        new DhisFunction("d2:left", 2) {
+            @Override
+            public RuleValue evaluate(FunctionArguments arguments) {
+                String text = arguments.getString(0);
+                int length = clamp((int) arguments.getNumber(1), 0, text.length());
+                return RuleValue.of(text.substring(0, length));
+            }
+        },
+        new DhisFunction("d2:right", 2) {
+            @Override
+            public RuleValue evaluate(FunctionArguments arguments) {
+                String text = arguments.getString(0);
+                int length = clamp((int) arguments.getNumber(1), 0, text.length());
+                return RuleValue.of(text.substring(text.length() - length));
+            }
+        },
+        new DhisFunction("d2:substring", 3) {
+            @Override
+            public RuleValue evaluate(FunctionArguments arguments) {
+                String text = arguments.getString(0);
+                int start = clamp((int) arguments.getNumber(1), 0, text.length());
+                int end = clamp((int) arguments.getNumber(2), 0, text.length());
+                return RuleValue.of(text.substring(Math.min(start, end), Math.max(start, end)));
+            }
+        },
+        new DhisFunction("d2:split", 3) {
+            @Override
+            public RuleValue evaluate(FunctionArguments arguments) {
+                String text = arguments.getString(0);
+                String delimiter = arguments.getString(1);
+                int index = (int) arguments.getNumber(2);
+
+                int start = 0;
+                for (int part = 0; part < index && start >= 0 && delimiter.length() > 0; part++) {
+                    int next = text.indexOf(delimiter, start);
+                    start = next >= 0 ? next + delimiter.length() : -1;
+                }
 
+                if (delimiter.length() == 0) {
+                    // empty delimiter splits text into characters
+                    return RuleValue.of(index >= 0 && index < text.length() ?
+                            text.substring(index, index + 1) : "");
+                } else if (index < 0 || start < 0) {
+                    return RuleValue.of("");
+                }
+
+                int end = text.indexOf(delimiter, start);
+                return RuleValue.of(end >= 0 ? text.substring(start, end) : text.substring(start));
+            }
+        },
+        new DhisFunction("d2:length", 1) {
+            @Override
+            public RuleValue evaluate(FunctionArguments arguments) {
+                return RuleValue.of(arguments.getString(0).length());
+            }
+        });
+        // d2:addControlDigits and d2:checkControlDigits are not implemented yet
+
+    private static final Map<String, DhisFunction> dhisFunctionsByName = mapByName(dhisFunctions);
+
+    private static Map<String, DhisFunction> mapByName(List<DhisFunction> functions) {
+        Map<String, DhisFunction> functionMap = new HashMap<>();
+        for (DhisFunction function : functions) {
+            functionMap.put(function.getName(), function);
         }
-        catch (Exception e) {
+        return Collections.unmodifiableMap(functionMap);
+    }
+
+    private static long getDaysBetween(FunctionArguments arguments) {
+        long start = toEpochDay(arguments.getValue(0));
+        long end = toEpochDay(arguments.getValue(1));
+        if (start == RuleValue.INVALID_DATE || end == RuleValue.INVALID_DATE) {
             //TODO: Log the error and the expression
             return 0;
         }
+        return end - start;
+    }
+
+    private static long toEpochDay(RuleValue value) {
+        if (value.epochDay() != RuleValue.INVALID_DATE) {
+            return value.epochDay();
+        }
+
+        long epochDay = RuleValue.parseEpochDay(value.toString());
+        if (epochDay == RuleValue.INVALID_DATE) {
+            LocalDate date = toLocalDate(value);
+            if (date != null) {
+                epochDay = date.toDateTimeAtStartOfDay(DateTimeZone.UTC).getMillis() / MILLIS_PER_DAY;
+            }
+        }
+        return epochDay;
+    }
+
+    /**
+     * Parses date with the cached formatter. Values with time (like DATETIME
+     * values) are accepted, but only their date part is taken into account.
+     *
+     * @return date, or null if the value is not a date.
+     */
+    private static LocalDate toLocalDate(RuleValue value) {
+        String text = value.toString().trim();
+        if (text.length() > 10 && (text.charAt(10) == 'T' || text.charAt(10) == ' ')) {
+            text = text.substring(0, 10);
+        }
+
+        try {
+            return DATE_FORMATTER.parseLocalDate(text);
+        } catch (IllegalArgumentException exception) {
+            return null;
+        }
+    }
+
+    private static int getVariableSlot(FunctionArguments arguments, int index) {
+        return arguments.getValueMap().getSlot(arguments.getVariableName(index));
+    }
+
+    private static boolean isEqual(RuleValue expected, String value) {
+        if (value == null) {
+            return false;
+        }
+
+        if (expected.isNumber()) {
+            RuleValue number = RuleValue.parseNumber(value.trim());
+            return number != null && number.doubleValue() == expected.doubleValue();
+        }
+        return expected.toString().equals(value);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Returns compiled pattern, or null if the pattern is invalid. Invalid patterns are
+     * reported to the listener of the value map (if there is one) on each call.
+     */
+    private static Pattern getPattern(String regex, RuleEngineVariableValueMap valueMap) {
+        Object pattern;
+        synchronized (patternCache) {
+            pattern = patternCache.get(regex);
+            if (pattern == null) {
+                try {
+                    pattern = Pattern.compile(regex);
+                } catch (PatternSyntaxException exception) {
+                    pattern = exception;
+                }
+
+                // invalid patterns are cached as well, in order not to compile them again
+                patternCache.put(regex, pattern);
+            }
+        }
+
+        if (pattern instanceof Pattern) {
+            return (Pattern) pattern;
+        }
+
+        RuleEngineListener listener = valueMap != null ? valueMap.getListener() : null;
+        if (listener != null) {
+            listener.onEvaluationFailed(valueMap.getCurrentRule(),
+                    regex, (PatternSyntaxException) pattern);
+        }
+        return null;
     }
 
     public static List<DhisFunction> getDhisFunctions() {
         return dhisFunctions;
     }
 
+    /**
+     * Returns function registered under given name (including d2: prefix),
+     * or null if there is no such function.
+     */
+    public static DhisFunction getDhisFunction(String name) {
+        return dhisFunctionsByName.get(name);
+    }
+
     /**
      * else if(dhisFunction.getName() === "d2:daysBetween") {
      var firstdate = $filter('trimquotes')(parameters[0]);
@@ -469,10 +764,20 @@ abstract class DhisFunction {
 
     private String name;
     private Integer parameters;
+    private boolean variableArgument;
 
     public DhisFunction(String name, Integer parameters){
+        this(name, parameters, false);
+    }
+
+    /**
+     * @param variableArgument whether the first argument is the name of a variable
+     *                         (e.g. d2:hasValue('variable')) rather than a value.
+     */
+    DhisFunction(String name, Integer parameters, boolean variableArgument) {
         this.name = name;
         this.parameters = parameters;
+        this.variableArgument = variableArgument;
     }
 
     public String getName() {
@@ -483,5 +788,24 @@ abstract class DhisFunction {
         return parameters;
     }
 
-    public abstract String execute(List<String> parameters, RuleEngineVariableValueMap valueMap, String expression);
-}
\ No newline at end of file
+    /**
+     * @return true if the argument at the given index refers to a variable by name.
+     */
+    boolean isVariableArgument(int index) {
+        return variableArgument && index == 0;
+    }
+
+    /**
+     * Executes the function with typed arguments.
+     */
+    public abstract RuleValue evaluate(FunctionArguments arguments);
+
+    /**
+     * Executes the function with arguments which have been already evaluated.
+     *
+     * @return result in form which can be substituted into expression text.
+     */
+    public String execute(List<String> parameters, RuleEngineVariableValueMap valueMap, String expression) {
+        return evaluate(new FunctionArguments.Evaluated(parameters, valueMap)).toToken();
+    }
+}
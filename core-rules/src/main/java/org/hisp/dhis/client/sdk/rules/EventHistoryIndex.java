@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.hisp.dhis.client.sdk.models.trackedentity.TrackedEntityDataValue;
+import org.joda.time.DateTime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Data values of events of one enrollment, grouped by data element and sorted by event
+ * date. The index is meant to be built once per enrollment and passed to
+ * {@link RuleEngine#execute(Event, EventHistoryIndex)} for each of its events: newest
+ * values (also per program stage) are then read in constant time, and values of previous
+ * events are found with a binary search.
+ * <p>
+ * The index does not modify events it was built from and is immutable, so it can be
+ * shared between threads. When an event is saved, {@link #update(Event)} returns an
+ * updated index which shares history of all data elements not touched by the event.
+ */
+public class EventHistoryIndex {
+    // orders events by event date, events without date come first
+    private static final Comparator<Event> EVENT_DATE_ORDER = new Comparator<Event>() {
+        @Override
+        public int compare(Event first, Event second) {
+            long firstDate = getTime(first);
+            long secondDate = getTime(second);
+            return firstDate < secondDate ? -1 : (firstDate == secondDate ? 0 : 1);
+        }
+    };
+
+    private final List<Event> events;
+    private final Map<String, ValueHistory> histories;
+
+    public EventHistoryIndex(List<Event> events) {
+        this.histories = new HashMap<>();
+
+        if (events == null || events.isEmpty()) {
+            this.events = Collections.emptyList();
+            return;
+        }
+
+        // events are sorted in a copy, since the list can be shared
+        // with other threads evaluating rules at the same time
+        List<Event> sortedEvents = new ArrayList<>(events);
+        Collections.sort(sortedEvents, EVENT_DATE_ORDER);
+        this.events = Collections.unmodifiableList(sortedEvents);
+
+        Map<String, ValueHistory.Builder> builders = new HashMap<>();
+        for (Event event : sortedEvents) {
+            addValues(event, null, builders);
+        }
+
+        for (Map.Entry<String, ValueHistory.Builder> builder : builders.entrySet()) {
+            histories.put(builder.getKey(), builder.getValue().build());
+        }
+    }
+
+    private EventHistoryIndex(List<Event> events, Map<String, ValueHistory> histories) {
+        this.events = events;
+        this.histories = histories;
+    }
+
+    /**
+     * Adds non empty values of the event to builders of histories.
+     *
+     * @param dataElementUids if not null, only values of given data elements are added.
+     */
+    private static void addValues(Event event, Set<String> dataElementUids,
+                                  Map<String, ValueHistory.Builder> builders) {
+        // if event does not contain values, skip it
+        if (event.getDataValues() == null) {
+            return;
+        }
+
+        for (TrackedEntityDataValue value : event.getDataValues()) {
+            if (dataElementUids != null && !dataElementUids.contains(value.getDataElement())) {
+                continue;
+            }
+
+            if (value.getValue() == null || value.getValue().length() == 0) {
+                continue;
+            }
+
+            ValueHistory.Builder builder = builders.get(value.getDataElement());
+            if (builder == null) {
+                builder = new ValueHistory.Builder();
+                builders.put(value.getDataElement(), builder);
+            }
+
+            // keep track of the event, it is used later to check event date for the
+            // data values (values themselves are not modified as they belong to caller)
+            builder.add(value, event);
+        }
+    }
+
+    /**
+     * Returns index in which values of the given event are replaced with its current
+     * values. Events are matched by uid (or by instance, if the event has no uid yet), and
+     * events which are not part of the index are added to it. Only histories of data
+     * elements which the old or the new version of the event has values for are rebuilt.
+     */
+    public EventHistoryIndex update(Event event) {
+        List<Event> updatedEvents = new ArrayList<>(events.size() + 1);
+        Set<String> dataElementUids = new HashSet<>();
+        collectDataElements(event, dataElementUids);
+
+        for (Event indexedEvent : events) {
+            if (isSameEvent(indexedEvent, event)) {
+                collectDataElements(indexedEvent, dataElementUids);
+            } else {
+                updatedEvents.add(indexedEvent);
+            }
+        }
+
+        // insert after events with the same date, like a stable sort would do
+        int position = updatedEvents.size();
+        while (position > 0 && EVENT_DATE_ORDER.compare(
+                updatedEvents.get(position - 1), event) > 0) {
+            position--;
+        }
+        updatedEvents.add(position, event);
+
+        return rebuild(Collections.unmodifiableList(updatedEvents), dataElementUids);
+    }
+
+    /**
+     * Returns index in which values of the given data element are read again from the
+     * events. Can be used after values of the events have been modified in place.
+     */
+    public EventHistoryIndex refresh(String dataElementUid) {
+        return rebuild(events, Collections.singleton(dataElementUid));
+    }
+
+    private EventHistoryIndex rebuild(List<Event> sortedEvents, Set<String> dataElementUids) {
+        Map<String, ValueHistory.Builder> builders = new HashMap<>();
+        for (Event event : sortedEvents) {
+            addValues(event, dataElementUids, builders);
+        }
+
+        Map<String, ValueHistory> updatedHistories = new HashMap<>(histories);
+        for (String dataElementUid : dataElementUids) {
+            ValueHistory.Builder builder = builders.get(dataElementUid);
+            if (builder != null) {
+                updatedHistories.put(dataElementUid, builder.build());
+            } else {
+                updatedHistories.remove(dataElementUid);
+            }
+        }
+
+        return new EventHistoryIndex(sortedEvents, updatedHistories);
+    }
+
+    private static void collectDataElements(Event event, Set<String> dataElementUids) {
+        if (event.getDataValues() != null) {
+            for (TrackedEntityDataValue value : event.getDataValues()) {
+                dataElementUids.add(value.getDataElement());
+            }
+        }
+    }
+
+    private static boolean isSameEvent(Event first, Event second) {
+        if (first == second) {
+            return true;
+        }
+        return first.getUId() != null && first.getUId().equals(second.getUId());
+    }
+
+    private static long getTime(Event event) {
+        DateTime eventDate = event != null ? event.getEventDate() : null;
+        return eventDate != null ? eventDate.getMillis() : Long.MIN_VALUE;
+    }
+
+    /**
+     * @return events sorted by event date.
+     */
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    /**
+     * @return history of non empty values of given data element,
+     * or null if there are no values.
+     */
+    ValueHistory getHistory(String dataElementUid) {
+        return histories.get(dataElementUid);
+    }
+
+    /**
+     * Non empty values of one data element together with events they belong to,
+     * sorted by event date.
+     */
+    static final class ValueHistory {
+        private final List<TrackedEntityDataValue> values;
+        private final List<Event> events;
+        private final long[] eventDates;
+
+        // position of the newest value of each program stage
+        private final Map<String, Integer> newestByProgramStage;
+
+        private ValueHistory(List<TrackedEntityDataValue> values, List<Event> events) {
+            this.values = Collections.unmodifiableList(values);
+            this.events = events;
+            this.eventDates = new long[events.size()];
+            this.newestByProgramStage = new HashMap<>();
+
+            for (int index = 0; index < events.size(); index++) {
+                eventDates[index] = getTime(events.get(index));
+                if (events.get(index).getProgramStage() != null) {
+                    newestByProgramStage.put(events.get(index).getProgramStage(), index);
+                }
+            }
+        }
+
+        /**
+         * @return values sorted by event date.
+         */
+        public List<TrackedEntityDataValue> getValues() {
+            return values;
+        }
+
+        public TrackedEntityDataValue getValue(int position) {
+            return values.get(position);
+        }
+
+        public Event getEvent(int position) {
+            return events.get(position);
+        }
+
+        /**
+         * @return position of the newest value.
+         */
+        public int getNewest() {
+            return values.size() - 1;
+        }
+
+        /**
+         * @return position of the newest value in events of the
+         * given program stage, or -1 if there is no such value.
+         */
+        public int getNewest(String programStageUid) {
+            Integer position = newestByProgramStage.get(programStageUid);
+            return position != null ? position : -1;
+        }
+
+        /**
+         * @return position of the newest value of events which happened before
+         * the given date, or -1 if there is no such value.
+         */
+        public int getPrevious(DateTime eventDate) {
+            if (eventDate == null) {
+                return -1;
+            }
+
+            // find the first event which did not happen before the given date
+            long date = eventDate.getMillis();
+            int low = 0;
+            int high = eventDates.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (eventDates[middle] < date) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low - 1;
+        }
+
+        static final class Builder {
+            private final List<TrackedEntityDataValue> values = new ArrayList<>();
+            private final List<Event> events = new ArrayList<>();
+
+            void add(TrackedEntityDataValue value, Event event) {
+                values.add(value);
+                events.add(event);
+            }
+
+            ValueHistory build() {
+                return new ValueHistory(values, events);
+            }
+        }
+    }
+}
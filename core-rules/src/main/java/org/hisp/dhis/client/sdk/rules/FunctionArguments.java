@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import java.util.List;
+
+/**
+ * Arguments of a {@link DhisFunction} call. Compiled calls evaluate their arguments lazily
+ * to typed values, so functions which expect variable names (like d2:count) do not evaluate
+ * them at all. Calls resolved from expression text pass already evaluated strings.
+ */
+/* Part of RuleEngine implementation detail. Hence, class visibility defined as package private */
+abstract class FunctionArguments {
+    private final RuleEngineVariableValueMap valueMap;
+
+    FunctionArguments(RuleEngineVariableValueMap valueMap) {
+        this.valueMap = valueMap;
+    }
+
+    public RuleEngineVariableValueMap getValueMap() {
+        return valueMap;
+    }
+
+    public abstract int size();
+
+    public abstract RuleValue getValue(int index);
+
+    /**
+     * @return name of the variable passed either as a reference (#{name})
+     * or as a string literal ('name').
+     */
+    public abstract String getVariableName(int index);
+
+    public String getString(int index) {
+        return getValue(index).toString();
+    }
+
+    /**
+     * @return numeric value of the argument, or 0 if it is not a number.
+     */
+    public double getNumber(int index) {
+        return toNumber(getValue(index));
+    }
+
+    static double toNumber(RuleValue value) {
+        if (value.isNumber()) {
+            return value.doubleValue();
+        } else if (value.isBoolean()) {
+            return value.booleanValue() ? 1 : 0;
+        }
+
+        RuleValue number = RuleValue.parseNumber(value.stringValue().trim());
+        return number != null ? number.doubleValue() : 0;
+    }
+
+    static String trimVariableQualifiers(String variable) {
+        String name = variable.trim();
+        if (name.length() > 1 && name.charAt(0) == '\'' && name.charAt(name.length() - 1) == '\'') {
+            name = name.substring(1, name.length() - 1);
+        }
+        if (name.length() > 3 && name.charAt(1) == '{' && name.charAt(name.length() - 1) == '}') {
+            name = name.substring(2, name.length() - 1);
+        }
+        return name;
+    }
+
+    /**
+     * Arguments of a compiled function call, evaluated on demand.
+     */
+    static final class Compiled extends FunctionArguments {
+        private final List<RuleExpression> arguments;
+
+        Compiled(List<RuleExpression> arguments, RuleEngineVariableValueMap valueMap) {
+            super(valueMap);
+            this.arguments = arguments;
+        }
+
+        @Override
+        public int size() {
+            return arguments.size();
+        }
+
+        @Override
+        public RuleValue getValue(int index) {
+            return arguments.get(index).evaluateValue(getValueMap());
+        }
+
+        @Override
+        public String getVariableName(int index) {
+            String variableName = arguments.get(index).getVariableName();
+            return variableName != null ? variableName : trimVariableQualifiers(getString(index));
+        }
+    }
+
+    /**
+     * Arguments which have been already evaluated to strings.
+     */
+    static final class Evaluated extends FunctionArguments {
+        private final List<String> arguments;
+
+        Evaluated(List<String> arguments, RuleEngineVariableValueMap valueMap) {
+            super(valueMap);
+            this.arguments = arguments;
+        }
+
+        @Override
+        public int size() {
+            return arguments.size();
+        }
+
+        @Override
+        public RuleValue getValue(int index) {
+            return RuleValue.fromResult(arguments.get(index));
+        }
+
+        @Override
+        public String getVariableName(int index) {
+            return trimVariableQualifiers(arguments.get(index));
+        }
+    }
+}
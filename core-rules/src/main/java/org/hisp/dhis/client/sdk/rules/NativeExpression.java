@@ -0,0 +1,706 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evaluator of rule expressions which does not depend on JEXL. The tree is built once from
+ * the nodes of a compiled {@link RuleExpression}: text nodes are tokenized into literals and
+ * operators, while variables and function calls become operands of the tree. Supported
+ * grammar covers number, string and boolean literals, parentheses, logical
+ * ({@code && || !}), comparison ({@code == != < <= > >=}) and arithmetic
+ * ({@code + - * / %}) operators with precedence of Java (and JEXL).
+ * <p>
+ * Operators follow the semantics of JEXL for the types they support: operations on two
+ * integers are integer ones (7 / 2 is 3), strings are concatenated with '+', and any
+ * other value is interpreted as boolean in the same way as JEXL does it. Operand types
+ * or values for which results might differ from JEXL (for example, comparison of a
+ * number with a string, or division by zero) make evaluation fail with
+ * {@link UnsupportedExpressionException}, which tells {@link RuleExpression} to evaluate
+ * the expression through JEXL instead.
+ */
+/* Part of RuleEngine implementation detail. Hence, class visibility defined as package private */
+final class NativeExpression {
+    private final Operand root;
+
+    private NativeExpression(Operand root) {
+        this.root = root;
+    }
+
+    /**
+     * @return native expression, or null if nodes contain syntax which is not supported.
+     */
+    public static NativeExpression compile(List<RuleExpression.Node> nodes) {
+        if (nodes == null || nodes.isEmpty()) {
+            return null;
+        }
+
+        try {
+            List<Token> tokens = new Tokenizer(nodes).tokenize();
+            return new NativeExpression(new Parser(tokens).parse());
+        } catch (IllegalArgumentException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the expression has been folded into a single value at compile time.
+     */
+    public boolean isConstant() {
+        return root instanceof Literal;
+    }
+
+    /**
+     * @throws UnsupportedExpressionException if operands are not supported natively.
+     */
+    public RuleValue evaluate(RuleEngineVariableValueMap valueMap) {
+        return root.evaluate(valueMap);
+    }
+
+    static final class UnsupportedExpressionException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedExpressionException(String message) {
+            super(message);
+        }
+    }
+
+    private static UnsupportedExpressionException unsupported(
+            String operator, RuleValue left, RuleValue right) {
+        return new UnsupportedExpressionException("Unsupported operands of '" + operator +
+                "': " + left.getType() + ", " + (right == null ? "-" : right.getType()));
+    }
+
+    private static abstract class Operand {
+        abstract RuleValue evaluate(RuleEngineVariableValueMap valueMap);
+
+        /**
+         * @return true if the result does not depend on the value map.
+         */
+        boolean isConstant() {
+            return false;
+        }
+    }
+
+    private static final class Literal extends Operand {
+        private final RuleValue value;
+
+        Literal(RuleValue value) {
+            this.value = value;
+        }
+
+        @Override
+        RuleValue evaluate(RuleEngineVariableValueMap valueMap) {
+            return value;
+        }
+
+        @Override
+        boolean isConstant() {
+            return true;
+        }
+    }
+
+    private static final class VariableOperand extends Operand {
+        private final RuleExpression.VariableNode variable;
+
+        VariableOperand(RuleExpression.VariableNode variable) {
+            this.variable = variable;
+        }
+
+        @Override
+        RuleValue evaluate(RuleEngineVariableValueMap valueMap) {
+            return valueMap.getValue(variable.getSlot(valueMap));
+        }
+    }
+
+    private static final class FunctionOperand extends Operand {
+        private final RuleExpression.FunctionNode function;
+
+        FunctionOperand(RuleExpression.FunctionNode function) {
+            this.function = function;
+        }
+
+        @Override
+        RuleValue evaluate(RuleEngineVariableValueMap valueMap) {
+            return function.evaluate(valueMap);
+        }
+    }
+
+    private static final class Not extends Operand {
+        private final Operand operand;
+
+        Not(Operand operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        boolean isConstant() {
+            return operand.isConstant();
+        }
+
+        @Override
+        RuleValue evaluate(RuleEngineVariableValueMap valueMap) {
+            return RuleValue.of(!operand.evaluate(valueMap).toBoolean());
+        }
+    }
+
+    private static final class Negate extends Operand {
+        private final Operand operand;
+
+        Negate(Operand operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        boolean isConstant() {
+            return operand.isConstant();
+        }
+
+        @Override
+        RuleValue evaluate(RuleEngineVariableValueMap valueMap) {
+            RuleValue value = operand.evaluate(valueMap);
+            if (value.isIntegral() && value.longValue() != Long.MIN_VALUE) {
+                return RuleValue.of(-value.longValue());
+            } else if (value.isNumber() && !value.isIntegral()) {
+                return RuleValue.of(-value.doubleValue());
+            }
+            throw unsupported("-", value, null);
+        }
+    }
+
+    private static final class And extends Operand {
+        private final Operand left;
+        private final Operand right;
+
+        And(Operand left, Operand right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean isConstant() {
+            // false && anything is false
+            return left.isConstant() && (right.isConstant() ||
+                    !left.evaluate(null).toBoolean());
+        }
+
+        @Override
+        RuleValue evaluate(RuleEngineVariableValueMap valueMap) {
+            return RuleValue.of(left.evaluate(valueMap).toBoolean() &&
+                    right.evaluate(valueMap).toBoolean());
+        }
+    }
+
+    private static final class Or extends Operand {
+        private final Operand left;
+        private final Operand right;
+
+        Or(Operand left, Operand right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean isConstant() {
+            // true || anything is true
+            return left.isConstant() && (right.isConstant() ||
+                    left.evaluate(null).toBoolean());
+        }
+
+        @Override
+        RuleValue evaluate(RuleEngineVariableValueMap valueMap) {
+            return RuleValue.of(left.evaluate(valueMap).toBoolean() ||
+                    right.evaluate(valueMap).toBoolean());
+        }
+    }
+
+    private static final class Binary extends Operand {
+        private final String operator;
+        private final Operand left;
+        private final Operand right;
+
+        Binary(String operator, Operand left, Operand right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean isConstant() {
+            return left.isConstant() && right.isConstant();
+        }
+
+        @Override
+        RuleValue evaluate(RuleEngineVariableValueMap valueMap) {
+            RuleValue leftValue = left.evaluate(valueMap);
+            RuleValue rightValue = right.evaluate(valueMap);
+
+            switch (operator) {
+                case "==":
+                    return RuleValue.of(isEqual(leftValue, rightValue));
+                case "!=":
+                    return RuleValue.of(!isEqual(leftValue, rightValue));
+                case "<":
+                    return RuleValue.of(compare(leftValue, rightValue) < 0);
+                case "<=":
+                    return RuleValue.of(compare(leftValue, rightValue) <= 0);
+                case ">":
+                    return RuleValue.of(compare(leftValue, rightValue) > 0);
+                case ">=":
+                    return RuleValue.of(compare(leftValue, rightValue) >= 0);
+                case "+":
+                    return add(leftValue, rightValue);
+                default:
+                    return calculate(leftValue, rightValue);
+            }
+        }
+
+        private boolean isEqual(RuleValue left, RuleValue right) {
+            if (left.isNumber() && right.isNumber()) {
+                return compareNumbers(left, right) == 0;
+            } else if (left.isText() && right.isText()) {
+                return left.stringValue().equals(right.stringValue());
+            } else if (left.isBoolean() && right.isBoolean()) {
+                return left.booleanValue() == right.booleanValue();
+            }
+            throw unsupported(operator, left, right);
+        }
+
+        private int compare(RuleValue left, RuleValue right) {
+            if (left.isNumber() && right.isNumber()) {
+                return compareNumbers(left, right);
+            } else if (left.isText() && right.isText()) {
+                return left.stringValue().compareTo(right.stringValue());
+            }
+            throw unsupported(operator, left, right);
+        }
+
+        private static int compareNumbers(RuleValue left, RuleValue right) {
+            if (left.isIntegral() && right.isIntegral()) {
+                return left.longValue() < right.longValue() ? -1 :
+                        (left.longValue() == right.longValue() ? 0 : 1);
+            }
+            return left.doubleValue() < right.doubleValue() ? -1 :
+                    (left.doubleValue() > right.doubleValue() ? 1 : 0);
+        }
+
+        private RuleValue add(RuleValue left, RuleValue right) {
+            if (left.isNumber() && right.isNumber()) {
+                return calculate(left, right);
+            }
+
+            // JEXL tries to add operands as numbers first (so '1' + 2 is 3),
+            // and concatenates them only if one of them is not a number
+            if ((left.isText() || right.isText()) && !isNumeric(left) && !isNumeric(right)) {
+                return RuleValue.of(left.toString() + right.toString());
+            }
+            throw unsupported(operator, left, right);
+        }
+
+        private static boolean isNumeric(RuleValue value) {
+            return value.isNumber() || (value.isText() &&
+                    RuleValue.parseNumber(value.stringValue().trim()) != null);
+        }
+
+        private RuleValue calculate(RuleValue left, RuleValue right) {
+            if (!left.isNumber() || !right.isNumber()) {
+                throw unsupported(operator, left, right);
+            }
+
+            if (left.isIntegral() && right.isIntegral()) {
+                long result = calculate(left.longValue(), right.longValue());
+                return RuleValue.of(result);
+            }
+
+            double l = left.doubleValue();
+            double r = right.doubleValue();
+            switch (operator) {
+                case "+":
+                    return RuleValue.of(l + r);
+                case "-":
+                    return RuleValue.of(l - r);
+                case "*":
+                    return RuleValue.of(l * r);
+                case "/":
+                    if (r == 0.0) {
+                        throw unsupported(operator, left, right);
+                    }
+                    return RuleValue.of(l / r);
+                default:
+                    if (r == 0.0) {
+                        throw unsupported(operator, left, right);
+                    }
+                    return RuleValue.of(l % r);
+            }
+        }
+
+        private long calculate(long l, long r) {
+            long result;
+            switch (operator) {
+                case "+":
+                    result = l + r;
+                    if (((l ^ result) & (r ^ result)) < 0) {
+                        throw new UnsupportedExpressionException("Overflow: " + l + " + " + r);
+                    }
+                    return result;
+                case "-":
+                    result = l - r;
+                    if (((l ^ r) & (l ^ result)) < 0) {
+                        throw new UnsupportedExpressionException("Overflow: " + l + " - " + r);
+                    }
+                    return result;
+                case "*":
+                    result = l * r;
+                    if (l != 0 && (result / l != r || (l == -1 && r == Long.MIN_VALUE))) {
+                        throw new UnsupportedExpressionException("Overflow: " + l + " * " + r);
+                    }
+                    return result;
+                case "/":
+                    if (r == 0) {
+                        throw new UnsupportedExpressionException("Division by zero");
+                    }
+                    return l / r;
+                default:
+                    // remainder of negative numbers is defined differently in JEXL
+                    if (l < 0 || r <= 0) {
+                        throw new UnsupportedExpressionException("Unsupported: " + l + " % " + r);
+                    }
+                    return l % r;
+            }
+        }
+    }
+
+    private enum TokenType {
+        VALUE, OPERAND, OPERATOR, OPEN, CLOSE
+    }
+
+    private static final class Token {
+        final TokenType type;
+        final String text;
+        final RuleValue value;
+        final RuleExpression.Node node;
+
+        Token(TokenType type, String text, RuleValue value, RuleExpression.Node node) {
+            this.type = type;
+            this.text = text;
+            this.value = value;
+            this.node = node;
+        }
+
+        boolean isOperator(String operator) {
+            return type == TokenType.OPERATOR && text.equals(operator);
+        }
+    }
+
+    /**
+     * Splits text nodes into tokens. Variable and function nodes are passed through as
+     * operand tokens. Anything which is not part of supported grammar (identifiers, bit
+     * and ternary operators, method calls etc.) is rejected.
+     */
+    private static final class Tokenizer {
+        private static final String[] OPERATORS = {
+                "&&", "||", "==", "!=", "<=", ">=", "<", ">", "!", "+", "-", "*", "/", "%"
+        };
+
+        private final List<RuleExpression.Node> nodes;
+        private final List<Token> tokens;
+
+        Tokenizer(List<RuleExpression.Node> nodes) {
+            this.nodes = nodes;
+            this.tokens = new ArrayList<>();
+        }
+
+        List<Token> tokenize() {
+            for (RuleExpression.Node node : nodes) {
+                if (node instanceof RuleExpression.TextNode) {
+                    tokenize(((RuleExpression.TextNode) node).getText());
+                } else {
+                    tokens.add(new Token(TokenType.OPERAND, null, null, node));
+                }
+            }
+            return tokens;
+        }
+
+        private void tokenize(String text) {
+            int position = 0;
+            while (position < text.length()) {
+                char current = text.charAt(position);
+
+                if (Character.isWhitespace(current)) {
+                    position++;
+                } else if (current == '(' || current == ')') {
+                    tokens.add(new Token(current == '(' ? TokenType.OPEN : TokenType.CLOSE,
+                            String.valueOf(current), null, null));
+                    position++;
+                } else if (current == '\'' || current == '"') {
+                    position = readString(text, position);
+                } else if (Character.isDigit(current) || current == '.') {
+                    position = readNumber(text, position);
+                } else if (Character.isLetter(current)) {
+                    position = readKeyword(text, position);
+                } else {
+                    position = readOperator(text, position);
+                }
+            }
+        }
+
+        private int readString(String text, int start) {
+            char quote = text.charAt(start);
+            StringBuilder builder = new StringBuilder();
+            int position = start + 1;
+            while (position < text.length() && text.charAt(position) != quote) {
+                char current = text.charAt(position);
+                if (current == '\\') {
+                    if (position + 1 >= text.length()) {
+                        break;
+                    }
+
+                    // like in JEXL, only quotes and backslash are escaped,
+                    // other characters keep the backslash in front of them
+                    current = text.charAt(++position);
+                    if (current == 'u') {
+                        throw new IllegalArgumentException("Unsupported unicode escape: " + text);
+                    } else if (current != quote && current != '\\') {
+                        builder.append('\\');
+                    }
+                }
+                builder.append(current);
+                position++;
+            }
+
+            if (position >= text.length()) {
+                throw new IllegalArgumentException("Unterminated string literal: " + text);
+            }
+
+            tokens.add(new Token(TokenType.VALUE, null,
+                    RuleValue.of(builder.toString()), null));
+            return position + 1;
+        }
+
+        private int readNumber(String text, int start) {
+            int position = start;
+            while (position < text.length() && (Character.isLetterOrDigit(text.charAt(position))
+                    || text.charAt(position) == '.')) {
+                position++;
+            }
+
+            RuleValue value = RuleValue.parseNumber(text.substring(start, position));
+            if (value == null) {
+                throw new IllegalArgumentException("Unsupported number literal: " +
+                        text.substring(start, position));
+            }
+
+            tokens.add(new Token(TokenType.VALUE, null, value, null));
+            return position;
+        }
+
+        private int readKeyword(String text, int start) {
+            int position = start;
+            while (position < text.length() && (Character.isLetterOrDigit(text.charAt(position))
+                    || text.charAt(position) == '_')) {
+                position++;
+            }
+
+            String keyword = text.substring(start, position);
+            if ("true".equals(keyword)) {
+                tokens.add(new Token(TokenType.VALUE, null, RuleValue.TRUE, null));
+            } else if ("false".equals(keyword)) {
+                tokens.add(new Token(TokenType.VALUE, null, RuleValue.FALSE, null));
+            } else {
+                throw new IllegalArgumentException("Unsupported identifier: " + keyword);
+            }
+            return position;
+        }
+
+        private int readOperator(String text, int start) {
+            for (String operator : OPERATORS) {
+                if (text.startsWith(operator, start)) {
+                    tokens.add(new Token(TokenType.OPERATOR, operator, null, null));
+                    return start + operator.length();
+                }
+            }
+            throw new IllegalArgumentException("Unsupported character '" +
+                    text.charAt(start) + "' in: " + text);
+        }
+    }
+
+    /**
+     * Recursive descent parser, one method per precedence level.
+     */
+    private static final class Parser {
+        private final List<Token> tokens;
+        private int position;
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+            this.position = 0;
+        }
+
+        Operand parse() {
+            Operand operand = parseOr();
+            if (position < tokens.size()) {
+                throw new IllegalArgumentException("Unexpected token at " + position);
+            }
+            return operand;
+        }
+
+        private Operand parseOr() {
+            Operand operand = parseAnd();
+            while (accept("||")) {
+                operand = fold(new Or(operand, parseAnd()));
+            }
+            return operand;
+        }
+
+        private Operand parseAnd() {
+            Operand operand = parseEquality();
+            while (accept("&&")) {
+                operand = fold(new And(operand, parseEquality()));
+            }
+            return operand;
+        }
+
+        private Operand parseEquality() {
+            Operand operand = parseRelational();
+            while (true) {
+                String operator = acceptAny("==", "!=");
+                if (operator == null) {
+                    return operand;
+                }
+                operand = fold(new Binary(operator, operand, parseRelational()));
+            }
+        }
+
+        private Operand parseRelational() {
+            Operand operand = parseAdditive();
+            while (true) {
+                String operator = acceptAny("<", "<=", ">", ">=");
+                if (operator == null) {
+                    return operand;
+                }
+                operand = fold(new Binary(operator, operand, parseAdditive()));
+            }
+        }
+
+        private Operand parseAdditive() {
+            Operand operand = parseMultiplicative();
+            while (true) {
+                String operator = acceptAny("+", "-");
+                if (operator == null) {
+                    return operand;
+                }
+                operand = fold(new Binary(operator, operand, parseMultiplicative()));
+            }
+        }
+
+        private Operand parseMultiplicative() {
+            Operand operand = parseUnary();
+            while (true) {
+                String operator = acceptAny("*", "/", "%");
+                if (operator == null) {
+                    return operand;
+                }
+                operand = fold(new Binary(operator, operand, parseUnary()));
+            }
+        }
+
+        private Operand parseUnary() {
+            if (accept("!")) {
+                return fold(new Not(parseUnary()));
+            } else if (accept("-")) {
+                return fold(new Negate(parseUnary()));
+            }
+            return parsePrimary();
+        }
+
+        private Operand parsePrimary() {
+            if (position >= tokens.size()) {
+                throw new IllegalArgumentException("Unexpected end of expression");
+            }
+
+            Token token = tokens.get(position++);
+            switch (token.type) {
+                case VALUE:
+                    return new Literal(token.value);
+                case OPERAND:
+                    if (token.node instanceof RuleExpression.VariableNode) {
+                        return new VariableOperand((RuleExpression.VariableNode) token.node);
+                    }
+                    return new FunctionOperand((RuleExpression.FunctionNode) token.node);
+                case OPEN:
+                    Operand operand = parseOr();
+                    if (position >= tokens.size() || tokens.get(position).type != TokenType.CLOSE) {
+                        throw new IllegalArgumentException("Missing ')'");
+                    }
+                    position++;
+                    return operand;
+                default:
+                    throw new IllegalArgumentException("Unexpected token " + token.text);
+            }
+        }
+
+        /**
+         * Replaces operations on constants with their results. Operations which are not
+         * supported natively are kept as they are, so that they fall back to JEXL.
+         */
+        private static Operand fold(Operand operand) {
+            if (operand instanceof Literal) {
+                return operand;
+            }
+
+            try {
+                if (operand.isConstant()) {
+                    return new Literal(operand.evaluate(null));
+                }
+            } catch (UnsupportedExpressionException exception) {
+                // keep the operation, it is going to be evaluated by JEXL
+            }
+            return operand;
+        }
+
+        private boolean accept(String operator) {
+            if (position < tokens.size() && tokens.get(position).isOperator(operator)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private String acceptAny(String... operators) {
+            for (String operator : operators) {
+                if (accept(operator)) {
+                    return operator;
+                }
+            }
+            return null;
+        }
+    }
+}
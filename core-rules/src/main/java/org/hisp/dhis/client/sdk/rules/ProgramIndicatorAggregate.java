@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+/**
+ * Aggregate of numeric values of a program indicator over many events, computed in a
+ * single pass by {@link ProgramIndicatorEngine#aggregate(
+ * org.hisp.dhis.client.sdk.models.program.ProgramIndicator, java.util.Iterator)}.
+ * Events for which the indicator cannot be evaluated, or evaluates to something other
+ * than a number, are counted as skipped.
+ */
+public class ProgramIndicatorAggregate {
+    private long eventCount;
+    private long valueCount;
+    private double sum;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    ProgramIndicatorAggregate() {
+        // instances are created by the engine
+    }
+
+    void add(RuleValue value) {
+        eventCount++;
+        if (value == null || !value.isNumber()) {
+            return;
+        }
+
+        double number = value.doubleValue();
+        if (Double.isNaN(number)) {
+            return;
+        }
+
+        if (valueCount == 0) {
+            min = number;
+            max = number;
+        } else {
+            min = Math.min(min, number);
+            max = Math.max(max, number);
+        }
+
+        valueCount++;
+        sum += number;
+    }
+
+    /**
+     * @return number of events the indicator has been evaluated for.
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return number of events which resulted in a numeric value.
+     */
+    public long getValueCount() {
+        return valueCount;
+    }
+
+    public long getSkippedCount() {
+        return eventCount - valueCount;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * @return smallest value, or NaN if there are no values.
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * @return largest value, or NaN if there are no values.
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * @return average of values, or NaN if there are no values.
+     */
+    public double getAverage() {
+        return valueCount > 0 ? sum / valueCount : Double.NaN;
+    }
+
+    @Override
+    public String toString() {
+        return "ProgramIndicatorAggregate{" +
+                "eventCount=" + eventCount +
+                ", valueCount=" + valueCount +
+                ", sum=" + sum +
+                ", min=" + min +
+                ", max=" + max +
+                '}';
+    }
+}
@@ -0,0 +1,559 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.constant.Constant;
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.client.sdk.models.dataelement.ValueType;
+import org.hisp.dhis.client.sdk.models.enrollment.Enrollment;
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.hisp.dhis.client.sdk.models.program.ProgramIndicator;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariable;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariableSourceType;
+import org.hisp.dhis.client.sdk.models.trackedentity.TrackedEntityAttribute;
+import org.hisp.dhis.client.sdk.models.trackedentity.TrackedEntityAttributeValue;
+import org.hisp.dhis.client.sdk.models.trackedentity.TrackedEntityDataValue;
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+/**
+ * Evaluates {@link ProgramIndicator} expressions offline. Expressions are compiled once,
+ * the same way rule expressions are: references to data elements of program stages
+ * ({@code #{stage.dataElement}}), attributes ({@code A{}}) and program variables
+ * ({@code V{}}) are bound to slots of a value map, and values of constants
+ * ({@code C{}}) are inlined.
+ * <p>
+ * Indicators are evaluated for an enrollment (values of data elements are taken from the
+ * newest event of the program stage) or for a single event through
+ * {@link ProgramIndicatorSession}, which re-evaluates only affected indicators when an
+ * event changes. Values of an indicator over many events are aggregated with
+ * {@link #aggregate(ProgramIndicator, Iterator)} in a single pass over the events.
+ * <p>
+ * The engine is immutable once built and can be shared between threads.
+ */
+public class ProgramIndicatorEngine {
+    private static final String EVENT_DATE = RuleVariableSlots.EVENT_DATE;
+    private static final String CURRENT_DATE = RuleVariableSlots.CURRENT_DATE;
+    private static final String DUE_DATE = "due_date";
+
+    private final List<CompiledIndicator> indicators;
+    private final Map<String, CompiledIndicator> indicatorsByUid;
+
+    // slots of all references, and what each slot refers to (null for environment slots)
+    private final RuleVariableSlots slots;
+    private final Reference[] references;
+
+    private ProgramIndicatorEngine(List<ProgramIndicator> programIndicators,
+                                   List<DataElement> dataElements,
+                                   List<TrackedEntityAttribute> attributes,
+                                   List<Constant> constants) {
+        Map<String, DataElement> dataElementMap = new HashMap<>();
+        if (dataElements != null) {
+            for (DataElement dataElement : dataElements) {
+                dataElementMap.put(dataElement.getUId(), dataElement);
+            }
+        }
+
+        Map<String, TrackedEntityAttribute> attributeMap = new HashMap<>();
+        if (attributes != null) {
+            for (TrackedEntityAttribute attribute : attributes) {
+                attributeMap.put(attribute.getUId(), attribute);
+            }
+        }
+
+        // references of all indicators, one variable per distinct name
+        Map<String, Reference> referenceMap = new LinkedHashMap<>();
+        List<ProgramIndicator> indicatorList = programIndicators != null ?
+                programIndicators : Collections.<ProgramIndicator>emptyList();
+        for (ProgramIndicator indicator : indicatorList) {
+            collectReferences(indicator.getExpression(),
+                    dataElementMap, attributeMap, referenceMap);
+        }
+
+        List<ProgramRuleVariable> variables = new ArrayList<>();
+        for (Map.Entry<String, Reference> reference : referenceMap.entrySet()) {
+            if (reference.getValue().kind != Reference.Kind.ENVIRONMENT) {
+                variables.add(createVariable(reference.getKey(), reference.getValue()));
+            }
+        }
+
+        this.slots = RuleVariableSlots.create(variables);
+        this.references = new Reference[slots.size()];
+        for (Map.Entry<String, Reference> reference : referenceMap.entrySet()) {
+            if (reference.getValue().kind != Reference.Kind.ENVIRONMENT) {
+                references[slots.getSlot(reference.getKey())] = reference.getValue();
+            }
+        }
+
+        Map<String, String> constantValues = RuleEngine.createConstantValues(constants);
+        List<CompiledIndicator> compiledIndicators = new ArrayList<>();
+        Map<String, CompiledIndicator> compiledIndicatorsByUid = new HashMap<>();
+        for (ProgramIndicator indicator : indicatorList) {
+            CompiledIndicator compiledIndicator = new CompiledIndicator(indicator,
+                    RuleExpression.compile(indicator.getExpression(), slots, constantValues),
+                    collectSlots(indicator.getExpression(), slots));
+            compiledIndicators.add(compiledIndicator);
+            compiledIndicatorsByUid.put(indicator.getUId(), compiledIndicator);
+        }
+
+        this.indicators = Collections.unmodifiableList(compiledIndicators);
+        this.indicatorsByUid = Collections.unmodifiableMap(compiledIndicatorsByUid);
+    }
+
+    private static void collectReferences(String expression,
+                                          Map<String, DataElement> dataElements,
+                                          Map<String, TrackedEntityAttribute> attributes,
+                                          Map<String, Reference> references) {
+        if (expression == null) {
+            return;
+        }
+
+        Matcher matcher = ProgramIndicator.EXPRESSION_PATTERN.matcher(expression);
+        while (matcher.find()) {
+            String name = getName(matcher);
+            if (name == null || references.containsKey(name)) {
+                continue;
+            }
+
+            String key = matcher.group(1);
+            if (ProgramIndicator.KEY_DATAELEMENT.equals(key)) {
+                // both #{stage.dataElement} and #{dataElement} are accepted
+                boolean hasStage = matcher.group(3).length() > 0;
+                String dataElementUid = hasStage ? matcher.group(3) : matcher.group(2);
+                DataElement dataElement = dataElements.get(dataElementUid);
+                references.put(name, new Reference(Reference.Kind.DATA_ELEMENT,
+                        hasStage ? matcher.group(2) : null, dataElementUid,
+                        dataElement != null ? dataElement.getValueType() : null));
+            } else if (ProgramIndicator.KEY_ATTRIBUTE.equals(key)) {
+                TrackedEntityAttribute attribute = attributes.get(name);
+                references.put(name, new Reference(Reference.Kind.ATTRIBUTE, null, name,
+                        attribute != null ? attribute.getValueType() : null));
+            } else if (ProgramIndicator.KEY_PROGRAM_VARIABLE.equals(key)) {
+                references.put(name, createProgramVariable(name));
+            }
+        }
+    }
+
+    /**
+     * @return name of the variable node which is created for the reference,
+     * or null for references to constants.
+     */
+    private static String getName(Matcher matcher) {
+        if (ProgramIndicator.KEY_CONSTANT.equals(matcher.group(1))) {
+            return null;
+        }
+        return matcher.group(3).length() > 0 ?
+                matcher.group(2) + "." + matcher.group(3) : matcher.group(2);
+    }
+
+    private static Reference createProgramVariable(String name) {
+        switch (name) {
+            case ProgramIndicator.INCIDENT_DATE:
+                return new Reference(Reference.Kind.INCIDENT_DATE, null, null, ValueType.DATE);
+            case ProgramIndicator.ENROLLMENT_DATE:
+                return new Reference(Reference.Kind.ENROLLMENT_DATE, null, null, ValueType.DATE);
+            case DUE_DATE:
+                return new Reference(Reference.Kind.DUE_DATE, null, null, ValueType.DATE);
+            case ProgramIndicator.VAR_VALUE_COUNT:
+                return new Reference(Reference.Kind.VALUE_COUNT, null, null, ValueType.INTEGER);
+            case ProgramIndicator.VAR_ZERO_POS_VALUE_COUNT:
+                return new Reference(Reference.Kind.ZERO_POS_VALUE_COUNT,
+                        null, null, ValueType.INTEGER);
+            case CURRENT_DATE:
+            case EVENT_DATE:
+                // set by the value map itself
+                return new Reference(Reference.Kind.ENVIRONMENT, null, null, ValueType.DATE);
+            default:
+                return new Reference(Reference.Kind.UNKNOWN, null, null, null);
+        }
+    }
+
+    private static ProgramRuleVariable createVariable(String name, Reference reference) {
+        ProgramRuleVariable variable = new ProgramRuleVariable();
+        variable.setDisplayName(name);
+
+        // values are set by the engine, value map leaves them alone
+        variable.setSourceType(ProgramRuleVariableSourceType.CALCULATED_VALUE);
+        return variable;
+    }
+
+    /**
+     * @return slots of values of data elements and attributes referenced by the expression.
+     */
+    private static int[] collectSlots(String expression, RuleVariableSlots slots) {
+        List<Integer> slotList = new ArrayList<>();
+        if (expression != null) {
+            Matcher matcher = ProgramIndicator.EXPRESSION_PATTERN.matcher(expression);
+            while (matcher.find()) {
+                String name = getName(matcher);
+                int slot = name != null ? slots.getSlot(name) : -1;
+                if (slot >= 0 && !slotList.contains(slot)) {
+                    slotList.add(slot);
+                }
+            }
+        }
+
+        int[] slotArray = new int[slotList.size()];
+        for (int i = 0; i < slotArray.length; i++) {
+            slotArray[i] = slotList.get(i);
+        }
+        return slotArray;
+    }
+
+    /**
+     * Creates session which evaluates indicators over events of the enrollment.
+     */
+    public ProgramIndicatorSession createSession(Enrollment enrollment) {
+        return new ProgramIndicatorSession(this, enrollment, null);
+    }
+
+    /**
+     * Creates session which evaluates indicators over values of a single event.
+     *
+     * @param enrollment enrollment which the event belongs to, used for values
+     *                   of attributes and enrollment dates. Can be null.
+     */
+    public ProgramIndicatorSession createSession(Event event, Enrollment enrollment) {
+        return new ProgramIndicatorSession(this, enrollment, event);
+    }
+
+    public ProgramIndicatorSession createSession(Event event) {
+        return createSession(event, null);
+    }
+
+    /**
+     * Evaluates the indicator for each event and aggregates numeric results. Events are
+     * read from the iterator one by one and are not kept, so the iterator can stream
+     * them from storage without loading all of them at once.
+     *
+     * @throws IllegalArgumentException if the indicator is not known to this engine.
+     */
+    public ProgramIndicatorAggregate aggregate(ProgramIndicator indicator,
+                                               Iterator<Event> events) {
+        CompiledIndicator compiledIndicator = getIndicator(indicator.getUId());
+        ProgramIndicatorAggregate aggregate = new ProgramIndicatorAggregate();
+        EventHistoryIndex emptyHistory = new EventHistoryIndex(null);
+
+        RuleEngineVariableValueMap valueMap = null;
+        while (events.hasNext()) {
+            Event event = events.next();
+            if (valueMap == null) {
+                valueMap = new RuleEngineVariableValueMap(slots, event, emptyHistory);
+            } else {
+                valueMap.reset(event, emptyHistory);
+            }
+
+            loadValues(valueMap, null, event, null, null);
+            aggregate.add(evaluateValue(compiledIndicator, valueMap));
+        }
+        return aggregate;
+    }
+
+    CompiledIndicator getIndicator(String indicatorUid) {
+        CompiledIndicator compiledIndicator = indicatorsByUid.get(indicatorUid);
+        if (compiledIndicator == null) {
+            throw new IllegalArgumentException("Unknown program indicator " + indicatorUid);
+        }
+        return compiledIndicator;
+    }
+
+    List<CompiledIndicator> getIndicators() {
+        return indicators;
+    }
+
+    RuleVariableSlots getSlots() {
+        return slots;
+    }
+
+    /**
+     * @return true if the slot holds value of a data element which
+     * is read from events of the given program stage.
+     */
+    boolean isEventValue(int slot, String programStageUid) {
+        Reference reference = references[slot];
+        return reference != null && reference.kind == Reference.Kind.DATA_ELEMENT &&
+                (reference.programStageUid == null || programStageUid == null ||
+                        reference.programStageUid.equals(programStageUid));
+    }
+
+    /**
+     * Sets values of referenced data elements, attributes and program variables.
+     *
+     * @param enrollment      enrollment to take attributes and dates from, can be null.
+     * @param event           event to take values from if eventHistory is null.
+     * @param eventHistory    events of the enrollment, or null to use the single event.
+     * @param programStageUid if not null, only values of data elements which are read
+     *                        from events of the program stage are set.
+     */
+    void loadValues(RuleEngineVariableValueMap valueMap, Enrollment enrollment, Event event,
+                    EventHistoryIndex eventHistory, String programStageUid) {
+        for (int slot = 0; slot < references.length; slot++) {
+            Reference reference = references[slot];
+            if (reference == null ||
+                    (programStageUid != null && !isEventValue(slot, programStageUid))) {
+                continue;
+            }
+
+            switch (reference.kind) {
+                case DATA_ELEMENT:
+                    setValue(valueMap, slot, reference, eventHistory != null ?
+                            findValue(reference, eventHistory) : findValue(reference, event));
+                    break;
+                case ATTRIBUTE:
+                    setValue(valueMap, slot, reference, findValue(reference, enrollment));
+                    break;
+                case INCIDENT_DATE:
+                    setValue(valueMap, slot, reference, formatDate(
+                            enrollment != null ? enrollment.getDateOfIncident() : null));
+                    break;
+                case ENROLLMENT_DATE:
+                    setValue(valueMap, slot, reference, formatDate(
+                            enrollment != null ? enrollment.getDateOfEnrollment() : null));
+                    break;
+                case DUE_DATE:
+                    setValue(valueMap, slot, reference, formatDate(
+                            event != null ? event.getDueDate() : null));
+                    break;
+                default:
+                    // value counts are set for each indicator separately
+                    break;
+            }
+        }
+    }
+
+    private static String findValue(Reference reference, EventHistoryIndex eventHistory) {
+        EventHistoryIndex.ValueHistory history = eventHistory.getHistory(reference.uid);
+        if (history == null) {
+            return null;
+        }
+
+        int position = reference.programStageUid != null ?
+                history.getNewest(reference.programStageUid) : history.getNewest();
+        return position >= 0 ? history.getValue(position).getValue() : null;
+    }
+
+    private static String findValue(Reference reference, Event event) {
+        if (event == null || event.getDataValues() == null || (reference.programStageUid != null
+                && event.getProgramStage() != null
+                && !reference.programStageUid.equals(event.getProgramStage()))) {
+            return null;
+        }
+
+        for (TrackedEntityDataValue dataValue : event.getDataValues()) {
+            if (reference.uid.equals(dataValue.getDataElement())) {
+                return dataValue.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String findValue(Reference reference, Enrollment enrollment) {
+        if (enrollment == null) {
+            return null;
+        }
+
+        String value = findValue(reference, enrollment.getTrackedEntityAttributeValues());
+        if (value == null && enrollment.getTrackedEntityInstance() != null) {
+            value = findValue(reference, enrollment.getTrackedEntityInstance().getAttributes());
+        }
+        return value;
+    }
+
+    private static String findValue(Reference reference,
+                                    List<TrackedEntityAttributeValue> attributeValues) {
+        if (attributeValues != null) {
+            for (TrackedEntityAttributeValue attributeValue : attributeValues) {
+                if (reference.uid.equals(attributeValue.getTrackedEntityAttributeUId())) {
+                    return attributeValue.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String formatDate(DateTime date) {
+        return date != null ? new LocalDate(date.getMillis()).toString(
+                RuleEngineVariableValueMap.DATE_PATTERN) : null;
+    }
+
+    /**
+     * Sets value of a reference, or its default value if the value is missing:
+     * zero for numbers and values of unknown type, empty text for texts.
+     */
+    private static void setValue(RuleEngineVariableValueMap valueMap, int slot,
+                                 Reference reference, String value) {
+        if (value == null || value.length() == 0) {
+            String defaultValue = RuleEngineVariableValueMap.getDefaultValue(reference.valueType);
+            if (defaultValue != null) {
+                valueMap.setValue(slot, defaultValue, reference.valueType, false);
+            } else {
+                valueMap.setValue(slot, "0", ValueType.NUMBER, false);
+            }
+            return;
+        }
+
+        ValueType valueType = reference.valueType;
+        if (valueType == null) {
+            valueType = RuleValue.parseNumber(value.trim()) != null ?
+                    ValueType.NUMBER : ValueType.TEXT;
+        }
+        valueMap.setValue(slot, value, valueType, true);
+    }
+
+    /**
+     * Evaluates the indicator against values which have been loaded into the map.
+     *
+     * @return value of the indicator, or null if it cannot be evaluated.
+     */
+    RuleValue evaluateValue(CompiledIndicator indicator, RuleEngineVariableValueMap valueMap) {
+        int valueCount = 0;
+        int zeroPosValueCount = 0;
+        for (int slot : indicator.slots) {
+            Reference reference = references[slot];
+            if (valueMap.hasValue(slot) && (reference.kind == Reference.Kind.DATA_ELEMENT ||
+                    reference.kind == Reference.Kind.ATTRIBUTE)) {
+                valueCount++;
+
+                RuleValue number = RuleValue.parseNumber(valueMap.getValueString(slot).trim());
+                if (number != null && number.doubleValue() >= 0) {
+                    zeroPosValueCount++;
+                }
+            }
+        }
+
+        for (int slot : indicator.slots) {
+            if (references[slot].kind == Reference.Kind.VALUE_COUNT) {
+                valueMap.setValue(slot, Integer.toString(valueCount), ValueType.INTEGER, true);
+            } else if (references[slot].kind == Reference.Kind.ZERO_POS_VALUE_COUNT) {
+                valueMap.setValue(slot, Integer.toString(zeroPosValueCount),
+                        ValueType.INTEGER, true);
+            }
+        }
+
+        try {
+            return indicator.expression.evaluateValue(valueMap);
+        } catch (RuntimeException exception) {
+            // undefined references or functions failing on their arguments
+            return null;
+        }
+    }
+
+    /**
+     * Compiled expression of an indicator together with slots of values it reads.
+     */
+    static final class CompiledIndicator {
+        private final ProgramIndicator indicator;
+        private final RuleExpression expression;
+        private final int[] slots;
+
+        CompiledIndicator(ProgramIndicator indicator, RuleExpression expression, int[] slots) {
+            this.indicator = indicator;
+            this.expression = expression;
+            this.slots = slots;
+        }
+
+        ProgramIndicator getIndicator() {
+            return indicator;
+        }
+
+        int[] getSlots() {
+            return slots;
+        }
+    }
+
+    /**
+     * What a slot of the value map refers to.
+     */
+    private static final class Reference {
+        enum Kind {
+            DATA_ELEMENT, ATTRIBUTE, INCIDENT_DATE, ENROLLMENT_DATE, DUE_DATE,
+            VALUE_COUNT, ZERO_POS_VALUE_COUNT, ENVIRONMENT, UNKNOWN
+        }
+
+        final Kind kind;
+        final String programStageUid;
+        final String uid;
+        final ValueType valueType;
+
+        Reference(Kind kind, String programStageUid, String uid, ValueType valueType) {
+            this.kind = kind;
+            this.programStageUid = programStageUid;
+            this.uid = uid;
+            this.valueType = valueType;
+        }
+    }
+
+    public static class Builder {
+        private List<ProgramIndicator> programIndicators;
+        private List<DataElement> dataElements;
+        private List<TrackedEntityAttribute> trackedEntityAttributes;
+        private List<Constant> constants;
+
+        public Builder() {
+            // explicit empty constructor
+        }
+
+        public Builder programIndicators(List<ProgramIndicator> programIndicators) {
+            this.programIndicators = programIndicators;
+            return this;
+        }
+
+        /**
+         * Data elements are used to type values of referenced data elements.
+         */
+        public Builder dataElements(List<DataElement> dataElements) {
+            this.dataElements = dataElements;
+            return this;
+        }
+
+        public Builder trackedEntityAttributes(List<TrackedEntityAttribute> attributes) {
+            this.trackedEntityAttributes = attributes;
+            return this;
+        }
+
+        public Builder constants(List<Constant> constants) {
+            this.constants = constants;
+            return this;
+        }
+
+        public ProgramIndicatorEngine build() {
+            return new ProgramIndicatorEngine(programIndicators,
+                    dataElements, trackedEntityAttributes, constants);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.enrollment.Enrollment;
+import org.hisp.dhis.client.sdk.models.event.Event;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Values of program indicators for an enrollment or a single event. Values are
+ * evaluated once by {@link #evaluate()}; after an event is saved, {@link #update(Event)}
+ * re-evaluates only indicators which read values changed by the event.
+ * <p>
+ * Sessions are not thread safe.
+ */
+public class ProgramIndicatorSession {
+    private final ProgramIndicatorEngine engine;
+    private final Enrollment enrollment;
+    private final RuleEngineVariableValueMap valueMap;
+    private final Map<String, String> values;
+
+    // events of the enrollment, or null if the session is over a single event
+    private EventHistoryIndex eventHistory;
+    private Event event;
+    private boolean evaluated;
+
+    ProgramIndicatorSession(ProgramIndicatorEngine engine, Enrollment enrollment, Event event) {
+        this.engine = engine;
+        this.enrollment = enrollment;
+        this.event = event;
+        this.values = new LinkedHashMap<>();
+
+        if (event == null) {
+            this.eventHistory = new EventHistoryIndex(enrollment != null ?
+                    enrollment.getEvents() : null);
+            this.valueMap = new RuleEngineVariableValueMap(
+                    engine.getSlots(), null, eventHistory);
+        } else {
+            this.valueMap = new RuleEngineVariableValueMap(
+                    engine.getSlots(), event, new EventHistoryIndex(null));
+        }
+    }
+
+    /**
+     * Evaluates all indicators.
+     *
+     * @return values of indicators by their uids. Value is null if
+     * the indicator cannot be evaluated.
+     */
+    public Map<String, String> evaluate() {
+        engine.loadValues(valueMap, enrollment, event, eventHistory, null);
+
+        values.clear();
+        for (ProgramIndicatorEngine.CompiledIndicator indicator : engine.getIndicators()) {
+            values.put(indicator.getIndicator().getUId(), evaluate(indicator));
+        }
+
+        evaluated = true;
+        return Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * Applies a created or changed event and re-evaluates indicators which read its
+     * values. For a session over a single event, the event replaces the current one.
+     *
+     * @return indicators whose values have changed, by their uids.
+     */
+    public Map<String, String> update(Event updatedEvent) {
+        if (updatedEvent == null) {
+            throw new IllegalArgumentException("Event must not be null");
+        }
+
+        if (!evaluated) {
+            if (eventHistory != null) {
+                eventHistory = eventHistory.update(updatedEvent);
+            } else {
+                event = updatedEvent;
+                valueMap.reset(event, new EventHistoryIndex(null));
+            }
+            return evaluate();
+        }
+
+        int slotCount = engine.getSlots().size();
+        long[] fingerprints = new long[slotCount];
+        for (int slot = 0; slot < slotCount; slot++) {
+            fingerprints[slot] = valueMap.getFingerprint(slot);
+        }
+
+        if (eventHistory != null) {
+            eventHistory = eventHistory.update(updatedEvent);
+            engine.loadValues(valueMap, enrollment, null, eventHistory,
+                    updatedEvent.getProgramStage());
+        } else {
+            event = updatedEvent;
+            valueMap.reset(event, new EventHistoryIndex(null));
+            engine.loadValues(valueMap, enrollment, event, null, null);
+        }
+
+        boolean[] changed = new boolean[slotCount];
+        for (int slot = 0; slot < slotCount; slot++) {
+            changed[slot] = valueMap.getFingerprint(slot) != fingerprints[slot];
+        }
+
+        Map<String, String> changedValues = new LinkedHashMap<>();
+        for (ProgramIndicatorEngine.CompiledIndicator indicator : engine.getIndicators()) {
+            if (!readsAny(indicator, changed)) {
+                continue;
+            }
+
+            String uid = indicator.getIndicator().getUId();
+            String value = evaluate(indicator);
+            String previousValue = values.put(uid, value);
+            if (value == null ? previousValue != null : !value.equals(previousValue)) {
+                changedValues.put(uid, value);
+            }
+        }
+        return changedValues;
+    }
+
+    /**
+     * @return value of the indicator as of the last evaluation, or null
+     * if it has not been evaluated or cannot be evaluated.
+     */
+    public String getValue(String indicatorUid) {
+        return values.get(indicatorUid);
+    }
+
+    public Map<String, String> getValues() {
+        return Collections.unmodifiableMap(values);
+    }
+
+    private String evaluate(ProgramIndicatorEngine.CompiledIndicator indicator) {
+        RuleValue value = engine.evaluateValue(indicator, valueMap);
+        return value != null ? value.toString() : null;
+    }
+
+    private static boolean readsAny(ProgramIndicatorEngine.CompiledIndicator indicator,
+                                    boolean[] changed) {
+        for (int slot : indicator.getSlots()) {
+            if (changed[slot]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
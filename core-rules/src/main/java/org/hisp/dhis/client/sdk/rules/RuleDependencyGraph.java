@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariable;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariableSourceType;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Static dependency graph between data elements, program rule variables and compiled
+ * rules. For each data element it knows which rules have to be evaluated again when
+ * a value of the data element changes, including rules which read CALCULATED_VALUE
+ * variables assigned by affected rules.
+ */
+/* Part of RuleEngine implementation detail. Hence, class visibility defined as package private */
+class RuleDependencyGraph {
+    private final List<CompiledRule> rules;
+    private final Map<String, Dependencies> dependenciesMap;
+
+    public RuleDependencyGraph(List<CompiledRule> rules, List<ProgramRuleVariable> variables) {
+        this.rules = rules;
+        this.dependenciesMap = new HashMap<>();
+
+        Map<String, ProgramRuleVariable> variablesByName = new HashMap<>();
+        Map<String, List<ProgramRuleVariable>> variablesByDataElement = new HashMap<>();
+        if (variables != null) {
+            for (ProgramRuleVariable variable : variables) {
+                variablesByName.put(variable.getDisplayName(), variable);
+
+                if (variable.getDataElement() == null || variable.getSourceType() ==
+                        ProgramRuleVariableSourceType.CALCULATED_VALUE) {
+                    continue;
+                }
+
+                String dataElementUid = variable.getDataElement().getUId();
+                if (!variablesByDataElement.containsKey(dataElementUid)) {
+                    variablesByDataElement.put(dataElementUid,
+                            new ArrayList<ProgramRuleVariable>());
+                }
+                variablesByDataElement.get(dataElementUid).add(variable);
+            }
+        }
+
+        Map<String, List<Integer>> readers = new HashMap<>();
+        Map<String, List<Integer>> writers = new HashMap<>();
+        for (int index = 0; index < rules.size(); index++) {
+            CompiledRule rule = rules.get(index);
+            if (rule.getVariables() != null) {
+                for (String variableName : rule.getVariables()) {
+                    addIndex(readers, variableName, index);
+                }
+            }
+            for (String variableName : rule.getAssignedVariables()) {
+                addIndex(writers, variableName, index);
+            }
+        }
+
+        for (Map.Entry<String, List<ProgramRuleVariable>> entry :
+                variablesByDataElement.entrySet()) {
+            dependenciesMap.put(entry.getKey(), buildDependencies(entry.getValue(),
+                    variablesByName, readers, writers));
+        }
+    }
+
+    private static void addIndex(Map<String, List<Integer>> map, String key, int index) {
+        if (!map.containsKey(key)) {
+            map.put(key, new ArrayList<Integer>());
+        }
+        map.get(key).add(index);
+    }
+
+    private Dependencies buildDependencies(List<ProgramRuleVariable> changedVariables,
+                                           Map<String, ProgramRuleVariable> variablesByName,
+                                           Map<String, List<Integer>> readers,
+                                           Map<String, List<Integer>> writers) {
+        BitSet affectedRules = new BitSet(rules.size());
+        Set<String> visitedVariables = new HashSet<>();
+        List<ProgramRuleVariable> calculatedVariables = new ArrayList<>();
+        Queue<String> queue = new LinkedList<>();
+
+        for (ProgramRuleVariable variable : changedVariables) {
+            visitedVariables.add(variable.getDisplayName());
+            queue.add(variable.getDisplayName());
+        }
+
+        // rules with unknown references are always evaluated
+        for (int index = 0; index < rules.size(); index++) {
+            if (rules.get(index).getVariables() == null) {
+                markAffected(index, affectedRules, visitedVariables,
+                        calculatedVariables, variablesByName, queue);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            String variableName = queue.poll();
+
+            List<Integer> ruleIndexes = new ArrayList<>();
+            if (readers.containsKey(variableName)) {
+                ruleIndexes.addAll(readers.get(variableName));
+            }
+
+            // calculated value has to be computed from scratch, hence
+            // all rules which are assigning it have to run again
+            if (writers.containsKey(variableName)) {
+                ruleIndexes.addAll(writers.get(variableName));
+            }
+
+            for (Integer index : ruleIndexes) {
+                markAffected(index, affectedRules, visitedVariables,
+                        calculatedVariables, variablesByName, queue);
+            }
+        }
+
+        List<Integer> affectedIndexes = new ArrayList<>();
+        for (int index = affectedRules.nextSetBit(0); index >= 0;
+             index = affectedRules.nextSetBit(index + 1)) {
+            affectedIndexes.add(index);
+        }
+
+        List<ProgramRuleVariable> refreshedVariables = new ArrayList<>(changedVariables);
+        refreshedVariables.addAll(calculatedVariables);
+
+        return new Dependencies(Collections.unmodifiableList(affectedIndexes),
+                Collections.unmodifiableList(refreshedVariables));
+    }
+
+    private void markAffected(int index, BitSet affectedRules, Set<String> visitedVariables,
+                              List<ProgramRuleVariable> calculatedVariables,
+                              Map<String, ProgramRuleVariable> variablesByName,
+                              Queue<String> queue) {
+        if (affectedRules.get(index)) {
+            return;
+        }
+
+        affectedRules.set(index);
+        for (String assignedVariable : rules.get(index).getAssignedVariables()) {
+            if (visitedVariables.add(assignedVariable)) {
+                queue.add(assignedVariable);
+
+                if (variablesByName.containsKey(assignedVariable)) {
+                    calculatedVariables.add(variablesByName.get(assignedVariable));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return dependencies of given data element, or null if the
+     * data element is not referenced by any program rule variable.
+     */
+    public Dependencies getDependencies(String dataElementUid) {
+        return dependenciesMap.get(dataElementUid);
+    }
+
+    static class Dependencies {
+        // indexes of affected rules in priority order
+        private final List<Integer> ruleIndexes;
+
+        // variables which have to be resolved again before affected rules are evaluated
+        private final List<ProgramRuleVariable> variables;
+
+        Dependencies(List<Integer> ruleIndexes, List<ProgramRuleVariable> variables) {
+            this.ruleIndexes = ruleIndexes;
+            this.variables = variables;
+        }
+
+        public List<Integer> getRuleIndexes() {
+            return ruleIndexes;
+        }
+
+        public List<ProgramRuleVariable> getVariables() {
+            return variables;
+        }
+    }
+}
@@ -138,6 +138,43 @@ public class RuleEffect {
         this.data = data;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        RuleEffect that = (RuleEffect) o;
+        return programRuleActionType == that.programRuleActionType &&
+                equals(programRule, that.programRule) &&
+                equals(trackedEntityAttribute, that.trackedEntityAttribute) &&
+                equals(dataElement, that.dataElement) &&
+                equals(programIndicator, that.programIndicator) &&
+                equals(programStage, that.programStage) &&
+                equals(programStageSection, that.programStageSection) &&
+                equals(content, that.content) &&
+                equals(location, that.location) &&
+                equals(data, that.data);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = programRule != null ? programRule.hashCode() : 0;
+        result = 31 * result + (programRuleActionType != null ?
+                programRuleActionType.hashCode() : 0);
+        result = 31 * result + (content != null ? content.hashCode() : 0);
+        result = 31 * result + (data != null ? data.hashCode() : 0);
+        return result;
+    }
+
+    private static boolean equals(Object first, Object second) {
+        return first == null ? second == null : first.equals(second);
+    }
+
     @Override
     public String toString() {
         // return "";
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of effects of single rules. Entries are keyed by a 64 bit fingerprint
+ * of the rule and values of all variables it reads (see
+ * {@link RuleEngineVariableValueMap#getFingerprint(int)}), so effects are reused only
+ * when none of the inputs of the rule has changed. Size of the cache is limited by an
+ * estimate of memory taken by cached effects.
+ * <p>
+ * Effects are copied both when they are stored and when they are returned, since
+ * {@link RuleEffect} is mutable and callers of the engine may change effects they get.
+ */
+/* Part of RuleEngine implementation detail. Hence, class visibility defined as package private */
+class RuleEffectCache {
+    // rough estimate of memory taken by a map entry, its key and the list of effects
+    private static final int ENTRY_BYTES = 128;
+
+    // rough estimate of memory taken by an effect, not counting its data string
+    private static final int EFFECT_BYTES = 80;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long maxBytes;
+    private final Map<Long, Entry> entries;
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+    private long bytes;
+
+    RuleEffectCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Size of cache must be positive: " + maxBytes);
+        }
+
+        this.maxBytes = maxBytes;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+    }
+
+    /**
+     * @param slots slots of variables the rule reads.
+     * @return fingerprint of the rule and values of variables it reads.
+     */
+    static long fingerprint(CompiledRule rule, int[] slots,
+                            RuleEngineVariableValueMap valueMap) {
+        long fingerprint = mix(FNV_OFFSET_BASIS, System.identityHashCode(rule));
+        for (int slot : slots) {
+            fingerprint = mix(fingerprint, valueMap.getFingerprint(slot));
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @return FNV-1a hash of characters of the string.
+     */
+    static long hash(String value) {
+        if (value == null) {
+            return 0;
+        }
+
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Combines hash with another value, using finalizer of SplitMix64
+     * to spread bits of the value over the whole hash.
+     */
+    static long mix(long hash, long value) {
+        long mixed = hash * 31 + value + 0x9e3779b97f4a7c15L;
+        mixed = (mixed ^ (mixed >>> 30)) * 0xbf58476d1ce4e5b9L;
+        mixed = (mixed ^ (mixed >>> 27)) * 0x94d049bb133111ebL;
+        return mixed ^ (mixed >>> 31);
+    }
+
+    /**
+     * @return copies of cached effects of the rule, or null if there are none.
+     */
+    synchronized List<RuleEffect> get(long fingerprint, CompiledRule rule) {
+        Entry entry = entries.get(fingerprint);
+
+        // fingerprint includes identity hash of the rule, but the rule
+        // itself is compared as well to be safe against collisions
+        if (entry == null || entry.rule != rule) {
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        hitCount.incrementAndGet();
+        return copyOf(entry.effects);
+    }
+
+    synchronized void put(long fingerprint, CompiledRule rule, List<RuleEffect> effects) {
+        Entry entry = new Entry(rule, copyOf(effects));
+        if (entry.bytes > maxBytes) {
+            return;
+        }
+
+        Entry previous = entries.put(fingerprint, entry);
+        if (previous != null) {
+            bytes -= previous.bytes;
+        }
+        bytes += entry.bytes;
+
+        // evict least recently used entries
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            bytes -= iterator.next().bytes;
+            iterator.remove();
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    long getHitCount() {
+        return hitCount.get();
+    }
+
+    long getMissCount() {
+        return missCount.get();
+    }
+
+    synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return estimate of memory taken by cached effects in bytes.
+     */
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private static List<RuleEffect> copyOf(List<RuleEffect> effects) {
+        List<RuleEffect> copies = new ArrayList<>(effects.size());
+        for (RuleEffect effect : effects) {
+            RuleEffect copy = new RuleEffect();
+            copy.setProgramRule(effect.getProgramRule());
+            copy.setTrackedEntityAttribute(effect.getTrackedEntityAttribute());
+            copy.setDataElement(effect.getDataElement());
+            copy.setProgramIndicator(effect.getProgramIndicator());
+            copy.setProgramStage(effect.getProgramStage());
+            copy.setProgramStageSection(effect.getProgramStageSection());
+            copy.setProgramRuleActionType(effect.getProgramRuleActionType());
+            copy.setContent(effect.getContent());
+            copy.setLocation(effect.getLocation());
+            copy.setData(effect.getData());
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    private static final class Entry {
+        final CompiledRule rule;
+        final List<RuleEffect> effects;
+        final long bytes;
+
+        Entry(CompiledRule rule, List<RuleEffect> effects) {
+            this.rule = rule;
+            this.effects = effects;
+
+            long size = ENTRY_BYTES;
+            for (RuleEffect effect : effects) {
+                size += EFFECT_BYTES;
+                if (effect.getData() != null) {
+                    size += 2L * effect.getData().length();
+                }
+            }
+            this.bytes = size;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Difference between rule effects of two consecutive executions
+ * of a {@link RuleEngineSession}.
+ */
+public class RuleEffectDiff {
+    private final List<RuleEffect> addedEffects;
+    private final List<RuleEffect> removedEffects;
+
+    RuleEffectDiff(List<RuleEffect> addedEffects, List<RuleEffect> removedEffects) {
+        this.addedEffects = Collections.unmodifiableList(addedEffects);
+        this.removedEffects = Collections.unmodifiableList(removedEffects);
+    }
+
+    /**
+     * @return effects which were not present in previous execution.
+     */
+    public List<RuleEffect> getAddedEffects() {
+        return addedEffects;
+    }
+
+    /**
+     * @return effects which were present in previous execution, but are not anymore.
+     */
+    public List<RuleEffect> getRemovedEffects() {
+        return removedEffects;
+    }
+
+    public boolean isEmpty() {
+        return addedEffects.isEmpty() && removedEffects.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "RuleEffectDiff{" +
+                "addedEffects=" + addedEffects +
+                ", removedEffects=" + removedEffects +
+                '}';
+    }
+}
@@ -38,10 +38,37 @@ import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariable;
 import org.hisp.dhis.client.sdk.models.trackedentity.TrackedEntityAttribute;
 import org.hisp.dhis.client.sdk.models.trackedentity.TrackedEntityInstance;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Evaluates program rules against events. The engine is immutable once built: rules are
+ * compiled and sorted by priority only once, and every execution works on its own
+ * variable value map. Hence, a single instance can be shared by multiple threads.
+ * <p>
+ * While rules are compiled, values of constants are inlined, constant subexpressions are
+ * folded and rules which conditions are always false are left out. Rules are grouped by
+ * program stage, so that events of a stage are evaluated only against rules which apply
+ * to it.
+ * <p>
+ * Value maps are reused between executions: one map is kept by the engine and taken by
+ * an execution for its duration. Executions which run concurrently create their own.
+ */
 public class RuleEngine {
+    // number of events evaluated by one task in batch execution
+    private static final int BATCH_CHUNK_SIZE = 64;
+
     private final List<TrackedEntityAttribute> trackedEntityAttributes;
     private final List<ProgramRuleVariable> programRuleVariables;
     private final List<ProgramRule> programRules;
@@ -49,10 +76,34 @@ public class RuleEngine {
     private final List<OptionSet> optionSets;
     private final List<Constant> constants;
 
+    // slots of variables, which compiled rules and value maps are bound to
+    private final RuleVariableSlots variableSlots;
+
+    // rules with parsed conditions and action data, sorted by priority
+    private final List<CompiledRule> compiledRules;
+
+    // rules which apply to events of each program stage referenced by rules,
+    // and rules which apply to events of any other program stage
+    private final Map<String, List<CompiledRule>> rulesByProgramStage;
+    private final List<CompiledRule> rulesWithoutProgramStage;
+
+    // used by sessions to find rules affected by a changed data element
+    private final RuleDependencyGraph dependencyGraph;
+
+    // value map which is not used by any execution at the moment
+    private final AtomicReference<RuleEngineVariableValueMap> idleValueMap;
+
+    // cache of effects of single rules, null if caching is disabled
+    private final RuleEffectCache effectCache;
+
+    // instrumentation of evaluation, null if disabled
+    private final RuleEngineListener listener;
+
     private RuleEngine(List<TrackedEntityAttribute> trackedEntityAttributes,
                        List<ProgramRuleVariable> programRuleVariables,
                        List<ProgramRule> programRules, List<DataElement> dataElements,
-                       List<OptionSet> optionSets, List<Constant> constants) {
+                       List<OptionSet> optionSets, List<Constant> constants,
+                       long effectCacheBytes, RuleEngineListener listener) {
 
         // we need to make defensive copies in order to
         // avoid concurrent list modification exceptions
@@ -62,25 +113,123 @@ public class RuleEngine {
         this.trackedEntityAttributes = safeList(trackedEntityAttributes);
         this.optionSets = safeList(optionSets);
         this.constants = safeList(constants);
+        this.variableSlots = RuleVariableSlots.create(this.programRuleVariables);
+        this.compiledRules = CompiledRule.compile(this.programRules,
+                this.variableSlots, createConstantValues(this.constants));
+        this.rulesWithoutProgramStage = new ArrayList<>();
+        this.rulesByProgramStage = groupByProgramStage(
+                this.compiledRules, this.rulesWithoutProgramStage);
+        this.dependencyGraph = new RuleDependencyGraph(
+                this.compiledRules, this.programRuleVariables);
+        this.idleValueMap = new AtomicReference<>();
+        this.effectCache = effectCacheBytes > 0 ? new RuleEffectCache(effectCacheBytes) : null;
+        this.listener = listener;
     }
 
     private static <T> List<T> safeList(List<T> values) {
         List<T> defensiveCopy = null;
 
         if (values != null) {
-            defensiveCopy = new ArrayList<>(values);
+            defensiveCopy = Collections.unmodifiableList(new ArrayList<>(values));
         }
 
         return defensiveCopy;
     }
 
+    /**
+     * @return values of constants formatted as numbers which can be inlined into expressions.
+     */
+    static Map<String, String> createConstantValues(List<Constant> constants) {
+        Map<String, String> constantValues = new HashMap<>();
+        if (constants == null) {
+            return constantValues;
+        }
+
+        for (Constant constant : constants) {
+            double value = constant.getValue();
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                continue;
+            }
+
+            if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+                constantValues.put(constant.getUId(), Long.toString((long) value));
+            } else {
+                constantValues.put(constant.getUId(), BigDecimal.valueOf(value).toPlainString());
+            }
+        }
+        return constantValues;
+    }
+
+    /**
+     * Groups rules by program stage they are limited to. Each group contains rules of the
+     * program stage together with rules which apply to all stages, in priority order.
+     *
+     * @param rulesWithoutProgramStage receives rules which apply to all program stages.
+     */
+    private static Map<String, List<CompiledRule>> groupByProgramStage(
+            List<CompiledRule> rules, List<CompiledRule> rulesWithoutProgramStage) {
+        Map<String, List<CompiledRule>> rulesByProgramStage = new HashMap<>();
+        for (CompiledRule rule : rules) {
+            String programStageUid = rule.getProgramStageUid();
+            if (programStageUid != null && !rulesByProgramStage.containsKey(programStageUid)) {
+                rulesByProgramStage.put(programStageUid, new ArrayList<CompiledRule>());
+            }
+        }
+
+        for (CompiledRule rule : rules) {
+            if (rule.getProgramStageUid() == null) {
+                rulesWithoutProgramStage.add(rule);
+            }
+
+            for (Map.Entry<String, List<CompiledRule>> group : rulesByProgramStage.entrySet()) {
+                if (rule.isApplicableTo(group.getKey())) {
+                    group.getValue().add(rule);
+                }
+            }
+        }
+        return rulesByProgramStage;
+    }
+
+    /**
+     * @return rules which have to be evaluated for the event.
+     */
+    private List<CompiledRule> getRules(Event event) {
+        String programStageUid = event != null ? event.getProgramStage() : null;
+        if (programStageUid == null) {
+            return compiledRules;
+        }
+
+        List<CompiledRule> rules = rulesByProgramStage.get(programStageUid);
+        return rules != null ? rules : rulesWithoutProgramStage;
+    }
+
     private List<RuleEffect> execute(
             Event event, TrackedEntityInstance instance, List<Event> events) {
+        return execute(event, new EventHistoryIndex(events));
+    }
 
-        RuleEngineVariableValueMap variableValueMap =
-                new RuleEngineVariableValueMap(this.programRuleVariables, event, events);
+    /**
+     * Evaluates rules for the event against an index of events of its enrollment. The
+     * index can be built once per enrollment, reused for each of its events and kept
+     * up to date with {@link EventHistoryIndex#update(Event)} when an event is saved.
+     */
+    public List<RuleEffect> execute(Event event, EventHistoryIndex eventHistory) {
+        RuleEngineVariableValueMap variableValueMap = idleValueMap.getAndSet(null);
+        if (variableValueMap == null) {
+            variableValueMap = new RuleEngineVariableValueMap(
+                    this.variableSlots, event, eventHistory);
+            variableValueMap.setListener(this.listener);
+        } else {
+            variableValueMap.reset(event, eventHistory);
+        }
 
-        return RuleEngineExecution.execute(this.programRules, variableValueMap);
+        try {
+            return RuleEngineExecution.executeCompiled(
+                    getRules(event), variableValueMap, this.effectCache);
+        } finally {
+            variableValueMap.clear();
+            idleValueMap.set(variableValueMap);
+        }
     }
 
     public List<RuleEffect> execute(Event currentEvent, Enrollment enrollment) {
@@ -91,6 +240,146 @@ public class RuleEngine {
         return execute(currentEvent, null, events);
     }
 
+    /**
+     * Evaluates rules for many events in one call. See
+     * {@link #executeBatch(List, Map, ExecutorService)}.
+     */
+    public Map<String, List<RuleEffect>> executeBatch(
+            List<Event> events, Map<String, List<Event>> eventHistory) {
+        return executeBatch(events, eventHistory, null);
+    }
+
+    /**
+     * Evaluates rules for many events in one call. Events of an enrollment are sorted
+     * and indexed only once per distinct history list, and the index is shared by all
+     * events which point to the same list instance.
+     *
+     * @param events          events to evaluate rules for.
+     * @param eventHistory    events of the enrollment each event belongs to, keyed by event
+     *                        uid. Events without history are evaluated on their own.
+     * @param executorService if not null, events are evaluated in chunks on it.
+     * @return effects keyed by event uid, in the same order as events were passed.
+     */
+    public Map<String, List<RuleEffect>> executeBatch(
+            List<Event> events, Map<String, List<Event>> eventHistory,
+            ExecutorService executorService) {
+        Map<String, List<RuleEffect>> effects = new LinkedHashMap<>();
+        if (events == null || events.isEmpty()) {
+            return effects;
+        }
+
+        // index every distinct history list only once
+        Map<List<Event>, EventHistoryIndex> indexes = new IdentityHashMap<>();
+        final List<EventHistoryIndex> eventIndexes = new ArrayList<>(events.size());
+        EventHistoryIndex emptyIndex = new EventHistoryIndex(null);
+        for (Event event : events) {
+            List<Event> history = eventHistory != null ?
+                    eventHistory.get(event.getUId()) : null;
+
+            if (history == null) {
+                eventIndexes.add(emptyIndex);
+                continue;
+            }
+
+            if (!indexes.containsKey(history)) {
+                indexes.put(history, new EventHistoryIndex(history));
+            }
+            eventIndexes.add(indexes.get(history));
+        }
+
+        if (executorService == null) {
+            for (int i = 0; i < events.size(); i++) {
+                effects.put(events.get(i).getUId(), execute(events.get(i), eventIndexes.get(i)));
+            }
+            return effects;
+        }
+
+        List<Future<List<List<RuleEffect>>>> futures = new ArrayList<>();
+        for (int start = 0; start < events.size(); start += BATCH_CHUNK_SIZE) {
+            final List<Event> chunk = events.subList(start,
+                    Math.min(start + BATCH_CHUNK_SIZE, events.size()));
+            final int offset = start;
+
+            futures.add(executorService.submit(new Callable<List<List<RuleEffect>>>() {
+                @Override
+                public List<List<RuleEffect>> call() throws Exception {
+                    List<List<RuleEffect>> chunkEffects = new ArrayList<>(chunk.size());
+                    for (int i = 0; i < chunk.size(); i++) {
+                        chunkEffects.add(execute(chunk.get(i), eventIndexes.get(offset + i)));
+                    }
+                    return chunkEffects;
+                }
+            }));
+        }
+
+        int index = 0;
+        for (Future<List<List<RuleEffect>>> future : futures) {
+            for (List<RuleEffect> eventEffects : getResult(future)) {
+                effects.put(events.get(index++).getUId(), eventEffects);
+            }
+        }
+
+        return effects;
+    }
+
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Rule evaluation was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return number of rule evaluations answered from the effect cache.
+     */
+    public long getEffectCacheHitCount() {
+        return effectCache != null ? effectCache.getHitCount() : 0;
+    }
+
+    /**
+     * @return number of rule evaluations which were not found in the effect cache.
+     */
+    public long getEffectCacheMissCount() {
+        return effectCache != null ? effectCache.getMissCount() : 0;
+    }
+
+    /**
+     * @return estimate of memory taken by cached effects in bytes.
+     */
+    public long getEffectCacheBytes() {
+        return effectCache != null ? effectCache.getBytes() : 0;
+    }
+
+    public void clearEffectCache() {
+        if (effectCache != null) {
+            effectCache.clear();
+        }
+    }
+
+    /**
+     * Creates a session for incremental evaluation of rules for the given event.
+     * See {@link RuleEngineSession#execute(String)}.
+     */
+    public RuleEngineSession createSession(Event currentEvent, Enrollment enrollment) {
+        return createSession(currentEvent, enrollment.getEvents());
+    }
+
+    public RuleEngineSession createSession(Event currentEvent, List<Event> events) {
+        return createSession(currentEvent, new EventHistoryIndex(events));
+    }
+
+    public RuleEngineSession createSession(Event currentEvent, EventHistoryIndex eventHistory) {
+        return new RuleEngineSession(this.variableSlots, this.compiledRules,
+                this.dependencyGraph, currentEvent, eventHistory, this.listener);
+    }
+
     public static class Builder {
         private List<TrackedEntityAttribute> trackedEntityAttributes;
         private List<ProgramRuleVariable> programRuleVariables;
@@ -98,6 +387,8 @@ public class RuleEngine {
         private List<DataElement> dataElements;
         private List<OptionSet> optionSets;
         private List<Constant> constants;
+        private long effectCacheBytes;
+        private RuleEngineListener listener;
 
         public Builder() {
             // explicit empty constructor
@@ -133,11 +424,33 @@ public class RuleEngine {
             return this;
         }
 
+        /**
+         * Enables cache of rule effects: effects of a rule are reused as long as values of
+         * variables it reads stay the same. Every execution gets its own copies of cached
+         * effects, so callers are free to modify them.
+         *
+         * @param maxBytes limit of estimated memory taken by cached effects,
+         *                 0 disables the cache (default).
+         */
+        public Builder effectCacheSize(long maxBytes) {
+            this.effectCacheBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Sets listener which is notified about evaluation of each rule, calls of
+         * functions and evaluation failures, for example {@link RuleEngineDiagnostics}.
+         */
+        public Builder listener(RuleEngineListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
         public RuleEngine build() {
             return new RuleEngine(
                     trackedEntityAttributes, programRuleVariables,
                     programRules, dataElements,
-                    optionSets, constants);
+                    optionSets, constants, effectCacheBytes, listener);
         }
     }
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.program.ProgramRule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@link RuleEngineListener} which collects statistics of evaluation per program rule:
+ * number of evaluations, time spent in them, calls of d2: functions and failures.
+ * Statistics can be read as a list sorted by total evaluation time, or as a text summary
+ * which lists the most expensive rules. Instances are thread safe.
+ */
+public class RuleEngineDiagnostics implements RuleEngineListener {
+    private static final Comparator<RuleStatistics> TOTAL_TIME_COMPARATOR =
+            new Comparator<RuleStatistics>() {
+                @Override
+                public int compare(RuleStatistics first, RuleStatistics second) {
+                    return first.totalNanos > second.totalNanos ? -1 :
+                            (first.totalNanos == second.totalNanos ? 0 : 1);
+                }
+            };
+
+    // statistics by uid of program rule, null key is used for calls outside of rules
+    private final Map<String, RuleStatistics> statistics;
+
+    public RuleEngineDiagnostics() {
+        this.statistics = new HashMap<>();
+    }
+
+    private RuleStatistics getStatistics(ProgramRule programRule) {
+        String ruleUid = programRule != null ? programRule.getUId() : null;
+        RuleStatistics ruleStatistics = statistics.get(ruleUid);
+        if (ruleStatistics == null) {
+            ruleStatistics = new RuleStatistics(ruleUid);
+            statistics.put(ruleUid, ruleStatistics);
+        }
+        return ruleStatistics;
+    }
+
+    @Override
+    public synchronized void onRuleEvaluated(ProgramRule programRule, long durationNanos) {
+        RuleStatistics ruleStatistics = getStatistics(programRule);
+        ruleStatistics.evaluationCount++;
+        ruleStatistics.totalNanos += durationNanos;
+        ruleStatistics.maxNanos = Math.max(ruleStatistics.maxNanos, durationNanos);
+    }
+
+    @Override
+    public synchronized void onFunctionCalled(ProgramRule programRule, String functionName) {
+        Map<String, Long> functionCalls = getStatistics(programRule).functionCalls;
+        Long count = functionCalls.get(functionName);
+        functionCalls.put(functionName, count != null ? count + 1 : 1L);
+    }
+
+    @Override
+    public synchronized void onEvaluationFailed(ProgramRule programRule, String expression,
+                                                Exception exception) {
+        RuleStatistics ruleStatistics = getStatistics(programRule);
+        ruleStatistics.failureCount++;
+        ruleStatistics.lastFailure = (expression != null ? expression + ": " : "") + exception;
+    }
+
+    /**
+     * @return copy of statistics of all rules, sorted by total evaluation time.
+     */
+    public synchronized List<RuleStatistics> getRuleStatistics() {
+        List<RuleStatistics> ruleStatistics = new ArrayList<>(statistics.size());
+        for (RuleStatistics value : statistics.values()) {
+            ruleStatistics.add(new RuleStatistics(value));
+        }
+
+        Collections.sort(ruleStatistics, TOTAL_TIME_COMPARATOR);
+        return ruleStatistics;
+    }
+
+    /**
+     * @return number of calls of each d2: function across all rules.
+     */
+    public synchronized Map<String, Long> getFunctionCalls() {
+        Map<String, Long> functionCalls = new TreeMap<>();
+        for (RuleStatistics ruleStatistics : statistics.values()) {
+            for (Map.Entry<String, Long> calls : ruleStatistics.functionCalls.entrySet()) {
+                Long count = functionCalls.get(calls.getKey());
+                functionCalls.put(calls.getKey(), calls.getValue() + (count != null ? count : 0));
+            }
+        }
+        return functionCalls;
+    }
+
+    public synchronized void reset() {
+        statistics.clear();
+    }
+
+    /**
+     * @param ruleCount maximum number of rules to list.
+     * @return text summary with the most expensive rules first,
+     * followed by calls of functions and failures.
+     */
+    public String getSummary(int ruleCount) {
+        List<RuleStatistics> ruleStatistics = getRuleStatistics();
+
+        long totalNanos = 0;
+        for (RuleStatistics value : ruleStatistics) {
+            totalNanos += value.totalNanos;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.US, "%d rules, %.3f ms in total%n",
+                ruleStatistics.size(), totalNanos / 1e6));
+
+        for (int i = 0; i < ruleStatistics.size() && i < ruleCount; i++) {
+            RuleStatistics value = ruleStatistics.get(i);
+            builder.append(String.format(Locale.US,
+                    "%s: %d evaluations, %.3f ms total (%.1f%%), %.3f ms max",
+                    value.ruleUid, value.evaluationCount, value.totalNanos / 1e6,
+                    totalNanos > 0 ? 100.0 * value.totalNanos / totalNanos : 0.0,
+                    value.maxNanos / 1e6));
+            if (!value.functionCalls.isEmpty()) {
+                builder.append(", functions ").append(new TreeMap<>(value.functionCalls));
+            }
+            if (value.failureCount > 0) {
+                builder.append(", ").append(value.failureCount)
+                        .append(" failures, last: ").append(value.lastFailure);
+            }
+            builder.append(String.format("%n"));
+        }
+
+        builder.append("functions: ").append(getFunctionCalls());
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getSummary(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Statistics of evaluation of one program rule.
+     */
+    public static final class RuleStatistics {
+        private final String ruleUid;
+        private final Map<String, Long> functionCalls;
+        private long evaluationCount;
+        private long totalNanos;
+        private long maxNanos;
+        private long failureCount;
+        private String lastFailure;
+
+        private RuleStatistics(String ruleUid) {
+            this.ruleUid = ruleUid;
+            this.functionCalls = new HashMap<>();
+        }
+
+        private RuleStatistics(RuleStatistics other) {
+            this.ruleUid = other.ruleUid;
+            this.functionCalls = Collections.unmodifiableMap(
+                    new HashMap<>(other.functionCalls));
+            this.evaluationCount = other.evaluationCount;
+            this.totalNanos = other.totalNanos;
+            this.maxNanos = other.maxNanos;
+            this.failureCount = other.failureCount;
+            this.lastFailure = other.lastFailure;
+        }
+
+        /**
+         * @return uid of the rule, or null for calls outside of rule evaluation.
+         */
+        public String getRuleUid() {
+            return ruleUid;
+        }
+
+        public long getEvaluationCount() {
+            return evaluationCount;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getFailureCount() {
+            return failureCount;
+        }
+
+        /**
+         * @return description of the last failure, or null.
+         */
+        public String getLastFailure() {
+            return lastFailure;
+        }
+
+        /**
+         * @return number of calls of each d2: function made by the rule.
+         */
+        public Map<String, Long> getFunctionCalls() {
+            return functionCalls;
+        }
+
+        @Override
+        public String toString() {
+            return "RuleStatistics{" +
+                    "ruleUid='" + ruleUid + '\'' +
+                    ", evaluationCount=" + evaluationCount +
+                    ", totalNanos=" + totalNanos +
+                    ", maxNanos=" + maxNanos +
+                    ", failureCount=" + failureCount +
+                    ", functionCalls=" + functionCalls +
+                    '}';
+        }
+    }
+}
@@ -43,22 +43,113 @@ import java.util.regex.Pattern;
 public class RuleEngineExecution {
     private static final Pattern VARIABLE_PATTERN = Pattern.compile("[A#CV]\\{(\\w+.?\\w*)\\}");
 
+    //Any function call with any number of parameters inside single quotations, or number parameters
+    //without quotations. Group 1 is the function name, group 2 the parameter list.
+    private static final Pattern FUNCTION_CALL_PATTERN = Pattern.compile(
+            "(d2:\\w+)\\(( *(?:[\\d/\\*\\+\\-%\\. ]+|'[^']*')*(?: *, *(?:[\\d/\\*\\+\\-%\\. ]+|'[^']*'))* *)\\)");
+    private static final Pattern PARAMETERS_PATTERN = Pattern.compile("('[^']+')|([^,]+)");
+
     public static List<RuleEffect> execute(
             List<ProgramRule> rules, RuleEngineVariableValueMap variableValueMap) {
+        return executeCompiled(CompiledRule.compile(
+                rules, variableValueMap.getSlots()), variableValueMap);
+    }
 
-        Collections.sort(rules, ProgramRule.PRIORITY_COMPARATOR);
+    /**
+     * Evaluates already compiled rules. Rules are expected to be sorted by priority.
+     */
+    static List<RuleEffect> executeCompiled(
+            List<CompiledRule> rules, RuleEngineVariableValueMap variableValueMap) {
+        return executeCompiled(rules, variableValueMap, null);
+    }
 
+    /**
+     * Evaluates already compiled rules, reusing effects of rules which inputs have not
+     * changed since they were cached. Rules are expected to be sorted by priority.
+     *
+     * @param effectCache cache of effects, or null if effects should not be cached.
+     */
+    static List<RuleEffect> executeCompiled(
+            List<CompiledRule> rules, RuleEngineVariableValueMap variableValueMap,
+            RuleEffectCache effectCache) {
         ArrayList<RuleEffect> effects = new ArrayList<>();
 
-        // trying to read same rules list causes
-        // java.util.ConcurrentModificationException exception?
-        for (ProgramRule rule : rules) {
-            if (conditionIsTrue(rule.getCondition(), variableValueMap)) {
-                for (ProgramRuleAction action : rule.getProgramRuleActions()) {
-                    effects.add(createEffect(action, variableValueMap));
+        for (CompiledRule rule : rules) {
+            int[] slots = effectCache != null ? rule.getVariableSlots(variableValueMap) : null;
+            if (slots == null) {
+                effects.addAll(executeRule(rule, variableValueMap));
+                continue;
+            }
+
+            // fingerprint has to be taken before the rule is evaluated,
+            // since ASSIGN actions of the rule can change values it reads
+            long fingerprint = RuleEffectCache.fingerprint(rule, slots, variableValueMap);
+            List<RuleEffect> ruleEffects = effectCache.get(fingerprint, rule);
+            if (ruleEffects == null) {
+                ruleEffects = executeRule(rule, variableValueMap);
+                effectCache.put(fingerprint, rule, ruleEffects);
+            } else {
+                assignValues(rule, ruleEffects, variableValueMap);
+            }
+
+            effects.addAll(ruleEffects);
+        }
+
+        return effects;
+    }
+
+    /**
+     * Applies ASSIGN effects of a rule to the value map, like evaluation of the rule would.
+     */
+    private static void assignValues(CompiledRule rule, List<RuleEffect> effects,
+                                     RuleEngineVariableValueMap variableValueMap) {
+        // effects of a rule which condition was true follow order of its actions
+        for (int i = 0; i < effects.size(); i++) {
+            if (effects.get(i).getProgramRuleActionType() == ProgramRuleActionType.ASSIGN) {
+                int slot = rule.getActions().get(i).getAssignedSlot(variableValueMap);
+                if (slot >= 0) {
+                    variableValueMap.setValue(slot, effects.get(i).getData());
                 }
             }
         }
+    }
+
+    /**
+     * Evaluates a single compiled rule.
+     *
+     * @return effects of the rule, or empty list if its condition is false.
+     */
+    static List<RuleEffect> executeRule(
+            CompiledRule rule, RuleEngineVariableValueMap variableValueMap) {
+        RuleEngineListener listener = variableValueMap.getListener();
+        if (listener == null) {
+            return evaluateRule(rule, variableValueMap);
+        }
+
+        variableValueMap.setCurrentRule(rule.getProgramRule());
+        long start = System.nanoTime();
+        try {
+            return evaluateRule(rule, variableValueMap);
+        } catch (RuntimeException exception) {
+            listener.onEvaluationFailed(rule.getProgramRule(), null, exception);
+            throw exception;
+        } finally {
+            listener.onRuleEvaluated(rule.getProgramRule(), System.nanoTime() - start);
+            variableValueMap.setCurrentRule(null);
+        }
+    }
+
+    private static List<RuleEffect> evaluateRule(
+            CompiledRule rule, RuleEngineVariableValueMap variableValueMap) {
+        if (!rule.getCondition().isTrue(variableValueMap)) {
+            return Collections.emptyList();
+        }
+
+        List<RuleEffect> effects = new ArrayList<>(rule.getActions().size());
+        for (CompiledRule.CompiledAction action : rule.getActions()) {
+            effects.add(createEffect(action,
+                    action.getData().evaluate(variableValueMap), variableValueMap));
+        }
 
         return effects;
     }
@@ -77,10 +168,9 @@ public class RuleEngineExecution {
 
             for (String variable : variablesFound) {
                 String variableName = variable.replace("#{", "").replace("V{", "").replace("A{", "").replace("}", "");
-                ProgramRuleVariableValue variableValue = variableValueMap.getProgramRuleVariableValue(
-                        variableName);
+                String variableValue = variableValueMap.getValueString(variableName);
                 if (variableValue != null) {
-                    expression = expression.replace(variable, variableValue.toString());
+                    expression = expression.replace(variable, variableValue);
                 } else {
                     //TODO Log the problem - the expression contains a variable that is not defined
                     throw new IllegalArgumentException("Variable " + variableName + " found in expression "
@@ -93,122 +183,144 @@ public class RuleEngineExecution {
     }
 
     private static String runDhisFunctions(String expression,
-                                    final RuleEngineVariableValueMap variableValueMap) {
+                                           final RuleEngineVariableValueMap variableValueMap) {
         //Called from "runExpression". Only proceed with this logic in case there seems to be dhis function calls: "d2:" is present.
-        if(expression != null && expression.contains("d2:")){
-            boolean continueLooping = true;
-            //Safety harness on 10 loops, in case of unanticipated syntax causing unintencontinued looping
-            for(int i = 0; i < 10 && continueLooping; i++ ) {
-                boolean expressionUpdated = false;
-                boolean brokenExecution = false;
-                for (DhisFunction dhisFunction : DhisFunction.getDhisFunctions()){
-                    //Select the function call, with any number of parameters inside single quotations, or number parameters witout quotations
-                    Pattern regularExFunctionCall = Pattern.compile(dhisFunction.getName() + "\\( *(([\\d/\\*\\+\\-%\\. ]+)|( *'[^']*'))*( *, *(([\\d/\\*\\+\\-%\\. ]+)|'[^']*'))* *\\)");
-                    Matcher callsToThisFunction = regularExFunctionCall.matcher(expression);
-                    while(callsToThisFunction.find()) {
-                        String callToThisFunction = callsToThisFunction.group();
-
-                        //Separate out parameters - Remove the function name and paranthesis:
-                        List<String> parameters = new ArrayList<>(2);
-                        Pattern justParametersPattern = Pattern.compile("(^[^\\(]+\\()|\\)");
-                        Matcher justParametersMatcher = justParametersPattern.matcher(callToThisFunction);
-                        String justParameters = justParametersMatcher.replaceAll("");
-
-                        //Then split into single parameters:
-                        Pattern splitParametersPattern = Pattern.compile("(('[^']+')|([^,]+))");
-                        Matcher splitParametersMatcher = splitParametersPattern.matcher(justParameters);
-
-                        while(splitParametersMatcher.find()) {
-                            parameters.add(splitParametersMatcher.group());
-                        }
-
-                        //Show error if no parameters is given and the function requires parameters,
-                        //or if the number of parameters is wrong.
-                        //But we are only checking parameters where the dhisFunction actually has a
-                        //defined set of parameters(concatenate, for example, does not have a fixed number);
-                        if(dhisFunction.getParameters() != null
-                                && dhisFunction.getParameters() > 0){
-
-
-                            if(parameters.size() != dhisFunction.getParameters()){
-                                throw new IllegalArgumentException( "Wrong number of parameters for function "
-                                        + dhisFunction.getName() + ". Expecting " + dhisFunction.getParameters()
-                                        + ", found " + parameters.size());
-                                //Mark this function call as broken:
-                                //brokenExecution = true;
-                            }
-                        }
-
-                        //In case the function call is nested, the parameter itself contains an expression, run the expression.
-                        if(!brokenExecution && parameters.size() > 0) {
-                            for (int j = 0; j < parameters.size(); j++) {
-                                parameters.set(j, runExpression(parameters.get(j), variableValueMap));
-                            }
-                        }
-
-                        if(brokenExecution) {
-                            //Function call is not possible to evaluate, remove the call:
-                            expression = expression.replace(callToThisFunction, "false");
-                            expressionUpdated = true;
-                        } else {
-                            String executionResult = dhisFunction.execute(parameters, variableValueMap, expression);
-                            expression = expression.replace(callToThisFunction, executionResult);
-                        }
-
-                    }
-                    //We only want to continue looping until we made a successful replacement,
-                    //and there is still occurrences of "d2:" in the code. In cases where d2: occur outside
-                    //the expected d2: function calls, one unneccesary iteration will be done and the
-                    //successfulExecution will be false coming back here, ending the loop. The last iteration
-                    //should be zero to marginal performancewise.
-                    if(expressionUpdated && expression.contains("d2:")) {
-                        continueLooping = true;
-                    } else {
-                        continueLooping = false;
-                    }
+        if (expression == null || !expression.contains("d2:")) {
+            return expression;
+        }
+
+        //Each pass replaces the innermost calls (the ones with plain parameters), which allows
+        //nested calls to be resolved in the next pass. Safety harness on 10 passes, in case of
+        //unanticipated syntax causing unintended looping
+        for (int i = 0; i < 10; i++) {
+            Matcher callMatcher = FUNCTION_CALL_PATTERN.matcher(expression);
+            StringBuilder builder = null;
+            int lastEnd = 0;
+
+            while (callMatcher.find()) {
+                DhisFunction dhisFunction = DhisFunction.getDhisFunction(callMatcher.group(1));
+                if (dhisFunction == null) {
+                    // not a known function, leave the call as it is
+                    continue;
+                }
+
+                //Separate out parameters:
+                List<String> parameters = new ArrayList<>(2);
+                Matcher parametersMatcher = PARAMETERS_PATTERN.matcher(callMatcher.group(2));
+                while (parametersMatcher.find()) {
+                    parameters.add(parametersMatcher.group());
+                }
+
+                //Show error if no parameters is given and the function requires parameters,
+                //or if the number of parameters is wrong.
+                //But we are only checking parameters where the dhisFunction actually has a
+                //defined set of parameters(concatenate, for example, does not have a fixed number);
+                if (dhisFunction.getParameters() != null
+                        && dhisFunction.getParameters() > 0
+                        && parameters.size() != dhisFunction.getParameters()) {
+                    throw new IllegalArgumentException("Wrong number of parameters for function "
+                            + dhisFunction.getName() + ". Expecting " + dhisFunction.getParameters()
+                            + ", found " + parameters.size());
+                }
+
+                //In case the parameter itself contains an expression, run the expression.
+                for (int j = 0; j < parameters.size(); j++) {
+                    parameters.set(j, runExpression(parameters.get(j), variableValueMap));
+                }
+
+                if (builder == null) {
+                    builder = new StringBuilder(expression.length());
+                }
 
+                if (variableValueMap != null && variableValueMap.getListener() != null) {
+                    variableValueMap.getListener().onFunctionCalled(
+                            variableValueMap.getCurrentRule(), dhisFunction.getName());
                 }
+
+                builder.append(expression, lastEnd, callMatcher.start());
+                builder.append(dhisFunction.execute(parameters, variableValueMap, expression));
+                lastEnd = callMatcher.end();
+            }
+
+            if (builder == null) {
+                // nothing was replaced in this pass
+                break;
+            }
+
+            builder.append(expression, lastEnd, expression.length());
+            expression = builder.toString();
+
+            if (!expression.contains("d2:")) {
+                break;
             }
         }
 
         return expression;
+    }
 
+    static String evaluateExpression(String expression) {
+        return evaluateExpression(expression, null);
     }
 
-    private static String evaluateExpression(String expression) {
+    /**
+     * @param variableValueMap map which failures are reported to, can be null.
+     */
+    static String evaluateExpression(String expression,
+                                     RuleEngineVariableValueMap variableValueMap) {
         if(expression != null && expression.length() > 0) {
             try {
                 Object response = ExpressionUtils.evaluate(expression, null);
                 expression = response.toString();
             } catch (JexlException jxlException) {
-                jxlException.printStackTrace();
+                reportFailure(expression, jxlException, variableValueMap);
             }
         }
         return expression;
     }
 
-    private static String runExpression(String expression,
+    /**
+     * Passes the failure to the listener of the value map, if there is one.
+     * Otherwise, the stack trace is printed.
+     */
+    private static void reportFailure(String expression, Exception exception,
+                                      RuleEngineVariableValueMap variableValueMap) {
+        RuleEngineListener listener = variableValueMap != null ?
+                variableValueMap.getListener() : null;
+        if (listener != null) {
+            listener.onEvaluationFailed(variableValueMap.getCurrentRule(), expression, exception);
+        } else {
+            exception.printStackTrace();
+        }
+    }
+
+    static String runExpression(String expression,
                                         RuleEngineVariableValueMap variableValueMap) {
         expression = replaceVariables(expression, variableValueMap);
         expression = runDhisFunctions(expression, variableValueMap);
-        expression = evaluateExpression(expression);
+        expression = evaluateExpression(expression, variableValueMap);
         return expression;
     }
 
     /**
-     * Evaluates a passed expression from a {@link ProgramRule} to true or false.
+     * Evaluates a passed (already substituted) expression from a {@link ProgramRule}
+     * to true or false.
      *
      * @param condition
      * @return
      */
-    private static boolean conditionIsTrue(String condition,
-                                            RuleEngineVariableValueMap variableValueMap) {
-        condition = runExpression(condition, variableValueMap);
+    static boolean isTrue(String condition) {
+        return isTrue(condition, null);
+    }
+
+    /**
+     * @param variableValueMap map which failures are reported to, can be null.
+     */
+    static boolean isTrue(String condition, RuleEngineVariableValueMap variableValueMap) {
         boolean isTrue = false;
         try {
             isTrue = ExpressionUtils.isTrue(condition, null);
         } catch (JexlException jxlException) {
-            jxlException.printStackTrace();
+            reportFailure(condition, jxlException, variableValueMap);
         }
         return isTrue;
     }
@@ -219,14 +331,15 @@ public class RuleEngineExecution {
      * @param action
      * @return
      */
-    private static RuleEffect createEffect(ProgramRuleAction action,
+    private static RuleEffect createEffect(CompiledRule.CompiledAction compiledAction, String data,
                                            RuleEngineVariableValueMap variableValueMap) {
+        ProgramRuleAction action = compiledAction.getAction();
         RuleEffect effect = new RuleEffect();
         effect.setProgramRule(action.getProgramRule());
         effect.setProgramRuleActionType(action.getProgramRuleActionType());
         effect.setContent(action.getContent());
-        //run expressions to evaluate content of data column:
-        effect.setData(runExpression(action.getData(), variableValueMap));
+        //data column is evaluated by the caller from the compiled expression:
+        effect.setData(data);
         effect.setDataElement(action.getDataElement());
         effect.setProgramIndicator(action.getProgramIndicator());
         effect.setLocation(action.getLocation());
@@ -236,12 +349,9 @@ public class RuleEngineExecution {
 
         if(effect.getProgramRuleActionType() == ProgramRuleActionType.ASSIGN) {
             //in case the action type is assign, it might be needed to update the variable value map:
-            if(effect.getContent() != null && effect.getContent().contains("#{")) {
-                String variableName = effect.getContent().replace("#{","").replace("}","");
-                ProgramRuleVariableValue valueObject = variableValueMap.getProgramRuleVariableValue(variableName);
-                if(valueObject != null) {
-                    valueObject.setValueString(effect.getData());
-                }
+            int slot = compiledAction.getAssignedSlot(variableValueMap);
+            if (slot >= 0) {
+                variableValueMap.setValue(slot, effect.getData());
             }
         }
 
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.program.ProgramRule;
+
+/**
+ * Receives notifications about evaluation of rules. Set through
+ * {@link RuleEngine.Builder#listener(RuleEngineListener)}; when no listener is set,
+ * evaluation is not instrumented at all. Rules can be evaluated concurrently,
+ * so implementations have to be thread safe.
+ *
+ * @see RuleEngineDiagnostics
+ */
+public interface RuleEngineListener {
+
+    /**
+     * Called after condition and actions of a rule have been evaluated. Rules which
+     * effects are taken from the effect cache are not reported.
+     *
+     * @param durationNanos time spent in evaluation of the rule.
+     */
+    void onRuleEvaluated(ProgramRule programRule, long durationNanos);
+
+    /**
+     * Called for each call of a d2: function.
+     *
+     * @param programRule  rule which is being evaluated, or null if the function is called
+     *                     outside of rule evaluation.
+     * @param functionName name of the function, like d2:daysBetween.
+     */
+    void onFunctionCalled(ProgramRule programRule, String functionName);
+
+    /**
+     * Called when evaluation of an expression fails. Failures of JEXL evaluation are
+     * recovered from (the expression text is used as its result), others are thrown
+     * to the caller of the engine after the listener is notified.
+     *
+     * @param programRule rule which is being evaluated, or null.
+     * @param expression  expression which failed, if known.
+     */
+    void onEvaluationFailed(ProgramRule programRule, String expression, Exception exception);
+}
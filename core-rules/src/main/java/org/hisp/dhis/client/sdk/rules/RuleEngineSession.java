@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.event.Event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps state of rule evaluation for a single event, which allows to re-evaluate only
+ * the rules affected by a change of one data value. The session reads values from the
+ * event instances it was created with, hence changes have to be applied to them before
+ * calling {@link #execute(String)}.
+ * <p>
+ * Instances are not thread safe and are meant to live as long as a data entry form.
+ */
+public class RuleEngineSession {
+    private final RuleVariableSlots variableSlots;
+    private final List<CompiledRule> compiledRules;
+    private final RuleDependencyGraph dependencyGraph;
+    private final Event currentEvent;
+    private final EventHistoryIndex eventHistory;
+    private final RuleEngineListener listener;
+
+    private RuleEngineVariableValueMap variableValueMap;
+
+    // effects of each rule in the same order as compiledRules
+    private List<List<RuleEffect>> ruleEffects;
+
+    RuleEngineSession(RuleVariableSlots variableSlots,
+                      List<CompiledRule> compiledRules,
+                      RuleDependencyGraph dependencyGraph,
+                      Event currentEvent, EventHistoryIndex eventHistory,
+                      RuleEngineListener listener) {
+        this.variableSlots = variableSlots;
+        this.compiledRules = compiledRules;
+        this.dependencyGraph = dependencyGraph;
+        this.currentEvent = currentEvent;
+        this.eventHistory = eventHistory;
+        this.listener = listener;
+    }
+
+    /**
+     * Evaluates all rules.
+     *
+     * @return all effects which are in place.
+     */
+    public List<RuleEffect> execute() {
+        variableValueMap = new RuleEngineVariableValueMap(
+                variableSlots, currentEvent, eventHistory);
+        variableValueMap.setListener(listener);
+
+        ruleEffects = new ArrayList<>(compiledRules.size());
+        for (CompiledRule rule : compiledRules) {
+            if (isApplicable(rule)) {
+                ruleEffects.add(RuleEngineExecution.executeRule(rule, variableValueMap));
+            } else {
+                ruleEffects.add(Collections.<RuleEffect>emptyList());
+            }
+        }
+
+        return getEffects();
+    }
+
+    /**
+     * Evaluates only rules which depend on the given data element, either directly through
+     * program rule variables or through values assigned by other affected rules.
+     *
+     * @param changedDataElementUid uid of data element which value has changed.
+     * @return difference between previous and current effects.
+     */
+    public RuleEffectDiff execute(String changedDataElementUid) {
+        if (ruleEffects == null) {
+            return new RuleEffectDiff(execute(), new ArrayList<RuleEffect>());
+        }
+
+        List<RuleEffect> addedEffects = new ArrayList<>();
+        List<RuleEffect> removedEffects = new ArrayList<>();
+
+        RuleDependencyGraph.Dependencies dependencies =
+                dependencyGraph.getDependencies(changedDataElementUid);
+        if (dependencies == null) {
+            return new RuleEffectDiff(addedEffects, removedEffects);
+        }
+
+        variableValueMap.refresh(dependencies.getVariables(), changedDataElementUid);
+
+        for (Integer index : dependencies.getRuleIndexes()) {
+            if (!isApplicable(compiledRules.get(index))) {
+                continue;
+            }
+
+            List<RuleEffect> previousEffects = ruleEffects.get(index);
+            List<RuleEffect> currentEffects = RuleEngineExecution.executeRule(
+                    compiledRules.get(index), variableValueMap);
+
+            for (RuleEffect effect : previousEffects) {
+                if (!currentEffects.contains(effect)) {
+                    removedEffects.add(effect);
+                }
+            }
+
+            for (RuleEffect effect : currentEffects) {
+                if (!previousEffects.contains(effect)) {
+                    addedEffects.add(effect);
+                }
+            }
+
+            ruleEffects.set(index, currentEffects);
+        }
+
+        return new RuleEffectDiff(addedEffects, removedEffects);
+    }
+
+    private boolean isApplicable(CompiledRule rule) {
+        return rule.isApplicableTo(currentEvent != null ? currentEvent.getProgramStage() : null);
+    }
+
+    /**
+     * @return effects of the last execution in priority order.
+     */
+    public List<RuleEffect> getEffects() {
+        List<RuleEffect> effects = new ArrayList<>();
+        if (ruleEffects != null) {
+            for (List<RuleEffect> effectsOfRule : ruleEffects) {
+                effects.addAll(effectsOfRule);
+            }
+        }
+        return effects;
+    }
+}
@@ -28,103 +28,172 @@
 
 package org.hisp.dhis.client.sdk.rules;
 
+import org.apache.commons.lang3.StringUtils;
 import org.hisp.dhis.client.sdk.models.dataelement.ValueType;
 import org.hisp.dhis.client.sdk.models.event.Event;
+import org.hisp.dhis.client.sdk.models.program.ProgramRule;
 import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariable;
 import org.hisp.dhis.client.sdk.models.trackedentity.TrackedEntityDataValue;
-import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
+/**
+ * Values of program rule variables for evaluation of rules against one event. Values are
+ * kept in arrays indexed by slots of {@link RuleVariableSlots}: the value as it is stored
+ * in the event, together with its unboxed form (long, double, boolean or epoch day) when
+ * the value type allows it. Instances can be reset for another event, which allows to
+ * reuse them for many executions without allocating a new map each time.
+ */
 /* Part of RuleEngine implementation detail. Hence, class visibility defined as package private */
 class RuleEngineVariableValueMap {
     public static final String DATE_PATTERN = "yyyy-MM-dd";
 
-    private Map<String, ProgramRuleVariableValue> programRuleVariableValueMap;
+    // kinds of stored values
+    private static final byte KIND_RAW = 0;
+    private static final byte KIND_TEXT = 1;
+    private static final byte KIND_DATE = 2;
+    private static final byte KIND_LONG = 3;
+    private static final byte KIND_DOUBLE = 4;
+    private static final byte KIND_BOOLEAN = 5;
 
-    public RuleEngineVariableValueMap(List<ProgramRuleVariable> variables,
-                                      Event currentEvent, List<Event> allEvents) {
-        programRuleVariableValueMap = new HashMap<>();
-
-        // if we don't have list of variables, we can't do anything
-        if (variables != null) {
-            Map<String, TrackedEntityDataValue> currentEventToValuesMap =
-                    initEventToValuesMap(currentEvent);
-            Map<String, List<TrackedEntityDataValue>> allEventsToValuesMap =
-                    initEventsToValuesMap(allEvents);
-            initProgramRuleVariableMap(currentEvent, currentEventToValuesMap,
-                    allEventsToValuesMap, variables);
-        }
+    // formatted current date, cached until the date changes
+    private static volatile CurrentDate currentDate;
 
-        //Regardless of variables defined, we might need environment variables:
-        addEnvironmentVariables(currentEvent);
-    }
+    private final RuleVariableSlots slots;
 
-    private Map<String, TrackedEntityDataValue> initEventToValuesMap(Event currentEvent) {
-        Map<String, TrackedEntityDataValue> eventToValueMap = new HashMap<>();
+    private final byte[] kinds;
+    private final String[] values;
+    private final long[] longValues;
+    private final double[] doubleValues;
+    private final ValueType[] valueTypes;
+    private final boolean[] hasValues;
+    private final List<List<TrackedEntityDataValue>> allValues;
 
-        if (currentEvent != null && currentEvent.getDataValues() != null) {
-            for (TrackedEntityDataValue value : currentEvent.getDataValues()) {
+    // events which values were taken from
+    private final Event[] valueEvents;
 
-                if (value.getValue() != null && value.getValue().length() != 0) {
-                    eventToValueMap.put(value.getDataElement(), value);
-                }
-            }
-        }
+    // fingerprints of values, computed on demand
+    private final long[] fingerprints;
+    private final boolean[] hasFingerprints;
 
-        return eventToValueMap;
+    // values of the current event by data element, reused between executions
+    private final Map<String, TrackedEntityDataValue> currentEventValues;
+
+    private Event currentEvent;
+    private EventHistoryIndex eventHistory;
+
+    // instrumentation of evaluation, null if disabled
+    private RuleEngineListener listener;
+    private ProgramRule currentRule;
+
+    public RuleEngineVariableValueMap(List<ProgramRuleVariable> variables,
+                                      Event currentEvent, List<Event> allEvents) {
+        this(RuleVariableSlots.create(variables), currentEvent, new EventHistoryIndex(allEvents));
     }
 
-    private Map<String, List<TrackedEntityDataValue>> initEventsToValuesMap(List<Event> allEvents) {
-        Map<String, List<TrackedEntityDataValue>> eventsToValuesMap = new HashMap<>();
+    /**
+     * @param slots        slots of variables, shared with compiled rules.
+     * @param eventHistory index of events of the enrollment, which can be shared
+     *                     between value maps of different events.
+     */
+    public RuleEngineVariableValueMap(RuleVariableSlots slots,
+                                      Event currentEvent, EventHistoryIndex eventHistory) {
+        this.slots = slots;
+        this.kinds = new byte[slots.size()];
+        this.values = new String[slots.size()];
+        this.longValues = new long[slots.size()];
+        this.doubleValues = new double[slots.size()];
+        this.valueTypes = new ValueType[slots.size()];
+        this.hasValues = new boolean[slots.size()];
+        this.allValues = new ArrayList<>(
+                Collections.<List<TrackedEntityDataValue>>nCopies(slots.size(), null));
+        this.valueEvents = new Event[slots.size()];
+        this.fingerprints = new long[slots.size()];
+        this.hasFingerprints = new boolean[slots.size()];
+        this.currentEventValues = new HashMap<>();
+
+        reset(currentEvent, eventHistory);
+    }
 
-        if (allEvents == null || allEvents.isEmpty()) {
-            return eventsToValuesMap;
-        }
+    /**
+     * Resolves values of all variables for another event.
+     */
+    public void reset(Event currentEvent, EventHistoryIndex eventHistory) {
+        this.currentEvent = currentEvent;
+        this.eventHistory = eventHistory;
+        Arrays.fill(hasFingerprints, false);
 
-        Collections.sort(allEvents, Event.DATE_COMPARATOR);
+        initProgramRuleVariableMap(currentEvent, initEventToValuesMap(currentEvent, null),
+                eventHistory, slots.getVariables());
 
-        for (Event event : allEvents) {
+        //Regardless of variables defined, we might need environment variables:
+        addEnvironmentVariables(currentEvent);
+    }
 
-            // if event does not contain values, skip it
-            if (event.getDataValues() == null) {
-                continue;
-            }
+    /**
+     * Releases references to events and their values, so that
+     * the map can be kept around until it is reset again.
+     */
+    public void clear() {
+        this.currentEvent = null;
+        this.eventHistory = null;
+        this.currentRule = null;
+        this.currentEventValues.clear();
+
+        Arrays.fill(values, null);
+        Collections.fill(allValues, null);
+        Arrays.fill(valueEvents, null);
+        Arrays.fill(hasFingerprints, false);
+    }
 
-            for (TrackedEntityDataValue value : event.getDataValues()) {
-                if (!eventsToValuesMap.containsKey(value.getDataElement())) {
-                    eventsToValuesMap.put(value.getDataElement(),
-                            new ArrayList<TrackedEntityDataValue>());
-                }
+    /**
+     * Resolves values of given variables again from the current state of events. Only
+     * values of the given data element are read, which makes it possible to update
+     * the map after a single data value has changed without rebuilding it.
+     *
+     * @param variables      variables which have to be resolved again.
+     * @param dataElementUid data element which has changed.
+     */
+    public void refresh(List<ProgramRuleVariable> variables, String dataElementUid) {
+        if (variables != null && !variables.isEmpty()) {
+            eventHistory = eventHistory.refresh(dataElementUid);
+            initProgramRuleVariableMap(currentEvent,
+                    initEventToValuesMap(currentEvent, dataElementUid),
+                    eventHistory, variables);
+        }
+    }
 
-                // make sure the event is assigned, it is used later to check event date for
-                // the data values
-                if (value.getEvent() == null) {
-                    value.setEvent(event);
+    private Map<String, TrackedEntityDataValue> initEventToValuesMap(
+            Event currentEvent, String dataElementUid) {
+        Map<String, TrackedEntityDataValue> eventToValueMap = currentEventValues;
+        eventToValueMap.clear();
+
+        if (currentEvent != null && currentEvent.getDataValues() != null) {
+            for (TrackedEntityDataValue value : currentEvent.getDataValues()) {
+                if (dataElementUid != null && !dataElementUid.equals(value.getDataElement())) {
+                    continue;
                 }
 
                 if (value.getValue() != null && value.getValue().length() != 0) {
-                    eventsToValuesMap.get(value.getDataElement()).add(value);
+                    eventToValueMap.put(value.getDataElement(), value);
                 }
             }
         }
 
-        return eventsToValuesMap;
+        return eventToValueMap;
     }
 
     private void initProgramRuleVariableMap(
             Event currentEvent, Map<String, TrackedEntityDataValue> currentEventToValuesMap,
-            Map<String, List<TrackedEntityDataValue>> allEventsToValuesMap,
-            List<ProgramRuleVariable> programRuleVariables) {
+            EventHistoryIndex eventHistory, List<ProgramRuleVariable> programRuleVariables) {
 
         for (ProgramRuleVariable variable : programRuleVariables) {
 
@@ -135,69 +204,41 @@ class RuleEngineVariableValueMap {
                         TrackedEntityDataValue dataValue = currentEventToValuesMap
                                 .get(variable.getDataElement().getUId());
                         valueFound = true;
-                        addProgramRuleVariableValueToMap(variable, dataValue, null, valueFound);
+                        addProgramRuleVariableValueToMap(variable, dataValue.getValue(),
+                                currentEvent, null, valueFound);
                     }
                     break;
                 }
                 case DATAELEMENT_NEWEST_EVENT_PROGRAM: {
-                    if (allEventsToValuesMap.containsKey(variable.getDataElement().getUId())) {
-                        List<TrackedEntityDataValue> valueList = allEventsToValuesMap.get(
-                                variable.getDataElement().getUId());
-                        TrackedEntityDataValue dataValue = valueList.get(valueList.size() - 1);
+                    EventHistoryIndex.ValueHistory history = eventHistory.getHistory(
+                            variable.getDataElement().getUId());
+                    if (history != null) {
                         valueFound = true;
-                        addProgramRuleVariableValueToMap(variable, dataValue, valueList, valueFound);
+                        addValueFromHistory(variable, history, history.getNewest());
                     }
                     break;
                 }
                 case DATAELEMENT_NEWEST_EVENT_PROGRAM_STAGE: {
-                    if (variable.getProgramStage() != null && allEventsToValuesMap.containsKey(
-                            variable.getDataElement().getUId())) {
-
-                        List<TrackedEntityDataValue> valueList = allEventsToValuesMap.get(
-                                variable.getDataElement().getUId());
-
-                        TrackedEntityDataValue bestCandidate = null;
-                        for (TrackedEntityDataValue candidate : valueList) {
-
-                            if (variable.getProgramStage().getUId().equals(
-                                    candidate.getEvent().getProgramStage())) {
-
-                                // The candidate matches the program stage, and will be newer than
-                                // the potential previous candidate:
-                                bestCandidate = candidate;
-                            }
-                        }
-
-                        if (bestCandidate != null) {
+                    EventHistoryIndex.ValueHistory history = eventHistory.getHistory(
+                            variable.getDataElement().getUId());
+                    if (variable.getProgramStage() != null && history != null) {
+                        int position = history.getNewest(variable.getProgramStage().getUId());
+                        if (position >= 0) {
                             valueFound = true;
-                            addProgramRuleVariableValueToMap(variable, bestCandidate, valueList, valueFound);
+                            addValueFromHistory(variable, history, position);
                         }
                     }
                     break;
                 }
                 case DATAELEMENT_PREVIOUS_EVENT: {
-                    if (currentEvent != null && allEventsToValuesMap.containsKey(
-                            variable.getDataElement().getUId())) {
-                        List<TrackedEntityDataValue> valueList = allEventsToValuesMap.get(
-                                variable.getDataElement().getUId());
-
-                        TrackedEntityDataValue bestCandidate = null;
-                        for (TrackedEntityDataValue candidate : valueList) {
-                            if (candidate.getEvent().getEventDate().compareTo(
-                                    currentEvent.getEventDate()) >= 0) {
-                                // we have reached the current event time, stop iterating, keep the
-                                // previous candidate, if any
-                                break;
-                            } else {
-                                // we have not yet reached the current event, keep this candidate
-                                // as it is the newest one examined:
-                                bestCandidate = candidate;
-                            }
-                        }
-
-                        if (bestCandidate != null) {
+                    EventHistoryIndex.ValueHistory history = eventHistory.getHistory(
+                            variable.getDataElement().getUId());
+                    if (currentEvent != null && history != null) {
+                        // the newest value of events which happened before the current one
+                        int position = history.getPrevious(currentEvent.getEventDate());
+                        if (position >= 0) {
                             valueFound = true;
-                            addProgramRuleVariableValueToMap(variable, bestCandidate, valueList, valueFound);
+                            addValueFromHistory(variable, history, position);
                         }
                     }
                     break;
@@ -213,76 +254,299 @@ class RuleEngineVariableValueMap {
             }
 
             if (!valueFound) {
-                TrackedEntityDataValue defaultValue = new TrackedEntityDataValue();
-
-                if (variable.getDataElement() != null) {
-                    if (variable.getDataElement().getValueType() == ValueType.TEXT
-                            || variable.getDataElement().getValueType() == ValueType.LONG_TEXT
-                            || variable.getDataElement().getValueType() == ValueType.EMAIL
-                            || variable.getDataElement().getValueType() == ValueType.PHONE_NUMBER) {
-                        defaultValue.setValue("''");
-                    } else if (variable.getDataElement().getValueType() == ValueType.INTEGER
-                            || variable.getDataElement().getValueType() == ValueType.INTEGER_POSITIVE
-                            || variable.getDataElement().getValueType() == ValueType.INTEGER_NEGATIVE
-                            || variable.getDataElement().getValueType() == ValueType.INTEGER_ZERO_OR_POSITIVE
-                            || variable.getDataElement().getValueType() == ValueType.NUMBER
-                            || variable.getDataElement().getValueType() == ValueType.PERCENTAGE) {
-                        defaultValue.setValue("0");
-                    } else if (variable.getDataElement().getValueType() == ValueType.DATE
-                            || variable.getDataElement().getValueType() == ValueType.DATETIME) {
-                        defaultValue.setValue("'" + DateTime.now().toString() + "'");
-                    } else if (variable.getDataElement().getValueType() == ValueType.BOOLEAN
-                            || variable.getDataElement().getValueType() == ValueType.TRUE_ONLY) {
-                        defaultValue.setValue("false");
-                    }
-                } else {
-                    defaultValue.setValue("''");
-                }
+                String defaultValue = variable.getDataElement() != null ?
+                        getDefaultValue(variable.getDataElement().getValueType()) : "''";
 
-                addProgramRuleVariableValueToMap(variable, defaultValue, null, valueFound);
+                addProgramRuleVariableValueToMap(variable, defaultValue, null, null, valueFound);
             }
         }
     }
 
-    private void addEnvironmentVariables(Event currentEvent)
-    {
-        DateFormat df = new SimpleDateFormat(DATE_PATTERN, Locale.ENGLISH);
+    /**
+     * @return value which is used in place of missing value of the given type,
+     * or null if there is no default value for the type.
+     */
+    static String getDefaultValue(ValueType valueType) {
+        if (valueType == ValueType.TEXT
+                || valueType == ValueType.LONG_TEXT
+                || valueType == ValueType.EMAIL
+                || valueType == ValueType.PHONE_NUMBER) {
+            return "''";
+        } else if (valueType == ValueType.INTEGER
+                || valueType == ValueType.INTEGER_POSITIVE
+                || valueType == ValueType.INTEGER_NEGATIVE
+                || valueType == ValueType.INTEGER_ZERO_OR_POSITIVE
+                || valueType == ValueType.NUMBER
+                || valueType == ValueType.PERCENTAGE) {
+            return "0";
+        } else if (valueType == ValueType.DATE
+                || valueType == ValueType.DATETIME) {
+            return getCurrentDate();
+        } else if (valueType == ValueType.BOOLEAN
+                || valueType == ValueType.TRUE_ONLY) {
+            return "false";
+        }
+        return null;
+    }
+
+    private void addEnvironmentVariables(Event currentEvent) {
+        if (currentEvent != null && currentEvent.getEventDate() != null) {
+            addEnviromentVariableValueToMap(RuleVariableSlots.EVENT_DATE, new LocalDate(
+                    currentEvent.getEventDate().getMillis()).toString(), ValueType.DATE, true);
+        } else {
+            addEnviromentVariableValueToMap(RuleVariableSlots.EVENT_DATE,
+                    getCurrentDate(), ValueType.DATE, false);
+        }
+
+        addEnviromentVariableValueToMap(RuleVariableSlots.CURRENT_DATE,
+                getCurrentDate(), ValueType.DATE, true);
+    }
+
+    private static String getCurrentDate() {
+        LocalDate today = LocalDate.now();
+        CurrentDate cachedDate = currentDate;
+        if (cachedDate == null || !cachedDate.date.equals(today)) {
+            cachedDate = new CurrentDate(today);
+            currentDate = cachedDate;
+        }
+        return cachedDate.text;
+    }
+
+    public RuleEngineListener getListener() {
+        return listener;
+    }
+
+    public void setListener(RuleEngineListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return rule which is being evaluated against this map, or null.
+     */
+    public ProgramRule getCurrentRule() {
+        return currentRule;
+    }
+
+    public void setCurrentRule(ProgramRule currentRule) {
+        this.currentRule = currentRule;
+    }
 
-        if(currentEvent != null) {
-            DateTime eventDate = currentEvent.getEventDate() != null ? currentEvent.getEventDate() : DateTime.now();
-            addEnviromentVariableValueToMap("event_date", df.format(eventDate.toDate()), ValueType.DATE, currentEvent.getEventDate() != null);
+    public RuleVariableSlots getSlots() {
+        return slots;
+    }
+
+    /**
+     * @return slot of the variable, or -1 if the variable is not defined.
+     */
+    public int getSlot(String variableName) {
+        return slots.getSlot(variableName);
+    }
+
+    /**
+     * Resolves slot of a variable referenced by a compiled expression. If the expression
+     * was compiled against slots of this map, the compiled slot is returned right away.
+     *
+     * @throws IllegalArgumentException if the variable is not defined.
+     */
+    public int getSlot(RuleVariableSlots compiledSlots, int compiledSlot, String variableName) {
+        int slot = compiledSlots == slots ? compiledSlot : slots.getSlot(variableName);
+        if (slot < 0) {
+            throw new IllegalArgumentException("Variable " + variableName +
+                    " found in expression, but is not defined as a variable");
         }
-        else
-        {
-            addEnviromentVariableValueToMap("event_date", df.format(DateTime.now().toDate()), ValueType.DATE, false);
+        return slot;
+    }
+
+    /**
+     * @return value of the variable in form which can be substituted into expression text.
+     */
+    public String getValueString(int slot) {
+        return formatValue(values[slot], valueTypes[slot]);
+    }
+
+    /**
+     * @return value of the variable in form which can be substituted into expression
+     * text, or null if the variable is not defined.
+     */
+    public String getValueString(String variableName) {
+        int slot = slots.getSlot(variableName);
+        return slot >= 0 ? getValueString(slot) : null;
+    }
+
+    /**
+     * @throws NativeExpression.UnsupportedExpressionException if the value
+     *                                                         cannot be typed.
+     */
+    public RuleValue getValue(int slot) {
+        switch (kinds[slot]) {
+            case KIND_TEXT:
+                return RuleValue.of(values[slot]);
+            case KIND_DATE:
+                return RuleValue.date(values[slot], longValues[slot]);
+            case KIND_LONG:
+                return RuleValue.of(longValues[slot]);
+            case KIND_DOUBLE:
+                return RuleValue.of(doubleValues[slot]);
+            case KIND_BOOLEAN:
+                return RuleValue.of(longValues[slot] != 0);
+            default:
+                throw new NativeExpression.UnsupportedExpressionException("Unsupported value '" +
+                        values[slot] + "' of variable " + slots.getName(slot));
         }
+    }
+
+    public ValueType getValueType(int slot) {
+        return valueTypes[slot];
+    }
+
+    public boolean hasValue(int slot) {
+        return hasValues[slot];
+    }
+
+    /**
+     * @return false if the variable has no value or is not defined.
+     */
+    public boolean hasValue(String variableName) {
+        int slot = slots.getSlot(variableName);
+        return slot >= 0 && hasValues[slot];
+    }
 
-        addEnviromentVariableValueToMap("current_date", df.format(DateTime.now().toDate()), ValueType.DATE, true);
+    /**
+     * @return values of the variable across all events of the enrollment, or its
+     * only value if the variable does not read values of other events.
+     */
+    public List<String> getAllValues(int slot) {
+        List<TrackedEntityDataValue> dataValues = allValues.get(slot);
+        if (dataValues == null) {
+            return Collections.singletonList(values[slot]);
+        }
 
+        List<String> allValuesString = new ArrayList<>(dataValues.size());
+        for (TrackedEntityDataValue dataValue : dataValues) {
+            allValuesString.add(dataValue.getValue());
+        }
+        return allValuesString;
     }
 
-    public ProgramRuleVariableValue getProgramRuleVariableValue(String variableName) {
-        return programRuleVariableValueMap.get(variableName);
+    /**
+     * @return date of the event which value of the variable was taken from
+     * in yyyy-MM-dd format, or null if the value does not come from an event.
+     */
+    public String getValueEventDate(int slot) {
+        Event event = valueEvents[slot];
+        if (event == null || event.getEventDate() == null) {
+            return null;
+        }
+        return new LocalDate(event.getEventDate().getMillis()).toString(DATE_PATTERN);
     }
 
-    public Map<String, ProgramRuleVariableValue> getProgramRuleVariableValueMap() {
-        return programRuleVariableValueMap;
+    /**
+     * Sets value which does not come from events, like values of attributes or dates
+     * of enrollment. Value is typed the same way values of events are.
+     */
+    void setValue(int slot, String value, ValueType valueType, boolean hasValue) {
+        setValue(slot, value, valueType, hasValue, null);
+        valueEvents[slot] = null;
+    }
+
+    /**
+     * @return 64 bit hash of everything expressions can read from the variable: its value,
+     * whether it has value, date of the event the value comes from and values of other
+     * events. The hash is computed once and kept until the value changes.
+     */
+    public long getFingerprint(int slot) {
+        if (!hasFingerprints[slot]) {
+            long fingerprint = RuleEffectCache.hash(values[slot]);
+            fingerprint = RuleEffectCache.mix(fingerprint, hasValues[slot] ? 1 : 0);
+
+            Event event = valueEvents[slot];
+            fingerprint = RuleEffectCache.mix(fingerprint, event != null &&
+                    event.getEventDate() != null ? event.getEventDate().getMillis() : 0);
+
+            List<TrackedEntityDataValue> dataValues = allValues.get(slot);
+            if (dataValues != null) {
+                fingerprint = RuleEffectCache.mix(fingerprint, dataValues.size());
+                for (TrackedEntityDataValue dataValue : dataValues) {
+                    fingerprint = RuleEffectCache.mix(fingerprint,
+                            RuleEffectCache.hash(dataValue.getValue()));
+                }
+            }
+
+            fingerprints[slot] = fingerprint;
+            hasFingerprints[slot] = true;
+        }
+        return fingerprints[slot];
+    }
+
+    /**
+     * Assigns value to the variable. Its value type and
+     * flag which tells if the variable has value are kept.
+     */
+    public void setValue(int slot, String value) {
+        setValue(slot, value, valueTypes[slot], hasValues[slot], null);
+        valueEvents[slot] = null;
+    }
+
+    private void addValueFromHistory(ProgramRuleVariable variable,
+                                     EventHistoryIndex.ValueHistory history, int position) {
+        addProgramRuleVariableValueToMap(variable, history.getValue(position).getValue(),
+                history.getEvent(position), history.getValues(), true);
     }
 
     private void addProgramRuleVariableValueToMap(ProgramRuleVariable programRuleVariable,
-                                                  TrackedEntityDataValue value,
+                                                  String value, Event valueEvent,
                                                   List<TrackedEntityDataValue> allValues,
                                                   boolean hasValue) {
         ValueType valueType = programRuleVariable.getDataElement() != null ? programRuleVariable.getDataElement().getValueType() :
-                programRuleVariable.getTrackedEntityAttribute() != null ? programRuleVariable.getTrackedEntityAttribute().getValueType() : determineValueType(value.toString());
-        ProgramRuleVariableValue variableValue = new ProgramRuleVariableValue(value, allValues, valueType, hasValue);
-        programRuleVariableValueMap.put(programRuleVariable.getDisplayName(), variableValue);
+                programRuleVariable.getTrackedEntityAttribute() != null ? programRuleVariable.getTrackedEntityAttribute().getValueType() : determineValueType(value);
+        int slot = slots.getSlot(programRuleVariable.getDisplayName());
+        setValue(slot, value, valueType, hasValue, allValues);
+        valueEvents[slot] = valueEvent;
     }
 
-    private void addEnviromentVariableValueToMap( String name, String value,
-                                                  ValueType valueType, boolean hasValue) {
-        ProgramRuleVariableValue variableValue = new ProgramRuleVariableValue(value, valueType, hasValue);
-        programRuleVariableValueMap.put(name, variableValue);
+    private void addEnviromentVariableValueToMap(String name, String value,
+                                                 ValueType valueType, boolean hasValue) {
+        int slot = slots.getSlot(name);
+        setValue(slot, value, valueType, hasValue, null);
+        valueEvents[slot] = null;
+    }
+
+    private void setValue(int slot, String value, ValueType valueType, boolean hasValue,
+                          List<TrackedEntityDataValue> allValues) {
+        String text = StringUtils.strip(value, "'");
+
+        this.values[slot] = text;
+        this.hasFingerprints[slot] = false;
+        this.valueTypes[slot] = valueType;
+        this.hasValues[slot] = hasValue;
+        this.allValues.set(slot, allValues);
+
+        if (isTextValueType(valueType)) {
+            if (valueType == ValueType.DATE || valueType == ValueType.DATETIME) {
+                kinds[slot] = KIND_DATE;
+                longValues[slot] = RuleValue.parseEpochDay(text);
+            } else {
+                kinds[slot] = KIND_TEXT;
+            }
+            return;
+        }
+
+        if ("true".equals(text) || "false".equals(text)) {
+            kinds[slot] = KIND_BOOLEAN;
+            longValues[slot] = "true".equals(text) ? 1 : 0;
+            return;
+        }
+
+        RuleValue number = text != null ? RuleValue.parseNumber(text.trim()) : null;
+        if (number == null) {
+            kinds[slot] = KIND_RAW;
+        } else if (number.isIntegral()) {
+            kinds[slot] = KIND_LONG;
+            longValues[slot] = number.longValue();
+        } else {
+            kinds[slot] = KIND_DOUBLE;
+            doubleValues[slot] = number.doubleValue();
+        }
     }
 
     private ValueType determineValueType(String value) {
@@ -290,10 +554,47 @@ class RuleEngineVariableValueMap {
         return ValueType.TEXT;
     }
 
+    private static boolean isTextValueType(ValueType type) {
+        return type == ValueType.TEXT
+                || type == ValueType.LONG_TEXT
+                || type == ValueType.EMAIL
+                || type == ValueType.PHONE_NUMBER
+                || type == ValueType.DATE
+                || type == ValueType.DATETIME;
+    }
+
+    /**
+     * Formats value for substitution into expression text:
+     * values of text and date types are wrapped into quotes.
+     */
+    public static String formatValue(String value, ValueType type) {
+        value = StringUtils.strip(value, "'");
+        if (isTextValueType(type)) {
+            return "'" + value + "'";
+        } else {
+            return value;
+        }
+    }
+
     @Override
     public String toString() {
-        return "RuleEngineVariableValueMap{" +
-                "programRuleVariableValueMap=" + programRuleVariableValueMap +
-                '}';
+        StringBuilder builder = new StringBuilder("RuleEngineVariableValueMap{");
+        for (int slot = 0; slot < slots.size(); slot++) {
+            builder.append(slot > 0 ? ", " : "")
+                    .append(slots.getName(slot))
+                    .append('=')
+                    .append(getValueString(slot));
+        }
+        return builder.append('}').toString();
+    }
+
+    private static final class CurrentDate {
+        final LocalDate date;
+        final String text;
+
+        CurrentDate(LocalDate date) {
+            this.date = date;
+            this.text = date.toString(DATE_PATTERN);
+        }
     }
 }
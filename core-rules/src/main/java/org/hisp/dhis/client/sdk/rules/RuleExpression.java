@@ -0,0 +1,528 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiled form of a program rule expression (condition or action data). The expression
+ * text is parsed once into a list of nodes: plain text, variable references
+ * ({@code #{}, A{}, C{}, V{}}) and d2: function calls with their arguments compiled as
+ * nested expressions. Evaluation walks the nodes against a {@link RuleEngineVariableValueMap}
+ * without re-tokenizing the original text. Variables are resolved to slots of
+ * {@link RuleVariableSlots} at compile time.
+ * <p>
+ * Expressions which cannot be compiled (unknown functions, unbalanced parentheses or wrong
+ * number of arguments) keep their source text and are evaluated through the string based
+ * implementation in {@link RuleEngineExecution}.
+ * <p>
+ * Compiled expressions are evaluated by {@link NativeExpression} when their syntax and
+ * values allow it. Otherwise nodes are rendered into text which is evaluated by JEXL.
+ */
+/* Part of RuleEngine implementation detail. Hence, class visibility defined as package private */
+class RuleExpression {
+    private static final String FUNCTION_PREFIX = "d2:";
+
+    private final String expression;
+
+    // null if expression could not be compiled
+    private final List<Node> nodes;
+
+    // null if expression is not supported by native evaluator
+    private final NativeExpression nativeExpression;
+
+    private RuleExpression(String expression, List<Node> nodes) {
+        this.expression = expression;
+        this.nodes = nodes;
+        this.nativeExpression = NativeExpression.compile(nodes);
+    }
+
+    public static RuleExpression compile(String expression) {
+        return compile(expression, null);
+    }
+
+    /**
+     * @param slots slots of variables which are used by value maps the expression is
+     *              going to be evaluated against. If null, or if a value map has other
+     *              slots, variables are looked up by name.
+     */
+    public static RuleExpression compile(String expression, RuleVariableSlots slots) {
+        return compile(expression, slots, null);
+    }
+
+    /**
+     * @param constants values of constants by uid, which are inlined into the expression
+     *                  in place of C{} references. Can be null.
+     */
+    public static RuleExpression compile(String expression, RuleVariableSlots slots,
+                                         Map<String, String> constants) {
+        if (expression == null || expression.length() == 0) {
+            return new RuleExpression(expression, Collections.<Node>emptyList());
+        }
+
+        List<Node> nodes;
+        try {
+            nodes = new Parser(expression, slots, constants).parse();
+        } catch (IllegalArgumentException exception) {
+            nodes = null;
+        }
+
+        return new RuleExpression(expression, nodes);
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public boolean isCompiled() {
+        return nodes != null;
+    }
+
+    /**
+     * @return true if the expression can be evaluated without JEXL
+     * (as long as its operand values are supported).
+     */
+    public boolean isNative() {
+        return nativeExpression != null;
+    }
+
+    /**
+     * @return true if the expression does not depend on values of variables
+     * and has been evaluated to a constant at compile time.
+     */
+    public boolean isConstant() {
+        return nativeExpression != null && nativeExpression.isConstant();
+    }
+
+    /**
+     * Substitutes variables and function calls and evaluates the result.
+     *
+     * @return result of the evaluation in string form.
+     */
+    public String evaluate(RuleEngineVariableValueMap variableValueMap) {
+        if (nodes == null) {
+            return RuleEngineExecution.runExpression(expression, variableValueMap);
+        }
+
+        if (nodes.isEmpty()) {
+            return expression;
+        }
+
+        if (nativeExpression != null) {
+            try {
+                return nativeExpression.evaluate(variableValueMap).toString();
+            } catch (NativeExpression.UnsupportedExpressionException exception) {
+                // fall back to JEXL
+            }
+        }
+
+        return evaluateWithJexl(variableValueMap);
+    }
+
+    /**
+     * Evaluates the expression to a typed value. Results of JEXL evaluation
+     * are converted with {@link RuleValue#fromResult(String)}.
+     */
+    public RuleValue evaluateValue(RuleEngineVariableValueMap variableValueMap) {
+        if (nativeExpression != null) {
+            try {
+                return nativeExpression.evaluate(variableValueMap);
+            } catch (NativeExpression.UnsupportedExpressionException exception) {
+                // fall back to JEXL
+            }
+        }
+
+        if (nodes == null || nodes.isEmpty()) {
+            return RuleValue.fromResult(evaluate(variableValueMap));
+        }
+        return RuleValue.fromResult(evaluateWithJexl(variableValueMap));
+    }
+
+    /**
+     * @return name of the variable if the expression is a variable reference and
+     * nothing else (apart from whitespace), otherwise null.
+     */
+    public String getVariableName() {
+        if (nodes == null) {
+            return null;
+        }
+
+        String variableName = null;
+        for (Node node : nodes) {
+            if (node instanceof VariableNode && variableName == null) {
+                variableName = ((VariableNode) node).getVariableName();
+            } else if (!(node instanceof TextNode) ||
+                    ((TextNode) node).getText().trim().length() > 0) {
+                return null;
+            }
+        }
+        return variableName;
+    }
+
+    private String evaluateWithJexl(RuleEngineVariableValueMap variableValueMap) {
+        StringBuilder builder = new StringBuilder(expression.length());
+        for (Node node : nodes) {
+            node.appendTo(builder, variableValueMap);
+        }
+
+        return RuleEngineExecution.evaluateExpression(builder.toString(), variableValueMap);
+    }
+
+    public boolean isTrue(RuleEngineVariableValueMap variableValueMap) {
+        if (nativeExpression != null) {
+            try {
+                RuleValue value = nativeExpression.evaluate(variableValueMap);
+
+                // result of evaluation is considered as true only if it is
+                // evaluated to boolean true once more, like 'true' string is
+                if (value.isBoolean()) {
+                    return value.booleanValue();
+                } else if (value.isNumber()) {
+                    return false;
+                } else if ("true".equals(value.stringValue())) {
+                    return true;
+                } else if ("false".equals(value.stringValue())) {
+                    return false;
+                }
+                return RuleEngineExecution.isTrue(value.stringValue(), variableValueMap);
+            } catch (NativeExpression.UnsupportedExpressionException exception) {
+                // fall back to JEXL
+            }
+        }
+
+        String result = nodes == null || nodes.isEmpty() ?
+                evaluate(variableValueMap) : evaluateWithJexl(variableValueMap);
+        return RuleEngineExecution.isTrue(result, variableValueMap);
+    }
+
+    /**
+     * Adds names of variables referenced by this expression to the given set. Variable
+     * names passed as string literals to functions which read variables by name, like
+     * in d2:hasValue('name'), are included as well.
+     *
+     * @return false if the expression is not compiled and its references are unknown.
+     */
+    public boolean collectVariables(Set<String> variables) {
+        if (nodes == null) {
+            return false;
+        }
+
+        for (Node node : nodes) {
+            node.collectVariables(variables);
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "RuleExpression{" +
+                "expression='" + expression + '\'' +
+                ", compiled=" + isCompiled() +
+                '}';
+    }
+
+    static abstract class Node {
+        abstract void appendTo(StringBuilder builder, RuleEngineVariableValueMap valueMap);
+
+        void collectVariables(Set<String> variables) {
+            // most of nodes do not reference variables
+        }
+    }
+
+    static final class TextNode extends Node {
+        private final String text;
+
+        TextNode(String text) {
+            this.text = text;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        void appendTo(StringBuilder builder, RuleEngineVariableValueMap valueMap) {
+            builder.append(text);
+        }
+    }
+
+    static final class VariableNode extends Node {
+        private final String variableName;
+        private final RuleVariableSlots slots;
+        private final int slot;
+
+        VariableNode(String variableName, RuleVariableSlots slots) {
+            this.variableName = variableName;
+            this.slots = slots;
+            this.slot = slots != null ? slots.getSlot(variableName) : -1;
+        }
+
+        public String getVariableName() {
+            return variableName;
+        }
+
+        /**
+         * @throws IllegalArgumentException if the variable is not defined in the value map.
+         */
+        int getSlot(RuleEngineVariableValueMap valueMap) {
+            return valueMap.getSlot(slots, slot, variableName);
+        }
+
+        @Override
+        void appendTo(StringBuilder builder, RuleEngineVariableValueMap valueMap) {
+            builder.append(valueMap.getValueString(getSlot(valueMap)));
+        }
+
+        @Override
+        void collectVariables(Set<String> variables) {
+            variables.add(variableName);
+        }
+    }
+
+    static final class FunctionNode extends Node {
+        private final DhisFunction function;
+        private final List<RuleExpression> arguments;
+        private final String call;
+
+        FunctionNode(DhisFunction function, List<RuleExpression> arguments, String call) {
+            this.function = function;
+            this.arguments = arguments;
+            this.call = call;
+        }
+
+        /**
+         * Executes the function. Arguments are evaluated by the function when needed.
+         */
+        RuleValue evaluate(RuleEngineVariableValueMap valueMap) {
+            if (valueMap != null && valueMap.getListener() != null) {
+                valueMap.getListener().onFunctionCalled(
+                        valueMap.getCurrentRule(), function.getName());
+            }
+            return function.evaluate(new FunctionArguments.Compiled(arguments, valueMap));
+        }
+
+        @Override
+        void appendTo(StringBuilder builder, RuleEngineVariableValueMap valueMap) {
+            builder.append(evaluate(valueMap).toToken());
+        }
+
+        @Override
+        public String toString() {
+            return call;
+        }
+
+        @Override
+        void collectVariables(Set<String> variables) {
+            for (int index = 0; index < arguments.size(); index++) {
+                RuleExpression argument = arguments.get(index);
+                argument.collectVariables(variables);
+
+                // functions like d2:hasValue('variableName') refer to variables by name,
+                // while quoted arguments of other functions are plain string literals
+                if (function.isVariableArgument(index) && argument.nodes.size() == 1 &&
+                        argument.nodes.get(0) instanceof TextNode) {
+                    String text = ((TextNode) argument.nodes.get(0)).text.trim();
+                    if (text.length() > 1 && text.charAt(0) == '\'' &&
+                            text.charAt(text.length() - 1) == '\'') {
+                        variables.add(text.substring(1, text.length() - 1));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Single pass scanner which splits expression into nodes. Function arguments
+     * are parsed recursively as separate expressions.
+     */
+    private static final class Parser {
+        private final String expression;
+        private final RuleVariableSlots slots;
+        private final Map<String, String> constants;
+        private int position;
+
+        Parser(String expression, RuleVariableSlots slots, Map<String, String> constants) {
+            this.expression = expression;
+            this.slots = slots;
+            this.constants = constants;
+            this.position = 0;
+        }
+
+        List<Node> parse() {
+            List<Node> nodes = parseUntil(false);
+            if (position < expression.length()) {
+                throw new IllegalArgumentException("Unexpected character '" +
+                        expression.charAt(position) + "' at " + position);
+            }
+            return nodes;
+        }
+
+        /**
+         * Parses nodes until the end of the expression, or (if inArguments is
+         * set) until top level ',' or ')' which terminates a function argument.
+         */
+        private List<Node> parseUntil(boolean inArguments) {
+            List<Node> nodes = new ArrayList<>();
+            StringBuilder text = new StringBuilder();
+            int depth = 0;
+            char quote = 0;
+
+            while (position < expression.length()) {
+                char current = expression.charAt(position);
+
+                if (quote != 0) {
+                    if (current == quote) {
+                        quote = 0;
+                    }
+                } else if (current == '\'' || current == '"') {
+                    quote = current;
+                } else if (inArguments && depth == 0 && (current == ',' || current == ')')) {
+                    break;
+                } else if (current == '(') {
+                    depth++;
+                } else if (current == ')') {
+                    depth--;
+                }
+
+                // variables are substituted inside of string literals as well
+                if (isVariableStart(position)) {
+                    int end = expression.indexOf('}', position + 2);
+                    String name = expression.substring(position + 2, end);
+
+                    // values of constants are known upfront and become part of the text
+                    if (current == 'C' && constants != null && constants.containsKey(name)) {
+                        text.append(constants.get(name));
+                    } else {
+                        flushText(text, nodes);
+                        nodes.add(new VariableNode(name, slots));
+                    }
+                    position = end + 1;
+                    continue;
+                }
+
+                if (quote == 0 && expression.startsWith(FUNCTION_PREFIX, position)) {
+                    flushText(text, nodes);
+                    nodes.add(parseFunction());
+                    continue;
+                }
+
+                text.append(current);
+                position++;
+            }
+
+            if (quote != 0 || depth != 0) {
+                throw new IllegalArgumentException("Unbalanced expression: " + expression);
+            }
+
+            flushText(text, nodes);
+            return nodes;
+        }
+
+        private Node parseFunction() {
+            int start = position;
+            int nameEnd = position + FUNCTION_PREFIX.length();
+            while (nameEnd < expression.length() &&
+                    Character.isLetterOrDigit(expression.charAt(nameEnd))) {
+                nameEnd++;
+            }
+
+            String name = expression.substring(start, nameEnd);
+            DhisFunction function = DhisFunction.getDhisFunction(name);
+            if (function == null) {
+                throw new IllegalArgumentException("Unknown function " + name);
+            }
+
+            position = skipWhitespace(nameEnd);
+            if (position >= expression.length() || expression.charAt(position) != '(') {
+                throw new IllegalArgumentException("Expected '(' after " + name);
+            }
+            position++;
+
+            List<RuleExpression> arguments = new ArrayList<>();
+            position = skipWhitespace(position);
+            if (position < expression.length() && expression.charAt(position) == ')') {
+                position++;
+            } else {
+                while (true) {
+                    int argumentStart = position;
+                    List<Node> argumentNodes = parseUntil(true);
+                    arguments.add(new RuleExpression(
+                            expression.substring(argumentStart, position), argumentNodes));
+
+                    if (position >= expression.length()) {
+                        throw new IllegalArgumentException("Missing ')' for " + name);
+                    }
+
+                    char separator = expression.charAt(position++);
+                    if (separator == ')') {
+                        break;
+                    }
+                }
+            }
+
+            if (function.getParameters() != null && function.getParameters() > 0 &&
+                    function.getParameters() != arguments.size()) {
+                throw new IllegalArgumentException("Wrong number of parameters for function "
+                        + name + ". Expecting " + function.getParameters()
+                        + ", found " + arguments.size());
+            }
+
+            return new FunctionNode(function, arguments, expression.substring(start, position));
+        }
+
+        private boolean isVariableStart(int index) {
+            if (index + 2 >= expression.length() || expression.charAt(index + 1) != '{') {
+                return false;
+            }
+
+            char key = expression.charAt(index);
+            return (key == '#' || key == 'A' || key == 'C' || key == 'V') &&
+                    expression.indexOf('}', index + 2) > index + 2;
+        }
+
+        private int skipWhitespace(int index) {
+            while (index < expression.length() &&
+                    Character.isWhitespace(expression.charAt(index))) {
+                index++;
+            }
+            return index;
+        }
+
+        private static void flushText(StringBuilder text, List<Node> nodes) {
+            if (text.length() > 0) {
+                nodes.add(new TextNode(text.toString()));
+                text.setLength(0);
+            }
+        }
+    }
+}
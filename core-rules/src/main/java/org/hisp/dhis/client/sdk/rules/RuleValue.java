@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.dataelement.ValueType;
+
+/**
+ * Typed value produced by {@link NativeExpression}. Numbers keep track of whether they
+ * are integral, since integer arithmetic (including division) differs from decimal one.
+ * Dates keep their text together with the epoch day they denote.
+ * String representation follows the one produced by JEXL, so results of native and
+ * JEXL evaluation can be used interchangeably.
+ */
+/* Part of RuleEngine implementation detail. Hence, class visibility defined as package private */
+final class RuleValue {
+    public static final long INVALID_DATE = Long.MIN_VALUE;
+
+    public static final RuleValue TRUE = new RuleValue(Type.BOOLEAN, false, true, 0L, 0.0, null);
+    public static final RuleValue FALSE = new RuleValue(Type.BOOLEAN, false, false, 0L, 0.0, null);
+
+    enum Type {
+        NUMBER, STRING, BOOLEAN, DATE
+    }
+
+    private final Type type;
+    private final boolean integral;
+    private final boolean booleanValue;
+    private final long longValue;
+    private final double doubleValue;
+    private final String stringValue;
+
+    private RuleValue(Type type, boolean integral, boolean booleanValue,
+                      long longValue, double doubleValue, String stringValue) {
+        this.type = type;
+        this.integral = integral;
+        this.booleanValue = booleanValue;
+        this.longValue = longValue;
+        this.doubleValue = doubleValue;
+        this.stringValue = stringValue;
+    }
+
+    public static RuleValue of(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    public static RuleValue of(long value) {
+        return new RuleValue(Type.NUMBER, true, false, value, value, null);
+    }
+
+    public static RuleValue of(double value) {
+        return new RuleValue(Type.NUMBER, false, false, (long) value, value, null);
+    }
+
+    public static RuleValue of(String value) {
+        return new RuleValue(Type.STRING, false, false, 0L, 0.0, value);
+    }
+
+    public static RuleValue date(String value) {
+        return date(value, parseEpochDay(value));
+    }
+
+    public static RuleValue date(String value, long epochDay) {
+        return new RuleValue(Type.DATE, false, false, epochDay, 0.0, value);
+    }
+
+    /**
+     * Converts a token of expression text (literal, substituted variable value or result
+     * of function) to typed value: quoted strings, true/false and numbers are supported.
+     *
+     * @return value, or null if the token is not one of supported literals.
+     */
+    public static RuleValue fromToken(String token) {
+        if (token == null) {
+            return null;
+        }
+
+        String text = token.trim();
+        if (text.length() >= 2 && (text.charAt(0) == '\'' || text.charAt(0) == '"') &&
+                text.charAt(text.length() - 1) == text.charAt(0)) {
+            // variable values are wrapped into quotes as they are,
+            // hence there is nothing to unescape
+            return of(text.substring(1, text.length() - 1));
+        } else if ("true".equals(text)) {
+            return TRUE;
+        } else if ("false".equals(text)) {
+            return FALSE;
+        }
+
+        return parseNumber(text);
+    }
+
+    /**
+     * Converts result of evaluation (as returned by JEXL, without quotes) to typed value:
+     * numbers and booleans are recognized, anything else is a string.
+     */
+    public static RuleValue fromResult(String result) {
+        if (result == null) {
+            return of("");
+        } else if ("true".equals(result)) {
+            return TRUE;
+        } else if ("false".equals(result)) {
+            return FALSE;
+        }
+
+        RuleValue number = parseNumber(result.trim());
+        return number != null ? number : of(result);
+    }
+
+    /**
+     * Same as {@link #fromToken(String)}, but strings of date value types are typed as dates.
+     */
+    public static RuleValue fromToken(String token, ValueType valueType) {
+        RuleValue value = fromToken(token);
+        if (value != null && value.type == Type.STRING &&
+                (valueType == ValueType.DATE || valueType == ValueType.DATETIME)) {
+            return date(value.stringValue);
+        }
+        return value;
+    }
+
+    /**
+     * Parses plain decimal numbers (optional sign, digits and fraction). Anything else,
+     * including numbers with leading zeros or exponents, is rejected.
+     */
+    static RuleValue parseNumber(String text) {
+        int length = text.length();
+        int index = 0;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            index++;
+        }
+
+        int digitsStart = index;
+        while (index < length && Character.isDigit(text.charAt(index))) {
+            index++;
+        }
+        int integerDigits = index - digitsStart;
+
+        if (integerDigits == 0 || (integerDigits > 1 && text.charAt(digitsStart) == '0')) {
+            return null;
+        }
+
+        if (index == length) {
+            if (integerDigits > 18) {
+                return null;
+            }
+            return of(Long.parseLong(text.charAt(0) == '+' ? text.substring(1) : text));
+        }
+
+        if (text.charAt(index) != '.') {
+            return null;
+        }
+
+        index++;
+        int fractionStart = index;
+        while (index < length && Character.isDigit(text.charAt(index))) {
+            index++;
+        }
+
+        if (index != length || index == fractionStart) {
+            return null;
+        }
+
+        return of(Double.parseDouble(text));
+    }
+
+    /**
+     * Parses date in yyyy-MM-dd format to number of days since 1970-01-01.
+     *
+     * @return epoch day, or {@link #INVALID_DATE} if the text is not a valid date.
+     */
+    static long parseEpochDay(String text) {
+        if (text == null || text.length() != 10 ||
+                text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return INVALID_DATE;
+        }
+
+        int year = parseDigits(text, 0, 4);
+        int month = parseDigits(text, 5, 7);
+        int day = parseDigits(text, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return INVALID_DATE;
+        }
+
+        // days from civil date, see http://howardhinnant.github.io/date_algorithms.html
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int parseDigits(String text, int start, int end) {
+        int value = 0;
+        for (int index = start; index < end; index++) {
+            char digit = text.charAt(index);
+            if (digit < '0' || digit > '9') {
+                return -1;
+            }
+            value = value * 10 + (digit - '0');
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leapYear = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leapYear ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public boolean isNumber() {
+        return type == Type.NUMBER;
+    }
+
+    /**
+     * @return true for strings and dates.
+     */
+    public boolean isText() {
+        return type == Type.STRING || type == Type.DATE;
+    }
+
+    public boolean isBoolean() {
+        return type == Type.BOOLEAN;
+    }
+
+    public boolean isIntegral() {
+        return type == Type.NUMBER && integral;
+    }
+
+    public long longValue() {
+        return longValue;
+    }
+
+    /**
+     * @return epoch day of date values, or {@link #INVALID_DATE}
+     * if the text of the date could not be parsed.
+     */
+    public long epochDay() {
+        return type == Type.DATE ? longValue : INVALID_DATE;
+    }
+
+    public double doubleValue() {
+        return doubleValue;
+    }
+
+    public String stringValue() {
+        return stringValue;
+    }
+
+    public boolean booleanValue() {
+        return booleanValue;
+    }
+
+    /**
+     * Boolean interpretation of the value in logical operators:
+     * non zero numbers and non empty strings other than "false" are true.
+     */
+    public boolean toBoolean() {
+        switch (type) {
+            case BOOLEAN:
+                return booleanValue;
+            case NUMBER:
+                return doubleValue != 0.0;
+            default:
+                return stringValue.length() > 0 && !"false".equals(stringValue);
+        }
+    }
+
+    /**
+     * @return value in form which can be substituted into expression text:
+     * strings and dates are wrapped into quotes.
+     */
+    public String toToken() {
+        return isText() ? "'" + stringValue + "'" : toString();
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case BOOLEAN:
+                return String.valueOf(booleanValue);
+            case NUMBER:
+                return integral ? String.valueOf(longValue) : String.valueOf(doubleValue);
+            default:
+                return stringValue;
+        }
+    }
+}
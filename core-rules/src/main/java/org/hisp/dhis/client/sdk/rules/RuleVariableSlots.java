@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns dense integer slots to names of program rule variables and environment
+ * variables. Slots are assigned once per {@link RuleEngine}: rule expressions are compiled
+ * against them, and {@link RuleEngineVariableValueMap} keeps values in arrays indexed by
+ * them, so variables are not looked up by name during evaluation.
+ */
+/* Part of RuleEngine implementation detail. Hence, class visibility defined as package private */
+final class RuleVariableSlots {
+    public static final String EVENT_DATE = "event_date";
+    public static final String CURRENT_DATE = "current_date";
+
+    private final List<ProgramRuleVariable> variables;
+    private final Map<String, Integer> slotsByName;
+    private final List<String> names;
+
+    private RuleVariableSlots(List<ProgramRuleVariable> variables,
+                              Map<String, Integer> slotsByName, List<String> names) {
+        this.variables = variables;
+        this.slotsByName = slotsByName;
+        this.names = names;
+    }
+
+    public static RuleVariableSlots create(List<ProgramRuleVariable> variables) {
+        List<ProgramRuleVariable> variableList = variables != null ?
+                Collections.unmodifiableList(new ArrayList<>(variables)) :
+                Collections.<ProgramRuleVariable>emptyList();
+
+        Map<String, Integer> slotsByName = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        for (ProgramRuleVariable variable : variableList) {
+            addSlot(variable.getDisplayName(), slotsByName, names);
+        }
+
+        addSlot(EVENT_DATE, slotsByName, names);
+        addSlot(CURRENT_DATE, slotsByName, names);
+
+        return new RuleVariableSlots(variableList,
+                Collections.unmodifiableMap(slotsByName), Collections.unmodifiableList(names));
+    }
+
+    private static void addSlot(String name, Map<String, Integer> slotsByName,
+                                List<String> names) {
+        if (!slotsByName.containsKey(name)) {
+            slotsByName.put(name, names.size());
+            names.add(name);
+        }
+    }
+
+    /**
+     * @return slot of the variable, or -1 if there is no variable with such name.
+     */
+    public int getSlot(String name) {
+        Integer slot = slotsByName.get(name);
+        return slot != null ? slot : -1;
+    }
+
+    public String getName(int slot) {
+        return names.get(slot);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * @return program rule variables in the order they were defined. More than one
+     * variable might share the same slot if their names are equal.
+     */
+    public List<ProgramRuleVariable> getVariables() {
+        return variables;
+    }
+}
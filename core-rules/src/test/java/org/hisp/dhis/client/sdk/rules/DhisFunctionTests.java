@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.client.sdk.models.dataelement.ValueType;
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariable;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariableSourceType;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.addDataValueToEvent;
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.createDataElement;
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.createProgramRuleVariable;
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.createProgramRuleVariableCurrentEvent;
+import static org.junit.Assert.assertEquals;
+
+public class DhisFunctionTests {
+    private RuleEngineVariableValueMap valueMap;
+
+    @Before
+    public void setUp() {
+        DataElement number = createDataElement("d1", "Number DataElement", ValueType.NUMBER);
+        DataElement text = createDataElement("d2", "Text DataElement", ValueType.TEXT);
+        DataElement date = createDataElement("d3", "Date DataElement", ValueType.DATE);
+
+        List<ProgramRuleVariable> variables = new ArrayList<>();
+        variables.add(createProgramRuleVariableCurrentEvent("number", number));
+        variables.add(createProgramRuleVariableCurrentEvent("text", text));
+        variables.add(createProgramRuleVariableCurrentEvent("date", date));
+        variables.add(createProgramRuleVariable("newestNumber", number,
+                ProgramRuleVariableSourceType.DATAELEMENT_NEWEST_EVENT_PROGRAM));
+
+        Event first = createEvent("e1", new DateTime(2016, 1, 10, 0, 0));
+        addDataValueToEvent(first, number, "-3");
+        Event second = createEvent("e2", new DateTime(2016, 2, 20, 0, 0));
+        addDataValueToEvent(second, number, "4");
+        Event current = createEvent("e3", new DateTime(2016, 3, 1, 0, 0));
+        addDataValueToEvent(current, number, "4");
+        addDataValueToEvent(current, text, "a,b,c");
+        addDataValueToEvent(current, date, "2016-01-31");
+
+        valueMap = new RuleEngineVariableValueMap(
+                variables, current, Arrays.asList(first, second, current));
+    }
+
+    private static Event createEvent(String uid, DateTime eventDate) {
+        Event event = new Event();
+        event.setUId(uid);
+        event.setEventDate(eventDate);
+        return event;
+    }
+
+    private String evaluate(String expression) {
+        RuleExpression compiled = RuleExpression.compile(expression);
+        String result = compiled.evaluate(valueMap);
+
+        // string based evaluation has to yield the same result
+        assertEquals(expression, result, RuleEngineExecution.runExpression(expression, valueMap));
+        return result;
+    }
+
+    @Test
+    public void dateFunctions() {
+        assertEquals("30", evaluate("d2:daysBetween(#{date}, '2016-03-01')"));
+        assertEquals("4", evaluate("d2:weeksBetween(#{date}, '2016-03-01')"));
+        assertEquals("1", evaluate("d2:monthsBetween(#{date}, '2016-03-01')"));
+        assertEquals("-2", evaluate("d2:yearsBetween('2018-02-01', #{date})"));
+        assertEquals("2016-02-10", evaluate("d2:addDays(#{date}, 10)"));
+        assertEquals("2016-03-01", evaluate("d2:lastEventDate('number')"));
+        assertEquals("2016-03-01", evaluate("d2:lastEventDate('newestNumber')"));
+    }
+
+    @Test
+    public void numberFunctions() {
+        assertEquals("-3", evaluate("d2:floor(-2.5)"));
+        assertEquals("3", evaluate("d2:ceil(2.1)"));
+        assertEquals("3", evaluate("d2:round(2.5)"));
+        assertEquals("1", evaluate("d2:modulus(#{number} + 3, 2)"));
+        assertEquals("0", evaluate("d2:zing(-5)"));
+        assertEquals("4", evaluate("d2:zing(#{number})"));
+        assertEquals("0", evaluate("d2:oizp(-5)"));
+        assertEquals("1", evaluate("d2:oizp(0)"));
+    }
+
+    @Test
+    public void countFunctions() {
+        assertEquals("3", evaluate("d2:count('newestNumber')"));
+        assertEquals("2", evaluate("d2:countIfZeroPos('newestNumber')"));
+        assertEquals("2", evaluate("d2:countIfValue('newestNumber', 4)"));
+        assertEquals("1", evaluate("d2:count('number')"));
+        assertEquals("3", RuleExpression.compile("d2:count(#{newestNumber})").evaluate(valueMap));
+    }
+
+    @Test
+    public void textFunctions() {
+        assertEquals("a,b,c4", evaluate("d2:concatenate(#{text}, #{number})"));
+        assertEquals("a,", evaluate("d2:left(#{text}, 2)"));
+        assertEquals(",c", evaluate("d2:right(#{text}, 2)"));
+        assertEquals("b,", evaluate("d2:substring(#{text}, 2, 4)"));
+        assertEquals("c", RuleExpression.compile("d2:split(#{text}, ',', 2)").evaluate(valueMap));
+        assertEquals("", RuleExpression.compile("d2:split(#{text}, ',', 3)").evaluate(valueMap));
+        assertEquals("b", evaluate("d2:split('a;b', ';', 1)"));
+        assertEquals("5", evaluate("d2:length(#{text})"));
+    }
+
+    @Test
+    public void validatePattern() {
+        assertEquals("true", evaluate("d2:validatePattern('12345', '[0-9]+')"));
+        assertEquals("false", evaluate("d2:validatePattern('123a5', '[0-9]+')"));
+        assertEquals("false", evaluate("d2:validatePattern('123', '[0-9')"));
+        assertEquals("true", RuleExpression.compile(
+                "d2:validatePattern(#{text}, '[a-c](,[a-c])*')").evaluate(valueMap));
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.client.sdk.models.dataelement.ValueType;
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.addDataValueToEvent;
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.createDataElement;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class EventHistoryIndexTests {
+    private final DataElement weight =
+            createDataElement("d1", "Weight", ValueType.NUMBER);
+    private final DataElement height =
+            createDataElement("d2", "Height", ValueType.NUMBER);
+
+    private Event createEvent(String uid, String programStage, String date, String value) {
+        Event event = new Event();
+        event.setUId(uid);
+        event.setProgramStage(programStage);
+        event.setEventDate(DateTime.parse(date));
+        addDataValueToEvent(event, weight, value);
+        return event;
+    }
+
+    private List<Event> createEvents() {
+        List<Event> events = new ArrayList<>();
+        events.add(createEvent("e3", "stageA", "2016-03-01", "3"));
+        events.add(createEvent("e1", "stageA", "2016-01-01", "1"));
+        events.add(createEvent("e4", "stageB", "2016-04-01", "4"));
+        events.add(createEvent("e2", "stageB", "2016-02-01", "2"));
+        return events;
+    }
+
+    @Test
+    public void valuesAreSortedByEventDate() {
+        EventHistoryIndex.ValueHistory history =
+                new EventHistoryIndex(createEvents()).getHistory(weight.getUId());
+
+        assertEquals(4, history.getValues().size());
+        assertEquals("1", history.getValue(0).getValue());
+        assertEquals("4", history.getValue(history.getNewest()).getValue());
+        assertEquals("e4", history.getEvent(history.getNewest()).getUId());
+    }
+
+    @Test
+    public void newestValueOfProgramStage() {
+        EventHistoryIndex.ValueHistory history =
+                new EventHistoryIndex(createEvents()).getHistory(weight.getUId());
+
+        assertEquals("3", history.getValue(history.getNewest("stageA")).getValue());
+        assertEquals("4", history.getValue(history.getNewest("stageB")).getValue());
+        assertEquals(-1, history.getNewest("stageC"));
+    }
+
+    @Test
+    public void previousValueIsFoundBeforeEventDate() {
+        EventHistoryIndex.ValueHistory history =
+                new EventHistoryIndex(createEvents()).getHistory(weight.getUId());
+
+        assertEquals(-1, history.getPrevious(DateTime.parse("2016-01-01")));
+        assertEquals("1", history.getValue(
+                history.getPrevious(DateTime.parse("2016-02-01"))).getValue());
+        assertEquals("2", history.getValue(
+                history.getPrevious(DateTime.parse("2016-02-15"))).getValue());
+        assertEquals("4", history.getValue(
+                history.getPrevious(DateTime.parse("2017-01-01"))).getValue());
+        assertEquals(-1, history.getPrevious(null));
+    }
+
+    @Test
+    public void updateReplacesValuesOfSavedEvent() {
+        List<Event> events = createEvents();
+        Event other = createEvent("e5", "stageA", "2016-05-01", null);
+        addDataValueToEvent(other, height, "180");
+        events.add(other);
+
+        EventHistoryIndex index = new EventHistoryIndex(events);
+
+        // event is moved to the end and gets a new value
+        Event saved = createEvent("e1", "stageB", "2016-06-01", "5");
+        EventHistoryIndex updated = index.update(saved);
+
+        EventHistoryIndex.ValueHistory history = updated.getHistory(weight.getUId());
+        assertEquals(4, history.getValues().size());
+        assertEquals("2", history.getValue(0).getValue());
+        assertEquals("5", history.getValue(history.getNewest()).getValue());
+        assertEquals("5", history.getValue(history.getNewest("stageB")).getValue());
+        assertEquals("3", history.getValue(history.getNewest("stageA")).getValue());
+        assertEquals(5, updated.getEvents().size());
+        assertSame(saved, updated.getEvents().get(4));
+
+        // history of data elements not touched by the event is shared
+        assertSame(index.getHistory(height.getUId()), updated.getHistory(height.getUId()));
+
+        // original index is left untouched
+        assertEquals("1", index.getHistory(weight.getUId()).getValue(0).getValue());
+    }
+
+    @Test
+    public void updateAddsNewEvent() {
+        EventHistoryIndex index = new EventHistoryIndex(null);
+        assertNull(index.getHistory(weight.getUId()));
+
+        EventHistoryIndex updated = index
+                .update(createEvent("e2", "stageA", "2016-02-01", "2"))
+                .update(createEvent("e1", "stageA", "2016-01-01", "1"));
+
+        EventHistoryIndex.ValueHistory history = updated.getHistory(weight.getUId());
+        assertEquals(2, history.getValues().size());
+        assertEquals("1", history.getValue(0).getValue());
+        assertEquals("2", history.getValue(history.getNewest()).getValue());
+    }
+
+    @Test
+    public void updateRemovesClearedValues() {
+        EventHistoryIndex index = new EventHistoryIndex(createEvents());
+        EventHistoryIndex updated = index.update(createEvent("e4", "stageB", "2016-04-01", ""));
+
+        EventHistoryIndex.ValueHistory history = updated.getHistory(weight.getUId());
+        assertEquals(3, history.getValues().size());
+        assertEquals("3", history.getValue(history.getNewest()).getValue());
+        assertEquals("2", history.getValue(history.getNewest("stageB")).getValue());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.client.sdk.models.dataelement.ValueType;
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariable;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.addDataValueToEvent;
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.createDataElement;
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.createProgramRuleVariableCurrentEvent;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NativeExpressionTests {
+
+    private static RuleEngineVariableValueMap createValueMap(String intValue, String textValue) {
+        DataElement d1 = createDataElement("d1", "Integer DataElement", ValueType.INTEGER);
+        DataElement d2 = createDataElement("d2", "Text DataElement", ValueType.TEXT);
+
+        List<ProgramRuleVariable> variables = new ArrayList<>();
+        variables.add(createProgramRuleVariableCurrentEvent("simpleInt", d1));
+        variables.add(createProgramRuleVariableCurrentEvent("simpleText", d2));
+
+        Event event = new Event();
+        if (intValue != null) {
+            addDataValueToEvent(event, d1, intValue);
+        }
+        if (textValue != null) {
+            addDataValueToEvent(event, d2, textValue);
+        }
+
+        return new RuleEngineVariableValueMap(variables, event, new ArrayList<Event>());
+    }
+
+    private static void assertSameAsJexl(String expression, RuleEngineVariableValueMap valueMap) {
+        RuleExpression compiled = RuleExpression.compile(expression);
+        assertTrue(expression, compiled.isNative());
+
+        String substituted = expression
+                .replace("#{simpleInt}", valueMap.getValueString("simpleInt"))
+                .replace("#{simpleText}", valueMap.getValueString("simpleText"));
+
+        String result = RuleEngineExecution.evaluateExpression(substituted);
+        assertEquals(expression, result, compiled.evaluate(valueMap));
+        assertEquals(expression, RuleEngineExecution.isTrue(result), compiled.isTrue(valueMap));
+    }
+
+    @Test
+    public void nativeResultsAreSameAsJexlResults() {
+        RuleEngineVariableValueMap valueMap = createValueMap("7", "abc");
+
+        String[] expressions = {
+                "#{simpleInt} > 5 && #{simpleInt} <= 7",
+                "#{simpleInt} == 7 || #{simpleInt} == 8",
+                "!(#{simpleInt} != 7)",
+                "#{simpleInt} / 2",
+                "#{simpleInt} % 4 + 2 * 3",
+                "-#{simpleInt} - -1",
+                "(#{simpleInt} + 1) * 2.5",
+                "#{simpleText} + 'def' == 'abcdef'",
+                "#{simpleText} == 'abc'",
+                "#{simpleText} < 'abd'",
+                "#{simpleText} && #{simpleInt}",
+                "true && !false",
+                "'true'",
+                "1 < 2 == true"
+        };
+
+        for (String expression : expressions) {
+            assertSameAsJexl(expression, valueMap);
+        }
+    }
+
+    @Test
+    public void integerArithmeticIsPreserved() {
+        RuleEngineVariableValueMap valueMap = createValueMap("7", "abc");
+
+        assertEquals("3", RuleExpression.compile("#{simpleInt} / 2").evaluate(valueMap));
+        assertEquals("3.5", RuleExpression.compile("#{simpleInt} / 2.0").evaluate(valueMap));
+        assertEquals("-7", RuleExpression.compile("-#{simpleInt}").evaluate(valueMap));
+    }
+
+    @Test
+    public void unsupportedSyntaxIsNotNative() {
+        assertFalse(RuleExpression.compile("#{simpleInt} > 1 ? 2 : 3").isNative());
+        assertFalse(RuleExpression.compile("#{simpleInt} eq 1").isNative());
+        assertFalse(RuleExpression.compile("'abc'.length()").isNative());
+        assertFalse(RuleExpression.compile("#{simpleInt} & 1").isNative());
+        assertTrue(RuleExpression.compile("#{simpleInt} > 1").isNative());
+    }
+
+    @Test
+    public void unsupportedSyntaxFallsBackToJexl() {
+        RuleEngineVariableValueMap valueMap = createValueMap("7", "abc");
+
+        assertEquals("2", RuleExpression.compile("#{simpleInt} > 1 ? 2 : 3").evaluate(valueMap));
+        assertTrue(RuleExpression.compile("#{simpleInt} eq 7").isTrue(valueMap));
+    }
+
+    @Test
+    public void unsupportedOperandsFallBackToJexl() {
+        RuleEngineVariableValueMap valueMap = createValueMap("7", "5");
+
+        // numeric strings are converted to numbers by JEXL
+        assertEquals("12", RuleExpression.compile("#{simpleText} + #{simpleInt}")
+                .evaluate(valueMap));
+        assertTrue(RuleExpression.compile("#{simpleText} == 5").isTrue(valueMap));
+
+        // division by zero fails in JEXL, which leaves substituted expression as result
+        assertEquals("7 / 0", RuleExpression.compile("#{simpleInt} / 0").evaluate(valueMap));
+    }
+
+    @Test
+    public void constantSubexpressionsAreFolded() {
+        RuleEngineVariableValueMap valueMap = createValueMap("7", "abc");
+
+        assertTrue(RuleExpression.compile("true").isConstant());
+        assertTrue(RuleExpression.compile("(2 + 3) * 4 > 10 && !false").isConstant());
+        assertTrue(RuleExpression.compile("false && #{simpleInt} > 1").isConstant());
+        assertTrue(RuleExpression.compile("1 > 0 || #{simpleInt} > 1").isConstant());
+        assertFalse(RuleExpression.compile("#{simpleInt} > 2 * 3").isConstant());
+        assertFalse(RuleExpression.compile("true && #{simpleInt} > 1").isConstant());
+        assertTrue(RuleExpression.compile("#{simpleInt} > 2 * 3").isTrue(valueMap));
+
+        // operations which fall back to JEXL are not folded
+        assertFalse(RuleExpression.compile("1 / 0").isConstant());
+        assertEquals("1 / 0", RuleExpression.compile("1 / 0").evaluate(valueMap));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.constant.Constant;
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.client.sdk.models.dataelement.ValueType;
+import org.hisp.dhis.client.sdk.models.enrollment.Enrollment;
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.hisp.dhis.client.sdk.models.program.ProgramIndicator;
+import org.hisp.dhis.client.sdk.models.trackedentity.TrackedEntityAttributeValue;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.addDataValueToEvent;
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.createDataElement;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProgramIndicatorEngineTests {
+    private final DataElement weight =
+            createDataElement("d1", "Weight", ValueType.NUMBER);
+    private final DataElement height =
+            createDataElement("d2", "Height", ValueType.NUMBER);
+
+    private ProgramIndicatorEngine engine;
+
+    private static ProgramIndicator createIndicator(String uid, String expression) {
+        ProgramIndicator indicator = new ProgramIndicator();
+        indicator.setUId(uid);
+        indicator.setExpression(expression);
+        return indicator;
+    }
+
+    private Event createEvent(String uid, String programStage, String date, String value) {
+        Event event = new Event();
+        event.setUId(uid);
+        event.setProgramStage(programStage);
+        event.setEventDate(DateTime.parse(date));
+        if (value != null) {
+            addDataValueToEvent(event, weight, value);
+        }
+        return event;
+    }
+
+    private Enrollment createEnrollment() {
+        TrackedEntityAttributeValue attributeValue = new TrackedEntityAttributeValue();
+        attributeValue.setTrackedEntityAttributeUId("a1");
+        attributeValue.setValue("5");
+
+        List<Event> events = new ArrayList<>();
+        events.add(createEvent("e1", "stageA", "2016-01-01", "10"));
+        events.add(createEvent("e3", "stageA", "2016-03-01", "30"));
+        events.add(createEvent("e2", "stageB", "2016-02-01", "20"));
+
+        Enrollment enrollment = new Enrollment();
+        enrollment.setDateOfEnrollment(DateTime.parse("2016-01-01"));
+        enrollment.setDateOfIncident(DateTime.parse("2016-01-11"));
+        enrollment.setTrackedEntityAttributeValues(Collections.singletonList(attributeValue));
+        enrollment.setEvents(events);
+        return enrollment;
+    }
+
+    @Before
+    public void setUp() {
+        Constant constant = new Constant();
+        constant.setUId("c1");
+        constant.setValue(2);
+
+        List<ProgramIndicator> indicators = Arrays.asList(
+                createIndicator("sum", "#{stageA.d1} + #{stageB.d1}"),
+                createIndicator("count", "#{stageA.d1} + #{stageB.d2} + V{value_count}"),
+                createIndicator("constant", "#{stageA.d1} * C{c1}"),
+                createIndicator("attribute", "A{a1} + 1"),
+                createIndicator("days", "d2:daysBetween(V{enrollment_date}, V{incident_date})"),
+                createIndicator("undefined", "#{stageA.d1} * C{unknown}"),
+                createIndicator("event", "#{d1} * 2"));
+
+        engine = new ProgramIndicatorEngine.Builder()
+                .programIndicators(indicators)
+                .dataElements(Arrays.asList(weight, height))
+                .constants(Collections.singletonList(constant))
+                .build();
+    }
+
+    @Test
+    public void enrollmentIndicatorsUseNewestValuesOfProgramStages() {
+        Map<String, String> values = engine.createSession(createEnrollment()).evaluate();
+
+        assertEquals("50", values.get("sum"));
+        assertEquals("31", values.get("count"));
+        assertEquals("60", values.get("constant"));
+        assertEquals("6", values.get("attribute"));
+        assertEquals("10", values.get("days"));
+        assertEquals("60", values.get("event"));
+        assertNull(values.get("undefined"));
+    }
+
+    @Test
+    public void updateReevaluatesOnlyAffectedIndicators() {
+        ProgramIndicatorSession session = engine.createSession(createEnrollment());
+        session.evaluate();
+
+        Map<String, String> changed =
+                session.update(createEvent("e2", "stageB", "2016-02-01", "25"));
+
+        assertEquals(Collections.singletonMap("sum", "55"), changed);
+        assertEquals("55", session.getValue("sum"));
+        assertEquals("60", session.getValue("constant"));
+
+        // an unchanged event does not change anything
+        assertTrue(session.update(createEvent("e2", "stageB", "2016-02-01", "25")).isEmpty());
+
+        // newer event of stage A changes everything which reads it
+        changed = session.update(createEvent("e4", "stageA", "2016-04-01", "40"));
+        assertEquals("65", changed.get("sum"));
+        assertEquals("80", changed.get("constant"));
+        assertFalse(changed.containsKey("attribute"));
+    }
+
+    @Test
+    public void eventIndicatorsAreAggregatedInSinglePass() {
+        List<Event> events = Arrays.asList(
+                createEvent("e1", "stageA", "2016-01-01", "1"),
+                createEvent("e2", "stageA", "2016-01-02", "2"),
+                createEvent("e3", "stageA", "2016-01-03", "3"),
+                createEvent("e4", "stageA", "2016-01-04", null));
+
+        assertEquals("4", engine.createSession(events.get(1)).evaluate().get("event"));
+
+        ProgramIndicatorAggregate aggregate = engine.aggregate(
+                createIndicator("event", null), events.iterator());
+        assertEquals(4, aggregate.getEventCount());
+        assertEquals(4, aggregate.getValueCount());
+        assertEquals(12, aggregate.getSum(), 0);
+        assertEquals(0, aggregate.getMin(), 0);
+        assertEquals(6, aggregate.getMax(), 0);
+        assertEquals(3, aggregate.getAverage(), 0);
+
+        aggregate = engine.aggregate(createIndicator("undefined", null), events.iterator());
+        assertEquals(4, aggregate.getSkippedCount());
+        assertTrue(Double.isNaN(aggregate.getAverage()));
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.client.sdk.models.dataelement.ValueType;
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.hisp.dhis.client.sdk.models.program.ProgramRule;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleAction;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleActionType;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariable;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariableSourceType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RuleEffectCacheTests {
+    private static final String SIMPLE_ERROR = "simpleInt is more than 10";
+    private static final String ASSIGNED_ERROR = "assignedVariable is more than 30";
+
+    private DataElement d1;
+    private List<ProgramRule> rules;
+    private List<ProgramRuleVariable> variables;
+
+    @Before
+    public void setUp() {
+        d1 = createDataElement("d1", "Integer DataElement", ValueType.INTEGER);
+
+        rules = new ArrayList<>();
+        rules.add(createSimpleProgramRuleShowError("r1", "a1",
+                "#{simpleInt} > 10", SIMPLE_ERROR));
+        rules.add(createSimpleProgramRuleShowError("r2", "a2",
+                "#{assignedVariable} > 30", ASSIGNED_ERROR));
+
+        ProgramRule calculationRule = createSimpleProgramRuleShowError("r3", "a3",
+                "true", "placeholder");
+        calculationRule.setPriority(1);
+        ProgramRuleAction assignAction = calculationRule.getProgramRuleActions().get(0);
+        assignAction.setProgramRuleActionType(ProgramRuleActionType.ASSIGN);
+        assignAction.setContent("#{assignedVariable}");
+        assignAction.setData("#{simpleInt} * 2");
+        rules.add(calculationRule);
+
+        variables = new ArrayList<>();
+        variables.add(createProgramRuleVariableCurrentEvent("simpleInt", d1));
+        variables.add(createProgramRuleVariable("assignedVariable", null,
+                ProgramRuleVariableSourceType.CALCULATED_VALUE));
+    }
+
+    private RuleEngine createCachingRuleEngine(long effectCacheSize) {
+        return createRuleEngineBuilder(rules, variables)
+                .effectCacheSize(effectCacheSize)
+                .build();
+    }
+
+    @Test
+    public void effectsOfUnchangedRulesAreReused() {
+        RuleEngine ruleEngine = createCachingRuleEngine(64 * 1024);
+
+        List<RuleEffect> effects = ruleEngine.execute(
+                createEvent(d1, "20"), new ArrayList<Event>());
+        assertEquals(0, ruleEngine.getEffectCacheHitCount());
+        assertEquals(3, ruleEngine.getEffectCacheMissCount());
+
+        assertEquals(effects, ruleEngine.execute(createEvent(d1, "20"), new ArrayList<Event>()));
+        assertEquals(3, ruleEngine.getEffectCacheHitCount());
+        assertEquals(3, ruleEngine.getEffectCacheMissCount());
+        assertTrue(ruleEngine.getEffectCacheBytes() > 0);
+    }
+
+    @Test
+    public void changedValuesAreEvaluatedAgain() {
+        RuleEngine cachedEngine = createCachingRuleEngine(64 * 1024);
+        RuleEngine ruleEngine = createRuleEngine(rules, variables);
+
+        String[] values = {"20", "5", "20", "12", "16", "5", "16"};
+        for (String value : values) {
+            List<RuleEffect> expected = ruleEngine.execute(
+                    createEvent(d1, value), new ArrayList<Event>());
+            assertEquals(expected, cachedEngine.execute(
+                    createEvent(d1, value), new ArrayList<Event>()));
+        }
+
+        assertTrue(cachedEngine.getEffectCacheHitCount() > 0);
+        assertEquals(0, ruleEngine.getEffectCacheHitCount());
+    }
+
+    @Test
+    public void cachedAssignmentsAreApplied() {
+        RuleEngine ruleEngine = createCachingRuleEngine(64 * 1024);
+        ruleEngine.execute(createEvent(d1, "5"), new ArrayList<Event>());
+        ruleEngine.execute(createEvent(d1, "16"), new ArrayList<Event>());
+
+        // assignment is taken from the cache, but rule which reads it has to see it
+        List<RuleEffect> effects = ruleEngine.execute(
+                createEvent(d1, "16"), new ArrayList<Event>());
+        assertTrue(containsError(effects, ASSIGNED_ERROR));
+        assertEquals(3, ruleEngine.getEffectCacheHitCount());
+    }
+
+    @Test
+    public void modifiedEffectsDoNotChangeCachedEffects() {
+        RuleEngine ruleEngine = createCachingRuleEngine(64 * 1024);
+        List<RuleEffect> expected = createRuleEngine(rules, variables).execute(
+                createEvent(d1, "20"), new ArrayList<Event>());
+
+        List<RuleEffect> effects = ruleEngine.execute(
+                createEvent(d1, "20"), new ArrayList<Event>());
+        modifyEffects(effects);
+
+        List<RuleEffect> cachedEffects = ruleEngine.execute(
+                createEvent(d1, "20"), new ArrayList<Event>());
+        assertEquals(expected, cachedEffects);
+        modifyEffects(cachedEffects);
+
+        assertEquals(expected, ruleEngine.execute(createEvent(d1, "20"), new ArrayList<Event>()));
+        assertEquals(6, ruleEngine.getEffectCacheHitCount());
+    }
+
+    private static void modifyEffects(List<RuleEffect> effects) {
+        for (RuleEffect effect : effects) {
+            effect.setContent("modified");
+            effect.setData("modified");
+        }
+    }
+
+    @Test
+    public void rulesWithStringLiteralArgumentsAreCached() {
+        rules.add(createSimpleProgramRuleShowError("r4", "a4",
+                "d2:countIfValue(#{simpleInt}, '20') > 0", "simpleInt is 20"));
+        RuleEngine ruleEngine = createCachingRuleEngine(64 * 1024);
+
+        ruleEngine.execute(createEvent(d1, "20"), new ArrayList<Event>());
+        List<RuleEffect> effects = ruleEngine.execute(
+                createEvent(d1, "20"), new ArrayList<Event>());
+        assertTrue(containsError(effects, "simpleInt is 20"));
+        assertEquals(4, ruleEngine.getEffectCacheHitCount());
+    }
+
+    @Test
+    public void cacheIsBoundedBySize() {
+        RuleEngine ruleEngine = createCachingRuleEngine(1024);
+        for (int value = 0; value < 100; value++) {
+            ruleEngine.execute(createEvent(d1, String.valueOf(value)), new ArrayList<Event>());
+            assertTrue(ruleEngine.getEffectCacheBytes() <= 1024);
+        }
+
+        ruleEngine.clearEffectCache();
+        assertEquals(0, ruleEngine.getEffectCacheBytes());
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.client.sdk.models.dataelement.ValueType;
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.hisp.dhis.client.sdk.models.program.ProgramRule;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariable;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RuleEngineDiagnosticsTests {
+    private DataElement d1;
+    private List<ProgramRule> rules;
+    private List<ProgramRuleVariable> variables;
+    private RuleEngineDiagnostics diagnostics;
+
+    @Before
+    public void setUp() {
+        d1 = createDataElement("d1", "Integer DataElement", ValueType.INTEGER);
+
+        rules = new ArrayList<>();
+        rules.add(createSimpleProgramRuleShowError("r1", "a1",
+                "#{simpleInt} > 10", "simpleInt is more than 10"));
+        rules.add(createSimpleProgramRuleShowError("r2", "a2",
+                "d2:daysBetween('2016-01-01', '2016-01-05') > d2:floor(#{simpleInt} / 4)",
+                "functions"));
+        rules.add(createSimpleProgramRuleShowError("r3", "a3",
+                "#{simpleInt} / 0 > 1", "division by zero"));
+
+        variables = new ArrayList<>();
+        variables.add(createProgramRuleVariableCurrentEvent("simpleInt", d1));
+
+        diagnostics = new RuleEngineDiagnostics();
+    }
+
+    private RuleEngineDiagnostics.RuleStatistics getStatistics(String ruleUid) {
+        for (RuleEngineDiagnostics.RuleStatistics statistics :
+                diagnostics.getRuleStatistics()) {
+            if (ruleUid.equals(statistics.getRuleUid())) {
+                return statistics;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void evaluationsAndFunctionCallsAreCounted() {
+        RuleEngine ruleEngine = createRuleEngineBuilder(rules, variables)
+                .listener(diagnostics)
+                .build();
+        ruleEngine.execute(createEvent(d1, "5"), new ArrayList<Event>());
+        ruleEngine.execute(createEvent(d1, "20"), new ArrayList<Event>());
+
+        assertEquals(3, diagnostics.getRuleStatistics().size());
+        assertEquals(2, getStatistics("r1").getEvaluationCount());
+        assertTrue(getStatistics("r1").getTotalNanos() >= getStatistics("r1").getMaxNanos());
+
+        Map<String, Long> functionCalls = getStatistics("r2").getFunctionCalls();
+        assertEquals(Long.valueOf(2), functionCalls.get("d2:daysBetween"));
+        assertEquals(Long.valueOf(2), functionCalls.get("d2:floor"));
+        assertEquals(Long.valueOf(2), diagnostics.getFunctionCalls().get("d2:floor"));
+    }
+
+    @Test
+    public void failuresAreReportedWithRule() {
+        rules.add(createSimpleProgramRuleShowError("r4", "a4",
+                "#{undefinedVariable} > 1", "undefined variable"));
+        RuleEngine ruleEngine = createRuleEngineBuilder(rules, variables)
+                .listener(diagnostics)
+                .build();
+
+        try {
+            ruleEngine.execute(createEvent(d1, "5"), new ArrayList<Event>());
+            fail("Undefined variable has to fail evaluation");
+        } catch (IllegalArgumentException exception) {
+            // expected
+        }
+
+        // condition fails to be evaluated, and then its text fails to be checked for truth
+        assertEquals(2, getStatistics("r3").getFailureCount());
+        assertTrue(getStatistics("r3").getLastFailure().startsWith("5 / 0 > 1"));
+        assertEquals(1, getStatistics("r4").getFailureCount());
+        assertNotNull(getStatistics("r4").getLastFailure());
+    }
+
+    @Test
+    public void invalidPatternsAreReportedWithRule() {
+        rules.add(createSimpleProgramRuleShowError("r4", "a4",
+                "d2:validatePattern('123', '[0-9')", "invalid pattern"));
+        RuleEngine ruleEngine = createRuleEngineBuilder(rules, variables)
+                .listener(diagnostics)
+                .build();
+        ruleEngine.execute(createEvent(d1, "5"), new ArrayList<Event>());
+        ruleEngine.execute(createEvent(d1, "20"), new ArrayList<Event>());
+
+        // pattern is compiled once, but reported on each evaluation
+        assertEquals(2, getStatistics("r4").getFailureCount());
+        assertTrue(getStatistics("r4").getLastFailure().startsWith("[0-9"));
+    }
+
+    @Test
+    public void summaryListsRules() {
+        RuleEngine ruleEngine = createRuleEngineBuilder(rules, variables)
+                .listener(diagnostics)
+                .build();
+        ruleEngine.execute(createEvent(d1, "5"), new ArrayList<Event>());
+
+        String summary = diagnostics.getSummary(2);
+        assertTrue(summary.startsWith("3 rules"));
+        assertTrue(summary.contains("d2:daysBetween=1"));
+
+        diagnostics.reset();
+        assertTrue(diagnostics.getRuleStatistics().isEmpty());
+    }
+}
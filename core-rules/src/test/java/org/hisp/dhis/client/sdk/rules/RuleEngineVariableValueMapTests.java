@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.client.sdk.models.dataelement.ValueType;
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariable;
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.addDataValueToEvent;
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.createDataElement;
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.createProgramRuleVariableCurrentEvent;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RuleEngineVariableValueMapTests {
+    private final DataElement integerElement =
+            createDataElement("d1", "Integer DataElement", ValueType.INTEGER);
+    private final DataElement numberElement =
+            createDataElement("d2", "Number DataElement", ValueType.NUMBER);
+    private final DataElement textElement =
+            createDataElement("d3", "Text DataElement", ValueType.TEXT);
+    private final DataElement dateElement =
+            createDataElement("d4", "Date DataElement", ValueType.DATE);
+
+    private RuleVariableSlots createSlots() {
+        List<ProgramRuleVariable> variables = new ArrayList<>();
+        variables.add(createProgramRuleVariableCurrentEvent("integer", integerElement));
+        variables.add(createProgramRuleVariableCurrentEvent("number", numberElement));
+        variables.add(createProgramRuleVariableCurrentEvent("text", textElement));
+        variables.add(createProgramRuleVariableCurrentEvent("date", dateElement));
+        return RuleVariableSlots.create(variables);
+    }
+
+    private Event createEvent(String integer, String number, String text, String date) {
+        Event event = new Event();
+        addDataValueToEvent(event, integerElement, integer);
+        addDataValueToEvent(event, numberElement, number);
+        addDataValueToEvent(event, textElement, text);
+        addDataValueToEvent(event, dateElement, date);
+        return event;
+    }
+
+    @Test
+    public void valuesAreTypedByValueType() {
+        RuleVariableSlots slots = createSlots();
+        RuleEngineVariableValueMap valueMap = new RuleEngineVariableValueMap(slots,
+                createEvent("42", "2.5", "abc", "2016-03-01"), new EventHistoryIndex(null));
+
+        RuleValue integer = valueMap.getValue(slots.getSlot("integer"));
+        assertTrue(integer.isIntegral());
+        assertEquals(42L, integer.longValue());
+
+        RuleValue number = valueMap.getValue(slots.getSlot("number"));
+        assertFalse(number.isIntegral());
+        assertEquals(2.5, number.doubleValue(), 0.0);
+
+        assertEquals("abc", valueMap.getValue(slots.getSlot("text")).stringValue());
+        assertEquals("'abc'", valueMap.getValueString(slots.getSlot("text")));
+
+        RuleValue date = valueMap.getValue(slots.getSlot("date"));
+        assertEquals(RuleValue.Type.DATE, date.getType());
+        assertEquals(16861L, date.epochDay());
+    }
+
+    @Test
+    public void resetReplacesValuesOfPreviousEvent() {
+        RuleVariableSlots slots = createSlots();
+        RuleEngineVariableValueMap valueMap = new RuleEngineVariableValueMap(slots,
+                createEvent("42", "2.5", "abc", "2016-03-01"), new EventHistoryIndex(null));
+
+        valueMap.clear();
+        valueMap.reset(new Event(), new EventHistoryIndex(null));
+
+        assertEquals("0", valueMap.getValueString("integer"));
+        assertEquals("''", valueMap.getValueString("text"));
+        assertFalse(valueMap.hasValue("integer"));
+        assertFalse(valueMap.hasValue("unknown"));
+    }
+
+    @Test
+    public void missingDateDefaultsToCurrentDate() {
+        RuleVariableSlots slots = createSlots();
+        RuleEngineVariableValueMap valueMap = new RuleEngineVariableValueMap(slots,
+                new Event(), new EventHistoryIndex(null));
+
+        // missing dates default to the current date without time of day
+        String today = LocalDate.now().toString(RuleEngineVariableValueMap.DATE_PATTERN);
+        assertEquals("'" + today + "'", valueMap.getValueString("date"));
+        assertEquals(RuleValue.parseEpochDay(today),
+                valueMap.getValue(slots.getSlot("date")).epochDay());
+        assertFalse(valueMap.hasValue("date"));
+    }
+
+    @Test
+    public void assignedValueKeepsValueType() {
+        RuleVariableSlots slots = createSlots();
+        RuleEngineVariableValueMap valueMap = new RuleEngineVariableValueMap(slots,
+                createEvent("42", "2.5", "abc", "2016-03-01"), new EventHistoryIndex(null));
+
+        valueMap.setValue(slots.getSlot("text"), "12");
+        valueMap.setValue(slots.getSlot("integer"), "12");
+
+        assertEquals("'12'", valueMap.getValueString("text"));
+        assertEquals(RuleValue.Type.STRING, valueMap.getValue(slots.getSlot("text")).getType());
+        assertEquals(12L, valueMap.getValue(slots.getSlot("integer")).longValue());
+        assertTrue(valueMap.hasValue("integer"));
+    }
+
+    @Test
+    public void epochDaysOfDates() {
+        assertEquals(0L, RuleValue.parseEpochDay("1970-01-01"));
+        assertEquals(-1L, RuleValue.parseEpochDay("1969-12-31"));
+        assertEquals(11016L, RuleValue.parseEpochDay("2000-02-29"));
+        assertEquals(RuleValue.INVALID_DATE, RuleValue.parseEpochDay("2001-02-29"));
+        assertEquals(RuleValue.INVALID_DATE, RuleValue.parseEpochDay("2001-13-01"));
+        assertEquals(RuleValue.INVALID_DATE, RuleValue.parseEpochDay("2016-03-01T10:00"));
+    }
+}
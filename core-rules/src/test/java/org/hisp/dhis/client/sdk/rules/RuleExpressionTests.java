@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.client.sdk.models.dataelement.ValueType;
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariable;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.addDataValueToEvent;
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.createDataElement;
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.createProgramRuleVariableCurrentEvent;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RuleExpressionTests {
+
+    private static RuleEngineVariableValueMap createValueMap(String value) {
+        DataElement d1 = createDataElement("d1", "Integer DataElement", ValueType.INTEGER);
+
+        List<ProgramRuleVariable> variables = new ArrayList<>();
+        variables.add(createProgramRuleVariableCurrentEvent("simpleInt", d1));
+
+        Event event = new Event();
+        if (value != null) {
+            addDataValueToEvent(event, d1, value);
+        }
+
+        return new RuleEngineVariableValueMap(variables, event, new ArrayList<Event>());
+    }
+
+    @Test
+    public void compileSimpleExpression() {
+        RuleExpression expression = RuleExpression.compile("#{simpleInt} > 10");
+
+        assertTrue(expression.isCompiled());
+        assertTrue(expression.isTrue(createValueMap("11")));
+        assertFalse(expression.isTrue(createValueMap("9")));
+    }
+
+    @Test
+    public void compileNestedFunctionCalls() {
+        RuleExpression expression = RuleExpression.compile(
+                "d2:floor(d2:floor(#{simpleInt} / 2) / 2) == 2");
+
+        assertTrue(expression.isCompiled());
+        assertTrue(expression.isTrue(createValueMap("9")));
+        assertFalse(expression.isTrue(createValueMap("13")));
+    }
+
+    @Test
+    public void compileFunctionWithQuotedArgument() {
+        RuleExpression expression = RuleExpression.compile(
+                "d2:hasValue('simpleInt') && '(,)' == '(,)'");
+
+        assertTrue(expression.isCompiled());
+        assertTrue(expression.isTrue(createValueMap("1")));
+        assertFalse(expression.isTrue(createValueMap(null)));
+    }
+
+    @Test
+    public void quotedArgumentsOfValueParametersAreNotVariables() {
+        RuleExpression expression = RuleExpression.compile(
+                "d2:countIfValue(#{simpleInt}, 'yes') > 0 && d2:hasValue('other') && " +
+                        "d2:left('text', 2) == 'te'");
+
+        Set<String> variables = new HashSet<>();
+        assertTrue(expression.collectVariables(variables));
+        assertEquals(new HashSet<>(Arrays.asList("simpleInt", "other")), variables);
+    }
+
+    @Test
+    public void evaluateCompiledExpression() {
+        RuleExpression expression = RuleExpression.compile("#{simpleInt} * 2");
+
+        assertEquals("8", expression.evaluate(createValueMap("4")));
+    }
+
+    @Test
+    public void unknownFunctionIsNotCompiled() {
+        RuleExpression expression = RuleExpression.compile("d2:unknownFunction(1)");
+
+        assertFalse(expression.isCompiled());
+    }
+
+    @Test
+    public void wrongNumberOfParametersIsNotCompiled() {
+        RuleExpression expression = RuleExpression.compile("d2:floor(1, 2)");
+
+        assertFalse(expression.isCompiled());
+    }
+
+    @Test
+    public void stringBasedExecutionResolvesNestedCalls() {
+        String result = RuleEngineExecution.runExpression(
+                "d2:floor(d2:floor(#{simpleInt} / 2) / 2)", createValueMap("9"));
+
+        assertEquals("2", result);
+    }
+
+    @Test
+    public void stringBasedExecutionKeepsUnknownFunctions() {
+        String result = RuleEngineExecution.runExpression(
+                "d2:floor(3.5) + d2:unknownFunction(1)", createValueMap("9"));
+
+        assertTrue(result.contains("d2:unknownFunction(1)"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void undefinedVariableThrows() {
+        RuleExpression expression = RuleExpression.compile("#{undefinedVariable} == 1");
+
+        expression.evaluate(createValueMap("1"));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.client.sdk.models.dataelement.ValueType;
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.hisp.dhis.client.sdk.models.program.ProgramRule;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariable;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariableSourceType;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.*;
+import static org.junit.Assert.assertEquals;
+
+public class RulesEngineBatchTests {
+    private RuleEngine ruleEngine;
+    private List<Event> events;
+    private Map<String, List<Event>> eventHistory;
+
+    @Before
+    public void setUp() {
+        DataElement d1 = createDataElement("d1", "Integer DataElement", ValueType.INTEGER);
+
+        ArrayList<ProgramRule> rules = new ArrayList<>();
+        rules.add(createSimpleProgramRuleShowError("r1", "a1",
+                "#{previousInt} > 10", "previousInt is more than 10"));
+        rules.add(createSimpleProgramRuleShowError("r2", "a2",
+                "#{currentInt} > #{previousInt}", "currentInt is more than previousInt"));
+
+        ArrayList<ProgramRuleVariable> variables = new ArrayList<>();
+        variables.add(createProgramRuleVariableCurrentEvent("currentInt", d1));
+        variables.add(createProgramRuleVariable("previousInt", d1,
+                ProgramRuleVariableSourceType.DATAELEMENT_PREVIOUS_EVENT));
+
+        ruleEngine = new RuleEngine.Builder()
+                .programRules(rules)
+                .programRuleVariables(variables)
+                .build();
+
+        events = new ArrayList<>();
+        eventHistory = new HashMap<>();
+
+        // 150 enrollments with 1 to 5 events each
+        for (int enrollment = 0; enrollment < 150; enrollment++) {
+            List<Event> enrollmentEvents = new ArrayList<>();
+            for (int i = 0; i <= enrollment % 5; i++) {
+                Event event = new Event();
+                event.setUId("e" + enrollment + "_" + i);
+                event.setEventDate(DateTime.now().minusDays(30 - i));
+                addDataValueToEvent(event, d1, String.valueOf((enrollment + i * 7) % 20));
+                enrollmentEvents.add(event);
+            }
+
+            for (Event event : enrollmentEvents) {
+                events.add(event);
+                eventHistory.put(event.getUId(), enrollmentEvents);
+            }
+        }
+    }
+
+    private void assertSameAsSingleExecutions(Map<String, List<RuleEffect>> effects) {
+        assertEquals(events.size(), effects.size());
+        for (Event event : events) {
+            List<RuleEffect> expected = ruleEngine.execute(
+                    event, eventHistory.get(event.getUId()));
+            assertEquals(expected, effects.get(event.getUId()));
+        }
+    }
+
+    @Test
+    public void batchExecutionMatchesSingleExecutions() {
+        assertSameAsSingleExecutions(ruleEngine.executeBatch(events, eventHistory));
+    }
+
+    @Test
+    public void parallelBatchExecutionMatchesSingleExecutions() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            assertSameAsSingleExecutions(
+                    ruleEngine.executeBatch(events, eventHistory, executorService));
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void eventsWithoutHistoryAreEvaluated() {
+        Map<String, List<RuleEffect>> effects = ruleEngine.executeBatch(
+                events, new HashMap<String, List<Event>>());
+
+        assertEquals(events.size(), effects.size());
+        for (Event event : events) {
+            assertEquals(ruleEngine.execute(event, new ArrayList<Event>()),
+                    effects.get(event.getUId()));
+        }
+    }
+}
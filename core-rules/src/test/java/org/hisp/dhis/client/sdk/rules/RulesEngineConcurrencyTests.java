@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.client.sdk.models.dataelement.ValueType;
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.hisp.dhis.client.sdk.models.program.ProgramRule;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleAction;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleActionType;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariable;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariableSourceType;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class RulesEngineConcurrencyTests {
+    private static final int THREADS = 8;
+    private static final int EXECUTIONS = 2000;
+
+    private static RuleEngine createRuleEngine(DataElement d1) {
+        ArrayList<ProgramRule> rules = new ArrayList<>();
+        rules.add(createSimpleProgramRuleShowError("r1", "a1",
+                "#{assignedVariable} > 10", "assignedVariable is more than 10"));
+        rules.add(createSimpleProgramRuleShowError("r2", "a2",
+                "#{newestInt} > 50", "newestInt is more than 50"));
+
+        ProgramRule calculationRule = createSimpleProgramRuleShowError("r3", "a3",
+                "true", "placeholder");
+        calculationRule.setPriority(1);
+        ProgramRuleAction assignAction = calculationRule.getProgramRuleActions().get(0);
+        assignAction.setProgramRuleActionType(ProgramRuleActionType.ASSIGN);
+        assignAction.setContent("#{currentInt}");
+        assignAction.setData("#{currentInt} * 2");
+        rules.add(calculationRule);
+
+        ProgramRule secondCalculationRule = createSimpleProgramRuleShowError("r4", "a4",
+                "true", "placeholder");
+        secondCalculationRule.setPriority(2);
+        ProgramRuleAction secondAssignAction =
+                secondCalculationRule.getProgramRuleActions().get(0);
+        secondAssignAction.setProgramRuleActionType(ProgramRuleActionType.ASSIGN);
+        secondAssignAction.setContent("#{assignedVariable}");
+        secondAssignAction.setData("#{currentInt}");
+        rules.add(secondCalculationRule);
+
+        ArrayList<ProgramRuleVariable> variables = new ArrayList<>();
+        variables.add(createProgramRuleVariableCurrentEvent("currentInt", d1));
+        variables.add(createProgramRuleVariable("newestInt", d1,
+                ProgramRuleVariableSourceType.DATAELEMENT_NEWEST_EVENT_PROGRAM));
+        variables.add(createProgramRuleVariable("assignedVariable", null,
+                ProgramRuleVariableSourceType.CALCULATED_VALUE));
+
+        return new RuleEngine.Builder()
+                .programRules(rules)
+                .programRuleVariables(variables)
+                .build();
+    }
+
+    @Test
+    public void concurrentExecutionsOfSharedEngine() throws Exception {
+        DataElement d1 = createDataElement("d1", "Integer DataElement", ValueType.INTEGER);
+        final RuleEngine ruleEngine = createRuleEngine(d1);
+
+        // events are intentionally not sorted by date
+        final List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Event event = new Event();
+            event.setEventDate(DateTime.now().minusDays((i * 7) % 20));
+            addDataValueToEvent(event, d1, String.valueOf(i * 3));
+            events.add(event);
+        }
+        final List<Event> originalOrder = new ArrayList<>(events);
+
+        final List<List<RuleEffect>> expectedEffects = new ArrayList<>();
+        for (Event event : events) {
+            expectedEffects.add(ruleEngine.execute(event, events));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < EXECUTIONS; i++) {
+                final int index = i % events.size();
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        List<RuleEffect> effects =
+                                ruleEngine.execute(events.get(index), events);
+                        return expectedEffects.get(index).equals(effects);
+                    }
+                }));
+            }
+
+            for (Future<Boolean> result : results) {
+                assertEquals(true, result.get());
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+
+        // neither order of events nor their values should be touched by the engine
+        for (int i = 0; i < events.size(); i++) {
+            assertSame(originalOrder.get(i), events.get(i));
+            assertEquals(String.valueOf(i * 3),
+                    events.get(i).getDataValues().get(0).getValue());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.client.sdk.models.dataelement.ValueType;
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.hisp.dhis.client.sdk.models.program.ProgramRule;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleAction;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleActionType;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariable;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariableSourceType;
+import org.hisp.dhis.client.sdk.models.trackedentity.TrackedEntityDataValue;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RulesEngineIncrementalTests {
+    private static final String SIMPLE_ERROR = "simpleInt is more than 10";
+    private static final String OTHER_ERROR = "otherInt is more than 10";
+    private static final String ASSIGNED_ERROR = "assignedVariable is more than 30";
+
+    private DataElement d1;
+    private DataElement d2;
+    private RuleEngine ruleEngine;
+    private Event event;
+
+    @Before
+    public void setUp() {
+        d1 = createDataElement("d1", "Integer DataElement", ValueType.INTEGER);
+        d2 = createDataElement("d2", "Other Integer DataElement", ValueType.INTEGER);
+
+        ArrayList<ProgramRule> rules = new ArrayList<>();
+        rules.add(createSimpleProgramRuleShowError("r1", "a1",
+                "#{simpleInt} > 10", SIMPLE_ERROR));
+        rules.add(createSimpleProgramRuleShowError("r2", "a2",
+                "#{otherInt} > 10", OTHER_ERROR));
+        rules.add(createSimpleProgramRuleShowError("r3", "a3",
+                "#{assignedVariable} > 30", ASSIGNED_ERROR));
+
+        ProgramRule calculationRule = createSimpleProgramRuleShowError("r4", "a4",
+                "true", "placeholder");
+        calculationRule.setPriority(1);
+        ProgramRuleAction assignAction = calculationRule.getProgramRuleActions().get(0);
+        assignAction.setProgramRuleActionType(ProgramRuleActionType.ASSIGN);
+        assignAction.setContent("#{assignedVariable}");
+        assignAction.setData("#{simpleInt} * 2");
+        rules.add(calculationRule);
+
+        ArrayList<ProgramRuleVariable> variables = new ArrayList<>();
+        variables.add(createProgramRuleVariableCurrentEvent("simpleInt", d1));
+        variables.add(createProgramRuleVariableCurrentEvent("otherInt", d2));
+        variables.add(createProgramRuleVariable("assignedVariable", null,
+                ProgramRuleVariableSourceType.CALCULATED_VALUE));
+
+        ruleEngine = createRuleEngine(rules, variables);
+
+        event = new Event();
+        addDataValueToEvent(event, d1, "5");
+        addDataValueToEvent(event, d2, "5");
+    }
+
+    private void setValue(DataElement dataElement, String value) {
+        for (TrackedEntityDataValue dataValue : event.getDataValues()) {
+            if (dataElement.getUId().equals(dataValue.getDataElement())) {
+                dataValue.setValue(value);
+            }
+        }
+    }
+
+    @Test
+    public void changedValueAddsAndRemovesEffects() {
+        RuleEngineSession session = ruleEngine.createSession(event, new ArrayList<Event>());
+
+        List<RuleEffect> effects = session.execute();
+        assertFalse(containsError(effects, SIMPLE_ERROR));
+
+        setValue(d1, "20");
+        RuleEffectDiff diff = session.execute("d1");
+        assertTrue(containsError(diff.getAddedEffects(), SIMPLE_ERROR));
+        assertTrue(containsError(diff.getAddedEffects(), ASSIGNED_ERROR));
+        assertFalse(containsError(diff.getRemovedEffects(), SIMPLE_ERROR));
+
+        setValue(d1, "12");
+        diff = session.execute("d1");
+        assertTrue(containsError(diff.getRemovedEffects(), ASSIGNED_ERROR));
+        assertFalse(containsError(diff.getRemovedEffects(), SIMPLE_ERROR));
+        assertTrue(containsError(session.getEffects(), SIMPLE_ERROR));
+    }
+
+    @Test
+    public void unrelatedRulesAreNotEvaluated() {
+        RuleEngineSession session = ruleEngine.createSession(event, new ArrayList<Event>());
+        session.execute();
+
+        setValue(d2, "20");
+        RuleEffectDiff diff = session.execute("d2");
+        assertTrue(containsError(diff.getAddedEffects(), OTHER_ERROR));
+        assertTrue(diff.getRemovedEffects().isEmpty());
+
+        // value of d1 is changed behind the back of session, but as the
+        // change is reported for d2, rules reading d1 are not evaluated
+        setValue(d1, "20");
+        diff = session.execute("d2");
+        assertTrue(diff.isEmpty());
+    }
+
+    @Test
+    public void incrementalEffectsMatchFullExecution() {
+        RuleEngineSession session = ruleEngine.createSession(event, new ArrayList<Event>());
+        session.execute();
+
+        String[] values = {"3", "11", "16", "7", "40"};
+        for (String value : values) {
+            setValue(d1, value);
+            session.execute("d1");
+
+            List<RuleEffect> expected = ruleEngine.execute(event, new ArrayList<Event>());
+            assertEquals(expected, session.getEffects());
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.rules;
+
+import org.hisp.dhis.client.sdk.models.constant.Constant;
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.client.sdk.models.dataelement.ValueType;
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.hisp.dhis.client.sdk.models.program.ProgramRule;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariable;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hisp.dhis.client.sdk.rules.RulesEngineTestHelpers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RulesEngineOptimizationTests {
+    private static final String CONSTANT_ERROR = "simpleInt is more than constant";
+    private static final String STAGE_ERROR = "simpleInt is more than 10 in stage";
+    private static final String NEVER_ERROR = "never shown";
+
+    private DataElement d1;
+    private List<ProgramRule> rules;
+    private List<ProgramRuleVariable> variables;
+    private List<Constant> constants;
+
+    @Before
+    public void setUp() {
+        d1 = createDataElement("d1", "Integer DataElement", ValueType.INTEGER);
+
+        rules = new ArrayList<>();
+        rules.add(createSimpleProgramRuleShowError("r1", "a1",
+                "#{simpleInt} > C{c1} * 2", CONSTANT_ERROR));
+
+        ProgramRule stageRule = createSimpleProgramRuleShowError("r2", "a2",
+                "#{simpleInt} > 10", STAGE_ERROR);
+        stageRule.setProgramStage(createProgramStage("stageA"));
+        rules.add(stageRule);
+
+        rules.add(createSimpleProgramRuleShowError("r3", "a3",
+                "C{c1} > 100 && #{simpleInt} > 0", NEVER_ERROR));
+
+        variables = new ArrayList<>();
+        variables.add(createProgramRuleVariableCurrentEvent("simpleInt", d1));
+
+        Constant constant = new Constant();
+        constant.setUId("c1");
+        constant.setValue(7.0);
+        constants = new ArrayList<>();
+        constants.add(constant);
+    }
+
+    @Test
+    public void constantsAreInlined() {
+        RuleEngine ruleEngine = createRuleEngineBuilder(rules, variables)
+                .constants(constants)
+                .build();
+
+        assertTrue(containsError(ruleEngine.execute(createEvent(d1, "15"),
+                new ArrayList<Event>()), CONSTANT_ERROR));
+        assertFalse(containsError(ruleEngine.execute(createEvent(d1, "14"),
+                new ArrayList<Event>()), CONSTANT_ERROR));
+    }
+
+    @Test
+    public void rulesWhichAreNeverTrueAreLeftOut() {
+        List<CompiledRule> compiledRules = CompiledRule.compile(
+                rules, null, Collections.singletonMap("c1", "7"));
+        assertEquals(2, compiledRules.size());
+
+        // without value of the constant, the condition cannot be evaluated upfront
+        assertEquals(3, CompiledRule.compile(rules, null).size());
+    }
+
+    @Test
+    public void rulesOfOtherProgramStagesAreSkipped() {
+        RuleEngine ruleEngine = createRuleEngineBuilder(rules, variables)
+                .constants(constants)
+                .build();
+
+        assertTrue(containsError(ruleEngine.execute(createEvent("stageA", d1, "20"),
+                new ArrayList<Event>()), STAGE_ERROR));
+        assertFalse(containsError(ruleEngine.execute(createEvent("stageB", d1, "20"),
+                new ArrayList<Event>()), STAGE_ERROR));
+        assertTrue(containsError(ruleEngine.execute(createEvent("stageB", d1, "20"),
+                new ArrayList<Event>()), CONSTANT_ERROR));
+
+        // events without program stage are evaluated against all rules
+        assertTrue(containsError(ruleEngine.execute(createEvent(d1, "20"),
+                new ArrayList<Event>()), STAGE_ERROR));
+
+        RuleEngineSession session = ruleEngine.createSession(
+                createEvent("stageB", d1, "20"), new ArrayList<Event>());
+        assertFalse(containsError(session.execute(), STAGE_ERROR));
+    }
+}
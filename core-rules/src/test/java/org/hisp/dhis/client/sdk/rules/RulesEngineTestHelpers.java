@@ -103,6 +103,39 @@ public class RulesEngineTestHelpers {
         return ps;
     }
 
+    public static RuleEngine.Builder createRuleEngineBuilder(
+            List<ProgramRule> rules, List<ProgramRuleVariable> variables) {
+        return new RuleEngine.Builder()
+                .programRules(rules)
+                .programRuleVariables(variables);
+    }
+
+    public static RuleEngine createRuleEngine(
+            List<ProgramRule> rules, List<ProgramRuleVariable> variables) {
+        return createRuleEngineBuilder(rules, variables).build();
+    }
+
+    public static Event createEvent(DataElement dataElement, String value) {
+        return createEvent(null, dataElement, value);
+    }
+
+    public static Event createEvent(String programStage, DataElement dataElement, String value) {
+        Event event = new Event();
+        event.setProgramStage(programStage);
+        addDataValueToEvent(event, dataElement, value);
+        return event;
+    }
+
+    public static boolean containsError(List<RuleEffect> effects, String errorMessage) {
+        for (RuleEffect effect : effects) {
+            if (effect.getProgramRuleActionType() == ProgramRuleActionType.SHOWERROR &&
+                    errorMessage.equals(effect.getContent())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static void assertErrorRuleInEffect(List<RuleEffect> allEffects,
                                                String errorMessage,
                                                DataElement dataElement,
@@ -162,10 +195,10 @@ public class RulesEngineTestHelpers {
     }
 
     private static boolean isMatchingOrNotMatched(String original, String toCompare) {
-        if (original == null || !original.isEmpty()) {
+        if (original == null) {
             return true;
         } else {
-            return original == toCompare;
+            return original.equals(toCompare);
         }
     }
 
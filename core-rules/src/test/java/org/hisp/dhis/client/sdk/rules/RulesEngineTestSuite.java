@@ -37,7 +37,19 @@ import org.junit.runners.Suite;
         RulesEngineSourceTypeTests.class,
         RulesEngineFunctionTests.class,
         RulesEngineFallbackTests.class,
-        RulesEngineAdvancedScenarioTests.class
+        RulesEngineAdvancedScenarioTests.class,
+        RuleExpressionTests.class,
+        NativeExpressionTests.class,
+        RuleEngineVariableValueMapTests.class,
+        DhisFunctionTests.class,
+        RulesEngineIncrementalTests.class,
+        RulesEngineConcurrencyTests.class,
+        RulesEngineBatchTests.class,
+        EventHistoryIndexTests.class,
+        RuleEffectCacheTests.class,
+        RulesEngineOptimizationTests.class,
+        RuleEngineDiagnosticsTests.class,
+        ProgramIndicatorEngineTests.class
 })
 public class RulesEngineTestSuite {
 
@@ -47,6 +47,9 @@ public abstract class AbsSyncStrategyController<T extends IdentifiableObject>
     protected final IdentifiableObjectStore<T> identifiableObjectStore;
     protected final LastUpdatedPreferences lastUpdatedPreferences;
 
+    // session of the orchestrator which pulls this resource, if any
+    private volatile SyncSession syncSession;
+
     protected AbsSyncStrategyController(ResourceType resourceType,
                                         IdentifiableObjectStore<T> identifiableObjectStore,
                                         LastUpdatedPreferences lastUpdatedPreferences) {
@@ -62,6 +65,13 @@ public abstract class AbsSyncStrategyController<T extends IdentifiableObject>
 
     @Override
     public final void pull(SyncStrategy strategy, Set<String> uids) throws ApiException {
+        /* resource has already been pulled in the ongoing synchronization, pulling
+        it again on behalf of dependent resources would only repeat the same requests */
+        SyncSession session = syncSession;
+        if (session != null && session.isPulled(resourceType)) {
+            return;
+        }
+
         DateTime currentDate = DateTime.now();
 
         /* if we don't have objects with given uids in place, we have
@@ -87,5 +97,9 @@ public abstract class AbsSyncStrategyController<T extends IdentifiableObject>
                 currentDate).isGreaterThan(Seconds.seconds(EXPIRATION_THRESHOLD));
     }
 
+    void setSyncSession(SyncSession syncSession) {
+        this.syncSession = syncSession;
+    }
+
     protected abstract void synchronize(SyncStrategy strategy, Set<String> uids);
 }
@@ -30,6 +30,7 @@ package org.hisp.dhis.client.sdk.core.common.controllers;
 
 import org.hisp.dhis.client.sdk.core.dataelement.DataElementController;
 import org.hisp.dhis.client.sdk.core.event.EventController;
+import org.hisp.dhis.client.sdk.core.metadata.MetadataController;
 import org.hisp.dhis.client.sdk.core.optionset.OptionSetController;
 import org.hisp.dhis.client.sdk.core.organisationunit.OrganisationUnitController;
 import org.hisp.dhis.client.sdk.core.program.ProgramController;
@@ -47,6 +48,8 @@ import org.hisp.dhis.client.sdk.core.user.AssignedProgramsController;
 import org.hisp.dhis.client.sdk.core.user.UserAccountController;
 
 public interface ControllersModule {
+    SyncSession getSyncSession();
+
     SystemInfoController getSystemInfoController();
 
     UserAccountController getUserAccountController();
@@ -80,4 +83,8 @@ public interface ControllersModule {
     TrackedEntityAttributeController getTrackedEntityAttributeController();
 
     OptionSetController getOptionSetController();
+
+    MetadataSyncOrchestrator getMetadataSyncOrchestrator();
+
+    MetadataController getMetadataController();
 }
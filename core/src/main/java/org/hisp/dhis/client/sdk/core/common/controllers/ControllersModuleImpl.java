@@ -31,10 +31,15 @@ package org.hisp.dhis.client.sdk.core.common.controllers;
 import org.hisp.dhis.client.sdk.core.common.network.NetworkModule;
 import org.hisp.dhis.client.sdk.core.common.persistence.PersistenceModule;
 import org.hisp.dhis.client.sdk.core.common.preferences.PreferencesModule;
+import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
 import org.hisp.dhis.client.sdk.core.dataelement.DataElementController;
 import org.hisp.dhis.client.sdk.core.dataelement.DataElementControllerImpl;
+import org.hisp.dhis.client.sdk.core.deletedobject.DeletedObjectController;
+import org.hisp.dhis.client.sdk.core.deletedobject.DeletedObjectControllerImpl;
 import org.hisp.dhis.client.sdk.core.event.EventController;
 import org.hisp.dhis.client.sdk.core.event.EventControllerImpl;
+import org.hisp.dhis.client.sdk.core.metadata.MetadataController;
+import org.hisp.dhis.client.sdk.core.metadata.MetadataControllerImpl;
 import org.hisp.dhis.client.sdk.core.optionset.OptionSetController;
 import org.hisp.dhis.client.sdk.core.optionset.OptionSetControllerImpl;
 import org.hisp.dhis.client.sdk.core.organisationunit.OrganisationUnitController;
@@ -63,13 +68,16 @@ import org.hisp.dhis.client.sdk.core.user.AssignedOrganisationUnitControllerImpl
 import org.hisp.dhis.client.sdk.core.user.AssignedOrganisationUnitsController;
 import org.hisp.dhis.client.sdk.core.user.AssignedProgramsController;
 import org.hisp.dhis.client.sdk.core.user.AssignedProgramsControllerImpl;
+import org.hisp.dhis.client.sdk.core.user.SyncSessionUserApiClient;
 import org.hisp.dhis.client.sdk.core.user.UserAccountController;
 import org.hisp.dhis.client.sdk.core.user.UserAccountControllerImpl;
+import org.hisp.dhis.client.sdk.core.user.UserApiClient;
 import org.hisp.dhis.client.sdk.utils.Logger;
 
 import static org.hisp.dhis.client.sdk.utils.Preconditions.isNull;
 
 public class ControllersModuleImpl implements ControllersModule {
+    private final SyncSession syncSession;
     private final SystemInfoController systemInfoController;
     private final UserAccountController userAccountController;
     private final ProgramController programController;
@@ -87,6 +95,8 @@ public class ControllersModuleImpl implements ControllersModule {
     private final OptionSetController optionSetController;
     private final TrackedEntityAttributeController trackedEntityAttributeController;
     private final EventController eventController;
+    private final MetadataSyncOrchestrator metadataSyncOrchestrator;
+    private final MetadataController metadataController;
 
     public ControllersModuleImpl(NetworkModule networkModule,
                                  PersistenceModule persistenceModule,
@@ -96,19 +106,30 @@ public class ControllersModuleImpl implements ControllersModule {
         isNull(preferencesModule, "preferencesModule must not be null");
         isNull(logger, "Logger must not be null");
 
+        // system info and user account are shared by controllers within sync session
+        syncSession = new SyncSession();
+        UserApiClient userApiClient = new SyncSessionUserApiClient(
+                networkModule.getUserApiClient(), syncSession);
+
         systemInfoController = new SystemInfoControllerImpl(
                 networkModule.getSystemInfoApiClient(),
                 preferencesModule.getSystemInfoPreferences(),
+                preferencesModule.getLastUpdatedPreferences(), syncSession);
+
+        DeletedObjectController deletedObjectController = new DeletedObjectControllerImpl(
+                networkModule.getDeletedObjectApiClient(),
                 preferencesModule.getLastUpdatedPreferences());
 
         programController = new ProgramControllerImpl(systemInfoController,
+                deletedObjectController,
                 networkModule.getProgramApiClient(),
-                networkModule.getUserApiClient(), persistenceModule.getProgramStore(),
+                userApiClient, persistenceModule.getProgramStore(),
                 persistenceModule.getTransactionManager(),
                 preferencesModule.getLastUpdatedPreferences());
 
         programStageController = new ProgramStageControllerImpl(
                 programController, systemInfoController,
+                deletedObjectController,
                 networkModule.getProgramStageApiClient(),
                 persistenceModule.getProgramStageStore(),
                 persistenceModule.getTransactionManager(),
@@ -116,6 +137,7 @@ public class ControllersModuleImpl implements ControllersModule {
 
         programStageSectionController = new ProgramStageSectionControllerImpl(
                 programStageController, systemInfoController,
+                deletedObjectController,
                 networkModule.getProgramStageSectionApiClient(),
                 persistenceModule.getProgramStageSectionStore(),
                 persistenceModule.getTransactionManager(),
@@ -123,6 +145,7 @@ public class ControllersModuleImpl implements ControllersModule {
 
         optionSetController = new OptionSetControllerImpl(
                 systemInfoController,
+                deletedObjectController,
                 networkModule.getOptionSetApiClient(),
                 persistenceModule.getOptionStore(),
                 persistenceModule.getOptionSetStore(),
@@ -130,14 +153,14 @@ public class ControllersModuleImpl implements ControllersModule {
                 persistenceModule.getTransactionManager());
 
         dataElementController = new DataElementControllerImpl(
-                systemInfoController, optionSetController,
+                systemInfoController, deletedObjectController, optionSetController,
                 networkModule.getDataElementApiClient(),
                 persistenceModule.getDataElementStore(),
                 preferencesModule.getLastUpdatedPreferences(),
                 persistenceModule.getTransactionManager());
 
         programStageDataElementController = new ProgramStageDataElementControllerImpl(
-                systemInfoController, programStageController,
+                systemInfoController, deletedObjectController, programStageController,
                 programStageSectionController, dataElementController,
                 networkModule.getProgramStageSectionApiClient(),
                 networkModule.getProgramStageDataElementApiClient(),
@@ -150,26 +173,28 @@ public class ControllersModuleImpl implements ControllersModule {
                 preferencesModule.getLastUpdatedPreferences(),
                 persistenceModule.getProgramRuleStore(),
                 systemInfoController,
+                deletedObjectController,
                 networkModule.getProgramRuleApiClient(),
                 programController,
                 programStageController);
 
 
         assignedProgramsController = new AssignedProgramsControllerImpl(
-                programController, networkModule.getUserApiClient());
+                programController, userApiClient, syncSession);
 
         organisationUnitController = new OrganisationUnitControllerImpl(
-                systemInfoController, networkModule.getOrganisationUnitApiClient(),
-                networkModule.getUserApiClient(),
+                systemInfoController, deletedObjectController,
+                networkModule.getOrganisationUnitApiClient(),
+                userApiClient,
                 persistenceModule.getOrganisationUnitStore(),
                 preferencesModule.getLastUpdatedPreferences(),
                 persistenceModule.getTransactionManager());
 
         assignedOrganisationUnitsController = new AssignedOrganisationUnitControllerImpl(
-                networkModule.getUserApiClient(), organisationUnitController);
+                userApiClient, organisationUnitController, syncSession);
 
         userAccountController = new UserAccountControllerImpl(
-                networkModule.getUserApiClient(),
+                userApiClient,
                 persistenceModule.getUserAccountStore(),
                 persistenceModule.getStateStore(), logger);
 
@@ -179,12 +204,14 @@ public class ControllersModuleImpl implements ControllersModule {
                 preferencesModule.getLastUpdatedPreferences(),
                 persistenceModule.getTrackedEntityAttributeStore(),
                 systemInfoController,
+                deletedObjectController,
                 optionSetController);
 
         programIndicatorController = new ProgramIndicatorControllerImpl(
                 persistenceModule.getProgramIndicatorStore(),
                 preferencesModule.getLastUpdatedPreferences(),
                 systemInfoController,
+                deletedObjectController,
                 networkModule.getProgramIndicatorApiClient(),
                 persistenceModule.getTransactionManager(),
                 programController,
@@ -196,6 +223,7 @@ public class ControllersModuleImpl implements ControllersModule {
                 persistenceModule.getTransactionManager(),
                 preferencesModule.getLastUpdatedPreferences(),
                 systemInfoController,
+                deletedObjectController,
                 persistenceModule.getProgramRuleVariableStore(),
                 programController,
                 programStageController,
@@ -206,6 +234,7 @@ public class ControllersModuleImpl implements ControllersModule {
                 networkModule.getProgramRuleActionApiClient(),
                 persistenceModule.getTransactionManager(),
                 systemInfoController,
+                deletedObjectController,
                 preferencesModule.getLastUpdatedPreferences(),
                 persistenceModule.getProgramRuleActionStore(),
                 programStageController,
@@ -222,6 +251,46 @@ public class ControllersModuleImpl implements ControllersModule {
                 persistenceModule.getEventStore(),
                 persistenceModule.getStateStore(),
                 persistenceModule.getTransactionManager(), logger);
+
+        metadataController = new MetadataControllerImpl(networkModule.getMetadataApiClient(),
+                userApiClient, persistenceModule);
+
+        // mirrors dependencies which controllers pull on their own
+        metadataSyncOrchestrator = new MetadataSyncOrchestrator.Builder()
+                .lastUpdatedPreferences(preferencesModule.getLastUpdatedPreferences())
+                .syncSession(syncSession)
+                .resource(ResourceType.ORGANISATION_UNITS, organisationUnitController)
+                .resource(ResourceType.OPTION_SETS, optionSetController)
+                .resource(ResourceType.DATA_ELEMENTS, dataElementController,
+                        ResourceType.OPTION_SETS)
+                .resource(ResourceType.TRACKED_ENTITY_ATTRIBUTES, trackedEntityAttributeController,
+                        ResourceType.OPTION_SETS)
+                .resource(ResourceType.PROGRAMS, programController)
+                .resource(ResourceType.PROGRAM_STAGES, programStageController,
+                        ResourceType.PROGRAMS)
+                .resource(ResourceType.PROGRAM_STAGE_SECTIONS, programStageSectionController,
+                        ResourceType.PROGRAM_STAGES)
+                .resource(ResourceType.PROGRAM_STAGE_DATA_ELEMENTS,
+                        programStageDataElementController, ResourceType.PROGRAM_STAGES,
+                        ResourceType.PROGRAM_STAGE_SECTIONS, ResourceType.DATA_ELEMENTS)
+                .resource(ResourceType.PROGRAM_RULES, programRuleController,
+                        ResourceType.PROGRAMS, ResourceType.PROGRAM_STAGES)
+                .resource(ResourceType.PROGRAM_INDICATORS, programIndicatorController,
+                        ResourceType.PROGRAMS, ResourceType.PROGRAM_STAGES,
+                        ResourceType.PROGRAM_STAGE_SECTIONS)
+                .resource(ResourceType.PROGRAM_RULE_VARIABLES, programRuleVariableController,
+                        ResourceType.PROGRAMS, ResourceType.PROGRAM_STAGES,
+                        ResourceType.DATA_ELEMENTS, ResourceType.TRACKED_ENTITY_ATTRIBUTES)
+                .resource(ResourceType.PROGRAM_RULE_ACTIONS, programRuleActionController,
+                        ResourceType.PROGRAM_STAGES, ResourceType.PROGRAM_STAGE_SECTIONS,
+                        ResourceType.DATA_ELEMENTS, ResourceType.TRACKED_ENTITY_ATTRIBUTES,
+                        ResourceType.PROGRAM_RULES, ResourceType.PROGRAM_INDICATORS)
+                .build();
+    }
+
+    @Override
+    public SyncSession getSyncSession() {
+        return syncSession;
     }
 
     @Override
@@ -308,4 +377,14 @@ public class ControllersModuleImpl implements ControllersModule {
     public OptionSetController getOptionSetController() {
         return optionSetController;
     }
+
+    @Override
+    public MetadataSyncOrchestrator getMetadataSyncOrchestrator() {
+        return metadataSyncOrchestrator;
+    }
+
+    @Override
+    public MetadataController getMetadataController() {
+        return metadataController;
+    }
 }
@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.core.common.controllers;
+
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.core.common.preferences.DateType;
+import org.hisp.dhis.client.sdk.core.common.preferences.LastUpdatedPreferences;
+import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hisp.dhis.client.sdk.utils.Preconditions.isNull;
+
+/**
+ * Synchronizes metadata resources which depend on each other. Dependencies between resources
+ * form a directed acyclic graph: each resource is pulled as soon as all resources it depends
+ * on have been pulled, so that resources which do not depend on each other are downloaded in
+ * parallel, while models are always persisted after models they reference.
+ * <p>
+ * Controllers pull their dependencies on their own as well. Synchronization runs within a
+ * {@link SyncSession} which records pulled resources, and controllers of the graph skip
+ * nested pulls of resources recorded there. This way each resource is downloaded once
+ * however long synchronization takes, and no two threads pull the same resource. For the
+ * same reason, a forced synchronization is carried out by marking all resources as outdated
+ * and pulling them with {@link SyncStrategy#DEFAULT} strategy.
+ * <p>
+ * If pulling a resource fails, resources which depend on it are skipped, while the rest
+ * of the graph is synchronized. The first failure is rethrown at the end.
+ * <p>
+ * Session also shares resources needed by all controllers, such as user account, if the
+ * same session is given to their api clients.
+ */
+public final class MetadataSyncOrchestrator {
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+    private final Map<ResourceType, IdentifiableController<?>> controllers;
+    private final Map<ResourceType, Set<ResourceType>> dependencies;
+    private final Map<ResourceType, Set<ResourceType>> dependents;
+    private final LastUpdatedPreferences lastUpdatedPreferences;
+    private final SyncSession syncSession;
+    private final ThreadPoolExecutor executor;
+
+    private MetadataSyncOrchestrator(Map<ResourceType, IdentifiableController<?>> controllers,
+                                     Map<ResourceType, Set<ResourceType>> dependencies,
+                                     LastUpdatedPreferences lastUpdatedPreferences,
+                                     SyncSession syncSession, int maxConcurrency) {
+        this.controllers = controllers;
+        this.dependencies = dependencies;
+        this.dependents = new EnumMap<>(ResourceType.class);
+        this.lastUpdatedPreferences = lastUpdatedPreferences;
+        this.syncSession = syncSession;
+
+        for (ResourceType resourceType : controllers.keySet()) {
+            dependents.put(resourceType, EnumSet.noneOf(ResourceType.class));
+
+            IdentifiableController<?> controller = controllers.get(resourceType);
+            if (controller instanceof AbsSyncStrategyController) {
+                ((AbsSyncStrategyController<?>) controller).setSyncSession(syncSession);
+            }
+        }
+
+        for (ResourceType resourceType : dependencies.keySet()) {
+            for (ResourceType dependency : dependencies.get(resourceType)) {
+                dependents.get(dependency).add(resourceType);
+            }
+        }
+
+        // threads are created lazily and die off when there is nothing to synchronize
+        this.executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new SyncThreadFactory());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public Set<ResourceType> getResourceTypes() {
+        return Collections.unmodifiableSet(controllers.keySet());
+    }
+
+    public Set<ResourceType> getDependencies(ResourceType resourceType) {
+        Set<ResourceType> resourceDependencies = dependencies.get(resourceType);
+        return resourceDependencies != null ? Collections.unmodifiableSet(resourceDependencies) :
+                Collections.<ResourceType>emptySet();
+    }
+
+    public void sync(SyncStrategy strategy) throws ApiException {
+        sync(strategy, null);
+    }
+
+    /**
+     * Pulls all resources of the graph. Progress is reported to the
+     * listener (if it is not null) on the calling thread.
+     */
+    public void sync(SyncStrategy strategy, Listener listener) throws ApiException {
+        isNull(strategy, "SyncStrategy must not be null");
+
+        syncSession.open();
+        try {
+            syncResources(strategy, listener);
+        } finally {
+            syncSession.close();
+        }
+    }
+
+    private void syncResources(SyncStrategy strategy, Listener listener) throws ApiException {
+        if (SyncStrategy.FORCE_UPDATE.equals(strategy)) {
+            for (ResourceType resourceType : controllers.keySet()) {
+                lastUpdatedPreferences.delete(resourceType, DateType.LOCAL);
+            }
+        }
+
+        Map<ResourceType, Integer> pendingDependencies = new EnumMap<>(ResourceType.class);
+        for (ResourceType resourceType : controllers.keySet()) {
+            pendingDependencies.put(resourceType, dependencies.get(resourceType).size());
+        }
+
+        CompletionService<ResourceType> completionService =
+                new ExecutorCompletionService<>(executor);
+        Map<Future<ResourceType>, ResourceType> running = new HashMap<>();
+
+        for (ResourceType resourceType : controllers.keySet()) {
+            if (pendingDependencies.get(resourceType) == 0) {
+                submit(completionService, running, resourceType, listener);
+            }
+        }
+
+        Throwable failure = null;
+        int completedCount = 0;
+        try {
+            while (!running.isEmpty()) {
+                Future<ResourceType> future = completionService.take();
+                ResourceType resourceType = running.remove(future);
+
+                try {
+                    future.get();
+                } catch (ExecutionException exception) {
+                    // resources depending on failed one are never scheduled
+                    if (failure == null) {
+                        failure = exception.getCause();
+                    }
+
+                    if (listener != null) {
+                        listener.onResourceFailed(resourceType, exception.getCause());
+                    }
+                    continue;
+                }
+
+                completedCount++;
+                if (listener != null) {
+                    listener.onResourceCompleted(
+                            resourceType, completedCount, controllers.size());
+                }
+
+                for (ResourceType dependent : dependents.get(resourceType)) {
+                    int pending = pendingDependencies.get(dependent) - 1;
+                    pendingDependencies.put(dependent, pending);
+
+                    if (pending == 0) {
+                        submit(completionService, running, dependent, listener);
+                    }
+                }
+            }
+        } catch (InterruptedException exception) {
+            for (Future<ResourceType> future : running.keySet()) {
+                future.cancel(true);
+            }
+
+            Thread.currentThread().interrupt();
+            throw ApiException.unexpectedError(null, exception);
+        }
+
+        if (failure instanceof ApiException) {
+            throw (ApiException) failure;
+        } else if (failure != null) {
+            throw ApiException.unexpectedError(null, failure);
+        }
+    }
+
+    /**
+     * Stops threads of the orchestrator. Resources which are being pulled are completed.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void submit(CompletionService<ResourceType> completionService,
+                        Map<Future<ResourceType>, ResourceType> running,
+                        final ResourceType resourceType, Listener listener) {
+        if (listener != null) {
+            listener.onResourceStarted(resourceType);
+        }
+
+        final IdentifiableController<?> controller = controllers.get(resourceType);
+        Future<ResourceType> future = completionService.submit(new Callable<ResourceType>() {
+
+            @Override
+            public ResourceType call() throws Exception {
+                controller.pull(SyncStrategy.DEFAULT);
+                syncSession.setPulled(resourceType);
+                return resourceType;
+            }
+        });
+
+        running.put(future, resourceType);
+    }
+
+    /**
+     * Receives progress of synchronization.
+     */
+    public interface Listener {
+        void onResourceStarted(ResourceType resourceType);
+
+        /**
+         * @param completedCount number of resources which have been pulled so far.
+         * @param totalCount     number of resources in the graph.
+         */
+        void onResourceCompleted(ResourceType resourceType, int completedCount, int totalCount);
+
+        /**
+         * Called when resource could not be pulled. Resources
+         * which depend on it are not pulled either.
+         */
+        void onResourceFailed(ResourceType resourceType, Throwable throwable);
+    }
+
+    public static final class Builder {
+        private final Map<ResourceType, IdentifiableController<?>> controllers;
+        private final Map<ResourceType, Set<ResourceType>> dependencies;
+        private LastUpdatedPreferences lastUpdatedPreferences;
+        private SyncSession syncSession;
+        private int maxConcurrency;
+
+        public Builder() {
+            this.controllers = new EnumMap<>(ResourceType.class);
+            this.dependencies = new EnumMap<>(ResourceType.class);
+            this.maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+        }
+
+        /**
+         * Adds resource to the graph.
+         *
+         * @param dependencies resources which have to be pulled before the given one.
+         */
+        public Builder resource(ResourceType resourceType, IdentifiableController<?> controller,
+                                ResourceType... dependencies) {
+            isNull(resourceType, "ResourceType must not be null");
+            isNull(controller, "IdentifiableController must not be null");
+
+            Set<ResourceType> resourceDependencies = EnumSet.noneOf(ResourceType.class);
+            Collections.addAll(resourceDependencies, dependencies);
+
+            this.controllers.put(resourceType, controller);
+            this.dependencies.put(resourceType, resourceDependencies);
+            return this;
+        }
+
+        public Builder lastUpdatedPreferences(LastUpdatedPreferences lastUpdatedPreferences) {
+            this.lastUpdatedPreferences = lastUpdatedPreferences;
+            return this;
+        }
+
+        /**
+         * Session which is kept open during synchronization. Optional,
+         * if not given the orchestrator uses a session of its own.
+         */
+        public Builder syncSession(SyncSession syncSession) {
+            this.syncSession = syncSession;
+            return this;
+        }
+
+        /**
+         * Maximum number of resources which are pulled at the same time.
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public MetadataSyncOrchestrator build() {
+            isNull(lastUpdatedPreferences, "LastUpdatedPreferences must not be null");
+
+            if (maxConcurrency <= 0) {
+                throw new IllegalArgumentException("Maximum concurrency must be positive");
+            }
+
+            for (ResourceType resourceType : dependencies.keySet()) {
+                for (ResourceType dependency : dependencies.get(resourceType)) {
+                    if (!controllers.containsKey(dependency)) {
+                        throw new IllegalArgumentException(resourceType + " depends on " +
+                                dependency + " which is not part of the graph");
+                    }
+                }
+            }
+
+            if (hasCycle()) {
+                throw new IllegalArgumentException("Dependencies between resources " +
+                        "must not form a cycle");
+            }
+
+            return new MetadataSyncOrchestrator(new EnumMap<>(controllers),
+                    new EnumMap<>(dependencies), lastUpdatedPreferences,
+                    syncSession != null ? syncSession : new SyncSession(), maxConcurrency);
+        }
+
+        private boolean hasCycle() {
+            // resources are removed in topological order, if any remain they are in a cycle
+            Set<ResourceType> remaining = EnumSet.noneOf(ResourceType.class);
+            remaining.addAll(controllers.keySet());
+
+            boolean removed = true;
+            while (removed) {
+                removed = false;
+
+                List<ResourceType> ready = new ArrayList<>();
+                for (ResourceType resourceType : remaining) {
+                    if (Collections.disjoint(dependencies.get(resourceType), remaining)) {
+                        ready.add(resourceType);
+                    }
+                }
+
+                if (!ready.isEmpty()) {
+                    remaining.removeAll(ready);
+                    removed = true;
+                }
+            }
+
+            return !remaining.isEmpty();
+        }
+    }
+
+    private static class SyncThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "metadata-sync-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.core.common.controllers;
+
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import static org.hisp.dhis.client.sdk.utils.Preconditions.isNull;
+
+/**
+ * Shares resources which every controller needs, such as system info or user account,
+ * within one synchronization. While session is open, each resource is loaded only once:
+ * concurrent callers wait for the request which is already in flight instead of sending
+ * their own, and later callers get its result from memory. Failed requests are not kept,
+ * so the next caller tries again. All callers get the same instance of a resource, which
+ * is why resources must be treated as read-only.
+ * <p>
+ * Session also records which resources have been pulled within it, so that controllers
+ * do not pull them again on behalf of resources which depend on them.
+ * <p>
+ * Sessions can be nested, resources are forgotten when the outermost session is closed.
+ * Outside of a session, each call goes to the loader.
+ */
+public final class SyncSession {
+    private final ConcurrentMap<ResourceType, FutureTask<?>> resources;
+    private final Set<ResourceType> pulledResources;
+    private int openCount;
+
+    public SyncSession() {
+        this.resources = new ConcurrentHashMap<>();
+        this.pulledResources = Collections.newSetFromMap(
+                new ConcurrentHashMap<ResourceType, Boolean>());
+        this.openCount = 0;
+    }
+
+    public synchronized void open() {
+        openCount++;
+    }
+
+    public synchronized void close() {
+        if (openCount == 0) {
+            throw new IllegalStateException("Session is not open");
+        }
+
+        openCount--;
+        if (openCount == 0) {
+            resources.clear();
+            pulledResources.clear();
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return openCount > 0;
+    }
+
+    /**
+     * Returns resource loaded during this session, or loads it. Exceptions thrown by the
+     * loader are rethrown to every caller which waited for it.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(ResourceType resourceType, Callable<T> loader) throws ApiException {
+        isNull(resourceType, "ResourceType must not be null");
+        isNull(loader, "Callable must not be null");
+
+        if (!isOpen()) {
+            return call(loader);
+        }
+
+        FutureTask<T> task = new FutureTask<>(loader);
+        FutureTask<T> inFlight = (FutureTask<T>) resources.putIfAbsent(resourceType, task);
+        if (inFlight == null) {
+            inFlight = task;
+            task.run();
+        }
+
+        try {
+            return inFlight.get();
+        } catch (ExecutionException exception) {
+            resources.remove(resourceType, inFlight);
+            throw rethrow(exception.getCause());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw ApiException.unexpectedError(null, exception);
+        }
+    }
+
+    /**
+     * Records that resource has been pulled within this session. Outside of a session,
+     * nothing is recorded.
+     */
+    public synchronized void setPulled(ResourceType resourceType) {
+        isNull(resourceType, "ResourceType must not be null");
+
+        if (openCount > 0) {
+            pulledResources.add(resourceType);
+        }
+    }
+
+    public boolean isPulled(ResourceType resourceType) {
+        return pulledResources.contains(resourceType);
+    }
+
+    /**
+     * Forgets resource, so that it is loaded again by the next caller.
+     */
+    public void invalidate(ResourceType resourceType) {
+        resources.remove(resourceType);
+    }
+
+    private static <T> T call(Callable<T> loader) throws ApiException {
+        try {
+            return loader.call();
+        } catch (Exception exception) {
+            throw rethrow(exception);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable throwable) {
+        if (throwable instanceof RuntimeException) {
+            return (RuntimeException) throwable;
+        }
+
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+
+        return ApiException.unexpectedError(null, throwable);
+    }
+}
@@ -29,7 +29,9 @@
 package org.hisp.dhis.client.sdk.core.common.network;
 
 import org.hisp.dhis.client.sdk.core.dataelement.DataElementApiClient;
+import org.hisp.dhis.client.sdk.core.deletedobject.DeletedObjectApiClient;
 import org.hisp.dhis.client.sdk.core.event.EventApiClient;
+import org.hisp.dhis.client.sdk.core.metadata.MetadataApiClient;
 import org.hisp.dhis.client.sdk.core.optionset.OptionSetApiClient;
 import org.hisp.dhis.client.sdk.core.organisationunit.OrganisationUnitApiClient;
 import org.hisp.dhis.client.sdk.core.program.ProgramApiClient;
@@ -74,4 +76,14 @@ public interface NetworkModule {
     ProgramRuleVariableApiClient getProgramRuleVariableApiClient();
 
     ProgramIndicatorApiClient getProgramIndicatorApiClient();
+
+    MetadataApiClient getMetadataApiClient();
+
+    DeletedObjectApiClient getDeletedObjectApiClient();
+
+    /**
+     * Drops responses kept between requests, both in memory and on disk. Has to be
+     * called when user signs out, so that they are not handed out to the next user.
+     */
+    void clearCaches();
 }
@@ -32,8 +32,10 @@ import org.hisp.dhis.client.sdk.core.common.utils.ModelUtils;
 import org.hisp.dhis.client.sdk.models.common.base.IdentifiableObject;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class DbUtils {
 
@@ -43,28 +45,67 @@ public class DbUtils {
 
     public static <T extends IdentifiableObject> List<DbOperation> createOperations(
             List<T> existingItems, List<T> updatedItems, List<T> persistedItems, Store<T> store) {
+        return createOperations(ModelUtils.toUidSet(existingItems),
+                updatedItems, persistedItems, store);
+    }
+
+    /**
+     * Creates operations which insert or update downloaded items and delete persisted items
+     * whose uids are not among uids of items existing on server. Downloaded items always
+     * exist on server, even if they are also listed as deleted (deleted and imported again
+     * with the same uid).
+     */
+    public static <T extends IdentifiableObject> List<DbOperation> createOperations(
+            Set<String> existingUids, List<T> updatedItems, List<T> persistedItems,
+            Store<T> store) {
         Map<String, T> persistedItemsMap = ModelUtils.toMap(persistedItems);
-        Map<String, T> updatedItemsMap = ModelUtils.toMap(updatedItems);
-        Map<String, T> existingItemsMap = ModelUtils.toMap(existingItems);
 
-        for (T persistedOrganisationUnit : persistedItems) {
-            T updatedOrganisationUnit = updatedItemsMap.get(persistedOrganisationUnit.getUId());
-            if (updatedOrganisationUnit != null) {
-                updatedOrganisationUnit.setId(persistedOrganisationUnit.getId());
-            }
-        }
+        Set<String> existingAndUpdatedUids = new HashSet<>(existingUids);
+        existingAndUpdatedUids.addAll(ModelUtils.toUidSet(updatedItems));
 
+        List<DbOperation> operations = new ArrayList<>();
+        operations.addAll(createUpdateOperations(updatedItems, persistedItemsMap, store));
+        operations.addAll(createDeleteOperations(existingAndUpdatedUids, persistedItemsMap, store));
+        return operations;
+    }
+
+    /**
+     * Creates operations which insert or update downloaded items. Can be called for each
+     * page of a collection separately, so that pages are persisted as they arrive.
+     */
+    public static <T extends IdentifiableObject> List<DbOperation> createUpdateOperations(
+            List<T> updatedItems, Map<String, T> persistedItemsMap, Store<T> store) {
         List<DbOperation> operations = new ArrayList<>();
         for (T updatedItem : updatedItems) {
-            if (persistedItemsMap.containsKey(updatedItem.getUId())) {
+            T persistedItem = persistedItemsMap.get(updatedItem.getUId());
+            if (persistedItem != null) {
+                updatedItem.setId(persistedItem.getId());
                 operations.add(DbOperationImpl.with(store).update(updatedItem));
             } else {
                 operations.add(DbOperationImpl.with(store).insert(updatedItem));
             }
         }
 
+        return operations;
+    }
+
+    /**
+     * Creates operations which delete persisted items which do not exist on server anymore.
+     */
+    public static <T extends IdentifiableObject> List<DbOperation> createDeleteOperations(
+            List<T> existingItems, Map<String, T> persistedItemsMap, Store<T> store) {
+        return createDeleteOperations(ModelUtils.toUidSet(existingItems), persistedItemsMap, store);
+    }
+
+    /**
+     * Creates operations which delete persisted items whose uids are not among uids
+     * of items existing on server.
+     */
+    public static <T extends IdentifiableObject> List<DbOperation> createDeleteOperations(
+            Set<String> existingUids, Map<String, T> persistedItemsMap, Store<T> store) {
+        List<DbOperation> operations = new ArrayList<>();
         for (String persistedItemUid : persistedItemsMap.keySet()) {
-            if (!existingItemsMap.containsKey(persistedItemUid)) {
+            if (!existingUids.contains(persistedItemUid)) {
                 operations.add(DbOperationImpl.with(store).delete(persistedItemsMap.get
                         (persistedItemUid)));
             }
@@ -38,5 +38,10 @@ public interface IdentifiableObjectStore<T extends IdentifiableObject> extends S
 
     List<T> queryByUids(Set<String> uids);
 
+    /**
+     * Returns uids of all persisted items without loading the items themselves.
+     */
+    Set<String> queryAllUids();
+
     boolean areStored(Set<String> uids);
 }
@@ -29,5 +29,5 @@
 package org.hisp.dhis.client.sdk.core.common.preferences;
 
 public enum DateType {
-    LOCAL, SERVER
+    LOCAL, SERVER, DELETED
 }
@@ -135,6 +135,36 @@ public class ModelUtils {
         return new ArrayList<>(existingItemsMap.values());
     }
 
+    /**
+     * Merges updated and persisted items which exist on server. Updated items are
+     * considered to exist as they have just been downloaded.
+     */
+    public static <T extends IdentifiableObject> List<T> merge(Set<String> existingUids,
+                                                               List<T> updatedItems,
+                                                               List<T> persistedItems) {
+        Map<String, T> persistedItemsMap = toMap(persistedItems);
+        Map<String, T> existingItemsMap = new HashMap<>();
+
+        for (String id : existingUids) {
+            T persistedItem = persistedItemsMap.get(id);
+            if (persistedItem != null) {
+                existingItemsMap.put(id, persistedItem);
+            }
+        }
+
+        if (updatedItems != null) {
+            for (T updatedItem : updatedItems) {
+                T persistedItem = persistedItemsMap.get(updatedItem.getUId());
+                if (persistedItem != null) {
+                    updatedItem.setId(persistedItem.getId());
+                }
+                existingItemsMap.put(updatedItem.getUId(), updatedItem);
+            }
+        }
+
+        return new ArrayList<>(existingItemsMap.values());
+    }
+
     public static <T> List<T> asList(T... items) {
         if (items == null || items.length == 0) {
             return new ArrayList<>();
@@ -38,6 +38,7 @@ import org.hisp.dhis.client.sdk.core.common.preferences.DateType;
 import org.hisp.dhis.client.sdk.core.common.preferences.LastUpdatedPreferences;
 import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
 import org.hisp.dhis.client.sdk.core.common.utils.ModelUtils;
+import org.hisp.dhis.client.sdk.core.deletedobject.DeletedObjectController;
 import org.hisp.dhis.client.sdk.core.optionset.OptionSetController;
 import org.hisp.dhis.client.sdk.core.systeminfo.SystemInfoController;
 import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
@@ -53,6 +54,7 @@ public final class DataElementControllerImpl extends AbsSyncStrategyController<D
 
     /* Controllers */
     private final SystemInfoController systemInfoController;
+    private final DeletedObjectController deletedObjectController;
 
     /* Api clients */
     private final DataElementApiClient dataElementApiClient;
@@ -62,6 +64,7 @@ public final class DataElementControllerImpl extends AbsSyncStrategyController<D
     private final OptionSetController optionSetController;
 
     public DataElementControllerImpl(SystemInfoController systemInfoController,
+                                     DeletedObjectController deletedObjectController,
                                      OptionSetController optionSetController,
                                      DataElementApiClient dataElementApiClient,
                                      DataElementStore dataElementStore,
@@ -69,6 +72,7 @@ public final class DataElementControllerImpl extends AbsSyncStrategyController<D
                                      TransactionManager transactionManager) {
         super(ResourceType.DATA_ELEMENTS, dataElementStore, lastUpdatedPreferences);
         this.systemInfoController = systemInfoController;
+        this.deletedObjectController = deletedObjectController;
         this.optionSetController = optionSetController;
         this.dataElementApiClient = dataElementApiClient;
         this.transactionManager = transactionManager;
@@ -82,10 +86,15 @@ public final class DataElementControllerImpl extends AbsSyncStrategyController<D
 
         List<DataElement> persistedDataElements = identifiableObjectStore.queryAll();
 
-        // we have to download all ids from server in order to
-        // find out what was removed on the server side
-        List<DataElement> allExistingDataElements = dataElementApiClient
-                .getDataElements(Fields.BASIC, null, null);
+        // removed data elements are looked up in the log of deleted objects
+        Set<String> existingDataElementUids = deletedObjectController.getExistingUids(
+                ResourceType.DATA_ELEMENTS, strategy, persistedDataElements);
+        if (existingDataElementUids == null) {
+            // we have to download all ids from server in order to
+            // find out what was removed on the server side
+            existingDataElementUids = ModelUtils.toUidSet(
+                    dataElementApiClient.getDataElements(Fields.BASIC, null, null));
+        }
 
 
         List<DataElement> updatedDataElements = new ArrayList<>();
@@ -112,7 +121,7 @@ public final class DataElementControllerImpl extends AbsSyncStrategyController<D
 
         // Retrieving program stage uids from program stages sections
         List<DataElement> mergedDataElements = ModelUtils.merge(
-                allExistingDataElements, updatedDataElements,
+                existingDataElementUids, updatedDataElements,
                 persistedDataElements);
 
         Set<String> optionSetUids = new HashSet<>();
@@ -126,10 +135,11 @@ public final class DataElementControllerImpl extends AbsSyncStrategyController<D
         // data elements are referencing them directly)
         optionSetController.pull(strategy, optionSetUids);
 
-        List<DbOperation> dbOperations = DbUtils.createOperations(allExistingDataElements,
+        List<DbOperation> dbOperations = DbUtils.createOperations(existingDataElementUids,
                 updatedDataElements, persistedDataElements, identifiableObjectStore);
 
         transactionManager.transact(dbOperations);
         lastUpdatedPreferences.save(ResourceType.DATA_ELEMENTS, DateType.SERVER, serverTime);
+        lastUpdatedPreferences.save(ResourceType.DATA_ELEMENTS, DateType.DELETED, serverTime);
     }
 }
\ No newline at end of file
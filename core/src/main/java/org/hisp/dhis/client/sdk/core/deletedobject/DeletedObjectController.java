@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.core.deletedobject;
+
+import org.hisp.dhis.client.sdk.core.common.controllers.SyncStrategy;
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
+import org.hisp.dhis.client.sdk.models.common.base.IdentifiableObject;
+
+import java.util.List;
+import java.util.Set;
+
+public interface DeletedObjectController {
+
+    /**
+     * Returns uids of persisted items which still exist on server. Only objects deleted
+     * since the date stored for the resource type as {@code DateType.DELETED} are
+     * downloaded, so callers have to save that date once they have applied deletions.
+     * <p>
+     * Returns null if deletions have to be found by comparing persisted items with the
+     * full listing of uids instead: on first synchronization, on forced update, or when
+     * server does not keep a log of deleted objects.
+     */
+    <T extends IdentifiableObject> Set<String> getExistingUids(
+            ResourceType resourceType, SyncStrategy strategy,
+            List<T> persistedItems) throws ApiException;
+
+    /**
+     * Same as {@link #getExistingUids(ResourceType, SyncStrategy, List)}, for callers
+     * which do not load persisted items, but only their uids.
+     */
+    Set<String> getExistingUids(ResourceType resourceType, SyncStrategy strategy,
+                                Set<String> persistedUids) throws ApiException;
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.core.deletedobject;
+
+import org.hisp.dhis.client.sdk.core.common.controllers.SyncStrategy;
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.core.common.preferences.DateType;
+import org.hisp.dhis.client.sdk.core.common.preferences.LastUpdatedPreferences;
+import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
+import org.hisp.dhis.client.sdk.core.common.utils.ModelUtils;
+import org.hisp.dhis.client.sdk.models.common.base.IdentifiableObject;
+import org.joda.time.DateTime;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class DeletedObjectControllerImpl implements DeletedObjectController {
+    private static final int HTTP_NOT_FOUND = 404;
+
+    /* Api clients */
+    private final DeletedObjectApiClient deletedObjectApiClient;
+
+    /* Preferences */
+    private final LastUpdatedPreferences lastUpdatedPreferences;
+
+    /* servers older than 2.30 do not have the deletedObjects endpoint */
+    private volatile boolean isLogAvailable;
+
+    public DeletedObjectControllerImpl(DeletedObjectApiClient deletedObjectApiClient,
+                                       LastUpdatedPreferences lastUpdatedPreferences) {
+        this.deletedObjectApiClient = deletedObjectApiClient;
+        this.lastUpdatedPreferences = lastUpdatedPreferences;
+        this.isLogAvailable = true;
+    }
+
+    @Override
+    public <T extends IdentifiableObject> Set<String> getExistingUids(
+            ResourceType resourceType, SyncStrategy strategy,
+            List<T> persistedItems) throws ApiException {
+        return getExistingUids(resourceType, strategy, ModelUtils.toUidSet(persistedItems));
+    }
+
+    @Override
+    public Set<String> getExistingUids(ResourceType resourceType, SyncStrategy strategy,
+                                       Set<String> persistedUids) throws ApiException {
+        DateTime deletedAt = lastUpdatedPreferences.get(resourceType, DateType.DELETED);
+
+        if (!isLogAvailable || deletedAt == null || SyncStrategy.FORCE_UPDATE.equals(strategy)) {
+            return null;
+        }
+
+        Set<String> deletedUids;
+        try {
+            deletedUids = deletedObjectApiClient.getDeletedUids(resourceType, deletedAt);
+        } catch (ApiException apiException) {
+            if (ApiException.Kind.HTTP.equals(apiException.getKind()) &&
+                    apiException.getResponse().getStatus() == HTTP_NOT_FOUND) {
+                isLogAvailable = false;
+                return null;
+            }
+
+            throw apiException;
+        }
+
+        Set<String> existingUids = new HashSet<>(persistedUids);
+        existingUids.removeAll(deletedUids);
+        return existingUids;
+    }
+}
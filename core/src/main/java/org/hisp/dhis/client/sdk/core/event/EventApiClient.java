@@ -31,6 +31,7 @@ package org.hisp.dhis.client.sdk.core.event;
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.core.common.network.ApiMessage;
+import org.hisp.dhis.client.sdk.core.common.network.PageConsumer;
 import org.hisp.dhis.client.sdk.models.event.Event;
 import org.joda.time.DateTime;
 
@@ -41,6 +42,13 @@ public interface EventApiClient {
     List<Event> getEvents(
             Fields fields, DateTime lastUpdated, Set<String> uids) throws ApiException;
 
+    /**
+     * Downloads events in batches, handing each batch over to the consumer while
+     * the rest of the response is still being read.
+     */
+    void getEvents(Fields fields, DateTime lastUpdated, Set<String> uids,
+                   PageConsumer<Event> consumer) throws ApiException;
+
     ApiMessage postEvents(List<Event> events) throws ApiException;
 
     ApiMessage deleteEvent(Event event) throws ApiException;
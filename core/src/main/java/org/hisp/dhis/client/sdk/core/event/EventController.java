@@ -29,7 +29,29 @@
 package org.hisp.dhis.client.sdk.core.event;
 
 import org.hisp.dhis.client.sdk.core.common.controllers.IdentifiableDataController;
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.models.event.Event;
 
+import java.util.Set;
+
 public interface EventController extends IdentifiableDataController<Event> {
+
+    /**
+     * Pushes events in batches. States of events in a batch are saved as soon as server
+     * responds to it, so an interrupted push continues with remaining events next time.
+     * Progress is reported to the listener (if it is not null) on the calling thread.
+     */
+    void push(Set<String> uids, PushListener listener) throws ApiException;
+
+    /**
+     * Receives progress of push.
+     */
+    interface PushListener {
+
+        /**
+         * @param sentCount  number of events which have been sent so far.
+         * @param totalCount number of events which are being sent.
+         */
+        void onEventsSent(int sentCount, int totalCount);
+    }
 }
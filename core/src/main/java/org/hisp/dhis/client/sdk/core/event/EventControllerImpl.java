@@ -35,27 +35,46 @@ import org.hisp.dhis.client.sdk.core.common.controllers.SyncStrategy;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.core.common.network.ApiMessage;
 import org.hisp.dhis.client.sdk.core.common.network.ApiResponse;
+import org.hisp.dhis.client.sdk.core.common.network.PageConsumer;
 import org.hisp.dhis.client.sdk.core.common.persistence.DbOperation;
+import org.hisp.dhis.client.sdk.core.common.persistence.DbOperationImpl;
 import org.hisp.dhis.client.sdk.core.common.persistence.DbUtils;
 import org.hisp.dhis.client.sdk.core.common.persistence.TransactionManager;
 import org.hisp.dhis.client.sdk.core.common.preferences.DateType;
 import org.hisp.dhis.client.sdk.core.common.preferences.LastUpdatedPreferences;
 import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
+import org.hisp.dhis.client.sdk.core.common.utils.CollectionUtils;
 import org.hisp.dhis.client.sdk.core.common.utils.ModelUtils;
 import org.hisp.dhis.client.sdk.core.systeminfo.SystemInfoController;
 import org.hisp.dhis.client.sdk.models.common.importsummary.ImportSummary;
 import org.hisp.dhis.client.sdk.models.common.state.Action;
+import org.hisp.dhis.client.sdk.models.common.state.State;
 import org.hisp.dhis.client.sdk.models.event.Event;
 import org.hisp.dhis.client.sdk.utils.Logger;
 import org.joda.time.DateTime;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hisp.dhis.client.sdk.core.common.utils.CollectionUtils.isEmpty;
 
 public final class EventControllerImpl extends AbsDataController<Event> implements EventController {
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_MAX_BATCHES_IN_FLIGHT = 2;
 
     /* Controllers */
     private final SystemInfoController systemInfoController;
@@ -72,6 +91,9 @@ public final class EventControllerImpl extends AbsDataController<Event> implemen
 
     /* Utilities */
     private final TransactionManager transactionManager;
+    private final ThreadPoolExecutor executor;
+    private final int batchSize;
+    private final int maxBatchesInFlight;
 
     public EventControllerImpl(SystemInfoController systemInfoController,
                                EventApiClient eventApiClient,
@@ -79,14 +101,42 @@ public final class EventControllerImpl extends AbsDataController<Event> implemen
                                EventStore eventStore, StateStore stateStore,
                                TransactionManager transactionManager,
                                Logger logger) {
+        this(systemInfoController, eventApiClient, lastUpdatedPreferences, eventStore,
+                stateStore, transactionManager, logger,
+                DEFAULT_BATCH_SIZE, DEFAULT_MAX_BATCHES_IN_FLIGHT);
+    }
+
+    /**
+     * @param batchSize          maximum number of events sent in one request.
+     * @param maxBatchesInFlight maximum number of requests sent at the same time.
+     */
+    public EventControllerImpl(SystemInfoController systemInfoController,
+                               EventApiClient eventApiClient,
+                               LastUpdatedPreferences lastUpdatedPreferences,
+                               EventStore eventStore, StateStore stateStore,
+                               TransactionManager transactionManager,
+                               Logger logger, int batchSize, int maxBatchesInFlight) {
         super(logger, eventStore);
 
+        if (batchSize <= 0 || maxBatchesInFlight <= 0) {
+            throw new IllegalArgumentException("Batch size and maximum " +
+                    "number of batches in flight must be positive");
+        }
+
         this.systemInfoController = systemInfoController;
         this.eventApiClient = eventApiClient;
         this.lastUpdatedPreferences = lastUpdatedPreferences;
         this.eventStore = eventStore;
         this.stateStore = stateStore;
         this.transactionManager = transactionManager;
+        this.batchSize = batchSize;
+        this.maxBatchesInFlight = maxBatchesInFlight;
+
+        // threads are created lazily and die off when there is nothing to send
+        this.executor = new ThreadPoolExecutor(maxBatchesInFlight, maxBatchesInFlight,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new PushThreadFactory());
+        this.executor.allowCoreThreadTimeOut(true);
     }
 
 
@@ -142,12 +192,21 @@ public final class EventControllerImpl extends AbsDataController<Event> implemen
         Set<String> uidSet = ModelUtils.toUidSet(persistedEvents);
         uidSet.addAll(uids);
 
-        List<Event> updatedEvents = eventApiClient.getEvents(
-                Fields.ALL, lastUpdated, uidSet);
+        // events are persisted in batches while they are being parsed,
+        // instead of materializing all of them with their data values first
+        final Map<String, Event> persistedEventsMap = ModelUtils.toMap(persistedEvents);
+        eventApiClient.getEvents(Fields.ALL, lastUpdated, uidSet, new PageConsumer<Event>() {
+
+            @Override
+            public void consume(List<Event> updatedEvents) {
+                transactionManager.transact(DbUtils.createUpdateOperations(
+                        updatedEvents, persistedEventsMap, eventStore));
+            }
+        });
 
-        // we will have to perform something similar to what happens in AbsController
-        List<DbOperation> dbOperations = DbUtils.createOperations(allExistingEvents,
-                updatedEvents, persistedEvents, eventStore);
+        // removing events which do not exist on server anymore
+        List<DbOperation> dbOperations = DbUtils.createDeleteOperations(
+                allExistingEvents, persistedEventsMap, eventStore);
         transactionManager.transact(dbOperations);
 
         lastUpdatedPreferences.save(ResourceType.EVENTS, DateType.SERVER, serverTime);
@@ -155,13 +214,18 @@ public final class EventControllerImpl extends AbsDataController<Event> implemen
 
     @Override
     public void push(Set<String> uids) throws ApiException {
+        push(uids, null);
+    }
+
+    @Override
+    public void push(Set<String> uids, PushListener listener) throws ApiException {
         isEmpty(uids, "Set of event uids must not be null");
 
-        sendEvents(uids);
+        sendEvents(uids, listener);
         deleteEvents(uids);
     }
 
-    private void sendEvents(Set<String> uids) throws ApiException {
+    private void sendEvents(Set<String> uids, PushListener listener) throws ApiException {
         // retrieve basic events with given state from database
         List<Event> eventStates = stateStore.queryModelsWithActions(
                 Event.class, uids, Action.TO_POST, Action.TO_UPDATE);
@@ -170,30 +234,115 @@ public final class EventControllerImpl extends AbsDataController<Event> implemen
             return;
         }
 
-        Set<String> eventUids = ModelUtils.toUidSet(eventStates);
-        List<Event> events = eventStore.queryByUids(eventUids);
+        // events are sent in batches which server can import within request timeout,
+        // next batch is loaded from database only when one of the running is completed
+        List<List<String>> batches = CollectionUtils.slice(
+                new ArrayList<>(ModelUtils.toUidSet(eventStates)), batchSize);
+        int nextBatch = 0;
+        int sentCount = 0;
 
-        try {
-            ApiMessage apiMessage = eventApiClient.postEvents(events);
+        CompletionService<ApiMessage> completionService =
+                new ExecutorCompletionService<>(executor);
+        Map<Future<ApiMessage>, List<Event>> running = new HashMap<>();
 
-            System.out.println("ApiResponse: " + apiMessage);
+        while (nextBatch < batches.size() && running.size() < maxBatchesInFlight) {
+            submit(completionService, running, batches.get(nextBatch++));
+        }
 
-            List<ImportSummary> importSummaries = apiMessage.getResponse().getImportSummaries();
-            Map<String, Event> eventMap = ModelUtils.toMap(events);
+        ApiException failure = null;
+        try {
+            while (!running.isEmpty()) {
+                Future<ApiMessage> future = completionService.take();
+                List<Event> events = running.remove(future);
+
+                try {
+                    saveImportSummaries(events, future.get());
+
+                    sentCount += events.size();
+                    if (listener != null) {
+                        listener.onEventsSent(sentCount, eventStates.size());
+                    }
+                } catch (ExecutionException exception) {
+                    // events of failed batch keep their state and are sent on next push
+                    if (failure == null) {
+                        failure = toApiException(exception.getCause());
+                    }
+                }
 
-            // check if all items were synced successfully
-            for (ImportSummary importSummary : importSummaries) {
-                Event event = eventMap.get(importSummary.getReference());
-                if (ImportSummary.Status.SUCCESS.equals(importSummary.getStatus()) ||
-                        ImportSummary.Status.OK.equals(importSummary.getStatus())) {
-                    stateStore.saveActionForModel(event, Action.SYNCED);
-                } else {
-                    stateStore.saveActionForModel(event, Action.ERROR);
+                // after failure, only batches which are in flight are completed
+                if (failure == null && nextBatch < batches.size()) {
+                    submit(completionService, running, batches.get(nextBatch++));
                 }
             }
-        } catch (ApiException apiException) {
-            handleApiException(apiException, null);
+        } catch (InterruptedException exception) {
+            for (Future<ApiMessage> future : running.keySet()) {
+                future.cancel(true);
+            }
+
+            Thread.currentThread().interrupt();
+            throw ApiException.unexpectedError(null, exception);
+        }
+
+        if (failure != null) {
+            handleApiException(failure, null);
+        }
+    }
+
+    private void submit(CompletionService<ApiMessage> completionService,
+                        Map<Future<ApiMessage>, List<Event>> running, List<String> batch) {
+        final List<Event> events = eventStore.queryByUids(new HashSet<>(batch));
+        Future<ApiMessage> future = completionService.submit(new Callable<ApiMessage>() {
+
+            @Override
+            public ApiMessage call() throws ApiException {
+                return eventApiClient.postEvents(events);
+            }
+        });
+
+        running.put(future, events);
+    }
+
+    /* states of all events in a batch are saved in one transaction */
+    private void saveImportSummaries(List<Event> events, ApiMessage apiMessage) {
+        if (apiMessage.getResponse() == null ||
+                apiMessage.getResponse().getImportSummaries() == null) {
+            return;
+        }
+
+        List<ImportSummary> importSummaries = apiMessage.getResponse().getImportSummaries();
+        Map<String, Event> eventMap = ModelUtils.toMap(events);
+        List<DbOperation> dbOperations = new ArrayList<>();
+
+        // check if all items were synced successfully
+        for (ImportSummary importSummary : importSummaries) {
+            Event event = eventMap.get(importSummary.getReference());
+            if (event == null) {
+                continue;
+            }
+
+            State state = new State();
+            state.setItemId(event.getId());
+            state.setItemType(event.getClass());
+
+            if (ImportSummary.Status.SUCCESS.equals(importSummary.getStatus()) ||
+                    ImportSummary.Status.OK.equals(importSummary.getStatus())) {
+                state.setAction(Action.SYNCED);
+            } else {
+                state.setAction(Action.ERROR);
+            }
+
+            dbOperations.add(DbOperationImpl.with(stateStore).save(state));
         }
+
+        transactionManager.transact(dbOperations);
+    }
+
+    private static ApiException toApiException(Throwable throwable) {
+        if (throwable instanceof ApiException) {
+            return (ApiException) throwable;
+        }
+
+        return ApiException.unexpectedError(null, throwable);
     }
 
     private void deleteEvents(Set<String> uids) throws ApiException {
@@ -218,4 +367,15 @@ public final class EventControllerImpl extends AbsDataController<Event> implemen
             }
         }
     }
+
+    private static class PushThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "event-push-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
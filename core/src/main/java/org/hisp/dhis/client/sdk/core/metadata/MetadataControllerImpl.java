@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.core.metadata;
+
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.core.common.network.PageConsumer;
+import org.hisp.dhis.client.sdk.core.common.persistence.DbOperation;
+import org.hisp.dhis.client.sdk.core.common.persistence.DbOperationImpl;
+import org.hisp.dhis.client.sdk.core.common.persistence.DbUtils;
+import org.hisp.dhis.client.sdk.core.common.persistence.IdentifiableObjectStore;
+import org.hisp.dhis.client.sdk.core.common.persistence.PersistenceModule;
+import org.hisp.dhis.client.sdk.core.common.persistence.TransactionManager;
+import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
+import org.hisp.dhis.client.sdk.core.common.utils.ModelUtils;
+import org.hisp.dhis.client.sdk.core.optionset.OptionSetStore;
+import org.hisp.dhis.client.sdk.core.optionset.OptionStore;
+import org.hisp.dhis.client.sdk.core.user.UserApiClient;
+import org.hisp.dhis.client.sdk.models.common.base.IdentifiableObject;
+import org.hisp.dhis.client.sdk.models.optionset.Option;
+import org.hisp.dhis.client.sdk.models.optionset.OptionSet;
+import org.hisp.dhis.client.sdk.models.program.Program;
+import org.hisp.dhis.client.sdk.models.program.ProgramIndicator;
+import org.hisp.dhis.client.sdk.models.program.ProgramRule;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleAction;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleVariable;
+import org.hisp.dhis.client.sdk.models.program.ProgramStage;
+import org.hisp.dhis.client.sdk.models.program.ProgramStageDataElement;
+import org.hisp.dhis.client.sdk.models.program.ProgramStageSection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Synchronizes metadata of programs assigned to the user with one request to the metadata
+ * endpoint, instead of a listing and an update request for each resource. Items of each
+ * resource are persisted batch by batch while the response is parsed.
+ * <p>
+ * Since the response contains complete metadata of assigned programs, persisted items
+ * which belong to these programs (stages, sections, stage data elements, rules, rule
+ * actions, rule variables and indicators) but are not part of it are removed once the
+ * whole response has been read. Data elements, option sets and tracked entity attributes
+ * can be shared with other programs, so they are only inserted or updated; removing them
+ * is left to their controllers. Programs which are not assigned anymore are only marked
+ * as such. Neither are sync dates of resources changed, since metadata of other programs
+ * is not synchronized here.
+ */
+public final class MetadataControllerImpl implements MetadataController {
+
+    /* Api clients */
+    private final MetadataApiClient metadataApiClient;
+    private final UserApiClient userApiClient;
+
+    /* Stores */
+    private final PersistenceModule persistenceModule;
+
+    /* Utilities */
+    private final TransactionManager transactionManager;
+
+    public MetadataControllerImpl(MetadataApiClient metadataApiClient,
+                                  UserApiClient userApiClient,
+                                  PersistenceModule persistenceModule) {
+        this.metadataApiClient = metadataApiClient;
+        this.userApiClient = userApiClient;
+        this.persistenceModule = persistenceModule;
+        this.transactionManager = persistenceModule.getTransactionManager();
+    }
+
+    @Override
+    public void pull() throws ApiException {
+        final Set<String> programUids = ModelUtils.toUidSet(
+                userApiClient.getUserAccount().getPrograms());
+
+        // there is nothing to download, and nothing which could be removed
+        if (programUids.isEmpty()) {
+            return;
+        }
+
+        final Map<String, ProgramStageSection> stageDataElementSections = new HashMap<>();
+        final OptionStore optionStore = persistenceModule.getOptionStore();
+        final OptionSetStore optionSetStore = persistenceModule.getOptionSetStore();
+
+        final StoreConsumer<Program> programConsumer = new StoreConsumer<Program>(
+                persistenceModule.getProgramStore()) {
+
+            @Override
+            List<DbOperation> createRelatedOperations(List<Program> programs) {
+                // metadata is downloaded only for assigned programs
+                for (Program program : programs) {
+                    program.setIsAssignedToUser(true);
+                }
+                return new ArrayList<>();
+            }
+
+            @Override
+            boolean isOwned(Program program) {
+                return programUids.contains(program.getUId());
+            }
+        };
+        final StoreConsumer<ProgramStage> stageConsumer = new StoreConsumer<ProgramStage>(
+                persistenceModule.getProgramStageStore()) {
+
+            @Override
+            boolean isOwned(ProgramStage stage) {
+                return programConsumer.owns(stage.getProgram());
+            }
+        };
+        final StoreConsumer<ProgramRule> ruleConsumer = new StoreConsumer<ProgramRule>(
+                persistenceModule.getProgramRuleStore()) {
+
+            @Override
+            boolean isOwned(ProgramRule rule) {
+                return programConsumer.owns(rule.getProgram());
+            }
+        };
+
+        Map<ResourceType, StoreConsumer<?>> consumers = new EnumMap<>(ResourceType.class);
+        consumers.put(ResourceType.PROGRAMS, programConsumer);
+        consumers.put(ResourceType.PROGRAM_STAGES, stageConsumer);
+        consumers.put(ResourceType.PROGRAM_STAGE_SECTIONS, new StoreConsumer<ProgramStageSection>(
+                persistenceModule.getProgramStageSectionStore()) {
+
+            @Override
+            List<DbOperation> createRelatedOperations(List<ProgramStageSection> sections) {
+                // relationship is stored on the side of program stage data elements
+                for (ProgramStageSection section : sections) {
+                    if (section.getProgramStageDataElements() == null) {
+                        continue;
+                    }
+
+                    for (ProgramStageDataElement element : section.getProgramStageDataElements()) {
+                        stageDataElementSections.put(element.getUId(), section);
+                    }
+                }
+                return new ArrayList<>();
+            }
+
+            @Override
+            boolean isOwned(ProgramStageSection section) {
+                return stageConsumer.owns(section.getProgramStage());
+            }
+        });
+        consumers.put(ResourceType.PROGRAM_STAGE_DATA_ELEMENTS,
+                new StoreConsumer<ProgramStageDataElement>(
+                        persistenceModule.getProgramStageDataElementStore()) {
+
+                    @Override
+                    boolean isOwned(ProgramStageDataElement element) {
+                        return stageConsumer.owns(element.getProgramStage());
+                    }
+                });
+        consumers.put(ResourceType.DATA_ELEMENTS, new StoreConsumer<>(
+                persistenceModule.getDataElementStore()));
+        consumers.put(ResourceType.OPTION_SETS, new StoreConsumer<OptionSet>(optionSetStore) {
+
+            @Override
+            List<DbOperation> createRelatedOperations(List<OptionSet> optionSets) {
+                List<DbOperation> dbOperations = new ArrayList<>();
+                for (OptionSet optionSet : optionSets) {
+                    if (optionSet.getOptions() == null) {
+                        continue;
+                    }
+
+                    OptionSet persistedOptionSet = optionSetStore.queryByUid(optionSet.getUId());
+                    List<Option> persistedOptions = persistedOptionSet != null ?
+                            persistedOptionSet.getOptions() : new ArrayList<Option>();
+
+                    dbOperations.addAll(DbUtils.createOperations(optionStore,
+                            persistedOptions, optionSet.getOptions()));
+                }
+                return dbOperations;
+            }
+        });
+        consumers.put(ResourceType.TRACKED_ENTITY_ATTRIBUTES, new StoreConsumer<>(
+                persistenceModule.getTrackedEntityAttributeStore()));
+        consumers.put(ResourceType.PROGRAM_RULES, ruleConsumer);
+        consumers.put(ResourceType.PROGRAM_RULE_ACTIONS, new StoreConsumer<ProgramRuleAction>(
+                persistenceModule.getProgramRuleActionStore()) {
+
+            @Override
+            boolean isOwned(ProgramRuleAction action) {
+                return ruleConsumer.owns(action.getProgramRule());
+            }
+        });
+        consumers.put(ResourceType.PROGRAM_RULE_VARIABLES, new StoreConsumer<ProgramRuleVariable>(
+                persistenceModule.getProgramRuleVariableStore()) {
+
+            @Override
+            boolean isOwned(ProgramRuleVariable variable) {
+                return programConsumer.owns(variable.getProgram());
+            }
+        });
+        consumers.put(ResourceType.PROGRAM_INDICATORS, new StoreConsumer<ProgramIndicator>(
+                persistenceModule.getProgramIndicatorStore()) {
+
+            @Override
+            boolean isOwned(ProgramIndicator indicator) {
+                return programConsumer.owns(indicator.getProgram());
+            }
+        });
+
+        metadataApiClient.getMetadata(programUids,
+                new EnumMap<ResourceType, PageConsumer<?>>(consumers));
+
+        // applying relationships which could be resolved only after all sections were read
+        IdentifiableObjectStore<ProgramStageDataElement> stageDataElementStore =
+                persistenceModule.getProgramStageDataElementStore();
+        List<DbOperation> dbOperations = new ArrayList<>();
+        for (String stageDataElementUid : stageDataElementSections.keySet()) {
+            ProgramStageDataElement stageDataElement =
+                    stageDataElementStore.queryByUid(stageDataElementUid);
+
+            if (stageDataElement != null) {
+                stageDataElement.setProgramStageSection(
+                        stageDataElementSections.get(stageDataElementUid));
+                dbOperations.add(DbOperationImpl.with(stageDataElementStore)
+                        .update(stageDataElement));
+            }
+        }
+
+        // programs which are not assigned anymore are kept for their controller
+        for (Program program : programConsumer.getPersistedItems()) {
+            if (program.isAssignedToUser() && !programUids.contains(program.getUId())) {
+                program.setIsAssignedToUser(false);
+                dbOperations.add(DbOperationImpl.with(persistenceModule.getProgramStore())
+                        .update(program));
+            }
+        }
+
+        // without programs, response can not be told apart from one which was not read
+        if (programConsumer.hasReceived()) {
+            // removing items which are not part of metadata of assigned programs anymore
+            for (StoreConsumer<?> consumer : consumers.values()) {
+                dbOperations.addAll(consumer.createDeleteOperations());
+            }
+        }
+        transactionManager.transact(dbOperations);
+    }
+
+    private static String getUid(IdentifiableObject object) {
+        return object != null ? object.getUId() : null;
+    }
+
+    /**
+     * Persists batches of one resource and keeps track of uids
+     * received, so that missing items can be removed afterwards.
+     */
+    private class StoreConsumer<T extends IdentifiableObject> implements PageConsumer<T> {
+        private final IdentifiableObjectStore<T> store;
+        private final Map<String, T> persistedItems;
+        private final Set<String> receivedUids;
+
+        StoreConsumer(IdentifiableObjectStore<T> store) {
+            this.store = store;
+            this.persistedItems = ModelUtils.toMap(store.queryAll());
+            this.receivedUids = new HashSet<>();
+        }
+
+        @Override
+        public void consume(List<T> items) throws ApiException {
+            List<DbOperation> dbOperations = createRelatedOperations(items);
+            dbOperations.addAll(DbUtils.createUpdateOperations(items, persistedItems, store));
+            transactionManager.transact(dbOperations);
+
+            receivedUids.addAll(ModelUtils.toUidSet(items));
+        }
+
+        List<DbOperation> createRelatedOperations(List<T> items) {
+            return new ArrayList<>();
+        }
+
+        /**
+         * @return true if persisted item belongs to assigned programs, and has
+         * to be removed if it is missing in the response. By default, items
+         * are shared with other programs and are never removed.
+         */
+        boolean isOwned(T item) {
+            return false;
+        }
+
+        /**
+         * @return true if the given item (a parent of items of another resource)
+         * was received or is a persisted item which belongs to assigned programs.
+         */
+        boolean owns(IdentifiableObject item) {
+            String uid = getUid(item);
+            if (uid == null) {
+                return false;
+            }
+
+            T persistedItem = persistedItems.get(uid);
+            return receivedUids.contains(uid) || (persistedItem != null && isOwned(persistedItem));
+        }
+
+        Collection<T> getPersistedItems() {
+            return persistedItems.values();
+        }
+
+        boolean hasReceived() {
+            return !receivedUids.isEmpty();
+        }
+
+        List<DbOperation> createDeleteOperations() {
+            Map<String, T> ownedItems = new HashMap<>();
+            for (T persistedItem : persistedItems.values()) {
+                if (isOwned(persistedItem)) {
+                    ownedItems.put(persistedItem.getUId(), persistedItem);
+                }
+            }
+            return DbUtils.createDeleteOperations(receivedUids, ownedItems, store);
+        }
+    }
+}
@@ -30,6 +30,7 @@ package org.hisp.dhis.client.sdk.core.optionset;
 
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.core.common.network.PageConsumer;
 import org.hisp.dhis.client.sdk.models.optionset.OptionSet;
 import org.joda.time.DateTime;
 
@@ -39,4 +40,10 @@ import java.util.Set;
 public interface OptionSetApiClient {
     List<OptionSet> getOptionSets(
             Fields fields, DateTime lastUpdated, Set<String> uids) throws ApiException;
+
+    /**
+     * Downloads option sets page by page, handing each page over to the consumer.
+     */
+    void getOptionSets(Fields fields, DateTime lastUpdated, Set<String> uids,
+            PageConsumer<OptionSet> consumer) throws ApiException;
 }
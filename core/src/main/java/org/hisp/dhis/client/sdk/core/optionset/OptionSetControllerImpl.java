@@ -32,6 +32,7 @@ package org.hisp.dhis.client.sdk.core.optionset;
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.controllers.AbsSyncStrategyController;
 import org.hisp.dhis.client.sdk.core.common.controllers.SyncStrategy;
+import org.hisp.dhis.client.sdk.core.common.network.PageConsumer;
 import org.hisp.dhis.client.sdk.core.common.persistence.DbOperation;
 import org.hisp.dhis.client.sdk.core.common.persistence.DbUtils;
 import org.hisp.dhis.client.sdk.core.common.persistence.TransactionManager;
@@ -39,6 +40,7 @@ import org.hisp.dhis.client.sdk.core.common.preferences.DateType;
 import org.hisp.dhis.client.sdk.core.common.preferences.LastUpdatedPreferences;
 import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
 import org.hisp.dhis.client.sdk.core.common.utils.ModelUtils;
+import org.hisp.dhis.client.sdk.core.deletedobject.DeletedObjectController;
 import org.hisp.dhis.client.sdk.core.systeminfo.SystemInfoController;
 import org.hisp.dhis.client.sdk.models.optionset.Option;
 import org.hisp.dhis.client.sdk.models.optionset.OptionSet;
@@ -47,17 +49,20 @@ import org.joda.time.DateTime;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public final class OptionSetControllerImpl extends AbsSyncStrategyController<OptionSet>
         implements OptionSetController {
     private final OptionSetApiClient optionSetApiClient;
     private final SystemInfoController systemInfoController;
+    private final DeletedObjectController deletedObjectController;
     private final TransactionManager transactionManager;
     private final OptionStore optionStore;
     private final OptionSetStore optionSetStore;
 
     public OptionSetControllerImpl(SystemInfoController systemInfoController,
+                                   DeletedObjectController deletedObjectController,
                                    OptionSetApiClient optionSetApiClient,
                                    OptionStore optionStore,
                                    OptionSetStore optionSetStore,
@@ -65,6 +70,7 @@ public final class OptionSetControllerImpl extends AbsSyncStrategyController<Opt
                                    TransactionManager transactionManager) {
         super(ResourceType.OPTION_SETS, optionSetStore, lastUpdatedPreferences);
         this.systemInfoController = systemInfoController;
+        this.deletedObjectController = deletedObjectController;
         this.optionSetApiClient = optionSetApiClient;
         this.optionStore = optionStore;
         this.optionSetStore = optionSetStore;
@@ -77,68 +83,99 @@ public final class OptionSetControllerImpl extends AbsSyncStrategyController<Opt
         DateTime lastUpdated = lastUpdatedPreferences.get(
                 ResourceType.OPTION_SETS, DateType.SERVER);
 
-        List<OptionSet> persistedOptionSets = identifiableObjectStore.queryAll();
+        // only uids of persisted option sets are kept in memory,
+        // option sets themselves are loaded page by page when they are needed
+        Set<String> persistedOptionSetUids = identifiableObjectStore.queryAllUids();
+
+        // removed option sets are looked up in the log of deleted objects
+        Set<String> existingOptionSetUids = deletedObjectController.getExistingUids(
+                ResourceType.OPTION_SETS, strategy, persistedOptionSetUids);
+        if (existingOptionSetUids == null) {
+            // we have to download all ids from server in order to
+            // find out what was removed on the server side
+            final Set<String> optionSetUids = new HashSet<>();
+            optionSetApiClient.getOptionSets(Fields.BASIC, null, null,
+                    new PageConsumer<OptionSet>() {
+
+                        @Override
+                        public void consume(List<OptionSet> optionSets) {
+                            optionSetUids.addAll(ModelUtils.toUidSet(optionSets));
+                        }
+                    });
+            existingOptionSetUids = optionSetUids;
+        }
+
+        // downloaded option sets exist on server, even if they are also listed
+        // as deleted (deleted and imported again with the same uid)
+        final Set<String> downloadedOptionSetUids = new HashSet<>();
+
+        // option sets together with their options are persisted page by page
+        // as they are downloaded, which keeps memory usage bounded for large sets
+        PageConsumer<OptionSet> consumer = new PageConsumer<OptionSet>() {
+
+            @Override
+            public void consume(List<OptionSet> updatedOptionSets) {
+                downloadedOptionSetUids.addAll(ModelUtils.toUidSet(updatedOptionSets));
+                Map<String, OptionSet> persistedOptionSets = ModelUtils.toMap(
+                        optionSetStore.queryByUids(ModelUtils.toUidSet(updatedOptionSets)));
+                List<DbOperation> dbOperations = new ArrayList<>();
+
+                for (OptionSet optionSet : updatedOptionSets) {
+                    if (optionSet == null || optionSet.getOptions() == null) {
+                        continue;
+                    }
+
+                    OptionSet persistedOptionSet = persistedOptionSets.get(optionSet.getUId());
+
+                    List<Option> persistedOptions;
+                    if (persistedOptionSet != null) {
+                        persistedOptions = persistedOptionSet.getOptions();
+                    } else {
+                        persistedOptions = new ArrayList<>();
+                    }
+
+                    dbOperations.addAll(DbUtils.createOperations(optionStore,
+                            persistedOptions, optionSet.getOptions()));
+                }
+
+                dbOperations.addAll(DbUtils.createUpdateOperations(updatedOptionSets,
+                        persistedOptionSets, identifiableObjectStore));
 
-        // we have to download all ids from server in order to
-        // find out what was removed on the server side
-        List<OptionSet> allExistingOptionSets = optionSetApiClient
-                .getOptionSets(Fields.BASIC, null, null);
+                transactionManager.transact(dbOperations);
+            }
+        };
 
-        List<OptionSet> updatedOptionSets = new ArrayList<>();
         if (uids == null) {
-            updatedOptionSets.addAll(optionSetApiClient
-                    .getOptionSets(Fields.ALL, lastUpdated, null));
+            optionSetApiClient.getOptionSets(Fields.ALL, lastUpdated, null, consumer);
         } else {
             // defensive copy
             Set<String> modelsToFetch = new HashSet<>(uids);
-            Set<String> modelsToUpdate = ModelUtils.toUidSet(persistedOptionSets);
+            Set<String> modelsToUpdate = new HashSet<>(persistedOptionSetUids);
 
             modelsToFetch.removeAll(modelsToUpdate);
 
             if (!modelsToFetch.isEmpty()) {
-                updatedOptionSets.addAll(optionSetApiClient
-                        .getOptionSets(Fields.ALL, null, modelsToFetch));
+                optionSetApiClient.getOptionSets(Fields.ALL, null, modelsToFetch, consumer);
             }
 
             if (!modelsToUpdate.isEmpty()) {
-                updatedOptionSets.addAll(optionSetApiClient
-                        .getOptionSets(Fields.ALL, lastUpdated, modelsToUpdate));
+                optionSetApiClient.getOptionSets(Fields.ALL, lastUpdated, modelsToUpdate, consumer);
             }
         }
 
-        List<OptionSet> mergedOptionSets = ModelUtils.merge(
-                allExistingOptionSets, updatedOptionSets, persistedOptionSets);
-
-        List<DbOperation> dbOperations = new ArrayList<>();
-
-        if (mergedOptionSets != null && !mergedOptionSets.isEmpty()) {
-            for (OptionSet optionSet : mergedOptionSets) {
-                if (optionSet == null || optionSet.getOptions() == null) {
-                    continue;
-                }
-
-                OptionSet persistedOptionSet = optionSetStore.queryByUid(optionSet.getUId());
-
-                List<Option> persistedOptions;
-                if (persistedOptionSet != null) {
-                    persistedOptions = persistedOptionSet.getOptions();
-                } else {
-                    persistedOptions = new ArrayList<>();
-                }
-
-                dbOperations.addAll(DbUtils.createOperations(optionStore,
-                        persistedOptions, optionSet.getOptions()));
-            }
+        // removing option sets which do not exist on server anymore
+        Set<String> removedOptionSetUids = new HashSet<>(persistedOptionSetUids);
+        removedOptionSetUids.removeAll(existingOptionSetUids);
+        removedOptionSetUids.removeAll(downloadedOptionSetUids);
+        if (!removedOptionSetUids.isEmpty()) {
+            transactionManager.transact(DbUtils.createDeleteOperations(existingOptionSetUids,
+                    ModelUtils.toMap(identifiableObjectStore.queryByUids(removedOptionSetUids)),
+                    identifiableObjectStore));
         }
 
-        // we will have to perform something similar to what happens in AbsController
-        dbOperations.addAll(DbUtils.createOperations(
-                allExistingOptionSets, updatedOptionSets,
-                persistedOptionSets, identifiableObjectStore));
-
-        transactionManager.transact(dbOperations);
-
         lastUpdatedPreferences.save(ResourceType.OPTION_SETS,
                 DateType.SERVER, serverTime);
+        lastUpdatedPreferences.save(ResourceType.OPTION_SETS,
+                DateType.DELETED, serverTime);
     }
-}
\ No newline at end of file
+}
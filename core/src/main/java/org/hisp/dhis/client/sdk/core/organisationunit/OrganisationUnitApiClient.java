@@ -30,6 +30,7 @@ package org.hisp.dhis.client.sdk.core.organisationunit;
 
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.core.common.network.PageConsumer;
 import org.hisp.dhis.client.sdk.models.organisationunit.OrganisationUnit;
 import org.joda.time.DateTime;
 
@@ -39,4 +40,10 @@ import java.util.Set;
 public interface OrganisationUnitApiClient {
     List<OrganisationUnit> getOrganisationUnits(
             Fields fields, DateTime lastUpdated, Set<String> uids) throws ApiException;
+
+    /**
+     * Downloads organisation units page by page, handing each page over to the consumer.
+     */
+    void getOrganisationUnits(Fields fields, DateTime lastUpdated, Set<String> uids,
+            PageConsumer<OrganisationUnit> consumer) throws ApiException;
 }
@@ -31,6 +31,7 @@ package org.hisp.dhis.client.sdk.core.organisationunit;
 import org.hisp.dhis.client.sdk.core.common.Fields;
 import org.hisp.dhis.client.sdk.core.common.controllers.AbsSyncStrategyController;
 import org.hisp.dhis.client.sdk.core.common.controllers.SyncStrategy;
+import org.hisp.dhis.client.sdk.core.common.network.PageConsumer;
 import org.hisp.dhis.client.sdk.core.common.persistence.DbOperation;
 import org.hisp.dhis.client.sdk.core.common.persistence.DbUtils;
 import org.hisp.dhis.client.sdk.core.common.persistence.TransactionManager;
@@ -38,12 +39,12 @@ import org.hisp.dhis.client.sdk.core.common.preferences.DateType;
 import org.hisp.dhis.client.sdk.core.common.preferences.LastUpdatedPreferences;
 import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
 import org.hisp.dhis.client.sdk.core.common.utils.ModelUtils;
+import org.hisp.dhis.client.sdk.core.deletedobject.DeletedObjectController;
 import org.hisp.dhis.client.sdk.core.systeminfo.SystemInfoController;
 import org.hisp.dhis.client.sdk.core.user.UserApiClient;
 import org.hisp.dhis.client.sdk.models.organisationunit.OrganisationUnit;
 import org.joda.time.DateTime;
 
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -54,6 +55,7 @@ public class OrganisationUnitControllerImpl extends AbsSyncStrategyController<Or
 
     /* Controllers */
     private final SystemInfoController systemInfoController;
+    private final DeletedObjectController deletedObjectController;
 
     /* Api clients */
     private final OrganisationUnitApiClient organisationUnitApiClient;
@@ -63,6 +65,7 @@ public class OrganisationUnitControllerImpl extends AbsSyncStrategyController<Or
     private final TransactionManager transactionManager;
 
     public OrganisationUnitControllerImpl(SystemInfoController systemInfoController,
+                                          DeletedObjectController deletedObjectController,
                                           OrganisationUnitApiClient organisationUnitApiClient,
                                           UserApiClient userApiClient,
                                           OrganisationUnitStore organisationUnitStore,
@@ -71,6 +74,7 @@ public class OrganisationUnitControllerImpl extends AbsSyncStrategyController<Or
         super(ResourceType.ORGANISATION_UNITS, organisationUnitStore, lastUpdatedPreferences);
 
         this.systemInfoController = systemInfoController;
+        this.deletedObjectController = deletedObjectController;
         this.organisationUnitApiClient = organisationUnitApiClient;
         this.userApiClient = userApiClient;
         this.transactionManager = transactionManager;
@@ -82,51 +86,92 @@ public class OrganisationUnitControllerImpl extends AbsSyncStrategyController<Or
         DateTime lastUpdated = lastUpdatedPreferences.get(
                 ResourceType.ORGANISATION_UNITS, DateType.SERVER);
 
-        List<OrganisationUnit> persistedOrganisationUnits = identifiableObjectStore.queryAll();
+        // only uids of persisted organisation units are kept in memory,
+        // the units themselves are loaded page by page when they are needed
+        Set<String> persistedOrganisationUnitUids = identifiableObjectStore.queryAllUids();
+
+        // removed organisation units are looked up in the log of deleted objects
+        Set<String> existingOrganisationUnitUids = deletedObjectController.getExistingUids(
+                ResourceType.ORGANISATION_UNITS, strategy, persistedOrganisationUnitUids);
+        if (existingOrganisationUnitUids == null) {
+            // we have to download all ids from server in order to
+            // find out what was removed on the server side
+            final Set<String> organisationUnitUids = new HashSet<>();
+            organisationUnitApiClient.getOrganisationUnits(Fields.BASIC, null, null,
+                    new PageConsumer<OrganisationUnit>() {
+
+                        @Override
+                        public void consume(List<OrganisationUnit> organisationUnits) {
+                            organisationUnitUids.addAll(ModelUtils.toUidSet(organisationUnits));
+                        }
+                    });
+            existingOrganisationUnitUids = organisationUnitUids;
+        }
 
-        // we have to download all ids from server in order to
-        // find out what was removed on the server side
-        List<OrganisationUnit> allExistingOrganisationUnits =
-                organisationUnitApiClient.getOrganisationUnits(Fields.BASIC, null, null);
+        // we need to mark assigned organisation units as "assigned" before storing them
+        final Map<String, OrganisationUnit> assignedOrganisationUnits = ModelUtils
+                .toMap(userApiClient.getUserAccount().getOrganisationUnits());
 
+        // downloaded organisation units exist on server, even if they are also listed
+        // as deleted (deleted and imported again with the same uid)
+        final Set<String> downloadedOrganisationUnitUids = new HashSet<>();
+
+        // organisation units are persisted page by page as they are downloaded,
+        // instead of keeping all of them in memory until the download is finished
+        PageConsumer<OrganisationUnit> consumer = new PageConsumer<OrganisationUnit>() {
+
+            @Override
+            public void consume(List<OrganisationUnit> updatedOrganisationUnits) {
+                downloadedOrganisationUnitUids.addAll(
+                        ModelUtils.toUidSet(updatedOrganisationUnits));
+                for (OrganisationUnit updatedOrganisationUnit : updatedOrganisationUnits) {
+                    OrganisationUnit assignedOrganisationUnit = assignedOrganisationUnits
+                            .get(updatedOrganisationUnit.getUId());
+                    updatedOrganisationUnit.setIsAssignedToUser(assignedOrganisationUnit != null);
+                }
+
+                Map<String, OrganisationUnit> persistedOrganisationUnits = ModelUtils.toMap(
+                        identifiableObjectStore.queryByUids(
+                                ModelUtils.toUidSet(updatedOrganisationUnits)));
+                transactionManager.transact(DbUtils.createUpdateOperations(
+                        updatedOrganisationUnits, persistedOrganisationUnits,
+                        identifiableObjectStore));
+            }
+        };
 
-        List<OrganisationUnit> updatedOrganisationUnits = new ArrayList<>();
         if (uids == null) {
-            updatedOrganisationUnits.addAll(organisationUnitApiClient
-                    .getOrganisationUnits(Fields.ALL, lastUpdated, null));
+            organisationUnitApiClient.getOrganisationUnits(
+                    Fields.ALL, lastUpdated, null, consumer);
         } else {
             // defensive copy
             Set<String> modelsToFetch = new HashSet<>(uids);
-            Set<String> modelsToUpdate = ModelUtils.toUidSet(persistedOrganisationUnits);
+            Set<String> modelsToUpdate = new HashSet<>(persistedOrganisationUnitUids);
 
             modelsToFetch.removeAll(modelsToUpdate);
 
             if (!modelsToFetch.isEmpty()) {
-                updatedOrganisationUnits.addAll(organisationUnitApiClient
-                        .getOrganisationUnits(Fields.ALL, null, modelsToFetch));
+                organisationUnitApiClient.getOrganisationUnits(
+                        Fields.ALL, null, modelsToFetch, consumer);
             }
 
             if (!modelsToUpdate.isEmpty()) {
-                updatedOrganisationUnits.addAll(organisationUnitApiClient
-                        .getOrganisationUnits(Fields.ALL, lastUpdated, modelsToUpdate));
+                organisationUnitApiClient.getOrganisationUnits(
+                        Fields.ALL, lastUpdated, modelsToUpdate, consumer);
             }
         }
 
-        // we need to mark assigned organisation units as "assigned" before storing them
-        Map<String, OrganisationUnit> assignedOrganisationUnits = ModelUtils
-                .toMap(userApiClient.getUserAccount().getOrganisationUnits());
-
-        for (OrganisationUnit updatedOrganisationUnit : updatedOrganisationUnits) {
-            OrganisationUnit assignedOrganisationUnit = assignedOrganisationUnits
-                    .get(updatedOrganisationUnit.getUId());
-            updatedOrganisationUnit.setIsAssignedToUser(assignedOrganisationUnit != null);
+        // removing organisation units which do not exist on server anymore
+        Set<String> removedOrganisationUnitUids = new HashSet<>(persistedOrganisationUnitUids);
+        removedOrganisationUnitUids.removeAll(existingOrganisationUnitUids);
+        removedOrganisationUnitUids.removeAll(downloadedOrganisationUnitUids);
+        if (!removedOrganisationUnitUids.isEmpty()) {
+            List<DbOperation> dbOperations = DbUtils.createDeleteOperations(
+                    existingOrganisationUnitUids, ModelUtils.toMap(identifiableObjectStore
+                            .queryByUids(removedOrganisationUnitUids)), identifiableObjectStore);
+            transactionManager.transact(dbOperations);
         }
 
-        // we will have to perform something similar to what happens in AbsController
-        List<DbOperation> dbOperations = DbUtils.createOperations(allExistingOrganisationUnits,
-                updatedOrganisationUnits, persistedOrganisationUnits, identifiableObjectStore);
-        transactionManager.transact(dbOperations);
-
         lastUpdatedPreferences.save(ResourceType.ORGANISATION_UNITS, DateType.SERVER, serverTime);
+        lastUpdatedPreferences.save(ResourceType.ORGANISATION_UNITS, DateType.DELETED, serverTime);
     }
 }
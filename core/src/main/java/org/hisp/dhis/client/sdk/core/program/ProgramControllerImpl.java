@@ -38,6 +38,7 @@ import org.hisp.dhis.client.sdk.core.common.preferences.DateType;
 import org.hisp.dhis.client.sdk.core.common.preferences.LastUpdatedPreferences;
 import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
 import org.hisp.dhis.client.sdk.core.common.utils.ModelUtils;
+import org.hisp.dhis.client.sdk.core.deletedobject.DeletedObjectController;
 import org.hisp.dhis.client.sdk.core.systeminfo.SystemInfoController;
 import org.hisp.dhis.client.sdk.core.user.UserApiClient;
 import org.hisp.dhis.client.sdk.models.program.Program;
@@ -54,6 +55,7 @@ public class ProgramControllerImpl extends AbsSyncStrategyController<Program>
 
     /* Controllers */
     private final SystemInfoController systemInfoController;
+    private final DeletedObjectController deletedObjectController;
 
     /* Api clients */
     private final ProgramApiClient programApiClient;
@@ -63,12 +65,14 @@ public class ProgramControllerImpl extends AbsSyncStrategyController<Program>
     private final TransactionManager transactionManager;
 
     public ProgramControllerImpl(SystemInfoController systemInfoController,
+                                 DeletedObjectController deletedObjectController,
                                  ProgramApiClient programApiClient, UserApiClient userApiClient,
                                  ProgramStore programStore, TransactionManager transactionManager,
                                  LastUpdatedPreferences lastUpdatedPreferences) {
         super(ResourceType.PROGRAMS, programStore, lastUpdatedPreferences);
 
         this.systemInfoController = systemInfoController;
+        this.deletedObjectController = deletedObjectController;
         this.programApiClient = programApiClient;
         this.userApiClient = userApiClient;
         this.transactionManager = transactionManager;
@@ -81,9 +85,15 @@ public class ProgramControllerImpl extends AbsSyncStrategyController<Program>
 
         List<Program> persistedPrograms = identifiableObjectStore.queryAll();
 
-        // we have to download all ids from server in order to
-        // find out what was removed on the server side
-        List<Program> allExistingPrograms = programApiClient.getPrograms(Fields.BASIC, null, null);
+        // removed programs are looked up in the log of deleted objects
+        Set<String> existingProgramUids = deletedObjectController.getExistingUids(
+                ResourceType.PROGRAMS, syncStrategy, persistedPrograms);
+        if (existingProgramUids == null) {
+            // we have to download all ids from server in order to
+            // find out what was removed on the server side
+            existingProgramUids = ModelUtils.toUidSet(
+                    programApiClient.getPrograms(Fields.BASIC, null, null));
+        }
 
 
         List<Program> updatedPrograms = new ArrayList<>();
@@ -118,10 +128,11 @@ public class ProgramControllerImpl extends AbsSyncStrategyController<Program>
         }
 
         // we will have to perform something similar to what happens in AbsController
-        List<DbOperation> dbOperations = DbUtils.createOperations(allExistingPrograms,
+        List<DbOperation> dbOperations = DbUtils.createOperations(existingProgramUids,
                 updatedPrograms, persistedPrograms, identifiableObjectStore);
         transactionManager.transact(dbOperations);
 
         lastUpdatedPreferences.save(ResourceType.PROGRAMS, DateType.SERVER, serverTime);
+        lastUpdatedPreferences.save(ResourceType.PROGRAMS, DateType.DELETED, serverTime);
     }
 }
@@ -10,6 +10,7 @@ import org.hisp.dhis.client.sdk.core.common.preferences.DateType;
 import org.hisp.dhis.client.sdk.core.common.preferences.LastUpdatedPreferences;
 import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
 import org.hisp.dhis.client.sdk.core.common.utils.ModelUtils;
+import org.hisp.dhis.client.sdk.core.deletedobject.DeletedObjectController;
 import org.hisp.dhis.client.sdk.core.systeminfo.SystemInfoController;
 import org.hisp.dhis.client.sdk.models.program.ProgramIndicator;
 import org.joda.time.DateTime;
@@ -23,6 +24,7 @@ public class ProgramIndicatorControllerImpl
         extends AbsSyncStrategyController<ProgramIndicator> implements ProgramIndicatorController {
 
     private final SystemInfoController systemInfoController;
+    private final DeletedObjectController deletedObjectController;
     private final ProgramIndicatorApiClient programindicatorApiClient;
     private final TransactionManager transactionManager;
     private final ProgramController programController;
@@ -32,6 +34,7 @@ public class ProgramIndicatorControllerImpl
     public ProgramIndicatorControllerImpl(ProgramIndicatorStore programIndicatorStore,
                                           LastUpdatedPreferences lastUpdatedPreferences,
                                           SystemInfoController systemInfoController,
+                                          DeletedObjectController deletedObjectController,
                                           ProgramIndicatorApiClient programIndicatorApiClient,
                                           TransactionManager transactionManager,
                                           ProgramController programController,
@@ -39,6 +42,7 @@ public class ProgramIndicatorControllerImpl
                                           ProgramStageSectionController programStageSectionController) {
         super(ResourceType.PROGRAM_INDICATORS, programIndicatorStore, lastUpdatedPreferences);
         this.systemInfoController = systemInfoController;
+        this.deletedObjectController = deletedObjectController;
         this.programindicatorApiClient = programIndicatorApiClient;
         this.transactionManager = transactionManager;
         this.programController = programController;
@@ -54,10 +58,15 @@ public class ProgramIndicatorControllerImpl
 
         List<ProgramIndicator> persistedProgramIndicators = identifiableObjectStore.queryAll();
 
-        // we have to download all ids from server in order to
-        // find out what was removed on the server side
-        List<ProgramIndicator> allExistingProgramIndicators = programindicatorApiClient
-                .getProgramIndicators(Fields.BASIC, null);
+        // removed program indicators are looked up in the log of deleted objects
+        Set<String> existingProgramIndicatorUids = deletedObjectController.getExistingUids(
+                ResourceType.PROGRAM_INDICATORS, strategy, persistedProgramIndicators);
+        if (existingProgramIndicatorUids == null) {
+            // we have to download all ids from server in order to
+            // find out what was removed on the server side
+            existingProgramIndicatorUids = ModelUtils.toUidSet(
+                    programindicatorApiClient.getProgramIndicators(Fields.BASIC, null));
+        }
 
         List<ProgramIndicator> updatedProgramIndicators = new ArrayList<>();
         if (uids == null) {
@@ -87,7 +96,7 @@ public class ProgramIndicatorControllerImpl
         Set<String> programStageSectionUids = new HashSet<>();
 
         List<ProgramIndicator> programIndicators = ModelUtils.merge(
-                allExistingProgramIndicators, updatedProgramIndicators,
+                existingProgramIndicatorUids, updatedProgramIndicators,
                 persistedProgramIndicators);
 
         for (ProgramIndicator programIndicator : programIndicators) {
@@ -119,11 +128,13 @@ public class ProgramIndicatorControllerImpl
         }
         // we will have to perform something similar to what happens in AbsController
         List<DbOperation> dbOperations = DbUtils.createOperations(
-                allExistingProgramIndicators, updatedProgramIndicators,
+                existingProgramIndicatorUids, updatedProgramIndicators,
                 persistedProgramIndicators, identifiableObjectStore);
         transactionManager.transact(dbOperations);
 
         lastUpdatedPreferences.save(ResourceType.PROGRAM_INDICATORS,
                 DateType.SERVER, serverTime);
+        lastUpdatedPreferences.save(ResourceType.PROGRAM_INDICATORS,
+                DateType.DELETED, serverTime);
     }
 }
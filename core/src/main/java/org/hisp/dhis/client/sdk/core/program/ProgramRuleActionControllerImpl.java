@@ -39,6 +39,7 @@ import org.hisp.dhis.client.sdk.core.common.preferences.LastUpdatedPreferences;
 import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
 import org.hisp.dhis.client.sdk.core.common.utils.ModelUtils;
 import org.hisp.dhis.client.sdk.core.dataelement.DataElementController;
+import org.hisp.dhis.client.sdk.core.deletedobject.DeletedObjectController;
 import org.hisp.dhis.client.sdk.core.systeminfo.SystemInfoController;
 import org.hisp.dhis.client.sdk.core.trackedentity.TrackedEntityAttributeController;
 import org.hisp.dhis.client.sdk.models.program.ProgramRuleAction;
@@ -54,6 +55,7 @@ public final class ProgramRuleActionControllerImpl
     private final ProgramRuleActionApiClient programRuleActionApiClient;
     private final TransactionManager transactionManager;
     private final SystemInfoController systemInfoController;
+    private final DeletedObjectController deletedObjectController;
     private final ProgramStageController programStageController;
     private final ProgramStageSectionController programStageSectionController;
     private final DataElementController dataElementController;
@@ -64,6 +66,7 @@ public final class ProgramRuleActionControllerImpl
     public ProgramRuleActionControllerImpl(ProgramRuleActionApiClient programRuleActionApiClient,
                                            TransactionManager transactionManager,
                                            SystemInfoController systemInfoController,
+                                           DeletedObjectController deletedObjectController,
                                            LastUpdatedPreferences lastUpdatedPreferences,
                                            ProgramRuleActionStore programRuleActionStore,
                                            ProgramStageController programStageController,
@@ -76,6 +79,7 @@ public final class ProgramRuleActionControllerImpl
         this.programRuleActionApiClient = programRuleActionApiClient;
         this.transactionManager = transactionManager;
         this.systemInfoController = systemInfoController;
+        this.deletedObjectController = deletedObjectController;
         this.programStageController = programStageController;
         this.programStageSectionController = programStageSectionController;
         this.dataElementController = dataElementController;
@@ -93,10 +97,15 @@ public final class ProgramRuleActionControllerImpl
         List<ProgramRuleAction> persistedProgramRuleActions =
                 identifiableObjectStore.queryAll();
 
-        // we have to download all ids from server in order to
-        // find out what was removed on the server side
-        List<ProgramRuleAction> allExistingProgramRuleActions = programRuleActionApiClient
-                .getProgramRuleActions(Fields.BASIC, null);
+        // removed program rule actions are looked up in the log of deleted objects
+        Set<String> existingProgramRuleActionUids = deletedObjectController.getExistingUids(
+                ResourceType.PROGRAM_RULE_ACTIONS, strategy, persistedProgramRuleActions);
+        if (existingProgramRuleActionUids == null) {
+            // we have to download all ids from server in order to
+            // find out what was removed on the server side
+            existingProgramRuleActionUids = ModelUtils.toUidSet(
+                    programRuleActionApiClient.getProgramRuleActions(Fields.BASIC, null));
+        }
 
         List<ProgramRuleAction> updatedProgramRuleActions = new ArrayList<>();
         if (uids == null) {
@@ -129,7 +138,7 @@ public final class ProgramRuleActionControllerImpl
         Set<String> programStageSectionUids = new HashSet<>();
 
         List<ProgramRuleAction> programRuleActions = ModelUtils.merge(
-                allExistingProgramRuleActions, updatedProgramRuleActions,
+                existingProgramRuleActionUids, updatedProgramRuleActions,
                 persistedProgramRuleActions);
 
         for (ProgramRuleAction programRuleAction : programRuleActions) {
@@ -196,11 +205,13 @@ public final class ProgramRuleActionControllerImpl
 
         // we will have to perform something similar to what happens in AbsController
         List<DbOperation> dbOperations = DbUtils.createOperations(
-                allExistingProgramRuleActions, updatedProgramRuleActions,
+                existingProgramRuleActionUids, updatedProgramRuleActions,
                 persistedProgramRuleActions, identifiableObjectStore);
         transactionManager.transact(dbOperations);
 
         lastUpdatedPreferences.save(ResourceType.PROGRAM_RULE_ACTIONS,
                 DateType.SERVER, serverTime);
+        lastUpdatedPreferences.save(ResourceType.PROGRAM_RULE_ACTIONS,
+                DateType.DELETED, serverTime);
     }
 }
\ No newline at end of file
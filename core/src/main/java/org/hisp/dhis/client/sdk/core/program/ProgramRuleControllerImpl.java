@@ -38,6 +38,7 @@ import org.hisp.dhis.client.sdk.core.common.preferences.DateType;
 import org.hisp.dhis.client.sdk.core.common.preferences.LastUpdatedPreferences;
 import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
 import org.hisp.dhis.client.sdk.core.common.utils.ModelUtils;
+import org.hisp.dhis.client.sdk.core.deletedobject.DeletedObjectController;
 import org.hisp.dhis.client.sdk.core.systeminfo.SystemInfoController;
 import org.hisp.dhis.client.sdk.models.program.Program;
 import org.hisp.dhis.client.sdk.models.program.ProgramRule;
@@ -52,6 +53,7 @@ public final class ProgramRuleControllerImpl
         extends AbsSyncStrategyController<ProgramRule> implements ProgramRuleController {
     private final TransactionManager transactionManager;
     private final SystemInfoController systemInfoController;
+    private final DeletedObjectController deletedObjectController;
     private final ProgramRuleApiClient programRuleApiClient;
     private final ProgramController programController;
     private final ProgramStageController programStageController;
@@ -60,12 +62,14 @@ public final class ProgramRuleControllerImpl
                                      LastUpdatedPreferences lastUpdatedPreferences,
                                      ProgramRuleStore programRuleStore,
                                      SystemInfoController systemInfoController,
+                                     DeletedObjectController deletedObjectController,
                                      ProgramRuleApiClient programRuleApiClient,
                                      ProgramController programController,
                                      ProgramStageController programStageController) {
         super(ResourceType.PROGRAM_RULES, programRuleStore, lastUpdatedPreferences);
         this.transactionManager = transactionManager;
         this.systemInfoController = systemInfoController;
+        this.deletedObjectController = deletedObjectController;
         this.programRuleApiClient = programRuleApiClient;
         this.programController = programController;
         this.programStageController = programStageController;
@@ -79,10 +83,15 @@ public final class ProgramRuleControllerImpl
 
         List<ProgramRule> persistedProgramRules = identifiableObjectStore.queryAll();
 
-        // we have to download all ids from server in order to
-        // find out what was removed on the server side
-        List<ProgramRule> allExistingProgramRules = programRuleApiClient
-                .getProgramRules(Fields.BASIC, null);
+        // removed program rules are looked up in the log of deleted objects
+        Set<String> existingProgramRuleUids = deletedObjectController.getExistingUids(
+                ResourceType.PROGRAM_RULES, strategy, persistedProgramRules);
+        if (existingProgramRuleUids == null) {
+            // we have to download all ids from server in order to
+            // find out what was removed on the server side
+            existingProgramRuleUids = ModelUtils.toUidSet(
+                    programRuleApiClient.getProgramRules(Fields.BASIC, null));
+        }
 
         List<ProgramRule> updatedProgramRules = new ArrayList<>();
         if (uids == null) {
@@ -111,7 +120,7 @@ public final class ProgramRuleControllerImpl
         Set<String> programUids = new HashSet<>();
 
         List<ProgramRule> programRules = ModelUtils.merge(
-                allExistingProgramRules, updatedProgramRules, persistedProgramRules);
+                existingProgramRuleUids, updatedProgramRules, persistedProgramRules);
         for (ProgramRule programRule : programRules) {
             if (programRule.getProgramStage() != null) {
                 programStageUids.add(programRule.getProgramStage().getUId());
@@ -132,12 +141,14 @@ public final class ProgramRuleControllerImpl
 
         // we will have to perform something similar to what happens in AbsController
         List<DbOperation> dbOperations = DbUtils.createOperations(
-                allExistingProgramRules, updatedProgramRules,
+                existingProgramRuleUids, updatedProgramRules,
                 persistedProgramRules, identifiableObjectStore);
         transactionManager.transact(dbOperations);
 
         lastUpdatedPreferences.save(ResourceType.PROGRAM_RULES,
                 DateType.SERVER, serverTime);
+        lastUpdatedPreferences.save(ResourceType.PROGRAM_RULES,
+                DateType.DELETED, serverTime);
     }
 
     @Override
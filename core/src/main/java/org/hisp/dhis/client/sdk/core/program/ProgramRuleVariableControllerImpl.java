@@ -39,6 +39,7 @@ import org.hisp.dhis.client.sdk.core.common.preferences.LastUpdatedPreferences;
 import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
 import org.hisp.dhis.client.sdk.core.common.utils.ModelUtils;
 import org.hisp.dhis.client.sdk.core.dataelement.DataElementController;
+import org.hisp.dhis.client.sdk.core.deletedobject.DeletedObjectController;
 import org.hisp.dhis.client.sdk.core.systeminfo.SystemInfoController;
 import org.hisp.dhis.client.sdk.core.trackedentity.TrackedEntityAttributeController;
 import org.hisp.dhis.client.sdk.models.program.Program;
@@ -57,6 +58,7 @@ public final class ProgramRuleVariableControllerImpl
     private final ProgramRuleVariableApiClient programRuleVariableApiClient;
     private final TransactionManager transactionManager;
     private final SystemInfoController systemInfoController;
+    private final DeletedObjectController deletedObjectController;
     private final ProgramController programController;
     private final ProgramStageController programStageController;
     private final DataElementController dataElementController;
@@ -66,6 +68,7 @@ public final class ProgramRuleVariableControllerImpl
                                              TransactionManager transactionManager,
                                              LastUpdatedPreferences lastUpdatedPreferences,
                                              SystemInfoController systemInfoController,
+                                             DeletedObjectController deletedObjectController,
                                              ProgramRuleVariableStore programRuleVariableStore,
                                              ProgramController programController,
                                              ProgramStageController programStageController,
@@ -76,6 +79,7 @@ public final class ProgramRuleVariableControllerImpl
         this.programRuleVariableApiClient = variableApiClient;
         this.transactionManager = transactionManager;
         this.systemInfoController = systemInfoController;
+        this.deletedObjectController = deletedObjectController;
         this.programController = programController;
         this.programStageController = programStageController;
         this.dataElementController = dataElementController;
@@ -91,10 +95,15 @@ public final class ProgramRuleVariableControllerImpl
         List<ProgramRuleVariable> persistedProgramRuleVariables =
                 identifiableObjectStore.queryAll();
 
-        // we have to download all ids from server in order to
-        // find out what was removed on the server side
-        List<ProgramRuleVariable> allExistingProgramRuleVariables =
-                programRuleVariableApiClient.getProgramRuleVariables(Fields.BASIC, null);
+        // removed program rule variables are looked up in the log of deleted objects
+        Set<String> existingProgramRuleVariableUids = deletedObjectController.getExistingUids(
+                ResourceType.PROGRAM_RULE_VARIABLES, strategy, persistedProgramRuleVariables);
+        if (existingProgramRuleVariableUids == null) {
+            // we have to download all ids from server in order to
+            // find out what was removed on the server side
+            existingProgramRuleVariableUids = ModelUtils.toUidSet(
+                    programRuleVariableApiClient.getProgramRuleVariables(Fields.BASIC, null));
+        }
 
 
         List<ProgramRuleVariable> updatedProgramRuleVariables = new ArrayList<>();
@@ -126,7 +135,7 @@ public final class ProgramRuleVariableControllerImpl
         Set<String> programUids = new HashSet<>();
 
         List<ProgramRuleVariable> programRuleVariables = ModelUtils.merge(
-                allExistingProgramRuleVariables, updatedProgramRuleVariables,
+                existingProgramRuleVariableUids, updatedProgramRuleVariables,
                 persistedProgramRuleVariables);
 
         for (ProgramRuleVariable programRuleVariable : programRuleVariables) {
@@ -171,12 +180,14 @@ public final class ProgramRuleVariableControllerImpl
 
         // we will have to perform something similar to what happens in AbsController
         List<DbOperation> dbOperations = DbUtils.createOperations(
-                allExistingProgramRuleVariables, updatedProgramRuleVariables,
+                existingProgramRuleVariableUids, updatedProgramRuleVariables,
                 persistedProgramRuleVariables, identifiableObjectStore);
         transactionManager.transact(dbOperations);
 
         lastUpdatedPreferences.save(ResourceType.PROGRAM_RULE_VARIABLES,
                 DateType.SERVER, serverTime);
+        lastUpdatedPreferences.save(ResourceType.PROGRAM_RULE_VARIABLES,
+                DateType.DELETED, serverTime);
     }
 
     @Override
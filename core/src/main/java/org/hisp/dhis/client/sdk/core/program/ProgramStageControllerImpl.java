@@ -38,6 +38,7 @@ import org.hisp.dhis.client.sdk.core.common.preferences.DateType;
 import org.hisp.dhis.client.sdk.core.common.preferences.LastUpdatedPreferences;
 import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
 import org.hisp.dhis.client.sdk.core.common.utils.ModelUtils;
+import org.hisp.dhis.client.sdk.core.deletedobject.DeletedObjectController;
 import org.hisp.dhis.client.sdk.core.systeminfo.SystemInfoController;
 import org.hisp.dhis.client.sdk.models.program.ProgramStage;
 import org.joda.time.DateTime;
@@ -53,6 +54,7 @@ public class ProgramStageControllerImpl extends AbsSyncStrategyController<Progra
     /* Controllers */
     private final ProgramController programController;
     private final SystemInfoController systemInfoController;
+    private final DeletedObjectController deletedObjectController;
 
     /* Api clients */
     private final ProgramStageApiClient programStageApiClient;
@@ -62,6 +64,7 @@ public class ProgramStageControllerImpl extends AbsSyncStrategyController<Progra
 
     public ProgramStageControllerImpl(ProgramController programController,
                                       SystemInfoController systemInfoController,
+                                      DeletedObjectController deletedObjectController,
                                       ProgramStageApiClient programStageApiClient,
                                       ProgramStageStore programStageStore,
                                       TransactionManager transactionManager,
@@ -69,6 +72,7 @@ public class ProgramStageControllerImpl extends AbsSyncStrategyController<Progra
         super(ResourceType.PROGRAM_STAGES, programStageStore, lastUpdatedPreferences);
         this.programController = programController;
         this.systemInfoController = systemInfoController;
+        this.deletedObjectController = deletedObjectController;
         this.programStageApiClient = programStageApiClient;
         this.transactionManager = transactionManager;
     }
@@ -81,10 +85,15 @@ public class ProgramStageControllerImpl extends AbsSyncStrategyController<Progra
 
         List<ProgramStage> persistedProgramStages = identifiableObjectStore.queryAll();
 
-        // we have to download all ids from server in order to
-        // find out what was removed on the server side
-        List<ProgramStage> allExistingProgramStages = programStageApiClient
-                .getProgramStages(Fields.BASIC, null, null);
+        // removed program stages are looked up in the log of deleted objects
+        Set<String> existingProgramStageUids = deletedObjectController.getExistingUids(
+                ResourceType.PROGRAM_STAGES, strategy, persistedProgramStages);
+        if (existingProgramStageUids == null) {
+            // we have to download all ids from server in order to
+            // find out what was removed on the server side
+            existingProgramStageUids = ModelUtils.toUidSet(
+                    programStageApiClient.getProgramStages(Fields.BASIC, null, null));
+        }
 
         List<ProgramStage> updatedProgramStages = new ArrayList<>();
         if (uids == null) {
@@ -111,7 +120,7 @@ public class ProgramStageControllerImpl extends AbsSyncStrategyController<Progra
         // Retrieving program uids from program stages
         Set<String> programUids = new HashSet<>();
         List<ProgramStage> mergedProgramStages = ModelUtils.merge(
-                allExistingProgramStages, updatedProgramStages, persistedProgramStages);
+                existingProgramStageUids, updatedProgramStages, persistedProgramStages);
 
         for (ProgramStage programStage : mergedProgramStages) {
             programUids.add(programStage.getProgram().getUId());
@@ -122,10 +131,11 @@ public class ProgramStageControllerImpl extends AbsSyncStrategyController<Progra
         programController.pull(strategy, programUids);
 
         // we will have to perform something similar to what happens in AbsController
-        List<DbOperation> dbOperations = DbUtils.createOperations(allExistingProgramStages,
+        List<DbOperation> dbOperations = DbUtils.createOperations(existingProgramStageUids,
                 updatedProgramStages, persistedProgramStages, identifiableObjectStore);
         transactionManager.transact(dbOperations);
 
         lastUpdatedPreferences.save(ResourceType.PROGRAM_STAGES, DateType.SERVER, serverTime);
+        lastUpdatedPreferences.save(ResourceType.PROGRAM_STAGES, DateType.DELETED, serverTime);
     }
 }
@@ -39,6 +39,7 @@ import org.hisp.dhis.client.sdk.core.common.preferences.LastUpdatedPreferences;
 import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
 import org.hisp.dhis.client.sdk.core.common.utils.ModelUtils;
 import org.hisp.dhis.client.sdk.core.dataelement.DataElementController;
+import org.hisp.dhis.client.sdk.core.deletedobject.DeletedObjectController;
 import org.hisp.dhis.client.sdk.core.systeminfo.SystemInfoController;
 import org.hisp.dhis.client.sdk.models.program.ProgramStageDataElement;
 import org.hisp.dhis.client.sdk.models.program.ProgramStageSection;
@@ -56,6 +57,7 @@ public class ProgramStageDataElementControllerImpl
 
     /* Controllers */
     private final SystemInfoController systemInfoController;
+    private final DeletedObjectController deletedObjectController;
     private final ProgramStageController stageController;
     private final ProgramStageSectionController stageSectionController;
     private final DataElementController dataElementController;
@@ -68,6 +70,7 @@ public class ProgramStageDataElementControllerImpl
     private final TransactionManager transactionManager;
 
     public ProgramStageDataElementControllerImpl(SystemInfoController systemInfoController,
+                                                 DeletedObjectController deletedObjectController,
                                                  ProgramStageController stageController,
                                                  ProgramStageSectionController stageSectionController,
                                                  DataElementController dataElementController,
@@ -79,6 +82,7 @@ public class ProgramStageDataElementControllerImpl
         super(ResourceType.PROGRAM_STAGE_DATA_ELEMENTS, stageDataElementStore, preferences);
 
         this.systemInfoController = systemInfoController;
+        this.deletedObjectController = deletedObjectController;
         this.stageController = stageController;
         this.stageSectionController = stageSectionController;
         this.dataElementController = dataElementController;
@@ -96,10 +100,15 @@ public class ProgramStageDataElementControllerImpl
 
         List<ProgramStageDataElement> programStageDataElements = identifiableObjectStore.queryAll();
 
-        // we have to download all ids from server in order to
-        // find out what was removed on the server side
-        List<ProgramStageDataElement> allExistingStageDataElements =
-                stageDataElementApiClient.getProgramStageDataElements(Fields.BASIC, null, null);
+        // removed stage data elements are looked up in the log of deleted objects
+        Set<String> existingStageDataElementUids = deletedObjectController.getExistingUids(
+                ResourceType.PROGRAM_STAGE_DATA_ELEMENTS, strategy, programStageDataElements);
+        if (existingStageDataElementUids == null) {
+            // we have to download all ids from server in order to
+            // find out what was removed on the server side
+            existingStageDataElementUids = ModelUtils.toUidSet(stageDataElementApiClient
+                    .getProgramStageDataElements(Fields.BASIC, null, null));
+        }
 
         List<ProgramStageDataElement> updatedStageDataElements = new ArrayList<>();
         if (uids == null) {
@@ -135,7 +144,7 @@ public class ProgramStageDataElementControllerImpl
         Set<String> programStageSectionUids = new HashSet<>();
 
         List<ProgramStageDataElement> mergedProgramStageDataElements = ModelUtils.merge(
-                allExistingStageDataElements, updatedStageDataElements, programStageDataElements);
+                existingStageDataElementUids, updatedStageDataElements, programStageDataElements);
         for (ProgramStageDataElement programStageDataElement : mergedProgramStageDataElements) {
             if (programStageDataElement.getProgramStageSection() != null) {
                 programStageSectionUids.add(
@@ -153,12 +162,14 @@ public class ProgramStageDataElementControllerImpl
         dataElementController.pull(strategy, dataElementUids);
         stageSectionController.pull(strategy, programStageSectionUids);
 
-        List<DbOperation> dbOperations = DbUtils.createOperations(allExistingStageDataElements,
+        List<DbOperation> dbOperations = DbUtils.createOperations(existingStageDataElementUids,
                 updatedStageDataElements, programStageDataElements, identifiableObjectStore);
         transactionManager.transact(dbOperations);
 
         lastUpdatedPreferences.save(ResourceType.PROGRAM_STAGE_DATA_ELEMENTS,
                 DateType.SERVER, serverTime);
+        lastUpdatedPreferences.save(ResourceType.PROGRAM_STAGE_DATA_ELEMENTS,
+                DateType.DELETED, serverTime);
     }
 
     /* We need to inverse relationships between ProgramStageSection and ProgramStageDataElement */
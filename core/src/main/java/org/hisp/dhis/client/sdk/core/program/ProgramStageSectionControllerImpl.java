@@ -38,6 +38,7 @@ import org.hisp.dhis.client.sdk.core.common.preferences.DateType;
 import org.hisp.dhis.client.sdk.core.common.preferences.LastUpdatedPreferences;
 import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
 import org.hisp.dhis.client.sdk.core.common.utils.ModelUtils;
+import org.hisp.dhis.client.sdk.core.deletedobject.DeletedObjectController;
 import org.hisp.dhis.client.sdk.core.systeminfo.SystemInfoController;
 import org.hisp.dhis.client.sdk.models.program.ProgramStageSection;
 import org.joda.time.DateTime;
@@ -52,6 +53,7 @@ public class ProgramStageSectionControllerImpl extends AbsSyncStrategyController
 
     /* Controllers */
     private final SystemInfoController systemInfoController;
+    private final DeletedObjectController deletedObjectController;
     private final ProgramStageController programStageController;
 
     /* Api clients */
@@ -62,6 +64,7 @@ public class ProgramStageSectionControllerImpl extends AbsSyncStrategyController
 
     public ProgramStageSectionControllerImpl(ProgramStageController programStageController,
                                              SystemInfoController systemInfoController,
+                                             DeletedObjectController deletedObjectController,
                                              ProgramStageSectionApiClient programStageSectionApiClient,
                                              ProgramStageSectionStore sectionStore,
                                              TransactionManager transactionManager,
@@ -70,6 +73,7 @@ public class ProgramStageSectionControllerImpl extends AbsSyncStrategyController
 
         this.programStageSectionApiClient = programStageSectionApiClient;
         this.systemInfoController = systemInfoController;
+        this.deletedObjectController = deletedObjectController;
         this.programStageController = programStageController;
         this.transactionManager = transactionManager;
     }
@@ -83,10 +87,15 @@ public class ProgramStageSectionControllerImpl extends AbsSyncStrategyController
         List<ProgramStageSection> persistedProgramStageSections =
                 identifiableObjectStore.queryAll();
 
-        // we have to download all ids from server in order to
-        // find out what was removed on the server side
-        List<ProgramStageSection> allExistingProgramStageSections = programStageSectionApiClient
-                .getProgramStageSections(Fields.BASIC, null);
+        // removed program stage sections are looked up in the log of deleted objects
+        Set<String> existingProgramStageSectionUids = deletedObjectController.getExistingUids(
+                ResourceType.PROGRAM_STAGE_SECTIONS, strategy, persistedProgramStageSections);
+        if (existingProgramStageSectionUids == null) {
+            // we have to download all ids from server in order to
+            // find out what was removed on the server side
+            existingProgramStageSectionUids = ModelUtils.toUidSet(
+                    programStageSectionApiClient.getProgramStageSections(Fields.BASIC, null));
+        }
 
         List<ProgramStageSection> updatedProgramStageSections = new ArrayList<>();
         if (uids == null) {
@@ -113,7 +122,7 @@ public class ProgramStageSectionControllerImpl extends AbsSyncStrategyController
         // Retrieving program stage uids from program stages sections
         Set<String> programStageSectionUids = new HashSet<>();
         List<ProgramStageSection> mergedProgramStageSections = ModelUtils.merge(
-                allExistingProgramStageSections, updatedProgramStageSections,
+                existingProgramStageSectionUids, updatedProgramStageSections,
                 persistedProgramStageSections);
         for (ProgramStageSection programStageSection : mergedProgramStageSections) {
             programStageSectionUids.add(programStageSection.getProgramStage().getUId());
@@ -125,11 +134,13 @@ public class ProgramStageSectionControllerImpl extends AbsSyncStrategyController
 
         // we will have to perform something similar to what happens in AbsController
         List<DbOperation> dbOperations = DbUtils.createOperations(
-                allExistingProgramStageSections, updatedProgramStageSections,
+                existingProgramStageSectionUids, updatedProgramStageSections,
                 persistedProgramStageSections, identifiableObjectStore);
         transactionManager.transact(dbOperations);
 
         lastUpdatedPreferences.save(ResourceType.PROGRAM_STAGE_SECTIONS,
                 DateType.SERVER, serverTime);
+        lastUpdatedPreferences.save(ResourceType.PROGRAM_STAGE_SECTIONS,
+                DateType.DELETED, serverTime);
     }
 }
@@ -33,6 +33,11 @@ import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.models.common.SystemInfo;
 
 public interface SystemInfoController {
+
+    /**
+     * Within a sync session, all callers get the same
+     * instance of system info, which must not be modified.
+     */
     SystemInfo getSystemInfo() throws ApiException;
 
     SystemInfo getSystemInfo(SyncStrategy strategy) throws ApiException;
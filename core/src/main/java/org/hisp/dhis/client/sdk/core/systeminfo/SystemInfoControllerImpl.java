@@ -28,6 +28,7 @@
 
 package org.hisp.dhis.client.sdk.core.systeminfo;
 
+import org.hisp.dhis.client.sdk.core.common.controllers.SyncSession;
 import org.hisp.dhis.client.sdk.core.common.controllers.SyncStrategy;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.core.common.preferences.DateType;
@@ -37,6 +38,8 @@ import org.hisp.dhis.client.sdk.models.common.SystemInfo;
 import org.joda.time.DateTime;
 import org.joda.time.Seconds;
 
+import java.util.concurrent.Callable;
+
 public class SystemInfoControllerImpl implements SystemInfoController {
     private static final int EXPIRATION_THRESHOLD = 128;
 
@@ -47,12 +50,24 @@ public class SystemInfoControllerImpl implements SystemInfoController {
     private final SystemInfoPreferences systemInfoPreferences;
     private final LastUpdatedPreferences lastUpdatedPreferences;
 
+    /* Utilities */
+    private final SyncSession syncSession;
+
     public SystemInfoControllerImpl(SystemInfoApiClient systemInfoApiClient,
                                     SystemInfoPreferences systemInfoPreferences,
                                     LastUpdatedPreferences lastUpdatedPreferences) {
+        this(systemInfoApiClient, systemInfoPreferences,
+                lastUpdatedPreferences, new SyncSession());
+    }
+
+    public SystemInfoControllerImpl(SystemInfoApiClient systemInfoApiClient,
+                                    SystemInfoPreferences systemInfoPreferences,
+                                    LastUpdatedPreferences lastUpdatedPreferences,
+                                    SyncSession syncSession) {
         this.systemInfoApiClient = systemInfoApiClient;
         this.systemInfoPreferences = systemInfoPreferences;
         this.lastUpdatedPreferences = lastUpdatedPreferences;
+        this.syncSession = syncSession;
     }
 
     @Override
@@ -61,7 +76,22 @@ public class SystemInfoControllerImpl implements SystemInfoController {
     }
 
     @Override
-    public SystemInfo getSystemInfo(SyncStrategy strategy) throws ApiException {
+    public SystemInfo getSystemInfo(final SyncStrategy strategy) throws ApiException {
+        if (SyncStrategy.FORCE_UPDATE.equals(strategy)) {
+            syncSession.invalidate(ResourceType.SYSTEM_INFO);
+        }
+
+        // within sync session, system info is read (or downloaded) only once
+        return syncSession.get(ResourceType.SYSTEM_INFO, new Callable<SystemInfo>() {
+
+            @Override
+            public SystemInfo call() throws ApiException {
+                return loadSystemInfo(strategy);
+            }
+        });
+    }
+
+    private SystemInfo loadSystemInfo(SyncStrategy strategy) throws ApiException {
         SystemInfo systemInfo = systemInfoPreferences.get();
         DateTime currentDate = DateTime.now();
 
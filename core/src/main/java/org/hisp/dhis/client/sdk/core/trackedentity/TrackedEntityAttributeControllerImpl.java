@@ -38,6 +38,7 @@ import org.hisp.dhis.client.sdk.core.common.preferences.DateType;
 import org.hisp.dhis.client.sdk.core.common.preferences.LastUpdatedPreferences;
 import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
 import org.hisp.dhis.client.sdk.core.common.utils.ModelUtils;
+import org.hisp.dhis.client.sdk.core.deletedobject.DeletedObjectController;
 import org.hisp.dhis.client.sdk.core.optionset.OptionSetController;
 import org.hisp.dhis.client.sdk.core.systeminfo.SystemInfoController;
 import org.hisp.dhis.client.sdk.models.trackedentity.TrackedEntityAttribute;
@@ -54,6 +55,7 @@ public final class TrackedEntityAttributeControllerImpl
     private final TrackedEntityAttributeApiClient trackedEntityAttributeApiClient;
     private final TransactionManager transactionManager;
     private final SystemInfoController systemInfoController;
+    private final DeletedObjectController deletedObjectController;
     private final OptionSetController optionSetController;
 
     public TrackedEntityAttributeControllerImpl(TrackedEntityAttributeApiClient attributeApiClient,
@@ -61,11 +63,13 @@ public final class TrackedEntityAttributeControllerImpl
                                                 LastUpdatedPreferences lastUpdatedPreferences,
                                                 TrackedEntityAttributeStore attributeStore,
                                                 SystemInfoController systemInfoController,
+                                                DeletedObjectController deletedObjectController,
                                                 OptionSetController optionSetController) {
         super(ResourceType.TRACKED_ENTITY_ATTRIBUTES, attributeStore, lastUpdatedPreferences);
         this.trackedEntityAttributeApiClient = attributeApiClient;
         this.transactionManager = transactionManager;
         this.systemInfoController = systemInfoController;
+        this.deletedObjectController = deletedObjectController;
         this.optionSetController = optionSetController;
     }
 
@@ -78,10 +82,15 @@ public final class TrackedEntityAttributeControllerImpl
         List<TrackedEntityAttribute> persistedTrackedEntityAttributes =
                 identifiableObjectStore.queryAll();
 
-        // we have to download all ids from server in order to
-        // find out what was removed on the server side
-        List<TrackedEntityAttribute> allExistingTrackedEntityAttributes = trackedEntityAttributeApiClient
-                .getTrackedEntityAttributes(Fields.BASIC, null);
+        // removed tracked entity attributes are looked up in the log of deleted objects
+        Set<String> existingTrackedEntityAttributeUids = deletedObjectController.getExistingUids(
+                ResourceType.TRACKED_ENTITY_ATTRIBUTES, strategy, persistedTrackedEntityAttributes);
+        if (existingTrackedEntityAttributeUids == null) {
+            // we have to download all ids from server in order to
+            // find out what was removed on the server side
+            existingTrackedEntityAttributeUids = ModelUtils.toUidSet(
+                    trackedEntityAttributeApiClient.getTrackedEntityAttributes(Fields.BASIC, null));
+        }
 
         List<TrackedEntityAttribute> updatedTrackedEntityAttributes = new ArrayList<>();
         if (uids == null) {
@@ -109,7 +118,7 @@ public final class TrackedEntityAttributeControllerImpl
         Set<String> optionSetUids = new HashSet<>();
 
         List<TrackedEntityAttribute> trackedEntityAttributes = ModelUtils.merge(
-                allExistingTrackedEntityAttributes, updatedTrackedEntityAttributes,
+                existingTrackedEntityAttributeUids, updatedTrackedEntityAttributes,
                 persistedTrackedEntityAttributes);
         for (TrackedEntityAttribute trackedEntityAttribute : trackedEntityAttributes) {
             if (trackedEntityAttribute.getOptionSet() != null) {
@@ -124,11 +133,13 @@ public final class TrackedEntityAttributeControllerImpl
 
         // we will have to perform something similar to what happens in AbsController
         List<DbOperation> dbOperations = DbUtils.createOperations(
-                allExistingTrackedEntityAttributes, updatedTrackedEntityAttributes,
+                existingTrackedEntityAttributeUids, updatedTrackedEntityAttributes,
                 persistedTrackedEntityAttributes, identifiableObjectStore);
         transactionManager.transact(dbOperations);
 
         lastUpdatedPreferences.save(ResourceType.TRACKED_ENTITY_ATTRIBUTES,
                 DateType.SERVER, serverTime);
+        lastUpdatedPreferences.save(ResourceType.TRACKED_ENTITY_ATTRIBUTES,
+                DateType.DELETED, serverTime);
     }
 }
\ No newline at end of file
@@ -28,6 +28,7 @@
 
 package org.hisp.dhis.client.sdk.core.user;
 
+import org.hisp.dhis.client.sdk.core.common.controllers.SyncSession;
 import org.hisp.dhis.client.sdk.core.common.controllers.SyncStrategy;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.core.common.utils.ModelUtils;
@@ -46,11 +47,15 @@ public class AssignedOrganisationUnitControllerImpl implements AssignedOrganisat
     // Controllers
     private final OrganisationUnitController organisationUnitController;
 
+    // Utilities
+    private final SyncSession syncSession;
+
     public AssignedOrganisationUnitControllerImpl(
             UserApiClient userApiClient, OrganisationUnitController
-            organisationUnitController) {
+            organisationUnitController, SyncSession syncSession) {
         this.userApiClient = userApiClient;
         this.organisationUnitController = organisationUnitController;
+        this.syncSession = syncSession;
     }
 
     @Override
@@ -60,15 +65,22 @@ public class AssignedOrganisationUnitControllerImpl implements AssignedOrganisat
 
     @Override
     public void sync(SyncStrategy strategy) throws ApiException {
-        UserAccount userAccount = userApiClient.getUserAccount();
+        /* organisation unit controller needs the same user account */
+        syncSession.open();
+        try {
+            UserAccount userAccount = userApiClient.getUserAccount();
 
-        /* get list of assigned organisation units */
-        List<OrganisationUnit> assignedOrganisationUnits = userAccount.getOrganisationUnits();
+            /* get list of assigned organisation units */
+            List<OrganisationUnit> assignedOrganisationUnits =
+                    userAccount.getOrganisationUnits();
 
-        /* convert them to set of ids */
-        Set<String> ids = ModelUtils.toUidSet(assignedOrganisationUnits);
+            /* convert them to set of ids */
+            Set<String> ids = ModelUtils.toUidSet(assignedOrganisationUnits);
 
-        /* get them through program controller */
-        organisationUnitController.pull(strategy, ids);
+            /* get them through program controller */
+            organisationUnitController.pull(strategy, ids);
+        } finally {
+            syncSession.close();
+        }
     }
 }
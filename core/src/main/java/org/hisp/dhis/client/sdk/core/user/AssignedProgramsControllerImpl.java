@@ -28,6 +28,7 @@
 
 package org.hisp.dhis.client.sdk.core.user;
 
+import org.hisp.dhis.client.sdk.core.common.controllers.SyncSession;
 import org.hisp.dhis.client.sdk.core.common.controllers.SyncStrategy;
 import org.hisp.dhis.client.sdk.core.common.network.ApiException;
 import org.hisp.dhis.client.sdk.core.common.utils.ModelUtils;
@@ -49,10 +50,15 @@ public class AssignedProgramsControllerImpl implements AssignedProgramsControlle
     /* Api clients */
     private final UserApiClient userApiClient;
 
+    /* Utilities */
+    private final SyncSession syncSession;
+
     public AssignedProgramsControllerImpl(ProgramController programController,
-                                          UserApiClient userApiClient) {
+                                          UserApiClient userApiClient,
+                                          SyncSession syncSession) {
         this.userApiClient = userApiClient;
         this.programController = programController;
+        this.syncSession = syncSession;
     }
 
     @Override
@@ -62,15 +68,21 @@ public class AssignedProgramsControllerImpl implements AssignedProgramsControlle
 
     @Override
     public void sync(SyncStrategy strategy) throws ApiException {
-        UserAccount userAccount = userApiClient.getUserAccount();
+        /* program controller needs the same user account */
+        syncSession.open();
+        try {
+            UserAccount userAccount = userApiClient.getUserAccount();
 
-        /* get list of assigned programs */
-        List<Program> assignedPrograms = userAccount.getPrograms();
+            /* get list of assigned programs */
+            List<Program> assignedPrograms = userAccount.getPrograms();
 
-        /* convert them to set of ids */
-        Set<String> ids = ModelUtils.toUidSet(assignedPrograms);
+            /* convert them to set of ids */
+            Set<String> ids = ModelUtils.toUidSet(assignedPrograms);
 
-        /* get them through program controller */
-        programController.pull(strategy, ids);
+            /* get them through program controller */
+            programController.pull(strategy, ids);
+        } finally {
+            syncSession.close();
+        }
     }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.core.user;
+
+import org.hisp.dhis.client.sdk.core.common.controllers.SyncSession;
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
+import org.hisp.dhis.client.sdk.models.user.UserAccount;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Downloads user account only once per sync session, even if it
+ * is requested by several controllers at the same time. The same
+ * account is handed out to all of them, so it must not be modified.
+ */
+public final class SyncSessionUserApiClient implements UserApiClient {
+    private final UserApiClient userApiClient;
+    private final SyncSession syncSession;
+
+    public SyncSessionUserApiClient(UserApiClient userApiClient, SyncSession syncSession) {
+        this.userApiClient = userApiClient;
+        this.syncSession = syncSession;
+    }
+
+    @Override
+    public UserAccount getUserAccount() throws ApiException {
+        return syncSession.get(ResourceType.USERS, new Callable<UserAccount>() {
+
+            @Override
+            public UserAccount call() throws ApiException {
+                return userApiClient.getUserAccount();
+            }
+        });
+    }
+
+    @Override
+    public void postUserAccount(UserAccount userAccount) throws ApiException {
+        try {
+            userApiClient.postUserAccount(userAccount);
+        } finally {
+            // account downloaded while it was being posted can be outdated as well
+            syncSession.invalidate(ResourceType.USERS);
+        }
+    }
+}
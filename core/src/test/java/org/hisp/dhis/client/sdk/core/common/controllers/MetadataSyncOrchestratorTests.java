@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.client.sdk.core.common.controllers;
+
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.core.common.persistence.IdentifiableObjectStore;
+import org.hisp.dhis.client.sdk.core.common.preferences.LastUpdatedPreferences;
+import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MetadataSyncOrchestratorTests {
+    private List<String> events;
+    private LastUpdatedPreferences lastUpdatedPreferences;
+    private MetadataSyncOrchestrator orchestrator;
+
+    @Before
+    public void setUp() {
+        events = Collections.synchronizedList(new ArrayList<String>());
+        lastUpdatedPreferences = mock(LastUpdatedPreferences.class);
+    }
+
+    @After
+    public void tearDown() {
+        if (orchestrator != null) {
+            orchestrator.shutdown();
+        }
+    }
+
+    @Test
+    public void dependenciesArePulledBeforeDependents() {
+        orchestrator = new MetadataSyncOrchestrator.Builder()
+                .lastUpdatedPreferences(lastUpdatedPreferences)
+                .resource(ResourceType.PROGRAM_STAGE_SECTIONS,
+                        recordingController(ResourceType.PROGRAM_STAGE_SECTIONS),
+                        ResourceType.PROGRAM_STAGES)
+                .resource(ResourceType.PROGRAM_STAGES,
+                        recordingController(ResourceType.PROGRAM_STAGES), ResourceType.PROGRAMS)
+                .resource(ResourceType.PROGRAMS, recordingController(ResourceType.PROGRAMS))
+                .build();
+
+        orchestrator.sync(SyncStrategy.DEFAULT);
+
+        assertEquals(6, events.size());
+        assertTrue(events.indexOf("end " + ResourceType.PROGRAMS) <
+                events.indexOf("start " + ResourceType.PROGRAM_STAGES));
+        assertTrue(events.indexOf("end " + ResourceType.PROGRAM_STAGES) <
+                events.indexOf("start " + ResourceType.PROGRAM_STAGE_SECTIONS));
+    }
+
+    @Test
+    public void independentResourcesArePulledInParallel() {
+        final CountDownLatch latch = new CountDownLatch(2);
+        Answer<Void> awaitOther = new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                latch.countDown();
+                if (!latch.await(5, TimeUnit.SECONDS)) {
+                    throw new AssertionError("Resources are not pulled in parallel");
+                }
+                return null;
+            }
+        };
+
+        IdentifiableController<?> programController = mock(IdentifiableController.class);
+        doAnswer(awaitOther).when(programController).pull(SyncStrategy.DEFAULT);
+        IdentifiableController<?> optionSetController = mock(IdentifiableController.class);
+        doAnswer(awaitOther).when(optionSetController).pull(SyncStrategy.DEFAULT);
+
+        orchestrator = new MetadataSyncOrchestrator.Builder()
+                .lastUpdatedPreferences(lastUpdatedPreferences)
+                .resource(ResourceType.PROGRAMS, programController)
+                .resource(ResourceType.OPTION_SETS, optionSetController)
+                .maxConcurrency(2)
+                .build();
+
+        orchestrator.sync(SyncStrategy.DEFAULT);
+
+        assertEquals(0, latch.getCount());
+    }
+
+    @Test
+    public void dependentsAreSkippedAfterFailure() {
+        ApiException apiException = ApiException.unexpectedError(null, new Exception());
+        IdentifiableController<?> programController = mock(IdentifiableController.class);
+        doAnswer(throwing(apiException)).when(programController).pull(SyncStrategy.DEFAULT);
+        IdentifiableController<?> programStageController = mock(IdentifiableController.class);
+        IdentifiableController<?> optionSetController = mock(IdentifiableController.class);
+
+        orchestrator = new MetadataSyncOrchestrator.Builder()
+                .lastUpdatedPreferences(lastUpdatedPreferences)
+                .resource(ResourceType.PROGRAMS, programController)
+                .resource(ResourceType.PROGRAM_STAGES, programStageController,
+                        ResourceType.PROGRAMS)
+                .resource(ResourceType.OPTION_SETS, optionSetController)
+                .build();
+
+        try {
+            orchestrator.sync(SyncStrategy.DEFAULT);
+            fail("Failure of a resource has to be rethrown");
+        } catch (ApiException exception) {
+            assertSame(apiException, exception);
+        }
+
+        verify(programStageController, never()).pull(SyncStrategy.DEFAULT);
+        verify(optionSetController).pull(SyncStrategy.DEFAULT);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void nestedPullsOfPulledResourcesAreSkipped() {
+        // data elements referenced by dependents are never stored
+        IdentifiableObjectStore<DataElement> store = mock(IdentifiableObjectStore.class);
+        when(store.areStored(anySetOf(String.class))).thenReturn(false);
+        final CountingController dataElementController =
+                new CountingController(store, lastUpdatedPreferences);
+
+        Answer<Void> pullDataElements = new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                dataElementController.pull(SyncStrategy.DEFAULT,
+                        Collections.singleton("dataElementUid"));
+                return null;
+            }
+        };
+
+        IdentifiableController<?> programStageDataElementController =
+                mock(IdentifiableController.class);
+        doAnswer(pullDataElements).when(programStageDataElementController)
+                .pull(SyncStrategy.DEFAULT);
+        IdentifiableController<?> programRuleVariableController =
+                mock(IdentifiableController.class);
+        doAnswer(pullDataElements).when(programRuleVariableController)
+                .pull(SyncStrategy.DEFAULT);
+
+        orchestrator = new MetadataSyncOrchestrator.Builder()
+                .lastUpdatedPreferences(lastUpdatedPreferences)
+                .resource(ResourceType.DATA_ELEMENTS, dataElementController)
+                .resource(ResourceType.PROGRAM_STAGE_DATA_ELEMENTS,
+                        programStageDataElementController, ResourceType.DATA_ELEMENTS)
+                .resource(ResourceType.PROGRAM_RULE_VARIABLES,
+                        programRuleVariableController, ResourceType.DATA_ELEMENTS)
+                .build();
+
+        orchestrator.sync(SyncStrategy.DEFAULT);
+        assertEquals(1, dataElementController.synchronizeCount.get());
+
+        // outside of synchronization, controller pulls missing data elements again
+        dataElementController.pull(SyncStrategy.DEFAULT, Collections.singleton("dataElementUid"));
+        assertEquals(2, dataElementController.synchronizeCount.get());
+    }
+
+    private IdentifiableController<?> recordingController(final ResourceType resourceType) {
+        IdentifiableController<?> controller = mock(IdentifiableController.class);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                events.add("start " + resourceType);
+                events.add("end " + resourceType);
+                return null;
+            }
+        }).when(controller).pull(SyncStrategy.DEFAULT);
+        return controller;
+    }
+
+    private static Answer<Void> throwing(final ApiException apiException) {
+        return new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                throw apiException;
+            }
+        };
+    }
+
+    private static class CountingController extends AbsSyncStrategyController<DataElement> {
+        final AtomicInteger synchronizeCount = new AtomicInteger();
+
+        CountingController(IdentifiableObjectStore<DataElement> store,
+                           LastUpdatedPreferences lastUpdatedPreferences) {
+            super(ResourceType.DATA_ELEMENTS, store, lastUpdatedPreferences);
+        }
+
+        @Override
+        protected void synchronize(SyncStrategy strategy, Set<String> uids) {
+            synchronizeCount.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.client.sdk.core.common.controllers;
+
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SyncSessionTests {
+    private SyncSession syncSession;
+    private AtomicInteger loadCount;
+
+    @Before
+    public void setUp() {
+        syncSession = new SyncSession();
+        loadCount = new AtomicInteger();
+    }
+
+    @Test
+    public void resourcesAreLoadedOnEachCallOutsideOfSession() {
+        syncSession.get(ResourceType.USERS, countingLoader());
+        syncSession.get(ResourceType.USERS, countingLoader());
+
+        assertEquals(2, loadCount.get());
+    }
+
+    @Test
+    public void resourcesAreLoadedOncePerSession() {
+        syncSession.open();
+        Object first = syncSession.get(ResourceType.USERS, countingLoader());
+        Object second = syncSession.get(ResourceType.USERS, countingLoader());
+        syncSession.close();
+
+        assertSame(first, second);
+        assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    public void concurrentCallersWaitForRequestInFlight() throws Exception {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<Object> blockingLoader = new Callable<Object>() {
+
+            @Override
+            public Object call() throws Exception {
+                loadCount.incrementAndGet();
+                loading.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return new Object();
+            }
+        };
+        Callable<Object> caller = new Callable<Object>() {
+
+            @Override
+            public Object call() {
+                return syncSession.get(ResourceType.SYSTEM_INFO, blockingLoader);
+            }
+        };
+
+        syncSession.open();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> first = executor.submit(caller);
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Future<Object> second = executor.submit(caller);
+            release.countDown();
+
+            assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loadCount.get());
+        } finally {
+            executor.shutdownNow();
+            syncSession.close();
+        }
+    }
+
+    @Test
+    public void failedRequestsAreRetriedByNextCaller() {
+        final ApiException apiException = ApiException.unexpectedError(null, new Exception());
+
+        syncSession.open();
+        try {
+            syncSession.get(ResourceType.USERS, new Callable<Object>() {
+
+                @Override
+                public Object call() {
+                    throw apiException;
+                }
+            });
+            fail("Failure of loader has to be rethrown");
+        } catch (ApiException exception) {
+            assertSame(apiException, exception);
+        }
+
+        syncSession.get(ResourceType.USERS, countingLoader());
+        syncSession.close();
+
+        assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    public void resourcesAreForgottenWhenOutermostSessionIsClosed() {
+        syncSession.open();
+        syncSession.open();
+        syncSession.get(ResourceType.USERS, countingLoader());
+        syncSession.setPulled(ResourceType.PROGRAMS);
+
+        syncSession.close();
+        assertTrue(syncSession.isOpen());
+        syncSession.get(ResourceType.USERS, countingLoader());
+        assertTrue(syncSession.isPulled(ResourceType.PROGRAMS));
+        assertEquals(1, loadCount.get());
+
+        syncSession.close();
+        assertFalse(syncSession.isOpen());
+        assertFalse(syncSession.isPulled(ResourceType.PROGRAMS));
+
+        syncSession.open();
+        syncSession.get(ResourceType.USERS, countingLoader());
+        syncSession.close();
+        assertEquals(2, loadCount.get());
+    }
+
+    @Test
+    public void invalidatedResourcesAreLoadedAgain() {
+        syncSession.open();
+        syncSession.get(ResourceType.USERS, countingLoader());
+        syncSession.invalidate(ResourceType.USERS);
+        syncSession.get(ResourceType.USERS, countingLoader());
+        syncSession.close();
+
+        assertEquals(2, loadCount.get());
+    }
+
+    @Test
+    public void pulledResourcesAreNotRecordedOutsideOfSession() {
+        syncSession.setPulled(ResourceType.PROGRAMS);
+
+        assertFalse(syncSession.isPulled(ResourceType.PROGRAMS));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closingSessionWhichIsNotOpenFails() {
+        syncSession.close();
+    }
+
+    private Callable<Object> countingLoader() {
+        return new Callable<Object>() {
+
+            @Override
+            public Object call() {
+                loadCount.incrementAndGet();
+                return new Object();
+            }
+        };
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.client.sdk.core.common.persistence;
+
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class DbUtilsTests {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void persistedItemsMissingOnServerAreDeleted() {
+        List<DbOperation> operations = DbUtils.createOperations(
+                new HashSet<>(Arrays.asList("a")), Collections.<DataElement>emptyList(),
+                Arrays.asList(dataElement("a", 1), dataElement("b", 2)), mock(Store.class));
+
+        assertEquals(1, operations.size());
+        assertEquals(DbAction.DELETE, operations.get(0).getAction());
+        assertEquals("b", ((DataElement) operations.get(0).getModel()).getUId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void downloadedItemsAreNotDeleted() {
+        // b has been deleted and imported again with the same uid
+        DataElement updatedItem = dataElement("b", 0);
+        List<DbOperation> operations = DbUtils.createOperations(
+                new HashSet<>(Arrays.asList("a")), Arrays.asList(updatedItem),
+                Arrays.asList(dataElement("a", 1), dataElement("b", 2)), mock(Store.class));
+
+        assertEquals(1, operations.size());
+        assertEquals(DbAction.UPDATE, operations.get(0).getAction());
+        assertEquals(2, updatedItem.getId());
+    }
+
+    private static DataElement dataElement(String uid, long id) {
+        DataElement dataElement = new DataElement();
+        dataElement.setUId(uid);
+        dataElement.setId(id);
+        return dataElement;
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.core.event;
+
+import org.hisp.dhis.client.sdk.core.common.Fields;
+import org.hisp.dhis.client.sdk.core.common.StateStore;
+import org.hisp.dhis.client.sdk.core.common.controllers.SyncStrategy;
+import org.hisp.dhis.client.sdk.core.common.network.ApiException;
+import org.hisp.dhis.client.sdk.core.common.network.ApiMessage;
+import org.hisp.dhis.client.sdk.core.common.network.ApiResponse;
+import org.hisp.dhis.client.sdk.core.common.network.PageConsumer;
+import org.hisp.dhis.client.sdk.core.common.persistence.DbAction;
+import org.hisp.dhis.client.sdk.core.common.persistence.DbOperation;
+import org.hisp.dhis.client.sdk.core.common.persistence.TransactionManager;
+import org.hisp.dhis.client.sdk.core.common.preferences.LastUpdatedPreferences;
+import org.hisp.dhis.client.sdk.core.systeminfo.SystemInfoController;
+import org.hisp.dhis.client.sdk.models.common.SystemInfo;
+import org.hisp.dhis.client.sdk.models.common.importsummary.ImportSummary;
+import org.hisp.dhis.client.sdk.models.common.state.Action;
+import org.hisp.dhis.client.sdk.models.common.state.State;
+import org.hisp.dhis.client.sdk.models.event.Event;
+import org.hisp.dhis.client.sdk.utils.Logger;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EventControllerTests {
+    private static final Set<String> UIDS = new HashSet<>(Arrays.asList("e1", "e2", "e3"));
+    private static final Set<String> PUSHED_UIDS = new HashSet<>(
+            Arrays.asList("e1", "e2", "e3", "e4", "e5"));
+
+    private EventApiClient apiClient;
+    private EventStore store;
+    private StateStore stateStore;
+    private List<List<DbOperation>> transactions;
+    private List<List<String>> postedBatches;
+    private AtomicInteger completedBatches;
+    private AtomicInteger maxBatchesInFlight;
+    private EventController controller;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        SystemInfo systemInfo = new SystemInfo();
+        systemInfo.setServerDate(DateTime.now());
+        SystemInfoController systemInfoController = mock(SystemInfoController.class);
+        when(systemInfoController.getSystemInfo()).thenReturn(systemInfo);
+
+        apiClient = mock(EventApiClient.class);
+        store = mock(EventStore.class);
+        stateStore = mock(StateStore.class);
+
+        transactions = Collections.synchronizedList(new ArrayList<List<DbOperation>>());
+        TransactionManager transactionManager = mock(TransactionManager.class);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                transactions.add(new ArrayList<>(
+                        (Collection<DbOperation>) invocation.getArguments()[0]));
+                return null;
+            }
+        }).when(transactionManager).transact(any(Collection.class));
+
+        postedBatches = Collections.synchronizedList(new ArrayList<List<String>>());
+        completedBatches = new AtomicInteger();
+        maxBatchesInFlight = new AtomicInteger();
+
+        // batches are loaded right before they are sent
+        final AtomicInteger loadedBatches = new AtomicInteger();
+        when(store.queryByUids(anySetOf(String.class))).thenAnswer(new Answer<List<Event>>() {
+
+            @Override
+            public List<Event> answer(InvocationOnMock invocation) {
+                int batchesInFlight = loadedBatches.incrementAndGet() - completedBatches.get();
+                maxBatchesInFlight.set(Math.max(maxBatchesInFlight.get(), batchesInFlight));
+
+                Set<String> uids = (Set<String>) invocation.getArguments()[0];
+                return events(uids.toArray(new String[uids.size()]));
+            }
+        });
+
+        controller = new EventControllerImpl(systemInfoController, apiClient,
+                mock(LastUpdatedPreferences.class), store, stateStore,
+                transactionManager, mock(Logger.class), 2, 2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void pulledEventsArePersistedBatchByBatch() {
+        // e1 and e2 were downloaded before, e2 is removed on server since then
+        when(stateStore.queryModelsWithActions(eq(Event.class), anySetOf(String.class),
+                Matchers.<Action>anyVararg())).thenReturn(events("e1", "e2"));
+        when(apiClient.getEvents(eq(Fields.BASIC), any(DateTime.class),
+                anySetOf(String.class))).thenReturn(events("e1", "e3"));
+
+        // server sends events in two batches
+        final List<Integer> transactionsPerBatch = new ArrayList<>();
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                PageConsumer<Event> consumer = (PageConsumer<Event>) invocation.getArguments()[3];
+                consumer.consume(events("e1"));
+                transactionsPerBatch.add(transactions.size());
+                consumer.consume(events("e3"));
+                transactionsPerBatch.add(transactions.size());
+                return null;
+            }
+        }).when(apiClient).getEvents(eq(Fields.ALL), any(DateTime.class),
+                anySetOf(String.class), any(PageConsumer.class));
+
+        controller.pull(SyncStrategy.DEFAULT, UIDS);
+
+        // each batch is persisted before the next one is read
+        verify(apiClient, never()).getEvents(eq(Fields.ALL), any(DateTime.class),
+                anySetOf(String.class));
+        assertEquals(Arrays.asList(1, 2), transactionsPerBatch);
+
+        // one transaction per batch and one for removed events
+        assertEquals(3, transactions.size());
+        assertOperations(transactions.get(0), DbAction.UPDATE, "e1");
+        assertOperations(transactions.get(1), DbAction.INSERT, "e3");
+        assertOperations(transactions.get(2), DbAction.DELETE, "e2");
+    }
+
+    @Test
+    public void pushedEventsAreSentInBoundedBatches() {
+        when(stateStore.queryModelsWithActions(eq(Event.class), anySetOf(String.class),
+                eq(Action.TO_POST), eq(Action.TO_UPDATE)))
+                .thenReturn(events("e1", "e2", "e3", "e4", "e5"));
+        when(apiClient.postEvents(Matchers.<List<Event>>any()))
+                .thenAnswer(new PostEventsAnswer(-1));
+
+        controller.push(PUSHED_UIDS);
+
+        // five events are sliced into batches of two, and each event is sent once
+        assertEquals(3, postedBatches.size());
+        Set<String> postedUids = new HashSet<>();
+        for (List<String> batch : postedBatches) {
+            assertTrue(batch.size() <= 2);
+            postedUids.addAll(batch);
+        }
+        assertEquals(PUSHED_UIDS, postedUids);
+
+        // next batch is not loaded before one of two running batches is completed
+        assertEquals(2, maxBatchesInFlight.get());
+
+        // states of each batch are saved in their own transaction
+        assertEquals(3, transactions.size());
+        Set<Set<String>> savedBatches = new HashSet<>();
+        for (List<DbOperation> transaction : transactions) {
+            assertStates(transaction, Action.SYNCED, uidsOfStates(transaction));
+            savedBatches.add(new HashSet<>(uidsOfStates(transaction)));
+        }
+        for (List<String> batch : postedBatches) {
+            assertTrue(savedBatches.contains(new HashSet<>(batch)));
+        }
+    }
+
+    @Test
+    public void sendingStopsAfterFirstFailedBatch() {
+        when(stateStore.queryModelsWithActions(eq(Event.class), anySetOf(String.class),
+                eq(Action.TO_POST), eq(Action.TO_UPDATE)))
+                .thenReturn(events("e1", "e2", "e3", "e4", "e5"));
+        when(apiClient.postEvents(Matchers.<List<Event>>any()))
+                .thenAnswer(new PostEventsAnswer(0));
+
+        try {
+            controller.push(PUSHED_UIDS);
+            fail("Failure of batch has to be propagated");
+        } catch (ApiException apiException) {
+            assertEquals(ApiException.Kind.NETWORK, apiException.getKind());
+        }
+
+        // batch which was in flight is completed, remaining batch is not sent
+        assertEquals(2, postedBatches.size());
+        assertEquals(1, transactions.size());
+
+        // events of failed batch keep their state and are sent on next push
+        List<String> failedBatch = postedBatches.get(0);
+        List<String> completedBatch = postedBatches.get(1);
+        assertStates(transactions.get(0), Action.SYNCED, completedBatch);
+        for (String uid : failedBatch) {
+            assertFalse(uidsOfStates(transactions.get(0)).contains(uid));
+        }
+        verify(stateStore, never()).saveActionForModel(any(Event.class), any(Action.class));
+    }
+
+    /* answers with successful import summaries, except for the failing request */
+    private class PostEventsAnswer implements Answer<ApiMessage> {
+        private final int failingRequest;
+
+        PostEventsAnswer(int failingRequest) {
+            this.failingRequest = failingRequest;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ApiMessage answer(InvocationOnMock invocation) throws Exception {
+            List<Event> events = (List<Event>) invocation.getArguments()[0];
+            List<String> uids = new ArrayList<>();
+            for (Event event : events) {
+                uids.add(event.getUId());
+            }
+
+            int request;
+            synchronized (postedBatches) {
+                request = postedBatches.size();
+                postedBatches.add(uids);
+            }
+
+            try {
+                if (request == failingRequest) {
+                    throw ApiException.networkError(null, new IOException("Connection reset"));
+                }
+
+                // keeps request running, so that other requests can be sent meanwhile
+                Thread.sleep(100);
+                return apiMessage(uids);
+            } finally {
+                completedBatches.incrementAndGet();
+            }
+        }
+    }
+
+    private static ApiMessage apiMessage(List<String> uids) {
+        List<ImportSummary> importSummaries = new ArrayList<>();
+        for (String uid : uids) {
+            ImportSummary importSummary = mock(ImportSummary.class);
+            when(importSummary.getReference()).thenReturn(uid);
+            when(importSummary.getStatus()).thenReturn(ImportSummary.Status.SUCCESS);
+            importSummaries.add(importSummary);
+        }
+
+        ApiResponse apiResponse = mock(ApiResponse.class);
+        when(apiResponse.getImportSummaries()).thenReturn(importSummaries);
+        ApiMessage apiMessage = mock(ApiMessage.class);
+        when(apiMessage.getResponse()).thenReturn(apiResponse);
+        return apiMessage;
+    }
+
+    private static void assertStates(List<DbOperation> operations,
+                                     Action action, List<String> uids) {
+        assertEquals(uids.size(), operations.size());
+        for (DbOperation operation : operations) {
+            assertEquals(DbAction.SAVE, operation.getAction());
+            assertSame(Event.class, ((State) operation.getModel()).getItemType());
+            assertEquals(action, ((State) operation.getModel()).getAction());
+        }
+        assertEquals(new HashSet<>(uids), new HashSet<>(uidsOfStates(operations)));
+    }
+
+    private static List<String> uidsOfStates(List<DbOperation> operations) {
+        List<String> uids = new ArrayList<>();
+        for (DbOperation operation : operations) {
+            long itemId = ((State) operation.getModel()).getItemId();
+            for (String uid : PUSHED_UIDS) {
+                if (uid.hashCode() == itemId) {
+                    uids.add(uid);
+                }
+            }
+        }
+        return uids;
+    }
+
+    private static void assertOperations(List<DbOperation> operations, Object... expected) {
+        assertEquals(expected.length / 2, operations.size());
+        for (int i = 0; i < operations.size(); i++) {
+            assertEquals(expected[2 * i], operations.get(i).getAction());
+            assertEquals(expected[2 * i + 1],
+                    ((Event) operations.get(i).getModel()).getUId());
+        }
+    }
+
+    private static List<Event> events(String... uids) {
+        List<Event> events = new ArrayList<>();
+        for (String uid : uids) {
+            Event event = new Event();
+            event.setUId(uid);
+            event.setId(uid.hashCode());
+            events.add(event);
+        }
+        return events;
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.core.metadata;
+
+import org.hisp.dhis.client.sdk.core.common.network.PageConsumer;
+import org.hisp.dhis.client.sdk.core.common.persistence.DbAction;
+import org.hisp.dhis.client.sdk.core.common.persistence.DbOperation;
+import org.hisp.dhis.client.sdk.core.common.persistence.PersistenceModule;
+import org.hisp.dhis.client.sdk.core.common.persistence.TransactionManager;
+import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
+import org.hisp.dhis.client.sdk.core.dataelement.DataElementStore;
+import org.hisp.dhis.client.sdk.core.optionset.OptionSetStore;
+import org.hisp.dhis.client.sdk.core.optionset.OptionStore;
+import org.hisp.dhis.client.sdk.core.program.ProgramIndicatorStore;
+import org.hisp.dhis.client.sdk.core.program.ProgramRuleActionStore;
+import org.hisp.dhis.client.sdk.core.program.ProgramRuleStore;
+import org.hisp.dhis.client.sdk.core.program.ProgramRuleVariableStore;
+import org.hisp.dhis.client.sdk.core.program.ProgramStageDataElementStore;
+import org.hisp.dhis.client.sdk.core.program.ProgramStageSectionStore;
+import org.hisp.dhis.client.sdk.core.program.ProgramStageStore;
+import org.hisp.dhis.client.sdk.core.program.ProgramStore;
+import org.hisp.dhis.client.sdk.core.trackedentity.TrackedEntityAttributeStore;
+import org.hisp.dhis.client.sdk.core.user.UserApiClient;
+import org.hisp.dhis.client.sdk.models.common.base.IdentifiableObject;
+import org.hisp.dhis.client.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.client.sdk.models.program.Program;
+import org.hisp.dhis.client.sdk.models.program.ProgramRule;
+import org.hisp.dhis.client.sdk.models.program.ProgramRuleAction;
+import org.hisp.dhis.client.sdk.models.program.ProgramStage;
+import org.hisp.dhis.client.sdk.models.program.ProgramStageSection;
+import org.hisp.dhis.client.sdk.models.user.UserAccount;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MetadataControllerTests {
+    private MetadataApiClient metadataApiClient;
+    private UserAccount userAccount;
+    private TransactionManager transactionManager;
+    private List<List<DbOperation>> transactions;
+    private MetadataController controller;
+
+    /* server sends programs and stages of the given batches */
+    private List<Program> downloadedPrograms;
+    private List<ProgramStage> downloadedStages;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        userAccount = mock(UserAccount.class);
+        when(userAccount.getPrograms()).thenReturn(Arrays.asList(program("p1", true)));
+        UserApiClient userApiClient = mock(UserApiClient.class);
+        when(userApiClient.getUserAccount()).thenReturn(userAccount);
+
+        // p1 is assigned, p2 is persisted by program controller, p3 is not assigned anymore
+        Program p1 = program("p1", true);
+        Program p2 = program("p2", false);
+        ProgramStage s1 = stage("s1", p1);
+        ProgramStage s2 = stage("s2", p2);
+        ProgramRule r1 = rule("r1", p1);
+        ProgramRule r2 = rule("r2", p2);
+
+        PersistenceModule persistenceModule = mock(PersistenceModule.class);
+        ProgramStore programStore = mock(ProgramStore.class);
+        when(programStore.queryAll()).thenReturn(Arrays.asList(p1, p2, program("p3", true)));
+        ProgramStageStore stageStore = mock(ProgramStageStore.class);
+        when(stageStore.queryAll()).thenReturn(Arrays.asList(s1, s2));
+        ProgramStageSectionStore sectionStore = mock(ProgramStageSectionStore.class);
+        when(sectionStore.queryAll()).thenReturn(
+                Arrays.asList(section("sec1", s1), section("sec2", s2)));
+        ProgramRuleStore ruleStore = mock(ProgramRuleStore.class);
+        when(ruleStore.queryAll()).thenReturn(Arrays.asList(r1, r2));
+        ProgramRuleActionStore actionStore = mock(ProgramRuleActionStore.class);
+        when(actionStore.queryAll()).thenReturn(
+                Arrays.asList(action("a1", r1), action("a2", r2)));
+        DataElementStore dataElementStore = mock(DataElementStore.class);
+        when(dataElementStore.queryAll()).thenReturn(
+                Arrays.asList(identifiable(new DataElement(), "de1")));
+
+        when(persistenceModule.getProgramStore()).thenReturn(programStore);
+        when(persistenceModule.getProgramStageStore()).thenReturn(stageStore);
+        when(persistenceModule.getProgramStageSectionStore()).thenReturn(sectionStore);
+        when(persistenceModule.getProgramStageDataElementStore())
+                .thenReturn(mock(ProgramStageDataElementStore.class));
+        when(persistenceModule.getProgramRuleStore()).thenReturn(ruleStore);
+        when(persistenceModule.getProgramRuleActionStore()).thenReturn(actionStore);
+        when(persistenceModule.getProgramRuleVariableStore())
+                .thenReturn(mock(ProgramRuleVariableStore.class));
+        when(persistenceModule.getProgramIndicatorStore())
+                .thenReturn(mock(ProgramIndicatorStore.class));
+        when(persistenceModule.getDataElementStore()).thenReturn(dataElementStore);
+        when(persistenceModule.getOptionSetStore()).thenReturn(mock(OptionSetStore.class));
+        when(persistenceModule.getOptionStore()).thenReturn(mock(OptionStore.class));
+        when(persistenceModule.getTrackedEntityAttributeStore())
+                .thenReturn(mock(TrackedEntityAttributeStore.class));
+
+        transactions = new ArrayList<>();
+        transactionManager = mock(TransactionManager.class);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                transactions.add(new ArrayList<>(
+                        (Collection<DbOperation>) invocation.getArguments()[0]));
+                return null;
+            }
+        }).when(transactionManager).transact(any(Collection.class));
+        when(persistenceModule.getTransactionManager()).thenReturn(transactionManager);
+
+        // s1, r1 and its action were removed from p1 on server
+        downloadedPrograms = Arrays.asList(program("p1", false));
+        downloadedStages = Arrays.asList(stage("s3", program("p1", false)));
+        metadataApiClient = mock(MetadataApiClient.class);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                Map<ResourceType, PageConsumer<?>> consumers =
+                        (Map<ResourceType, PageConsumer<?>>) invocation.getArguments()[1];
+                if (!downloadedPrograms.isEmpty()) {
+                    ((PageConsumer<Program>) consumers.get(ResourceType.PROGRAMS))
+                            .consume(downloadedPrograms);
+                }
+                if (!downloadedStages.isEmpty()) {
+                    ((PageConsumer<ProgramStage>) consumers.get(ResourceType.PROGRAM_STAGES))
+                            .consume(downloadedStages);
+                }
+                return null;
+            }
+        }).when(metadataApiClient).getMetadata(anySetOf(String.class),
+                any(Map.class));
+
+        controller = new MetadataControllerImpl(metadataApiClient, userApiClient,
+                persistenceModule);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void nothingChangesWithoutAssignedPrograms() {
+        when(userAccount.getPrograms()).thenReturn(new ArrayList<Program>());
+
+        controller.pull();
+
+        verify(metadataApiClient, never()).getMetadata(anySetOf(String.class),
+                any(Map.class));
+        verify(transactionManager, never()).transact(any(Collection.class));
+    }
+
+    @Test
+    public void onlyItemsOfAssignedProgramsAreRemoved() {
+        controller.pull();
+
+        // one transaction per batch, and one for removed and related items
+        assertEquals(3, transactions.size());
+        assertEquals(DbAction.UPDATE, transactions.get(0).get(0).getAction());
+        assertTrue(((Program) transactions.get(0).get(0).getModel()).isAssignedToUser());
+        assertEquals(DbAction.INSERT, transactions.get(1).get(0).getAction());
+
+        List<DbOperation> operations = transactions.get(2);
+        assertEquals(new HashSet<>(Arrays.asList("s1", "sec1", "r1", "a1")),
+                getUids(operations, DbAction.DELETE));
+
+        // program which is not assigned anymore is kept, but marked as such
+        assertEquals(new HashSet<>(Arrays.asList("p3")), getUids(operations, DbAction.UPDATE));
+        for (DbOperation operation : operations) {
+            if (operation.getAction() == DbAction.UPDATE) {
+                assertFalse(((Program) operation.getModel()).isAssignedToUser());
+            }
+        }
+    }
+
+    @Test
+    public void nothingIsRemovedWithoutDownloadedPrograms() {
+        downloadedPrograms = new ArrayList<>();
+        downloadedStages = new ArrayList<>();
+
+        controller.pull();
+
+        assertEquals(1, transactions.size());
+        assertTrue(getUids(transactions.get(0), DbAction.DELETE).isEmpty());
+    }
+
+    private static Set<String> getUids(List<DbOperation> operations, DbAction action) {
+        Set<String> uids = new HashSet<>();
+        for (DbOperation operation : operations) {
+            if (operation.getAction() == action) {
+                uids.add(((IdentifiableObject) operation.getModel()).getUId());
+            }
+        }
+        return uids;
+    }
+
+    private static <T extends IdentifiableObject> T identifiable(T item, String uid) {
+        item.setUId(uid);
+        return item;
+    }
+
+    private static Program program(String uid, boolean assignedToUser) {
+        Program program = identifiable(new Program(), uid);
+        program.setIsAssignedToUser(assignedToUser);
+        return program;
+    }
+
+    private static ProgramStage stage(String uid, Program program) {
+        ProgramStage stage = identifiable(new ProgramStage(), uid);
+        stage.setProgram(program);
+        return stage;
+    }
+
+    private static ProgramStageSection section(String uid, ProgramStage stage) {
+        ProgramStageSection section = identifiable(new ProgramStageSection(), uid);
+        section.setProgramStage(stage);
+        return section;
+    }
+
+    private static ProgramRule rule(String uid, Program program) {
+        ProgramRule rule = identifiable(new ProgramRule(), uid);
+        rule.setProgram(program);
+        return rule;
+    }
+
+    private static ProgramRuleAction action(String uid, ProgramRule rule) {
+        ProgramRuleAction action = identifiable(new ProgramRuleAction(), uid);
+        action.setProgramRule(rule);
+        return action;
+    }
+}
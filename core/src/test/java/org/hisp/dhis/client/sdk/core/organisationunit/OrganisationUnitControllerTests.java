@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.client.sdk.core.organisationunit;
+
+import org.hisp.dhis.client.sdk.core.common.Fields;
+import org.hisp.dhis.client.sdk.core.common.controllers.SyncStrategy;
+import org.hisp.dhis.client.sdk.core.common.network.PageConsumer;
+import org.hisp.dhis.client.sdk.core.common.persistence.DbAction;
+import org.hisp.dhis.client.sdk.core.common.persistence.DbOperation;
+import org.hisp.dhis.client.sdk.core.common.persistence.TransactionManager;
+import org.hisp.dhis.client.sdk.core.common.preferences.LastUpdatedPreferences;
+import org.hisp.dhis.client.sdk.core.common.preferences.ResourceType;
+import org.hisp.dhis.client.sdk.core.deletedobject.DeletedObjectController;
+import org.hisp.dhis.client.sdk.core.systeminfo.SystemInfoController;
+import org.hisp.dhis.client.sdk.core.user.UserApiClient;
+import org.hisp.dhis.client.sdk.models.common.SystemInfo;
+import org.hisp.dhis.client.sdk.models.organisationunit.OrganisationUnit;
+import org.hisp.dhis.client.sdk.models.user.UserAccount;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OrganisationUnitControllerTests {
+    private static final Set<String> PERSISTED_UIDS =
+            new HashSet<>(Arrays.asList("ou1", "ou2", "ou3"));
+
+    private OrganisationUnitApiClient apiClient;
+    private OrganisationUnitStore store;
+    private DeletedObjectController deletedObjectController;
+    private List<List<DbOperation>> transactions;
+    private List<Set<String>> queriedUids;
+    private OrganisationUnitController controller;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        SystemInfo systemInfo = new SystemInfo();
+        systemInfo.setServerDate(DateTime.now());
+        SystemInfoController systemInfoController = mock(SystemInfoController.class);
+        when(systemInfoController.getSystemInfo()).thenReturn(systemInfo);
+
+        UserAccount userAccount = mock(UserAccount.class);
+        when(userAccount.getOrganisationUnits()).thenReturn(organisationUnits("ou4"));
+        UserApiClient userApiClient = mock(UserApiClient.class);
+        when(userApiClient.getUserAccount()).thenReturn(userAccount);
+
+        // persisted organisation units are only available by uid
+        queriedUids = new ArrayList<>();
+        store = mock(OrganisationUnitStore.class);
+        when(store.queryAllUids()).thenReturn(new HashSet<>(PERSISTED_UIDS));
+        when(store.queryByUids(anySetOf(String.class))).thenAnswer(
+                new Answer<List<OrganisationUnit>>() {
+
+                    @Override
+                    public List<OrganisationUnit> answer(InvocationOnMock invocation) {
+                        Set<String> uids = (Set<String>) invocation.getArguments()[0];
+                        queriedUids.add(new HashSet<>(uids));
+
+                        List<OrganisationUnit> persisted = new ArrayList<>();
+                        for (String uid : uids) {
+                            if (PERSISTED_UIDS.contains(uid)) {
+                                OrganisationUnit organisationUnit = organisationUnit(uid);
+                                organisationUnit.setId(uid.hashCode());
+                                persisted.add(organisationUnit);
+                            }
+                        }
+                        return persisted;
+                    }
+                });
+
+        // server sends both listings in two pages
+        apiClient = mock(OrganisationUnitApiClient.class);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                PageConsumer<OrganisationUnit> consumer =
+                        (PageConsumer<OrganisationUnit>) invocation.getArguments()[3];
+                consumer.consume(organisationUnits("ou1", "ou4"));
+                consumer.consume(organisationUnits("ou5"));
+                return null;
+            }
+        }).when(apiClient).getOrganisationUnits(any(Fields.class), any(DateTime.class),
+                (Set<String>) isNull(), any(PageConsumer.class));
+
+        transactions = new ArrayList<>();
+        TransactionManager transactionManager = mock(TransactionManager.class);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                transactions.add(new ArrayList<>(
+                        (Collection<DbOperation>) invocation.getArguments()[0]));
+                return null;
+            }
+        }).when(transactionManager).transact(any(Collection.class));
+
+        // by default, deletions are found through the listing of all uids
+        deletedObjectController = mock(DeletedObjectController.class);
+        when(deletedObjectController.getExistingUids(any(ResourceType.class),
+                any(SyncStrategy.class), anySetOf(String.class))).thenReturn(null);
+        controller = new OrganisationUnitControllerImpl(systemInfoController,
+                deletedObjectController, apiClient, userApiClient, store,
+                mock(LastUpdatedPreferences.class), transactionManager);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void organisationUnitsArePersistedPageByPage() {
+        controller.pull(SyncStrategy.FORCE_UPDATE);
+
+        // persisted organisation units are never loaded all at once
+        verify(store, never()).queryAll();
+        verify(apiClient).getOrganisationUnits(eq(Fields.BASIC), (DateTime) isNull(),
+                (Set<String>) isNull(), any(PageConsumer.class));
+        verify(apiClient, never()).getOrganisationUnits(
+                any(Fields.class), any(DateTime.class), anySetOf(String.class));
+
+        // one transaction per page and one for removed organisation units
+        assertEquals(3, transactions.size());
+        assertOperations(transactions.get(0), DbAction.UPDATE, "ou1", DbAction.INSERT, "ou4");
+        assertOperations(transactions.get(1), DbAction.INSERT, "ou5");
+        assertEquals(2, transactions.get(2).size());
+        for (DbOperation operation : transactions.get(2)) {
+            assertEquals(DbAction.DELETE, operation.getAction());
+        }
+
+        // persisted organisation units are looked up per page
+        assertTrue(queriedUids.contains(new HashSet<>(Arrays.asList("ou1", "ou4"))));
+        assertTrue(queriedUids.contains(new HashSet<>(Arrays.asList("ou5"))));
+        assertTrue(queriedUids.contains(new HashSet<>(Arrays.asList("ou2", "ou3"))));
+
+        OrganisationUnit inserted = (OrganisationUnit) transactions.get(0).get(1).getModel();
+        assertTrue(inserted.isAssignedToUser());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void logOfDeletedObjectsReplacesListingOfUids() {
+        when(deletedObjectController.getExistingUids(eq(ResourceType.ORGANISATION_UNITS),
+                any(SyncStrategy.class), anySetOf(String.class)))
+                .thenReturn(new HashSet<>(Arrays.asList("ou1", "ou2")));
+
+        controller.pull(SyncStrategy.DEFAULT);
+
+        verify(apiClient, never()).getOrganisationUnits(eq(Fields.BASIC), any(DateTime.class),
+                anySetOf(String.class), any(PageConsumer.class));
+        assertEquals(3, transactions.size());
+        assertEquals(1, transactions.get(2).size());
+        assertEquals("ou3", ((OrganisationUnit) transactions.get(2).get(0).getModel()).getUId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void downloadedOrganisationUnitsAreNotRemoved() {
+        // ou1 has been deleted and imported again with the same uid
+        when(deletedObjectController.getExistingUids(eq(ResourceType.ORGANISATION_UNITS),
+                any(SyncStrategy.class), anySetOf(String.class)))
+                .thenReturn(new HashSet<>(Arrays.asList("ou2")));
+
+        controller.pull(SyncStrategy.DEFAULT);
+
+        assertEquals(3, transactions.size());
+        assertOperations(transactions.get(0), DbAction.UPDATE, "ou1", DbAction.INSERT, "ou4");
+        assertOperations(transactions.get(2), DbAction.DELETE, "ou3");
+    }
+
+    private static void assertOperations(List<DbOperation> operations, Object... expected) {
+        assertEquals(expected.length / 2, operations.size());
+        for (int i = 0; i < operations.size(); i++) {
+            assertEquals(expected[2 * i], operations.get(i).getAction());
+            assertEquals(expected[2 * i + 1],
+                    ((OrganisationUnit) operations.get(i).getModel()).getUId());
+        }
+    }
+
+    private static OrganisationUnit organisationUnit(String uid) {
+        OrganisationUnit organisationUnit = new OrganisationUnit();
+        organisationUnit.setUId(uid);
+        return organisationUnit;
+    }
+
+    private static List<OrganisationUnit> organisationUnits(String... uids) {
+        List<OrganisationUnit> organisationUnits = new ArrayList<>();
+        for (String uid : uids) {
+            organisationUnits.add(organisationUnit(uid));
+        }
+        return organisationUnits;
+    }
+}
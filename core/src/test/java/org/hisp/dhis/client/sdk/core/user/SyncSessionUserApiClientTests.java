@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2016, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.client.sdk.core.user;
+
+import org.hisp.dhis.client.sdk.core.common.controllers.SyncSession;
+import org.hisp.dhis.client.sdk.models.user.UserAccount;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SyncSessionUserApiClientTests {
+    private UserAccount oldUserAccount;
+    private UserAccount newUserAccount;
+    private UserApiClient userApiClient;
+    private SyncSession syncSession;
+    private SyncSessionUserApiClient syncSessionUserApiClient;
+
+    @Before
+    public void setUp() {
+        oldUserAccount = new UserAccount();
+        newUserAccount = new UserAccount();
+        userApiClient = mock(UserApiClient.class);
+        when(userApiClient.getUserAccount()).thenReturn(oldUserAccount, newUserAccount);
+
+        syncSession = new SyncSession();
+        syncSessionUserApiClient = new SyncSessionUserApiClient(userApiClient, syncSession);
+    }
+
+    @Test
+    public void accountDownloadedDuringPostIsNotKept() {
+        // another controller asks for account while it is being posted
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                syncSessionUserApiClient.getUserAccount();
+                return null;
+            }
+        }).when(userApiClient).postUserAccount(any(UserAccount.class));
+
+        syncSession.open();
+        syncSessionUserApiClient.postUserAccount(newUserAccount);
+        UserAccount userAccount = syncSessionUserApiClient.getUserAccount();
+        syncSession.close();
+
+        assertSame(newUserAccount, userAccount);
+    }
+}